@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.hbase;
+
+import org.apache.hadoop.hbase.client.Append;
+
+/**
+ * Operator for storing tuples in HBase columns with appends sent from a background thread.<br>
+ *
+ *<br>
+ * This class is the batched counterpart of {@link HBaseAppendOperator}, see {@link HBaseBatchOutputOperator}. The
+ * extending class should implement operationAppend method and provide a HBase Append operation object that specifies
+ * where and what to store for the tuple in the table.<br>
+ *
+ * <br>
+ *
+ * @param <T> The tuple type
+ * @since 0.9.4
+ */
+public abstract class HBaseBatchAppendOperator<T> extends HBaseBatchOutputOperator<T>
+{
+
+  @Override
+  public void processTuple(T t)
+  {
+    addAppend(operationAppend(t));
+  }
+
+  /**
+   * Return the HBase Append operation to store the tuple.
+   *
+   * @param t The tuple
+   * @return The HBase Append operation
+   */
+  public abstract Append operationAppend(T t);
+}
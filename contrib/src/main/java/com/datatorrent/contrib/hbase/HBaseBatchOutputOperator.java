@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.hbase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.CheckpointListener;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.common.util.DTThrowable;
+
+/**
+ * Output operator which writes batches of HBase operations from a background thread.<br>
+ *
+ * <br>
+ * The operations of the tuples are collected in batches of batchSize operations. Full batches are handed to a writer
+ * thread, which adds the puts to the client side write buffer of the table, created with auto flush off and a buffer
+ * of writeBufferSize bytes, and sends the appends. At the end of a window the rest of the window is handed over too, and
+ * the writer flushes the write buffer and saves the id of the window in a single cell with the persistence strategy
+ * while the operator goes on with the next windows. At most maxPendingBatches batches are waiting to be written; when
+ * the writer falls behind the operator thread blocks.<br>
+ *
+ * <br>
+ * When a window is checkpointed the operator waits until the windows up to the checkpoint are written, since they are
+ * not replayed after a failure. Windows up to the saved window id are skipped when they are replayed. Windows without
+ * operations do not save their id, since their replay writes nothing. Appends are not idempotent, so only the windows
+ * after the last saved window should be replayed.<br>
+ *
+ * <br>
+ * The extending class should implement processTuple and add the operations of the tuple with addPut or addAppend, and
+ * getPersistenceStrategy.<br>
+ *
+ * @param <T> The tuple type
+ * @since 0.9.4
+ */
+public abstract class HBaseBatchOutputOperator<T> extends HBaseOperatorBase implements Operator, CheckpointListener
+{
+  private static final Logger logger = LoggerFactory.getLogger(HBaseBatchOutputOperator.class);
+  private static final String DEFAULT_LAST_WINDOW_PREFIX_COLUMN_NAME = "last_window";
+
+  private String lastWindowColumnName = DEFAULT_LAST_WINDOW_PREFIX_COLUMN_NAME;
+  @Min(1)
+  private long writeBufferSize = 8 * 1024 * 1024;
+  @Min(1)
+  private int batchSize = 1000;
+  @Min(1)
+  private int maxPendingBatches = 4;
+
+  private transient byte[] lastWindowColumnBytes;
+  private transient long lastProcessedWindow = -1;
+  private transient long currentWindow;
+  private transient HBaseStatePersistenceStrategy persistenceStrategy;
+  private transient Batch current;
+  private transient boolean windowHasOperations;
+  private transient BlockingQueue<Batch> pendingBatches;
+  private transient Thread writerThread;
+  private transient volatile Throwable writerError;
+  /**
+   * Last window handed to the writer and last window written by the writer, guarded by writtenLock.
+   */
+  private transient long submittedWindow;
+  private transient long writtenWindow;
+  private transient Object writtenLock;
+
+  private static class Batch
+  {
+    final List<Put> puts = new ArrayList<Put>();
+    final List<Append> appends = new ArrayList<Append>();
+    /**
+     * Id of the window ended by the batch, -1 if the batch does not end a window.
+     */
+    long windowId = -1;
+
+    int size()
+    {
+      return puts.size() + appends.size();
+    }
+  }
+
+  @InputPortFieldAnnotation(name = "inputPort")
+  public final transient DefaultInputPort<T> inputPort = new DefaultInputPort<T>()
+  {
+    @Override
+    public void process(T tuple)
+    {
+      if (currentWindow > lastProcessedWindow) {
+        processTuple(tuple);
+      }
+    }
+
+  };
+
+  /**
+   * Get the name of the column where the last processed window id is stored.
+   * @return The column name
+   */
+  public String getLastWindowColumnName()
+  {
+    return lastWindowColumnName;
+  }
+
+  /**
+   * Set the name of the column where the last processed window id is stored.
+   * @param lastWindowColumnName The column name
+   */
+  public void setLastWindowColumnName(String lastWindowColumnName)
+  {
+    this.lastWindowColumnName = lastWindowColumnName;
+  }
+
+  /**
+   * Get the size of the client side write buffer of the table.
+   * @return The size in bytes
+   */
+  public long getWriteBufferSize()
+  {
+    return writeBufferSize;
+  }
+
+  /**
+   * Set the size of the client side write buffer of the table. The buffered puts are sent when the buffer is full.
+   * @param writeBufferSize The size in bytes
+   */
+  public void setWriteBufferSize(long writeBufferSize)
+  {
+    this.writeBufferSize = writeBufferSize;
+  }
+
+  /**
+   * Get the no. of operations handed to the writer thread at a time.
+   * @return The batch size
+   */
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * Set the no. of operations handed to the writer thread at a time.
+   * @param batchSize The batch size
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Get the no. of batches which may wait for the writer thread before the operator blocks.
+   * @return The no. of batches
+   */
+  public int getMaxPendingBatches()
+  {
+    return maxPendingBatches;
+  }
+
+  /**
+   * Set the no. of batches which may wait for the writer thread before the operator blocks.
+   * @param maxPendingBatches The no. of batches
+   */
+  public void setMaxPendingBatches(int maxPendingBatches)
+  {
+    this.maxPendingBatches = maxPendingBatches;
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    String columnKey = context.getValue(DAG.APPLICATION_NAME) + "_" + context.getValue(DAG.APPLICATION_ID) + "_"
+                       + context.getId() + "_" + lastWindowColumnName;
+    lastWindowColumnBytes = Bytes.toBytes(columnKey);
+    try {
+      setupConfiguration();
+      table.setAutoFlush(false);
+      table.setWriteBufferSize(writeBufferSize);
+      persistenceStrategy = getPersistenceStrategy();
+      persistenceStrategy.setTable(getTable());
+      persistenceStrategy.setup();
+      byte[] lastProcessedWindowBytes = persistenceStrategy.getState(lastWindowColumnBytes);
+      if (lastProcessedWindowBytes != null) {
+        lastProcessedWindow = Bytes.toLong(lastProcessedWindowBytes);
+      }
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+
+    current = new Batch();
+    pendingBatches = new ArrayBlockingQueue<Batch>(maxPendingBatches);
+    writtenLock = new Object();
+    submittedWindow = -1;
+    writtenWindow = -1;
+    writerError = null;
+    writerThread = new Thread(new Writer(), "HBaseBatchWriter-" + context.getId());
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (writerThread != null) {
+      writerThread.interrupt();
+      try {
+        writerThread.join();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      writerThread = null;
+    }
+    if (table != null) {
+      try {
+        table.close();
+      }
+      catch (IOException ex) {
+        logger.warn("Exception while closing table {}", tableName, ex);
+      }
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    currentWindow = windowId;
+    windowHasOperations = false;
+  }
+
+  /**
+   * Hands the rest of the window to the writer, which flushes the window and saves its id.
+   */
+  @Override
+  public void endWindow()
+  {
+    if (writerError != null) {
+      DTThrowable.rethrow(writerError);
+    }
+    if (!windowHasOperations) {
+      return;
+    }
+    current.windowId = currentWindow;
+    submit();
+    submittedWindow = currentWindow;
+    lastProcessedWindow = currentWindow;
+  }
+
+  /**
+   * Waits until the windows handed to the writer are flushed and their ids are saved.
+   */
+  @Override
+  public void checkpointed(long windowId)
+  {
+    synchronized (writtenLock) {
+      while (writtenWindow < submittedWindow && writerError == null) {
+        try {
+          writtenLock.wait();
+        }
+        catch (InterruptedException ex) {
+          DTThrowable.rethrow(ex);
+        }
+      }
+    }
+    if (writerError != null) {
+      DTThrowable.rethrow(writerError);
+    }
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+  }
+
+  /**
+   * Add a put to the current batch.
+   * @param put The HBase Put operation
+   */
+  protected void addPut(Put put)
+  {
+    current.puts.add(put);
+    added();
+  }
+
+  /**
+   * Add an append to the current batch.
+   * @param append The HBase Append operation
+   */
+  protected void addAppend(Append append)
+  {
+    current.appends.add(append);
+    added();
+  }
+
+  private void added()
+  {
+    windowHasOperations = true;
+    if (current.size() >= batchSize) {
+      submit();
+    }
+  }
+
+  private void submit()
+  {
+    try {
+      while (!pendingBatches.offer(current, 100, TimeUnit.MILLISECONDS)) {
+        if (writerError != null) {
+          break;
+        }
+      }
+    }
+    catch (InterruptedException ex) {
+      DTThrowable.rethrow(ex);
+    }
+    if (writerError != null) {
+      DTThrowable.rethrow(writerError);
+    }
+    current = new Batch();
+  }
+
+  /**
+   * Writes the batches and at the end of every window flushes the write buffer and saves the window id.
+   */
+  private class Writer implements Runnable
+  {
+    @Override
+    public void run()
+    {
+      try {
+        while (true) {
+          Batch batch = pendingBatches.take();
+          if (!batch.puts.isEmpty()) {
+            table.put(batch.puts);
+          }
+          if (!batch.appends.isEmpty()) {
+            // the puts of the batch go first, appends are not buffered by the client
+            table.flushCommits();
+            for (Append append : batch.appends) {
+              table.append(append);
+            }
+          }
+          if (batch.windowId != -1) {
+            table.flushCommits();
+            persistenceStrategy.saveState(lastWindowColumnBytes, Bytes.toBytes(batch.windowId));
+            table.flushCommits();
+            synchronized (writtenLock) {
+              writtenWindow = batch.windowId;
+              writtenLock.notifyAll();
+            }
+          }
+        }
+      }
+      catch (InterruptedException ex) {
+        // teardown
+      }
+      catch (Throwable t) {
+        logger.error("Failed to write to table {}", tableName, t);
+        synchronized (writtenLock) {
+          writerError = t;
+          writtenLock.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the persistence strategy.
+   * Get the persistence strategy to use to save and retrieve the last processed window id. The strategy
+   * shares the table of the operator, which only the writer thread uses after setup.
+   * @return The persistence strategy
+   */
+  public abstract HBaseStatePersistenceStrategy getPersistenceStrategy();
+
+  /**
+   * Process a tuple.
+   * Add the HBase operations of the tuple with addPut or addAppend.
+   * @param t The tuple
+   */
+  public abstract void processTuple(T t);
+
+}
@@ -23,6 +23,9 @@ import com.datatorrent.lib.database.DBConnector;
 /**
  * <br>This is {@link AbstractDBLookupCacheBackedOperator} which uses JDBC to fetch the value of a key from the database
  * when the key is not present in cache. </br>
+ * <br>Batched lookups share the same JDBC connection, so by default one batch is fetched at a time.
+ * {@link #setMaxConcurrentLookups(int)} should be increased only when the driver supports concurrent statements on a
+ * connection.</br>
  *
  * @param <T> type of input tuples </T>
  * @since 0.9.1
@@ -35,6 +38,7 @@ public abstract class JDBCLookupCacheBackedOperator<T> extends AbstractDBLookupC
   {
     super();
     jdbcConnector = new JDBCOperatorBase();
+    maxConcurrentLookups = 1;
   }
 
   @Nonnull
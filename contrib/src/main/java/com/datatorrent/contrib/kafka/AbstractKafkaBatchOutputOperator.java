@@ -0,0 +1,589 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.kafka;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.validation.constraints.Min;
+import kafka.javaapi.PartitionMetadata;
+import kafka.javaapi.producer.Producer;
+import kafka.producer.KeyedMessage;
+import kafka.producer.ProducerConfig;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.datatorrent.api.CheckpointListener;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.Stats.OperatorStats.CustomStats;
+import com.datatorrent.common.util.DTThrowable;
+
+/**
+ * Kafka output adapter operator which sends the messages in batches from background threads and does not send a window
+ * twice after recovery.<p><br>
+ *
+ * The messages are grouped by the kafka partition of their key, computed like the default kafka partitioner, into
+ * batches of batchSize messages. Messages without a key are distributed round robin over the partitions. These
+ * partitions are logical: the producer does not pass a null key to its partitioner and sends such messages to a
+ * partition of its own choice, and the partitions of keyed messages match the kafka partitions only with the default
+ * partitioner. The assignment is deterministic, so the replayed messages of a window always go to the same logical
+ * partition, which is all the skipping of sent windows relies on. Every batch is sent with a single request by one of
+ * maxInFlightRequests sender threads, each with its own producer; the batches of a partition are always sent by the
+ * same thread so they stay in order. A sender thread holds at most maxPendingBatches batches, when it is behind the
+ * operator waits.<br>
+ * <br>
+ * When the last batch of a partition in a window is sent, the window and the partition are recorded in a log under
+ * windowLogPath. When a window is checkpointed the operator waits until all the batches up to the checkpoint are sent
+ * and logged, since the windows up to the checkpoint are not replayed after a failure. When a window is committed the
+ * log is rolled over to a new file with only the last sent window of every partition, so it does not grow with the no.
+ * of windows. After a failure the operator replays the windows since the checkpoint and skips the messages of the
+ * windows which were already sent to their partition, so a window is not sent twice. Messages of a window which was
+ * partly sent when the operator failed are sent again. Without windowLogPath the operator does not skip replayed
+ * windows.<br>
+ * <br>
+ * The producer should be configured with producer.type sync, the sender threads make the sends asynchronous.<br>
+ * <br>
+ * Properties:<br>
+ * <b>batchSize</b>: max no. of messages of a request<br>
+ * <b>maxInFlightRequests</b>: no. of sender threads and producers<br>
+ * <b>maxPendingBatches</b>: no. of batches waiting for a sender thread<br>
+ * <b>windowLogPath</b>: directory of the logs of the sent windows<br>
+ * <br>
+ * Stats:<br>
+ * {@link KafkaSendStats} with the messages and batches sent and the send latency, every window.<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @param <V> message type
+ * @since 0.9.4
+ */
+public abstract class AbstractKafkaBatchOutputOperator<K, V> extends AbstractKafkaOutputOperator<K, V> implements CheckpointListener
+{
+  private static final Logger logger = LoggerFactory.getLogger(AbstractKafkaBatchOutputOperator.class);
+
+  @Min(1)
+  private int batchSize = 1000;
+
+  @Min(1)
+  private int maxInFlightRequests = 2;
+
+  @Min(1)
+  private int maxPendingBatches = 16;
+
+  private String windowLogPath;
+
+  // no. of partitions of the topic when the operator was deployed, kept so replayed messages go to the same batches
+  private int numPartitions;
+
+  private transient OperatorContext context;
+  private transient long currentWindowId;
+  private transient long nullKeyCount;
+  private transient long[] sentWindows;
+  private transient List<KeyedMessage<K, V>>[] batches;
+  private transient boolean[] windowPartitions;
+  private transient Sender[] senders;
+  private transient Thread[] senderThreads;
+  private transient volatile Throwable sendError;
+  // batches put in the queues by the operator thread and batches sent and logged by the senders, guarded by sentLock
+  private transient long submittedBatches;
+  private transient long completedBatches;
+  private transient Object sentLock;
+  private transient FileSystem fs;
+  private transient FSDataOutputStream windowLog;
+  private transient String windowLogPrefix;
+  private transient Path windowLogFile;
+  private transient long windowLogSequence;
+  // last window logged for every partition and no. of entries logged since the log was rolled, guarded by this
+  private transient long[] loggedWindows;
+  private transient int loggedEntries;
+
+  private final transient AtomicLong sentMessages = new AtomicLong();
+  private final transient AtomicLong sentBatches = new AtomicLong();
+  private final transient AtomicLong sendNanos = new AtomicLong();
+  private final transient AtomicLong maxSendNanos = new AtomicLong();
+  private transient long skippedMessages;
+
+  /**
+   * Batch of messages of a partition
+   */
+  private static class Batch<K, V>
+  {
+    final int partition;
+    final long windowId;
+    final List<KeyedMessage<K, V>> messages;
+    final boolean windowEnd;
+
+    Batch(int partition, long windowId, List<KeyedMessage<K, V>> messages, boolean windowEnd)
+    {
+      this.partition = partition;
+      this.windowId = windowId;
+      this.messages = messages;
+      this.windowEnd = windowEnd;
+    }
+  }
+
+  private static final Batch<?, ?> STOP = new Batch<Object, Object>(-1, -1, null, false);
+
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  public int getMaxInFlightRequests()
+  {
+    return maxInFlightRequests;
+  }
+
+  public void setMaxInFlightRequests(int maxInFlightRequests)
+  {
+    this.maxInFlightRequests = maxInFlightRequests;
+  }
+
+  public int getMaxPendingBatches()
+  {
+    return maxPendingBatches;
+  }
+
+  public void setMaxPendingBatches(int maxPendingBatches)
+  {
+    this.maxPendingBatches = maxPendingBatches;
+  }
+
+  public String getWindowLogPath()
+  {
+    return windowLogPath;
+  }
+
+  public void setWindowLogPath(String windowLogPath)
+  {
+    this.windowLogPath = windowLogPath;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void setup(OperatorContext context)
+  {
+    super.setup(context);
+    this.context = context;
+    if (numPartitions == 0) {
+      numPartitions = getPartitionCount();
+    }
+    sentWindows = new long[numPartitions];
+    Arrays.fill(sentWindows, -1);
+    batches = new List[numPartitions];
+    windowPartitions = new boolean[numPartitions];
+    submittedBatches = 0;
+    completedBatches = 0;
+    sentLock = new Object();
+    sendError = null;
+    if (windowLogPath != null) {
+      openWindowLog(context.getId());
+    }
+
+    senders = new AbstractKafkaBatchOutputOperator.Sender[maxInFlightRequests];
+    senderThreads = new Thread[maxInFlightRequests];
+    for (int i = 0; i < maxInFlightRequests; i++) {
+      // the producer created by the super class is used by the first sender
+      senders[i] = new Sender(i == 0 ? getProducer() : new Producer<K, V>(createKafkaProducerConfig()));
+      senderThreads[i] = new Thread(senders[i], "kafka-sender-" + getTopic() + "-" + i);
+      senderThreads[i].setDaemon(true);
+      senderThreads[i].start();
+    }
+  }
+
+  /**
+   * @return no. of partitions of the topic, from the brokers of the producer configuration
+   */
+  private int getPartitionCount()
+  {
+    ProducerConfig config = createKafkaProducerConfig();
+    Set<String> brokerSet = new HashSet<String>(Arrays.asList(config.brokerList().split(",")));
+    List<PartitionMetadata> partitions = KafkaMetadataUtil.getPartitionsForTopic(brokerSet, getTopic());
+    if (partitions == null || partitions.isEmpty()) {
+      logger.warn("No metadata for topic {}, the messages are sent in a single batch", getTopic());
+      return 1;
+    }
+    return partitions.size();
+  }
+
+  /**
+   * Reads the windows which were sent from the log files of the operator and rolls the log over to a new file.<br>
+   * The log files are named &lt;topic&gt;-&lt;operator id&gt;.&lt;sequence&gt;. A file is deleted only after its
+   * entries are written to the next one, and an entry only raises the sent window of its partition, so all the files
+   * which are left after a failure are read.
+   */
+  private void openWindowLog(int operatorId)
+  {
+    windowLogPrefix = getTopic() + "-" + operatorId + ".";
+    loggedWindows = sentWindows.clone();
+    try {
+      Path logDir = new Path(windowLogPath);
+      fs = FileSystem.newInstance(logDir.toUri(), new Configuration());
+      List<Path> logFiles = new ArrayList<Path>();
+      if (fs.exists(logDir)) {
+        for (FileStatus status : fs.listStatus(logDir)) {
+          String name = status.getPath().getName();
+          if (name.startsWith(windowLogPrefix)) {
+            try {
+              long sequence = Long.parseLong(name.substring(windowLogPrefix.length()));
+              windowLogSequence = Math.max(windowLogSequence, sequence + 1);
+            }
+            catch (NumberFormatException ex) {
+              continue;
+            }
+            readWindowLog(status.getPath());
+            logFiles.add(status.getPath());
+          }
+        }
+      }
+      sentWindows = loggedWindows.clone();
+      synchronized (this) {
+        rollWindowLog();
+      }
+      for (Path logFile : logFiles) {
+        fs.delete(logFile, false);
+      }
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  private void readWindowLog(Path logFile) throws IOException
+  {
+    DataInputStream in = fs.open(logFile);
+    try {
+      while (true) {
+        int partition = in.readInt();
+        long windowId = in.readLong();
+        if (partition < numPartitions && windowId > loggedWindows[partition]) {
+          loggedWindows[partition] = windowId;
+        }
+      }
+    }
+    catch (EOFException ex) {
+      // end of the log, an entry may be cut off when the operator failed while writing it
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the last logged window of every partition to the next log file, which replaces the current one.
+   */
+  private void rollWindowLog() throws IOException
+  {
+    Path previousFile = windowLogFile;
+    FSDataOutputStream previousLog = windowLog;
+    windowLogFile = new Path(windowLogPath, windowLogPrefix + windowLogSequence++);
+    windowLog = fs.create(windowLogFile, true);
+    for (int partition = 0; partition < numPartitions; partition++) {
+      if (loggedWindows[partition] >= 0) {
+        windowLog.writeInt(partition);
+        windowLog.writeLong(loggedWindows[partition]);
+      }
+    }
+    windowLog.hflush();
+    loggedEntries = 0;
+    if (previousLog != null) {
+      previousLog.close();
+      fs.delete(previousFile, false);
+    }
+  }
+
+  private synchronized void logWindow(int partition, long windowId) throws IOException
+  {
+    if (windowLog != null) {
+      windowLog.writeInt(partition);
+      windowLog.writeLong(windowId);
+      windowLog.hflush();
+      loggedWindows[partition] = windowId;
+      loggedEntries++;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void teardown()
+  {
+    if (senders != null) {
+      for (int i = 0; i < senderThreads.length; i++) {
+        try {
+          // the batches before the stop marker are sent first
+          senders[i].queue.put((Batch<K, V>)STOP);
+          senderThreads[i].join();
+        }
+        catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        if (i > 0) {
+          senders[i].producer.close();
+        }
+      }
+      senders = null;
+    }
+    try {
+      synchronized (this) {
+        if (windowLog != null) {
+          windowLog.close();
+          windowLog = null;
+        }
+      }
+      if (fs != null) {
+        fs.close();
+        fs = null;
+      }
+    }
+    catch (IOException ex) {
+      logger.warn("Exception while closing the window log", ex);
+    }
+    super.teardown();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    currentWindowId = windowId;
+    nullKeyCount = 0;
+  }
+
+  /**
+   * Adds the message to the batch of its partition, unless the window was already sent to the partition.
+   *
+   * @param key key of the message, may be null
+   * @param message message
+   */
+  protected void sendMessage(K key, V message)
+  {
+    int partition = key == null ? (int)(nullKeyCount++ % numPartitions) : (key.hashCode() & 0x7fffffff) % numPartitions;
+    if (currentWindowId <= sentWindows[partition]) {
+      skippedMessages++;
+      return;
+    }
+    List<KeyedMessage<K, V>> batch = batches[partition];
+    if (batch == null) {
+      batch = new ArrayList<KeyedMessage<K, V>>(batchSize);
+      batches[partition] = batch;
+    }
+    batch.add(key == null ? new KeyedMessage<K, V>(getTopic(), message) : new KeyedMessage<K, V>(getTopic(), key, message));
+    windowPartitions[partition] = true;
+    sendCount++;
+    if (batch.size() >= batchSize) {
+      submit(partition, false);
+    }
+  }
+
+  private void submit(int partition, boolean windowEnd)
+  {
+    if (sendError != null) {
+      DTThrowable.rethrow(sendError);
+    }
+    List<KeyedMessage<K, V>> messages = batches[partition];
+    batches[partition] = null;
+    if (messages == null) {
+      messages = new ArrayList<KeyedMessage<K, V>>(0);
+    }
+    try {
+      senders[partition % senders.length].queue.put(new Batch<K, V>(partition, currentWindowId, messages, windowEnd));
+      submittedBatches++;
+    }
+    catch (InterruptedException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  /**
+   * Sends the rest of the batches of the window and reports the stats of the sends completed since the last window.
+   */
+  @Override
+  public void endWindow()
+  {
+    for (int partition = 0; partition < numPartitions; partition++) {
+      if (windowPartitions[partition]) {
+        submit(partition, true);
+        windowPartitions[partition] = false;
+      }
+    }
+    super.endWindow();
+
+    long messages = sentMessages.getAndSet(0);
+    long requests = sentBatches.getAndSet(0);
+    long nanos = sendNanos.getAndSet(0);
+    KafkaSendStats stats = new KafkaSendStats();
+    stats.sentMessages = messages;
+    stats.sentBatches = requests;
+    stats.avgSendMillis = requests == 0 ? 0 : nanos / requests / 1000000.0;
+    stats.maxSendMillis = maxSendNanos.getAndSet(0) / 1000000.0;
+    stats.skippedMessages = skippedMessages;
+    context.setCustomStats(stats);
+  }
+
+  /**
+   * Waits until the batches of the windows up to the checkpoint are sent and logged.
+   */
+  @Override
+  public void checkpointed(long windowId)
+  {
+    synchronized (sentLock) {
+      while (completedBatches < submittedBatches && sendError == null) {
+        try {
+          sentLock.wait();
+        }
+        catch (InterruptedException ex) {
+          DTThrowable.rethrow(ex);
+        }
+      }
+    }
+    if (sendError != null) {
+      DTThrowable.rethrow(sendError);
+    }
+  }
+
+  /**
+   * Rolls the window log over when windows were logged since it was last rolled.
+   */
+  @Override
+  public void committed(long windowId)
+  {
+    synchronized (this) {
+      if (windowLog == null || loggedEntries == 0) {
+        return;
+      }
+      try {
+        rollWindowLog();
+      }
+      catch (IOException ex) {
+        DTThrowable.rethrow(ex);
+      }
+    }
+  }
+
+  public long getSkippedMessages()
+  {
+    return skippedMessages;
+  }
+
+  /**
+   * Sends a batch with a single request. Called by the sender threads.
+   *
+   * @param producer producer of the sender thread
+   * @param messages messages of the batch
+   */
+  protected void send(Producer<K, V> producer, List<KeyedMessage<K, V>> messages)
+  {
+    producer.send(messages);
+  }
+
+  /**
+   * Sends the batches of its partitions in order with its own producer
+   */
+  private class Sender implements Runnable
+  {
+    final Producer<K, V> producer;
+    final BlockingQueue<Batch<K, V>> queue = new ArrayBlockingQueue<Batch<K, V>>(maxPendingBatches);
+
+    Sender(Producer<K, V> producer)
+    {
+      this.producer = producer;
+    }
+
+    @Override
+    public void run()
+    {
+      try {
+        while (true) {
+          Batch<K, V> batch = queue.take();
+          if (batch == STOP) {
+            return;
+          }
+          if (!batch.messages.isEmpty()) {
+            long start = System.nanoTime();
+            send(producer, batch.messages);
+            long nanos = System.nanoTime() - start;
+            sentMessages.addAndGet(batch.messages.size());
+            sentBatches.incrementAndGet();
+            sendNanos.addAndGet(nanos);
+            long max = maxSendNanos.get();
+            while (nanos > max && !maxSendNanos.compareAndSet(max, nanos)) {
+              max = maxSendNanos.get();
+            }
+          }
+          if (batch.windowEnd) {
+            logWindow(batch.partition, batch.windowId);
+          }
+          synchronized (sentLock) {
+            completedBatches++;
+            sentLock.notifyAll();
+          }
+        }
+      }
+      catch (InterruptedException ex) {
+        // teardown
+      }
+      catch (Throwable t) {
+        logger.error("Failed to send to topic {}", getTopic(), t);
+        synchronized (sentLock) {
+          sendError = t;
+          sentLock.notifyAll();
+        }
+        // keep taking the batches so the operator does not block before it sees the error
+        while (true) {
+          try {
+            if (queue.take() == STOP) {
+              return;
+            }
+          }
+          catch (InterruptedException ex) {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Stats of the sends completed in a window
+   */
+  public static class KafkaSendStats implements CustomStats
+  {
+    private static final long serialVersionUID = 201403181203L;
+
+    public long sentMessages;
+    public long sentBatches;
+    public double avgSendMillis;
+    public double maxSendMillis;
+    public long skippedMessages;
+  }
+}
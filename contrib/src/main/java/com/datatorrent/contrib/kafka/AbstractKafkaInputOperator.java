@@ -63,7 +63,11 @@ public abstract class AbstractKafkaInputOperator<K extends KafkaConsumer> implem
   @SuppressWarnings("unused")
   private static final Logger logger = LoggerFactory.getLogger(AbstractKafkaInputOperator.class);
   
+  private static final int EMIT_BATCH_SIZE = 1024;
+
   private int tuplesBlast = 1024 * 1024;
+
+  private transient Message[] batch = new Message[EMIT_BATCH_SIZE];
   
   @NotNull
   @Valid
@@ -146,13 +150,23 @@ public abstract class AbstractKafkaInputOperator<K extends KafkaConsumer> implem
 
   /**
    * Implement InputOperator Interface.
+   * Drains the holding buffers of the consumer a batch at a time until they are empty or tuplesBlast messages were
+   * emitted.
    */
   @Override
   public void emitTuples()
   {
-    int bufferLength = consumer.messageSize();
-    for (int i = tuplesBlast < bufferLength ? tuplesBlast : bufferLength; i-- > 0;) {
-      emitTuple(consumer.pollMessage());
+    int remaining = tuplesBlast;
+    while (remaining > 0) {
+      int count = consumer.drainMessages(batch, 0, Math.min(remaining, batch.length));
+      if (count == 0) {
+        break;
+      }
+      for (int i = 0; i < count; i++) {
+        emitTuple(batch[i]);
+        batch[i] = null;
+      }
+      remaining -= count;
     }
   }
   
@@ -49,8 +49,8 @@ import com.google.common.collect.Sets;
  * <b>Partition Strategy:</b>
  * <p><b>1. ONE_TO_ONE partition</b> Each operator partition will consume from only one kafka partition </p>
  * <p><b>2. ONE_TO_MANY partition</b> Each operator partition consumer from multiple kafka partition with some hard ingestion rate limit</p>
- * <p><b>3. ONE_TO_MANY_HEURISTIC partition</b>(Not implemented yet) Each operator partition consumer from multiple kafka partition and partition number depends on heuristic function(real time bottle neck)</p>
- * <p><b>Note:</b> ONE_TO_MANY partition only support simple kafka consumer because
+ * <p><b>3. ONE_TO_MANY_HEURISTIC partition</b> Each operator partition consumer from multiple kafka partition and partition number follows the consumer lag of the kafka partitions</p>
+ * <p><b>Note:</b> ONE_TO_MANY and ONE_TO_MANY_HEURISTIC partition only support simple kafka consumer because
  * <p>  1) high-level consumer can only balance the number of brokers it consumes from rather than the actual load from each broker</p>
  * <p>  2) high-level consumer can not reset offset once it's committed so the tuples are not replayable </p>
  * <p></p>
@@ -61,6 +61,10 @@ import com.google.common.collect.Sets;
  * <p>2.cloneConsumer method is used to initialize the new {@link KafkaConsumer} instance for the new partition operator</p>
  * <p>3.cloneOperator method is used to initialize the new {@link AbstractPartitionableKafkaInputOperator} instance for the new partition operator</p>
  * <p>4.ONE_TO_MANY partition use first-fit decreasing algorithm(http://en.wikipedia.org/wiki/Bin_packing_problem) to minimize the partition operator
+ * <p>5.ONE_TO_MANY_HEURISTIC partition computes the lag of every kafka partition, the latest offset retrieved with {@link KafkaMetadataUtil} minus the
+ * offset of the next message to emit, and packs the kafka partitions with first-fit decreasing by their intake rate plus the rate needed to consume the lag within
+ * lagDrainInterval, into operator partitions of msgRateUpperBound msgs/s and byteRateUpperBound bytes/s. Operator partitions are added when the packing
+ * needs more of them and removed once the lag is drained</p>
  * <br>
  * <br>
  * <b>Load balance:</b> refer to {@link SimpleKafkaConsumer} and {@link HighlevelKafkaConsumer} <br>
@@ -92,7 +96,7 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
   private static final Logger logger = LoggerFactory.getLogger(AbstractPartitionableKafkaInputOperator.class);
 
   // Store the current partition topology
-  private transient List<PartitionInfo> currentPartitionInfo = new LinkedList<AbstractPartitionableKafkaInputOperator.PartitionInfo>();
+  transient List<PartitionInfo> currentPartitionInfo = new LinkedList<AbstractPartitionableKafkaInputOperator.PartitionInfo>();
 
   // Store the current collected kafka consumer stats
   private transient Map<Integer, List<KafkaMeterStats>> kafkaStatsHolder = new HashMap<Integer, List<KafkaConsumer.KafkaMeterStats>>();
@@ -109,6 +113,12 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
 
   private transient List<Integer> newWaitingPartition = new LinkedList<Integer>();
 
+  // time in milliseconds within which the ONE_TO_MANY_HEURISTIC partition should consume the lag of a kafka partition
+  private long lagDrainInterval = 60000L;
+
+  // the kafka partition assignment computed from the lag by the last check
+  transient List<PartitionInfo> lagPartitionInfo = null;
+
   @Override
   public Collection<Partition<AbstractPartitionableKafkaInputOperator>> definePartitions(Collection<Partition<AbstractPartitionableKafkaInputOperator>> partitions, int incrementalCapacity)
   {
@@ -169,11 +179,13 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
     // For the 1 to N mapping The initial partition number is defined by stream application
     // Afterwards, the framework will dynamically adjust the partition and allocate consumers to as less operator partitions as it can
     //  and guarantee the total intake rate for each operator partition is below some threshold
+    // The ONE_TO_MANY_HEURISTIC mapping starts like the 1 to N mapping but sizes the operator partitions by the lag of the kafka partitions
     case ONE_TO_MANY:
+    case ONE_TO_MANY_HEURISTIC:
 
 
       if(getConsumer() instanceof HighlevelKafkaConsumer){
-        throw new UnsupportedOperationException("[ONE_TO_MANY]: The high-level consumer is not supported for ONE_TO_MANY partition strategy.");
+        throw new UnsupportedOperationException("[" + strategy + "]: The high-level consumer is not supported for " + strategy + " partition strategy.");
       }
 
       if(isInitialParitition){
@@ -241,7 +253,13 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
         }
 
 
-        List<PartitionInfo> partitionInfos = firstFitDecreasingAlgo(kPIntakeRate);
+        List<PartitionInfo> partitionInfos;
+        if (strategy == PartitionStrategy.ONE_TO_MANY_HEURISTIC && lagPartitionInfo != null) {
+          partitionInfos = lagPartitionInfo;
+          lagPartitionInfo = null;
+        } else {
+          partitionInfos = firstFitDecreasingAlgo(kPIntakeRate);
+        }
 
         for (PartitionInfo r  : partitionInfos) {
           logger.info("[ONE_TO_MANY]: Create operator partition for kafka partition(s): " + StringUtils.join(r.kpids, ", ") + ", topic: " + this.getConsumer().topic);
@@ -256,8 +274,6 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
 
       break;
 
-    case ONE_TO_MANY_HEURISTIC:
-      throw new UnsupportedOperationException("[ONE_TO_MANY_HEURISTIC]: Not implemented yet");
     default:
       break;
     }
@@ -385,7 +401,7 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
     // Hard constraint which is upper bound overall msgs/s or bytes/s
     // Soft constraint which is more optimal solution
 
-    boolean b = breakHardConstraint(kmss) || breakSoftConstraint();
+    boolean b = strategy == PartitionStrategy.ONE_TO_MANY_HEURISTIC ? breakLagConstraint() : breakHardConstraint(kmss) || breakSoftConstraint();
     if (b) {
       currentPartitionInfo.clear();
       kafkaStatsHolder.clear();
@@ -394,6 +410,65 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
     return b;
   }
 
+  /**
+   * Collect the intake rate and the emitted offsets from the latest stats of every operator partition and the latest offsets from kafka
+   * @return true if the number of operator partitions should change, the new assignment is kept in lagPartitionInfo
+   */
+  private boolean breakLagConstraint()
+  {
+    Map<Integer, double[]> kPIntakeRate = new HashMap<Integer, double[]>();
+    Map<Integer, Long> emittedOffsets = new HashMap<Integer, Long>();
+    for (List<KafkaMeterStats> kmss : kafkaStatsHolder.values()) {
+      if (kmss.isEmpty()) {
+        return false;
+      }
+      // the latest stats of the operator partition
+      KafkaMeterStats kms = kmss.get(kmss.size() - 1);
+      kPIntakeRate.putAll(kms.get_1minMovingAvgPerPartition());
+      emittedOffsets.putAll(kms.getOffsets());
+    }
+    if (kPIntakeRate.isEmpty()) {
+      return false;
+    }
+    return breakLagConstraint(kPIntakeRate, emittedOffsets, KafkaMetadataUtil.getLastOffsets(consumer.brokerSet, consumer.getTopic()));
+  }
+
+  /**
+   * Pack the kafka partitions by their intake rate plus the rate needed to consume their lag within lagDrainInterval
+   * Scale up as soon as the packing needs more operator partitions, scale down only once the lag is drained to less than a check interval of intake
+   * @param kPIntakeRate msgs/s and bytes/s of every kafka partition
+   * @param emittedOffsets offset of the next message to emit of every kafka partition
+   * @param latestOffsets latest offset of every kafka partition
+   * @return true if the number of operator partitions should change, the new assignment is kept in lagPartitionInfo
+   */
+  boolean breakLagConstraint(Map<Integer, double[]> kPIntakeRate, Map<Integer, Long> emittedOffsets, Map<Integer, Long> latestOffsets)
+  {
+    Map<Integer, double[]> kPRequiredRate = new HashMap<Integer, double[]>();
+    long totalLag = 0;
+    double totalMsgRate = 0;
+    for (Entry<Integer, double[]> entry : kPIntakeRate.entrySet()) {
+      Long emitted = emittedOffsets.get(entry.getKey());
+      Long latest = latestOffsets.get(entry.getKey());
+      long lag = emitted == null || latest == null ? 0 : Math.max(0, latest - emitted);
+      double[] rate = entry.getValue();
+      double msgSize = rate[0] > 0 ? rate[1] / rate[0] : 0;
+      double lagMsgRate = lag * 1000.0 / lagDrainInterval;
+      kPRequiredRate.put(entry.getKey(), new double[] {rate[0] + lagMsgRate, rate[1] + lagMsgRate * msgSize});
+      totalLag += lag;
+      totalMsgRate += rate[0];
+    }
+
+    List<PartitionInfo> partitionInfo = firstFitDecreasingAlgo(kPRequiredRate);
+    int current = currentPartitionInfo.size();
+    boolean lagDrained = totalLag <= totalMsgRate * repartitionCheckInterval / 1000;
+    if (partitionInfo.size() > current || (partitionInfo.size() < current && lagDrained)) {
+      logger.info("[ONE_TO_MANY_HEURISTIC]: Repartition from " + current + " to " + partitionInfo.size() + " operator partition(s) for a lag of " + totalLag + " msgs");
+      lagPartitionInfo = partitionInfo;
+      return true;
+    }
+    return false;
+  }
+
   /**
    * Check to see if there is other more optimal(less partition) partition assignment based on current statistics
    * @return
@@ -463,6 +538,7 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
     newOp.msgRateUpperBound = this.msgRateUpperBound;
     newOp.byteRateUpperBound = this.byteRateUpperBound;
     newOp.strategy = this.strategy;
+    newOp.lagDrainInterval = this.lagDrainInterval;
     return newOp;
   }
 
@@ -501,6 +577,11 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
     if (strategy == PartitionStrategy.ONE_TO_MANY) {
       //send the stats to AppMaster and let the AppMaster decide if it wants to repartition
       context.setCustomStats(getConsumer().getConsumerStats());
+    } else if (strategy == PartitionStrategy.ONE_TO_MANY_HEURISTIC) {
+      // the emitted offsets let the AppMaster compute the lag of every kafka partition, the messages in the holding buffers included
+      KafkaMeterStats kms = getConsumer().getConsumerStats();
+      kms.setOffsets(getConsumer().getEmittedOffsets());
+      context.setCustomStats(kms);
     }
   }
 
@@ -516,9 +597,8 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
      */
     ONE_TO_MANY,
     /**
-     * 1 to N partition based on the heuristic function
-     * <b>NOT</b> implemented yet
-     * TODO implement this later
+     * 1 to N partition with the number of operator partitions driven by the lag of the kafka partitions
+     * For now it <b>only</b> support <b>simple kafka consumer</b>
      */
     ONE_TO_MANY_HEURISTIC
   }
@@ -543,6 +623,19 @@ public abstract class AbstractPartitionableKafkaInputOperator extends AbstractKa
     this.byteRateUpperBound = byteRateUpperBound;
   }
 
+  public long getLagDrainInterval()
+  {
+    return lagDrainInterval;
+  }
+
+  /**
+   * @param lagDrainInterval time in milliseconds within which the ONE_TO_MANY_HEURISTIC partition should consume the lag of a kafka partition
+   */
+  public void setLagDrainInterval(long lagDrainInterval)
+  {
+    this.lagDrainInterval = lagDrainInterval;
+  }
+
   public void setInitialOffset(String initialOffset){
     this.consumer.initialOffset = initialOffset;
   }
@@ -37,6 +37,8 @@ public abstract class AbstractPartitionableKafkaSinglePortInputOperator<T> exten
    * so that it knows what type of message it is going to send to Malhar.
    * It converts a ByteBuffer message into a Tuple. A Tuple can be of any type (derived from Java Object) that
    * operator user intends to.
+   * The payload of the message is a view of the fetched bytes, handed over without a copy; decode it in place rather
+   * than copying it to a new array.
    *
    * @param msg
    */
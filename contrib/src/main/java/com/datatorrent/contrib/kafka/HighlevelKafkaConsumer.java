@@ -25,11 +25,13 @@ import java.util.concurrent.Executors;
 import javax.validation.constraints.Min;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.datatorrent.lib.util.SpscRingBuffer;
 import kafka.consumer.ConsumerConfig;
 import kafka.consumer.ConsumerIterator;
 import kafka.consumer.KafkaStream;
 import kafka.javaapi.consumer.ConsumerConnector;
 import kafka.message.Message;
+import kafka.message.MessageAndOffset;
 import kafka.message.MessageAndMetadata;
 
 /**
@@ -110,8 +112,11 @@ public class HighlevelKafkaConsumer extends KafkaConsumer
 
     // start $numStream anonymous threads to consume the data
     consumerThreadExecutor = Executors.newFixedThreadPool(realNumStream);
+    final int numThreads = consumerMap.get(topic).size();
     for (final KafkaStream<byte[], byte[]> stream : consumerMap.get(topic)) {
       consumerThreadExecutor.submit(new Runnable() {
+        final SpscRingBuffer<MessageAndOffset> holdingBuffer = createHoldingBuffer(numThreads);
+
         public void run()
         {
           ConsumerIterator<byte[], byte[]> itr = stream.iterator();
@@ -119,7 +124,7 @@ public class HighlevelKafkaConsumer extends KafkaConsumer
           while (itr.hasNext() && isAlive) {
             MessageAndMetadata<byte[], byte[]> mam = itr.next();
             try {
-              putMessage(mam.partition(), new Message(mam.message()));
+              putMessage(holdingBuffer, mam.partition(), new MessageAndOffset(new Message(mam.message()), mam.offset()));
             } catch (InterruptedException e) {
               logger.error("Message Enqueue has been interrupted", e);
             }
@@ -15,11 +15,14 @@
  */
 package com.datatorrent.contrib.kafka;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -27,11 +30,19 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Pattern.Flag;
 import com.datatorrent.api.Stats.OperatorStats.CustomStats;
+import com.datatorrent.lib.util.SpscRingBuffer;
 import kafka.message.Message;
+import kafka.message.MessageAndOffset;
 
 
 /**
  * Base Kafka Consumer class used by kafka input operator
+ * <br>
+ * Every thread which reads messages from Kafka puts them with their offsets in its own holding buffer, a lock free
+ * single producer and single consumer ring created by {@link #createHoldingBuffer(int)}. The operator thread drains the
+ * buffers in turn with {@link #drainMessages(Message[], int, int)}, a batch at a time, so the fetch threads and the
+ * operator never contend on a lock. <br>
+ * consumerBuffer is the total capacity of the holding buffers.
  *
  * @since 0.9.0
  */
@@ -62,7 +73,23 @@ public abstract class KafkaConsumer
   
   protected transient boolean isAlive = false;
   
-  private transient ArrayBlockingQueue<Message> holdingBuffer;
+  /**
+   * Holding buffers of the fetch threads; replaced, never modified, when a buffer is added
+   */
+  private transient volatile List<SpscRingBuffer<MessageAndOffset>> holdingBuffers = Collections.emptyList();
+
+  private transient int drainIndex;
+
+  /**
+   * Offset after the last message drained from each holding buffer or -1 if none was drained, in the order of
+   * holdingBuffers; used by the operator thread only
+   */
+  private transient long[] emittedOffsets = new long[0];
+
+  /**
+   * Messages being moved from a holding buffer to the operator; used by the operator thread only
+   */
+  private transient MessageAndOffset[] drainedMessages = new MessageAndOffset[0];
   
   /**
    * The topic that this consumer consumes
@@ -96,7 +123,8 @@ public abstract class KafkaConsumer
    * This method is called in setup method of the operator
    */
   public void create(){
-    holdingBuffer = new ArrayBlockingQueue<Message>(consumerBuffer);
+    holdingBuffers = Collections.emptyList();
+    emittedOffsets = new long[0];
   };
 
   /**
@@ -113,8 +141,9 @@ public abstract class KafkaConsumer
   public void stop(){
     isAlive = false;
     statsSnapShot.stop();
-    holdingBuffer.clear();
     _stop();
+    holdingBuffers = Collections.emptyList();
+    emittedOffsets = new long[0];
   };
   
   abstract protected void _stop();
@@ -124,7 +153,8 @@ public abstract class KafkaConsumer
    */
   public void teardown()
   {
-    holdingBuffer.clear();
+    holdingBuffers = Collections.emptyList();
+    emittedOffsets = new long[0];
   }
   
   public boolean isAlive()
@@ -149,12 +179,84 @@ public abstract class KafkaConsumer
 
   public Message pollMessage()
   {
-    return holdingBuffer.poll();
+    Message[] message = new Message[1];
+    return drainMessages(message, 0, 1) == 1 ? message[0] : null;
   }
 
   public int messageSize()
   {
-    return holdingBuffer.size();
+    int size = 0;
+    for (SpscRingBuffer<MessageAndOffset> holdingBuffer : holdingBuffers) {
+      size += holdingBuffer.size();
+    }
+    return size;
+  }
+
+  /**
+   * Moves up to max messages to the array, starting with the holding buffer after the one drained last so that no
+   * fetch thread is starved. Called by the operator thread only.
+   *
+   * @param messages array to fill.
+   * @param offset index of the array for the first message.
+   * @param max maximum no. of messages to move.
+   * @return no. of messages moved.
+   */
+  public int drainMessages(Message[] messages, int offset, int max)
+  {
+    List<SpscRingBuffer<MessageAndOffset>> buffers = holdingBuffers;
+    int count = 0;
+    int size = buffers.size();
+    if (emittedOffsets.length < size) {
+      int length = emittedOffsets.length;
+      emittedOffsets = Arrays.copyOf(emittedOffsets, size);
+      Arrays.fill(emittedOffsets, length, size, -1);
+    }
+    if (drainedMessages.length < max) {
+      drainedMessages = new MessageAndOffset[max];
+    }
+    for (int i = 0; i < size && count < max; i++) {
+      drainIndex = (drainIndex + 1) % size;
+      int drained = buffers.get(drainIndex).drainTo(drainedMessages, 0, max - count);
+      if (drained > 0) {
+        for (int j = 0; j < drained; j++) {
+          messages[offset + count + j] = drainedMessages[j].message();
+        }
+        emittedOffsets[drainIndex] = drainedMessages[drained - 1].nextOffset();
+        Arrays.fill(drainedMessages, 0, drained, null);
+        count += drained;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Called by the operator thread only.
+   *
+   * @param holdingBuffer holding buffer created by {@link #createHoldingBuffer(int)}.
+   * @return offset after the last message drained from the holding buffer or -1 if none was drained.
+   */
+  protected long getEmittedOffset(SpscRingBuffer<MessageAndOffset> holdingBuffer)
+  {
+    List<SpscRingBuffer<MessageAndOffset>> buffers = holdingBuffers;
+    for (int i = 0; i < buffers.size() && i < emittedOffsets.length; i++) {
+      if (buffers.get(i) == holdingBuffer) {
+        return emittedOffsets[i];
+      }
+    }
+    return -1;
+  }
+
+  public int getConsumerBuffer()
+  {
+    return consumerBuffer;
+  }
+
+  /**
+   * @param consumerBuffer total no. of messages held by the holding buffers of all the fetch threads.
+   */
+  public void setConsumerBuffer(int consumerBuffer)
+  {
+    this.consumerBuffer = consumerBuffer;
   }
   
   public void setBrokerSet(Set<String> brokerSet)
@@ -178,10 +280,25 @@ public abstract class KafkaConsumer
   }
   
   
-  final protected void putMessage(int partition, Message msg) throws InterruptedException{
+  /**
+   * Creates the holding buffer of a fetch thread. Only the thread which owns the buffer may put messages in it.
+   *
+   * @param threads no. of fetch threads which share the consumerBuffer.
+   * @return holding buffer.
+   */
+  final protected synchronized SpscRingBuffer<MessageAndOffset> createHoldingBuffer(int threads)
+  {
+    SpscRingBuffer<MessageAndOffset> holdingBuffer = new SpscRingBuffer<MessageAndOffset>(Math.max(1, consumerBuffer / Math.max(1, threads)));
+    List<SpscRingBuffer<MessageAndOffset>> buffers = new ArrayList<SpscRingBuffer<MessageAndOffset>>(holdingBuffers);
+    buffers.add(holdingBuffer);
+    holdingBuffers = buffers;
+    return holdingBuffer;
+  }
+
+  final protected void putMessage(SpscRingBuffer<MessageAndOffset> holdingBuffer, int partition, MessageAndOffset msg) throws InterruptedException{
     // block from receiving more message
     holdingBuffer.put(msg);
-    statsSnapShot.mark(partition, msg.payloadSize());
+    statsSnapShot.mark(partition, 1, msg.message().payloadSize());
   };
   
 
@@ -192,6 +309,17 @@ public abstract class KafkaConsumer
   protected abstract void commitOffset();
 
   protected abstract Map<Integer, Long> getCurrentOffsets();
+
+  /**
+   * Gets the offset of the next message to emit for each partition, which is behind the current offset by the messages
+   * still in the holding buffers. Called by the operator thread only.
+   *
+   * @return offsets by partition.
+   */
+  protected Map<Integer, Long> getEmittedOffsets()
+  {
+    return new HashMap<Integer, Long>(getCurrentOffsets());
+  }
   
   public final KafkaMeterStats getConsumerStats()
   {
@@ -206,6 +334,11 @@ public abstract class KafkaConsumer
     private Map<Integer, double[]> _1minMovingAvgPerPartition = new HashMap<Integer, double[]>();
 
     private double[] _1minMovingAvg = new double[]{0,0};
+
+    /**
+     * Offset of the next message to emit for each partition
+     */
+    private Map<Integer, Long> offsets = new HashMap<Integer, Long>();
     
     public KafkaMeterStats()
     {
@@ -239,6 +372,16 @@ public abstract class KafkaConsumer
       this._1minMovingAvg = _1minMovingAvg;
     }
 
+    public Map<Integer, Long> getOffsets()
+    {
+      return offsets;
+    }
+
+    public void setOffsets(Map<Integer, Long> offsets)
+    {
+      this.offsets = offsets;
+    }
+
 }
 
   
@@ -316,9 +459,16 @@ public abstract class KafkaConsumer
       }
     }
     
-    public synchronized void mark(int partition, long bytes){
-      msgSec[cursor]++;
-      msgSec[60]++;
+    public void mark(int partition, long bytes){
+      mark(partition, 1, bytes);
+    }
+
+    /**
+     * Records a batch of messages of a partition.
+     */
+    public synchronized void mark(int partition, int msgs, long bytes){
+      msgSec[cursor] += msgs;
+      msgSec[60] += msgs;
       bytesSec[cursor] += bytes;
       bytesSec[60] += bytes;
       long[] msgv = _1_min_msg_sum_par.get(partition);
@@ -329,8 +479,8 @@ public abstract class KafkaConsumer
         _1_min_msg_sum_par.put(partition, msgv);
         _1_min_byte_sum_par.put(partition, bytev); 
       }
-      msgv[cursor]++;
-      msgv[60]++;
+      msgv[cursor] += msgs;
+      msgv[60] += msgs;
       bytev[cursor] += bytes;
       bytev[60] += bytes;
     };
@@ -24,6 +24,8 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import kafka.api.PartitionOffsetRequestInfo;
+import kafka.cluster.Broker;
+import kafka.common.ErrorMapping;
 import kafka.common.TopicAndPartition;
 import kafka.javaapi.OffsetRequest;
 import kafka.javaapi.OffsetResponse;
@@ -163,5 +165,51 @@ public class KafkaMetadataUtil
     return offsets[0];
   }
 
+  /**
+   * @param brokerSet
+   * @param topic
+   * @return Get the latest offset of every partition of the topic, with one offset request per leader broker<br>
+   * partitions whose leader can not be reached are left out
+   */
+  public static Map<Integer, Long> getLastOffsets(Set<String> brokerSet, String topic)
+  {
+    Map<Integer, Long> offsets = new HashMap<Integer, Long>();
+    List<PartitionMetadata> pmds = getPartitionsForTopic(brokerSet, topic);
+    if (pmds == null) {
+      return offsets;
+    }
+    Map<Broker, Map<TopicAndPartition, PartitionOffsetRequestInfo>> requests = new HashMap<Broker, Map<TopicAndPartition, PartitionOffsetRequestInfo>>();
+    for (PartitionMetadata pmd : pmds) {
+      if (pmd.leader() == null) {
+        continue;
+      }
+      Map<TopicAndPartition, PartitionOffsetRequestInfo> requestInfo = requests.get(pmd.leader());
+      if (requestInfo == null) {
+        requestInfo = new HashMap<TopicAndPartition, PartitionOffsetRequestInfo>();
+        requests.put(pmd.leader(), requestInfo);
+      }
+      requestInfo.put(new TopicAndPartition(topic, pmd.partitionId()), new PartitionOffsetRequestInfo(kafka.api.OffsetRequest.LatestTime(), 1));
+    }
+    for (Map.Entry<Broker, Map<TopicAndPartition, PartitionOffsetRequestInfo>> request : requests.entrySet()) {
+      SimpleConsumer consumer = null;
+      try {
+        consumer = new SimpleConsumer(request.getKey().host(), request.getKey().port(), timeout, bufferSize, mdClientId);
+        OffsetResponse response = consumer.getOffsetsBefore(new OffsetRequest(request.getValue(), kafka.api.OffsetRequest.CurrentVersion(), mdClientId));
+        for (TopicAndPartition tap : request.getValue().keySet()) {
+          if (response.errorCode(topic, tap.partition()) == ErrorMapping.NoError()) {
+            offsets.put(tap.partition(), response.offsets(topic, tap.partition())[0]);
+          }
+        }
+      } catch (Exception e) {
+        logger.warn("Failed to get the offsets of topic " + topic + " from " + request.getKey().host(), e);
+      } finally {
+        if (consumer != null) {
+          consumer.close();
+        }
+      }
+    }
+    return offsets;
+  }
+
   
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.kafka;
+
+import java.util.Properties;
+
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.DefaultInputPort;
+import kafka.producer.ProducerConfig;
+
+/**
+ * Kafka output adapter operator with only one input port, which sends the messages to Kafka in batches and does not
+ * send a window twice after recovery. See {@link AbstractKafkaBatchOutputOperator}.<p><br>
+ *
+ * <br>
+ * Ports:<br>
+ * <b>Input</b>: Have only one input port<br>
+ * <b>Output</b>: No output port<br>
+ * <br>
+ * Properties:<br>
+ * <b>configProperties</b>: Kafka producer configuration, producer.type should be sync<br>
+ * <br>
+ *
+ * @since 0.9.4
+ */
+public class KafkaSinglePortBatchOutputOperator<K, V> extends AbstractKafkaBatchOutputOperator<K, V>
+{
+  private Properties configProperties = null;
+
+  /**
+   * The single input port.
+   */
+  @InputPortFieldAnnotation(name = "KafkaInputPort")
+  public final transient DefaultInputPort<V> inputPort = new DefaultInputPort<V>()
+  {
+    @Override
+    public void process(V tuple)
+    {
+      sendMessage(null, tuple);
+    }
+  };
+
+  public Properties getConfigProperties()
+  {
+    return configProperties;
+  }
+
+  public void setConfigProperties(Properties configProperties)
+  {
+    this.configProperties = configProperties;
+  }
+
+  @Override
+  public ProducerConfig createKafkaProducerConfig()
+  {
+    return new ProducerConfig(configProperties);
+  }
+}
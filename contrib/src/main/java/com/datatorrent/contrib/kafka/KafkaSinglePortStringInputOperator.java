@@ -35,9 +35,15 @@ public class KafkaSinglePortStringInputOperator extends AbstractKafkaSinglePortI
     String data = "";
     try {
       ByteBuffer buffer = message.payload();
-      byte[] bytes = new byte[buffer.remaining()];
-      buffer.get(bytes);
-      data = new String(bytes);
+      if (buffer.hasArray()) {
+        // decode the fetched bytes in place
+        data = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      }
+      else {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        data = new String(bytes);
+      }
       //logger.debug("Consuming {}", data);
     }
     catch (Exception ex) {
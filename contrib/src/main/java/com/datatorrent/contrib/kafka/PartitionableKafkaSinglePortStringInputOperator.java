@@ -36,9 +36,15 @@ public class PartitionableKafkaSinglePortStringInputOperator extends AbstractPar
     String data = "";
     try {
       ByteBuffer buffer = message.payload();
-      byte[] bytes = new byte[buffer.remaining()];
-      buffer.get(bytes);
-      data = new String(bytes);
+      if (buffer.hasArray()) {
+        // decode the fetched bytes in place
+        data = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      }
+      else {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        data = new String(bytes);
+      }
 //      System.out.println(data);
 //      logger.debug("Consuming {}", data);
     }
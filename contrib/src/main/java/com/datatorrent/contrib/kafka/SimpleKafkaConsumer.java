@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -29,6 +30,7 @@ import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.datatorrent.lib.util.SpscRingBuffer;
 import kafka.api.FetchRequest;
 import kafka.api.FetchRequestBuilder;
 import kafka.api.OffsetRequest;
@@ -145,7 +147,13 @@ public class SimpleKafkaConsumer extends KafkaConsumer
   /**
    * Track offset for each partition, so operator could start from the last serialized state
    */
-  private Map<Integer, Long> offsetTrack = new HashMap<Integer, Long>();
+  private Map<Integer, Long> offsetTrack = new ConcurrentHashMap<Integer, Long>();
+
+  /**
+   * Offset each fetch thread started from and the holding buffer it puts the messages of its partition in
+   */
+  private final transient Map<Integer, Long> startOffsets = new ConcurrentHashMap<Integer, Long>();
+  private final transient Map<Integer, SpscRingBuffer<MessageAndOffset>> partitionBuffers = new ConcurrentHashMap<Integer, SpscRingBuffer<MessageAndOffset>>();
 
   @Override
   public void create()
@@ -184,6 +192,9 @@ public class SimpleKafkaConsumer extends KafkaConsumer
       kafkaConsumerExecutor.submit(new Runnable() {
         
         SimpleConsumer csInThread = simpleConsumerThreads.get(pid);
+
+        // the operator emits the messages of a response from this buffer while the next response is fetched
+        final SpscRingBuffer<MessageAndOffset> holdingBuffer = createHoldingBuffer(simpleConsumerThreads.size());
         
         int retryCounter = 0;
         
@@ -237,6 +248,8 @@ public class SimpleKafkaConsumer extends KafkaConsumer
             long startOffsetReq = initialOffset.equalsIgnoreCase("earliest")? OffsetRequest.EarliestTime() : OffsetRequest.LatestTime();
             offset = KafkaMetadataUtil.getLastOffset(csInThread, topic, pid, startOffsetReq, clientName);
           }
+          partitionBuffers.put(pid, holdingBuffer);
+          startOffsets.put(pid, offset);
           
           while (isAlive && (metadataRetrievalRetry==-1 || retryCounter < metadataRetrievalRetry)) {
 
@@ -254,10 +267,20 @@ public class SimpleKafkaConsumer extends KafkaConsumer
                 throw new  Exception("Fetch message error, try to reconnect to new broker");
               }
               
+              // the messages are views of the response buffer and are handed over without a copy
+              int msgs = 0;
+              long bytes = 0;
               for(MessageAndOffset msg :  fetchResponse.messageSet(topic, pid)){
+                // a compressed message set is returned whole, so it may start before the requested offset
+                if (msg.offset() < offset) {
+                  continue;
+                }
                 offset = msg.nextOffset();
-                putMessage(pid, msg.message());
+                holdingBuffer.put(msg);
+                msgs++;
+                bytes += msg.message().payloadSize();
               }
+              statsSnapShot.mark(pid, msgs, bytes);
               offsetTrack.put(pid, offset);
               
             } catch (Exception e) {
@@ -293,6 +316,8 @@ public class SimpleKafkaConsumer extends KafkaConsumer
     }
     simpleConsumerThreads.clear();
     kafkaConsumerExecutor.shutdown();
+    startOffsets.clear();
+    partitionBuffers.clear();
   }
 
   public void setBufferSize(int bufferSize)
@@ -378,13 +403,34 @@ public class SimpleKafkaConsumer extends KafkaConsumer
   {
     return offsetTrack;
   }
+
+  /**
+   * The messages of a partition are put in the holding buffer of its fetch thread with their offsets. The offsets of a
+   * compacted topic are not consecutive, so the offset of the next message to emit is the next offset of the message
+   * drained last or, before any was drained, the offset the thread started from.
+   */
+  @Override
+  protected Map<Integer, Long> getEmittedOffsets()
+  {
+    Map<Integer, Long> emittedOffsets = new HashMap<Integer, Long>();
+    for (Entry<Integer, Long> entry : startOffsets.entrySet()) {
+      SpscRingBuffer<MessageAndOffset> holdingBuffer = partitionBuffers.get(entry.getKey());
+      if (holdingBuffer != null) {
+        long emittedOffset = getEmittedOffset(holdingBuffer);
+        emittedOffsets.put(entry.getKey(), emittedOffset < 0 ? entry.getValue() : emittedOffset);
+      }
+    }
+    return emittedOffsets;
+  }
   
   private void resetOffset(Map<Integer, Long> overrideOffset){
     if(overrideOffset == null){
       return;
     }
-    for (Entry<Integer, Long> offset : offsetTrack.entrySet()) {
-      offset.setValue(overrideOffset.get(offset.getKey()));
+    for (Entry<Integer, Long> offset : overrideOffset.entrySet()) {
+      if (offset.getValue() != null && (partitionIds == null || partitionIds.isEmpty() || partitionIds.contains(offset.getKey()))) {
+        offsetTrack.put(offset.getKey(), offset.getValue());
+      }
     }
   }
 
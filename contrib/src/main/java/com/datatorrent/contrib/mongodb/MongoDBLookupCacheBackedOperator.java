@@ -8,13 +8,17 @@ import com.datatorrent.lib.database.DBConnector;
 /**
  * <br>This is {@link AbstractDBLookupCacheBackedOperator} which retrieves value of a key
  * from MongoDB</br>
+ * <br>The collection and the key field are known only to sub-classes, so this operator does not implement
+ * {@link #fetchValuesFromDatabase(java.util.Set)} and keeps single lookups by default. Sub-classes which fetch a batch
+ * of keys with one query through {@link #mongoDbConnector} can enable batched lookups; the mongo client is thread-safe,
+ * so the batches can be fetched concurrently.</br>
  *
  * @param <T> type of input tuples </T>
  * @since 0.9.1
  */
 public abstract class MongoDBLookupCacheBackedOperator<T> extends AbstractDBLookupCacheBackedOperator<T>
 {
-  private final MongoDBOperatorBase mongoDbConnector;
+  protected final MongoDBOperatorBase mongoDbConnector;
 
   public MongoDBLookupCacheBackedOperator()
   {
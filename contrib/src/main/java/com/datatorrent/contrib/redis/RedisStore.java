@@ -16,27 +16,155 @@
 package com.datatorrent.contrib.redis;
 
 import com.datatorrent.lib.db.TransactionableKeyValueStore;
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.PipelineBase;
 import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 /**
  * Provides the implementation of a Redis store.
+ * <p>
+ * In a transaction the writes are buffered and coalesced per key: increments of the same key or hash field are
+ * summed, a set or a delete replaces the earlier writes of the key and the key expiry is set once. The buffered writes
+ * are sent in the MULTI block when the transaction is committed. When pipelined is set, the writes outside of a
+ * transaction are buffered the same way and sent with a pipeline, syncing every pipelineSize commands, when
+ * {@link #flush()} is called, before a read or when maxPendingKeys keys are buffered. The store output operators flush
+ * it at the end of every window.
+ * </p>
+ * <p>
+ * When shards is set to a list of host:port the keys are spread over these Redis instances by the hash slot of the
+ * key, computed like Redis Cluster does including hash tags, and the slots are split evenly over the shards. Every
+ * shard has its own transaction and its own committed window id, so a window which was committed by some shards only
+ * is committed by the others only when it is replayed.
+ * </p>
  *
  * @since 0.9.3
  */
-public class RedisStore implements TransactionableKeyValueStore
+public class RedisStore implements TransactionableKeyValueStore, Flushable
 {
   private static final Logger LOG = LoggerFactory.getLogger(RedisStore.class);
+  private static final int HASH_SLOTS = 16384;
   protected transient Jedis jedis;
   private String host = "localhost";
   private int port = 6379;
   private int dbIndex = 0;
   protected int keyExpiryTime = -1;
-  private transient Transaction transaction;
+  private String shards;
+  private boolean pipelined;
+  private int pipelineSize = 1000;
+  private int maxPendingKeys = 10000;
+  private transient Jedis[] shardJedis;
+  private transient Transaction[] transactions;
+  //a commit may fail after some shards executed their transactions
+  private transient boolean inTransaction;
+  private transient long[] shardCommittedWindowIds;
+  private transient long transactionWindowId = -1;
+  private transient String transactionWindowKey;
+  private transient LinkedHashMap<String, PendingWrites> pendingWrites = new LinkedHashMap<String, PendingWrites>();
+
+  /**
+   * Coalesced writes of a key, applied in the order delete, set, hash set, increment, hash increment.
+   */
+  static class PendingWrites
+  {
+    boolean delete;
+    String value;
+    Map<String, String> hashValues;
+    double increment;
+    boolean incremented;
+    Map<String, Double> hashIncrements;
+
+    void delete()
+    {
+      delete = true;
+      value = null;
+      hashValues = null;
+      incremented = false;
+      increment = 0;
+      hashIncrements = null;
+    }
+
+    void set(String value)
+    {
+      this.value = value;
+      hashValues = null;
+      incremented = false;
+      increment = 0;
+      hashIncrements = null;
+    }
+
+    void setHash(Map<String, String> values)
+    {
+      if (hashValues == null) {
+        hashValues = new LinkedHashMap<String, String>();
+      }
+      hashValues.putAll(values);
+      if (hashIncrements != null) {
+        hashIncrements.keySet().removeAll(values.keySet());
+      }
+    }
+
+    void increment(double value)
+    {
+      increment += value;
+      incremented = true;
+    }
+
+    void incrementHash(String field, double value)
+    {
+      if (hashIncrements == null) {
+        hashIncrements = new LinkedHashMap<String, Double>();
+      }
+      Double oldValue = hashIncrements.get(field);
+      hashIncrements.put(field, oldValue == null ? value : oldValue + value);
+    }
+
+    boolean isDeleteOnly()
+    {
+      return value == null && hashValues == null && !incremented && hashIncrements == null;
+    }
+
+    /**
+     * @return no. of commands written.
+     */
+    int write(String key, PipelineBase pipeline, int keyExpiryTime)
+    {
+      int commands = 0;
+      if (delete) {
+        pipeline.del(key);
+        commands++;
+      }
+      if (value != null) {
+        pipeline.set(key, value);
+        commands++;
+      }
+      if (hashValues != null) {
+        pipeline.hmset(key, hashValues);
+        commands++;
+      }
+      if (incremented) {
+        pipeline.incrByFloat(key, increment);
+        commands++;
+      }
+      if (hashIncrements != null) {
+        for (Map.Entry<String, Double> e : hashIncrements.entrySet()) {
+          pipeline.hincrByFloat(key, e.getKey(), e.getValue());
+          commands++;
+        }
+      }
+      if (keyExpiryTime != -1 && !isDeleteOnly()) {
+        pipeline.expire(key, keyExpiryTime);
+        commands++;
+      }
+      return commands;
+    }
+  }
 
   /**
    * Gets the host.
@@ -118,18 +246,120 @@ public class RedisStore implements TransactionableKeyValueStore
     this.keyExpiryTime = keyExpiryTime;
   }
 
+  /**
+   * Gets the shards.
+   *
+   * @return
+   */
+  public String getShards()
+  {
+    return shards;
+  }
+
+  /**
+   * Sets the Redis instances the keys are spread over, as a comma separated list of host:port. When not set the store
+   * uses host and port only.
+   *
+   * @param shards
+   */
+  public void setShards(String shards)
+  {
+    this.shards = shards;
+  }
+
+  /**
+   * Whether the writes outside of a transaction are buffered and pipelined.
+   *
+   * @return
+   */
+  public boolean isPipelined()
+  {
+    return pipelined;
+  }
+
+  /**
+   * Sets whether the writes outside of a transaction are buffered and pipelined.
+   *
+   * @param pipelined
+   */
+  public void setPipelined(boolean pipelined)
+  {
+    this.pipelined = pipelined;
+  }
+
+  /**
+   * Gets the no. of commands sent before the pipeline is synced.
+   *
+   * @return
+   */
+  public int getPipelineSize()
+  {
+    return pipelineSize;
+  }
+
+  /**
+   * Sets the no. of commands sent before the pipeline is synced.
+   *
+   * @param pipelineSize
+   */
+  public void setPipelineSize(int pipelineSize)
+  {
+    this.pipelineSize = pipelineSize;
+  }
+
+  /**
+   * Gets the no. of buffered keys after which the writes outside of a transaction are flushed.
+   *
+   * @return
+   */
+  public int getMaxPendingKeys()
+  {
+    return maxPendingKeys;
+  }
+
+  /**
+   * Sets the no. of buffered keys after which the writes outside of a transaction are flushed.
+   *
+   * @param maxPendingKeys
+   */
+  public void setMaxPendingKeys(int maxPendingKeys)
+  {
+    this.maxPendingKeys = maxPendingKeys;
+  }
+
   @Override
   public void connect() throws IOException
   {
-    jedis = new Jedis(host, port);
-    jedis.connect();
-    jedis.select(dbIndex);
+    if (shards == null) {
+      shardJedis = new Jedis[] {new Jedis(host, port)};
+    }
+    else {
+      String[] hostPorts = shards.split(",");
+      shardJedis = new Jedis[hostPorts.length];
+      for (int i = 0; i < hostPorts.length; i++) {
+        String[] hostPort = hostPorts[i].trim().split(":");
+        shardJedis[i] = new Jedis(hostPort[0], Integer.parseInt(hostPort[1]));
+      }
+    }
+    for (Jedis shard : shardJedis) {
+      shard.connect();
+      shard.select(dbIndex);
+    }
+    jedis = shardJedis[0];
+    transactions = new Transaction[shardJedis.length];
+    shardCommittedWindowIds = new long[shardJedis.length];
+    Arrays.fill(shardCommittedWindowIds, -1);
   }
 
   @Override
   public void disconnect() throws IOException
   {
-    jedis.disconnect();
+    if (!isInTransaction()) {
+      flush();
+    }
+    for (Jedis shard : shardJedis) {
+      shard.disconnect();
+    }
   }
 
   @Override
@@ -141,27 +371,203 @@ public class RedisStore implements TransactionableKeyValueStore
   @Override
   public void beginTransaction()
   {
-    transaction = jedis.multi();
+    flush();
+    inTransaction = true;
+    for (int i = 0; i < shardJedis.length; i++) {
+      transactions[i] = shardJedis[i].multi();
+    }
   }
 
+  /**
+   * Sends the buffered writes in the MULTI block of every shard and executes them, except on the shards which already
+   * committed the window of the transaction.
+   */
   @Override
   public void commitTransaction()
   {
-    transaction.exec();
-    transaction = null;
+    List<List<Map.Entry<String, PendingWrites>>> shardWrites = groupByShard();
+    for (int i = 0; i < shardJedis.length; i++) {
+      if (transactionWindowId != -1 && transactionWindowId <= shardCommittedWindowIds[i]) {
+        LOG.debug("shard {} already committed window {}", i, transactionWindowId);
+        transactions[i].discard();
+        transactions[i] = null;
+        continue;
+      }
+      for (Map.Entry<String, PendingWrites> e : shardWrites.get(i)) {
+        e.getValue().write(e.getKey(), transactions[i], keyExpiryTime);
+      }
+      if (transactionWindowId != -1) {
+        transactions[i].set(transactionWindowKey, String.valueOf(transactionWindowId));
+      }
+      //the transaction is closed even if exec fails, so that a rollback discards only the transactions of the shards
+      //which were not executed
+      Transaction transaction = transactions[i];
+      transactions[i] = null;
+      transaction.exec();
+      if (transactionWindowId != -1) {
+        shardCommittedWindowIds[i] = transactionWindowId;
+      }
+    }
+    pendingWrites.clear();
+    transactionWindowId = -1;
+    inTransaction = false;
   }
 
   @Override
   public void rollbackTransaction()
   {
-    transaction.discard();
-    transaction = null;
+    for (int i = 0; i < transactions.length; i++) {
+      if (transactions[i] != null) {
+        transactions[i].discard();
+        transactions[i] = null;
+      }
+    }
+    pendingWrites.clear();
+    transactionWindowId = -1;
+    inTransaction = false;
   }
 
   @Override
   public boolean isInTransaction()
   {
-    return transaction != null;
+    return inTransaction;
+  }
+
+  /**
+   * Sends the buffered writes which are not part of a transaction with a pipeline per shard. An error reply to any of
+   * the commands, e.g. WRONGTYPE, is thrown once the pipeline is synced.
+   */
+  @Override
+  public void flush()
+  {
+    if (pendingWrites.isEmpty() || isInTransaction()) {
+      return;
+    }
+    List<List<Map.Entry<String, PendingWrites>>> shardWrites = groupByShard();
+    try {
+      for (int i = 0; i < shardJedis.length; i++) {
+        Pipeline pipeline = shardJedis[i].pipelined();
+        int commands = 0;
+        for (Map.Entry<String, PendingWrites> e : shardWrites.get(i)) {
+          commands += e.getValue().write(e.getKey(), pipeline, keyExpiryTime);
+          if (commands >= pipelineSize) {
+            checkReplies(pipeline.syncAndReturnAll());
+            pipeline = shardJedis[i].pipelined();
+            commands = 0;
+          }
+        }
+        checkReplies(pipeline.syncAndReturnAll());
+      }
+    }
+    finally {
+      pendingWrites.clear();
+    }
+  }
+
+  /**
+   * Throws the first error reply of the commands sent with a pipeline, as the command would have thrown it when sent
+   * directly.
+   *
+   * @param replies replies of the pipelined commands.
+   */
+  static void checkReplies(List<Object> replies)
+  {
+    for (Object reply : replies) {
+      if (reply instanceof JedisDataException) {
+        throw (JedisDataException)reply;
+      }
+    }
+  }
+
+  private List<List<Map.Entry<String, PendingWrites>>> groupByShard()
+  {
+    List<List<Map.Entry<String, PendingWrites>>> shardWrites = new ArrayList<List<Map.Entry<String, PendingWrites>>>(shardJedis.length);
+    for (int i = 0; i < shardJedis.length; i++) {
+      shardWrites.add(new ArrayList<Map.Entry<String, PendingWrites>>());
+    }
+    for (Map.Entry<String, PendingWrites> e : pendingWrites.entrySet()) {
+      shardWrites.get(getShard(e.getKey())).add(e);
+    }
+    return shardWrites;
+  }
+
+  /**
+   * Gets the shard of the key, by the Redis Cluster hash slot of the key.
+   *
+   * @param key
+   * @return index of the shard
+   */
+  protected int getShard(String key)
+  {
+    return getShard(key, shardJedis.length);
+  }
+
+  static int getShard(String key, int noOfShards)
+  {
+    if (noOfShards == 1) {
+      return 0;
+    }
+    // only the hash tag in braces is hashed, so that related keys can be kept together
+    int start = key.indexOf('{');
+    if (start >= 0) {
+      int end = key.indexOf('}', start + 1);
+      if (end > start + 1) {
+        key = key.substring(start + 1, end);
+      }
+    }
+    return crc16(key) % HASH_SLOTS * noOfShards / HASH_SLOTS;
+  }
+
+  /**
+   * CRC16-CCITT (XMODEM) of the UTF-8 bytes of the key, as used by Redis Cluster.
+   */
+  static int crc16(String key)
+  {
+    int crc = 0;
+    byte[] bytes;
+    try {
+      bytes = key.getBytes("UTF-8");
+    }
+    catch (java.io.UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+    for (byte b : bytes) {
+      crc ^= (b & 0xff) << 8;
+      for (int i = 0; i < 8; i++) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+      }
+    }
+    return crc & 0xffff;
+  }
+
+  private Jedis getJedis(String key)
+  {
+    return shardJedis[getShard(key)];
+  }
+
+  private PendingWrites getPendingWrites(String key)
+  {
+    PendingWrites writes = pendingWrites.get(key);
+    if (writes == null) {
+      writes = new PendingWrites();
+      pendingWrites.put(key, writes);
+    }
+    return writes;
+  }
+
+  /**
+   * @return true if the writes are buffered.
+   */
+  private boolean isBuffered()
+  {
+    return pipelined || isInTransaction();
+  }
+
+  private void flushIfFull()
+  {
+    if (!isInTransaction() && pendingWrites.size() >= maxPendingKeys) {
+      flush();
+    }
   }
 
   /**
@@ -177,7 +583,8 @@ public class RedisStore implements TransactionableKeyValueStore
     if (isInTransaction()) {
       throw new RuntimeException("Cannot call get when in redis transaction");
     }
-    return jedis.get(key.toString());
+    flush();
+    return getJedis(key.toString()).get(key.toString());
   }
 
   /**
@@ -194,61 +601,90 @@ public class RedisStore implements TransactionableKeyValueStore
     if (isInTransaction()) {
       throw new RuntimeException("Cannot call get when in redis transaction");
     }
-    return (List<Object>)(List<?>)jedis.mget(keys.toArray(new String[] {}));
+    flush();
+    if (shardJedis.length == 1) {
+      return (List<Object>)(List<?>)jedis.mget(toStrings(keys));
+    }
+    List<Object> values = new ArrayList<Object>(keys.size());
+    for (Object key : keys) {
+      values.add(get(key));
+    }
+    return values;
+  }
+
+  private static String[] toStrings(List<Object> keys)
+  {
+    String[] strings = new String[keys.size()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = keys.get(i).toString();
+    }
+    return strings;
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void put(Object key, Object value)
   {
-    if (isInTransaction()) {
+    String k = key.toString();
+    if (isBuffered()) {
       if (value instanceof Map) {
-        transaction.hmset(host, (Map)value);
+        getPendingWrites(k).setHash(toStringMap((Map<Object, Object>)value));
       }
       else {
-        transaction.set(key.toString(), value.toString());
-      }
-      if (keyExpiryTime != -1) {
-        transaction.expire(key.toString(), keyExpiryTime);
+        getPendingWrites(k).set(value.toString());
       }
+      flushIfFull();
     }
     else {
+      Jedis shard = getJedis(k);
       if (value instanceof Map) {
-        jedis.hmset(host, (Map)value);
+        shard.hmset(k, toStringMap((Map<Object, Object>)value));
       }
       else {
-        jedis.set(key.toString(), value.toString());
+        shard.set(k, value.toString());
       }
       if (keyExpiryTime != -1) {
-        jedis.expire(key.toString(), keyExpiryTime);
+        shard.expire(k, keyExpiryTime);
       }
     }
   }
 
+  private static Map<String, String> toStringMap(Map<Object, Object> map)
+  {
+    Map<String, String> strings = new HashMap<String, String>(map.size() * 2);
+    for (Map.Entry<Object, Object> e : map.entrySet()) {
+      strings.put(e.getKey().toString(), e.getValue().toString());
+    }
+    return strings;
+  }
+
   @Override
   public void putAll(Map<Object, Object> m)
   {
+    if (isBuffered() || shardJedis.length > 1) {
+      for (Map.Entry<Object, Object> entry : m.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+      return;
+    }
     List<String> params = new ArrayList<String>();
     for (Map.Entry<Object, Object> entry : m.entrySet()) {
       params.add(entry.getKey().toString());
       params.add(entry.getValue().toString());
     }
-    if (isInTransaction()) {
-      transaction.mset(params.toArray(new String[] {}));
-    }
-    else {
-      jedis.mset(params.toArray(new String[] {}));
-    }
+    jedis.mset(params.toArray(new String[] {}));
   }
 
   @Override
   public void remove(Object key)
   {
-    if (isInTransaction()) {
-      transaction.del(key.toString());
+    String k = key.toString();
+    if (isBuffered()) {
+      getPendingWrites(k).delete();
+      flushIfFull();
     }
     else {
-      jedis.del(key.toString());
+      getJedis(k).del(k);
     }
   }
 
@@ -261,16 +697,15 @@ public class RedisStore implements TransactionableKeyValueStore
    */
   public void hincrByFloat(String key, String field, double doubleValue)
   {
-    if (isInTransaction()) {
-      transaction.hincrByFloat(key, field, doubleValue);
-      if (keyExpiryTime != -1) {
-        transaction.expire(key, keyExpiryTime);
-      }
+    if (isBuffered()) {
+      getPendingWrites(key).incrementHash(field, doubleValue);
+      flushIfFull();
     }
     else {
-      jedis.hincrByFloat(key, field, doubleValue);
+      Jedis shard = getJedis(key);
+      shard.hincrByFloat(key, field, doubleValue);
       if (keyExpiryTime != -1) {
-        jedis.expire(key, keyExpiryTime);
+        shard.expire(key, keyExpiryTime);
       }
     }
   }
@@ -283,31 +718,51 @@ public class RedisStore implements TransactionableKeyValueStore
    */
   public void incrByFloat(String key, double doubleValue)
   {
-    if (isInTransaction()) {
-      transaction.incrByFloat(key, doubleValue);
-      if (keyExpiryTime != -1) {
-        transaction.expire(key, keyExpiryTime);
-      }
+    if (isBuffered()) {
+      getPendingWrites(key).increment(doubleValue);
+      flushIfFull();
     }
     else {
-      jedis.incrByFloat(key, doubleValue);
+      Jedis shard = getJedis(key);
+      shard.incrByFloat(key, doubleValue);
       if (keyExpiryTime != -1) {
-        jedis.expire(key, keyExpiryTime);
+        shard.expire(key, keyExpiryTime);
       }
     }
   }
 
+  /**
+   * Gets the committed window id of every shard and returns the smallest.
+   */
   @Override
   public long getCommittedWindowId(String appId, int operatorId)
   {
-    Object value = get(getCommittedWindowKey(appId, operatorId));
-    return (value == null) ? -1 : Long.valueOf(value.toString());
+    String key = getCommittedWindowKey(appId, operatorId).toString();
+    long committedWindowId = Long.MAX_VALUE;
+    for (int i = 0; i < shardJedis.length; i++) {
+      String value = shardJedis[i].get(key);
+      shardCommittedWindowIds[i] = (value == null) ? -1 : Long.valueOf(value);
+      committedWindowId = Math.min(committedWindowId, shardCommittedWindowIds[i]);
+    }
+    return committedWindowId;
   }
 
+  /**
+   * Stores the committed window id on every shard. In a transaction it is written when the transaction is committed.
+   */
   @Override
   public void storeCommittedWindowId(String appId, int operatorId, long windowId)
   {
-    put(getCommittedWindowKey(appId, operatorId), windowId);
+    String key = getCommittedWindowKey(appId, operatorId).toString();
+    if (isInTransaction()) {
+      transactionWindowId = windowId;
+      transactionWindowKey = key;
+      return;
+    }
+    for (int i = 0; i < shardJedis.length; i++) {
+      shardJedis[i].set(key, String.valueOf(windowId));
+      shardCommittedWindowIds[i] = windowId;
+    }
   }
 
   protected Object getCommittedWindowKey(String appId, int operatorId)
@@ -318,7 +773,11 @@ public class RedisStore implements TransactionableKeyValueStore
   @Override
   public void removeCommittedWindowId(String appId, int operatorId)
   {
-    remove(getCommittedWindowKey(appId, operatorId));
+    String key = getCommittedWindowKey(appId, operatorId).toString();
+    for (int i = 0; i < shardJedis.length; i++) {
+      shardJedis[i].del(key);
+      shardCommittedWindowIds[i] = -1;
+    }
   }
 
 }
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.hbase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Assert;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+/**
+ * Tests for {@link HBaseBatchOutputOperator} with a fake table, which need no HBase cluster.
+ */
+public class HBaseBatchOutputOperatorTest
+{
+  private static final byte[] COLUMN_FAMILY = Bytes.toBytes("cf");
+  private static final byte[] COLUMN = Bytes.toBytes("col");
+  private static final int OPERATOR_ID = 1;
+
+  private final Map<String, byte[]> state = new ConcurrentHashMap<String, byte[]>();
+  private final List<TestOperator> operators = new ArrayList<TestOperator>();
+
+  /**
+   * Records the sizes of the lists of puts and the appends instead of sending them. Puts wait for the gate when it is
+   * set.
+   */
+  public static class FakeTable extends HTable
+  {
+    final List<Integer> putBatches = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<Append> appends = Collections.synchronizedList(new ArrayList<Append>());
+    volatile CountDownLatch gate;
+    volatile IOException failure;
+
+    @Override
+    public void setAutoFlush(boolean autoFlush)
+    {
+    }
+
+    @Override
+    public void setWriteBufferSize(long writeBufferSize)
+    {
+    }
+
+    @Override
+    public void put(List<Put> puts) throws IOException
+    {
+      if (gate != null) {
+        try {
+          gate.await();
+        }
+        catch (InterruptedException ex) {
+          throw new IOException(ex);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      putBatches.add(puts.size());
+    }
+
+    @Override
+    public Result append(Append append)
+    {
+      appends.add(append);
+      return null;
+    }
+
+    @Override
+    public void flushCommits()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+  }
+
+  /**
+   * Keeps the state in a map shared by the operators of a test.
+   */
+  public static class MapStatePersistence implements HBaseStatePersistenceStrategy
+  {
+    private final Map<String, byte[]> state;
+    private HTable table;
+
+    public MapStatePersistence(Map<String, byte[]> state)
+    {
+      this.state = state;
+    }
+
+    @Override
+    public void setTable(HTable table)
+    {
+      this.table = table;
+    }
+
+    @Override
+    public HTable getTable()
+    {
+      return table;
+    }
+
+    @Override
+    public void setup()
+    {
+    }
+
+    @Override
+    public byte[] getState(byte[] name)
+    {
+      return state.get(Bytes.toString(name));
+    }
+
+    @Override
+    public void saveState(byte[] name, byte[] value)
+    {
+      state.put(Bytes.toString(name), value);
+    }
+  }
+
+  public static class TestOperator extends HBaseBatchPutOperator<Integer>
+  {
+    transient FakeTable fakeTable = new FakeTable();
+    transient HBaseStatePersistenceStrategy persistence;
+
+    @Override
+    protected void setupConfiguration()
+    {
+      table = fakeTable;
+    }
+
+    @Override
+    public HBaseStatePersistenceStrategy getPersistenceStrategy()
+    {
+      return persistence;
+    }
+
+    @Override
+    public Put operationPut(Integer t)
+    {
+      Put put = new Put(Bytes.toBytes("row" + t));
+      put.add(COLUMN_FAMILY, COLUMN, Bytes.toBytes(t));
+      return put;
+    }
+  }
+
+  private TestOperator createOperator(int batchSize, int maxPendingBatches)
+  {
+    TestOperator operator = new TestOperator();
+    operator.persistence = new MapStatePersistence(state);
+    operator.setBatchSize(batchSize);
+    operator.setMaxPendingBatches(maxPendingBatches);
+    operator.setup(new OperatorContextTestHelper.TestIdOperatorContext(OPERATOR_ID));
+    operators.add(operator);
+    return operator;
+  }
+
+  @After
+  public void teardown()
+  {
+    for (TestOperator operator : operators) {
+      operator.fakeTable.gate = null;
+      operator.teardown();
+    }
+  }
+
+  private static void sendWindow(TestOperator operator, long windowId, int tuples)
+  {
+    operator.beginWindow(windowId);
+    for (int i = 0; i < tuples; i++) {
+      operator.inputPort.process(i);
+    }
+    operator.endWindow();
+  }
+
+  private Long savedWindow()
+  {
+    Assert.assertTrue("saved state", state.size() <= 1);
+    for (byte[] value : state.values()) {
+      return Bytes.toLong(value);
+    }
+    return null;
+  }
+
+  @Test
+  public void testBatching()
+  {
+    TestOperator operator = createOperator(3, 2);
+    sendWindow(operator, 0, 7);
+    operator.checkpointed(0);
+    Assert.assertEquals("put batches", Lists.newArrayList(3, 3, 1), operator.fakeTable.putBatches);
+    Assert.assertEquals("saved window", Long.valueOf(0), savedWindow());
+
+    //a window without operations does not save its id
+    sendWindow(operator, 1, 0);
+    operator.checkpointed(1);
+    Assert.assertEquals("put batches", Lists.newArrayList(3, 3, 1), operator.fakeTable.putBatches);
+    Assert.assertEquals("saved window", Long.valueOf(0), savedWindow());
+  }
+
+  @Test
+  public void testFlushAcrossWindows() throws InterruptedException
+  {
+    final TestOperator operator = createOperator(1000, 2);
+    CountDownLatch gate = new CountDownLatch(1);
+    operator.fakeTable.gate = gate;
+
+    //the windows end while the writer waits for the table
+    sendWindow(operator, 0, 2);
+    sendWindow(operator, 1, 1);
+    Assert.assertNull("saved window", savedWindow());
+
+    Thread checkpoint = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        operator.checkpointed(1);
+      }
+    };
+    checkpoint.start();
+    checkpoint.join(200);
+    Assert.assertTrue("checkpoint waits for the writer", checkpoint.isAlive());
+
+    gate.countDown();
+    checkpoint.join(30000);
+    Assert.assertFalse("checkpoint after the windows are written", checkpoint.isAlive());
+    Assert.assertEquals("put batches", Lists.newArrayList(2, 1), operator.fakeTable.putBatches);
+    Assert.assertEquals("saved window", Long.valueOf(1), savedWindow());
+  }
+
+  @Test
+  public void testRecovery()
+  {
+    TestOperator operator = createOperator(1000, 2);
+    for (long windowId = 0; windowId < 3; windowId++) {
+      sendWindow(operator, windowId, 2);
+    }
+    operator.checkpointed(2);
+    Assert.assertEquals("saved window", Long.valueOf(2), savedWindow());
+    operator.teardown();
+    operators.remove(operator);
+
+    //the windows up to the saved window are skipped when they are replayed
+    operator = createOperator(1000, 2);
+    sendWindow(operator, 1, 2);
+    sendWindow(operator, 2, 2);
+    sendWindow(operator, 3, 3);
+    operator.checkpointed(3);
+    Assert.assertEquals("put batches", Lists.newArrayList(3), operator.fakeTable.putBatches);
+    Assert.assertEquals("saved window", Long.valueOf(3), savedWindow());
+  }
+
+  @Test
+  public void testWriterFailure()
+  {
+    TestOperator operator = createOperator(1000, 2);
+    IOException failure = new IOException("put failed");
+    operator.fakeTable.failure = failure;
+    sendWindow(operator, 0, 1);
+    try {
+      operator.checkpointed(0);
+      Assert.fail("writer failure is not propagated");
+    }
+    catch (RuntimeException ex) {
+      Assert.assertSame("failure", failure, ex.getCause());
+    }
+    Assert.assertNull("saved window", savedWindow());
+  }
+
+}
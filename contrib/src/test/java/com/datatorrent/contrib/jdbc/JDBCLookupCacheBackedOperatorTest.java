@@ -18,6 +18,7 @@ package com.datatorrent.contrib.jdbc;
 import java.sql.*;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
@@ -31,12 +32,15 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import com.datatorrent.api.Context;
 
 import com.datatorrent.lib.helper.OperatorContextTestHelper;
 import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KeyValPair;
 
 /**
  * Test for {@link JDBCLookupCacheBackedOperator}
@@ -92,6 +96,18 @@ public class JDBCLookupCacheBackedOperatorTest
 
     @Override
     public Map<Object, Object> fetchValuesFromDatabase(Set<Object> keys)
+    {
+      Map<Object, Object> values = queryValues(keys);
+      try {
+        bulkValuesExchanger.exchange(values);
+        return values;
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException("interrupted while multiple keys", e);
+      }
+    }
+
+    protected Map<Object, Object> queryValues(Set<Object> keys)
     {
       StringBuilder builder = new StringBuilder("(");
       for (Object k : keys) {
@@ -110,15 +126,13 @@ public class JDBCLookupCacheBackedOperatorTest
         while (resultSet.next()) {
           values.put(resultSet.getInt(1), resultSet.getString(2));
         }
-        bulkValuesExchanger.exchange(values);
+        statement.close();
+        resultSet.close();
         return values;
       }
       catch (SQLException e) {
         throw new RuntimeException("while fetching multiple keys", e);
       }
-      catch (InterruptedException e) {
-        throw new RuntimeException("interrupted while multiple keys", e);
-      }
     }
 
     @Override
@@ -129,6 +143,18 @@ public class JDBCLookupCacheBackedOperatorTest
 
   }
 
+  public static class BatchedJDBCLookupCacheBackedOperator extends TestJDBCLookupCacheBackedOperator
+  {
+    final List<Set<Object>> batches = Lists.newArrayList();
+
+    @Override
+    public Map<Object, Object> fetchValuesFromDatabase(Set<Object> keys)
+    {
+      batches.add(Sets.newHashSet(keys));
+      return queryValues(keys);
+    }
+  }
+
   @Test
   public void test() throws Exception
   {
@@ -144,6 +170,43 @@ public class JDBCLookupCacheBackedOperatorTest
     Assert.assertEquals("bulk values retrieval", 2, bulk.size());
   }
 
+  @Test
+  public void testBatchedLookups() throws Exception
+  {
+    BatchedJDBCLookupCacheBackedOperator oper = new BatchedJDBCLookupCacheBackedOperator();
+    Assert.assertEquals("max concurrent lookups", 1, oper.getMaxConcurrentLookups());
+    oper.setDbUrl(INMEM_DB_URL);
+    oper.setDbDriver(INMEM_DB_DRIVER);
+    oper.setBatchedLookups(true);
+    oper.setLookupBatchSize(2);
+    oper.setEmitInOrder(true);
+    CollectorTestSink<Object> batchSink = new CollectorTestSink<Object>();
+    oper.output.setSink(batchSink);
+
+    Context.OperatorContext context = new OperatorContextTestHelper.TestIdOperatorContext(8);
+    oper.setup(context);
+    oper.activate(context);
+    oper.beginWindow(0);
+    for (String key : new String[] {"5", "3", "6", "1", "3"}) {
+      oper.input.process(key);
+    }
+    oper.endWindow();
+    oper.deactivate();
+    oper.teardown();
+
+    List<Object> expected = Lists.newArrayList();
+    expected.add(new KeyValPair<Object, Object>(5, "five"));
+    expected.add(new KeyValPair<Object, Object>(3, "three"));
+    expected.add(new KeyValPair<Object, Object>(1, "one"));
+    expected.add(new KeyValPair<Object, Object>(3, "three"));
+    Assert.assertEquals("lookup results", expected, batchSink.collectedTuples);
+
+    List<Set<Object>> expectedBatches = Lists.newArrayList();
+    expectedBatches.add(Sets.<Object>newHashSet(5, 3));
+    expectedBatches.add(Sets.<Object>newHashSet(6, 1));
+    Assert.assertEquals("batches", expectedBatches, oper.batches);
+  }
+
   @BeforeClass
   public static void setup() throws Exception
   {
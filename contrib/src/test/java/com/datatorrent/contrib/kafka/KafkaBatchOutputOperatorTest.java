@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.kafka;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+import kafka.javaapi.producer.Producer;
+import kafka.message.Message;
+import kafka.producer.KeyedMessage;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+/**
+ * Tests for {@link AbstractKafkaBatchOutputOperator}
+ */
+public class KafkaBatchOutputOperatorTest extends KafkaOperatorTestBase
+{
+  private static final String WINDOW_LOG_PATH = "target/KafkaBatchOutputOperatorTest";
+  private static final int OPERATOR_ID = 3;
+  private static final int MESSAGES_PER_WINDOW = 5;
+  // partition and window id
+  private static final int LOG_ENTRY_SIZE = 12;
+
+  /**
+   * Operator whose sender threads wait for the gate before they send a batch
+   */
+  public static class GatedOperator extends KafkaSinglePortBatchOutputOperator<String, String>
+  {
+    final CountDownLatch gate = new CountDownLatch(1);
+
+    @Override
+    protected void send(Producer<String, String> producer, List<KeyedMessage<String, String>> messages)
+    {
+      try {
+        gate.await();
+      }
+      catch (InterruptedException ex) {
+        throw new RuntimeException(ex);
+      }
+      super.send(producer, messages);
+    }
+  }
+
+  private KafkaSinglePortBatchOutputOperator<String, String> createOperator()
+  {
+    return createOperator(new KafkaSinglePortBatchOutputOperator<String, String>());
+  }
+
+  private <T extends KafkaSinglePortBatchOutputOperator<String, String>> T createOperator(T operator)
+  {
+    Properties props = new Properties();
+    props.setProperty("serializer.class", "kafka.serializer.StringEncoder");
+    props.put("metadata.broker.list", "localhost:" + TEST_KAFKA_BROKER1_PORT);
+    props.setProperty("producer.type", "sync");
+
+    operator.setConfigProperties(props);
+    operator.setTopic(TEST_TOPIC);
+    operator.setBatchSize(2);
+    operator.setWindowLogPath(WINDOW_LOG_PATH);
+    operator.setup(new OperatorContextTestHelper.TestIdOperatorContext(OPERATOR_ID));
+    return operator;
+  }
+
+  private void sendWindow(KafkaSinglePortBatchOutputOperator<String, String> operator, long windowId)
+  {
+    operator.beginWindow(windowId);
+    for (int i = 0; i < MESSAGES_PER_WINDOW; i++) {
+      operator.inputPort.process(windowId + "-" + i);
+    }
+    operator.endWindow();
+  }
+
+  private File[] getLogFiles()
+  {
+    File[] files = new File(WINDOW_LOG_PATH).listFiles(new FilenameFilter()
+    {
+      @Override
+      public boolean accept(File dir, String name)
+      {
+        return name.startsWith(TEST_TOPIC + "-" + OPERATOR_ID + ".");
+      }
+
+    });
+    return files == null ? new File[0] : files;
+  }
+
+  @Test
+  public void testReplay() throws Exception
+  {
+    FileUtils.deleteDirectory(new File(WINDOW_LOG_PATH));
+    CountDownLatch latch = new CountDownLatch(1);
+    KafkaTestConsumer consumer = new KafkaTestConsumer(TEST_TOPIC);
+    consumer.setLatch(latch);
+    new Thread(consumer).start();
+
+    KafkaSinglePortBatchOutputOperator<String, String> operator = createOperator();
+    for (long windowId = 0; windowId < 4; windowId++) {
+      sendWindow(operator, windowId);
+    }
+    operator.teardown();
+
+    //the operator failed after window 3 and recovers from the checkpoint of window 1
+    operator = createOperator();
+    for (long windowId = 2; windowId < 6; windowId++) {
+      sendWindow(operator, windowId);
+    }
+    Assert.assertEquals("skipped messages", 2 * MESSAGES_PER_WINDOW, operator.getSkippedMessages());
+
+    operator.beginWindow(6);
+    operator.inputPort.process(END_TUPLE);
+    operator.endWindow();
+    operator.teardown();
+
+    latch.await(30, TimeUnit.SECONDS);
+    List<String> received = new ArrayList<String>();
+    for (Message message : consumer.holdingBuffer) {
+      received.add(consumer.getMessage(message));
+    }
+    consumer.close();
+
+    List<String> expected = new ArrayList<String>();
+    for (long windowId = 0; windowId < 6; windowId++) {
+      for (int i = 0; i < MESSAGES_PER_WINDOW; i++) {
+        expected.add(windowId + "-" + i);
+      }
+    }
+    Assert.assertEquals("messages sent once", expected, received);
+    FileUtils.deleteDirectory(new File(WINDOW_LOG_PATH));
+  }
+
+  @Test
+  public void testCheckpointWithQueuedBatches() throws Exception
+  {
+    FileUtils.deleteDirectory(new File(WINDOW_LOG_PATH));
+    CountDownLatch latch = new CountDownLatch(1);
+    KafkaTestConsumer consumer = new KafkaTestConsumer(TEST_TOPIC);
+    consumer.setLatch(latch);
+    new Thread(consumer).start();
+
+    final GatedOperator gated = createOperator(new GatedOperator());
+    for (long windowId = 0; windowId < 3; windowId++) {
+      sendWindow(gated, windowId);
+    }
+    Thread checkpoint = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        gated.checkpointed(1);
+      }
+
+    };
+    checkpoint.start();
+    checkpoint.join(500);
+    Assert.assertTrue("checkpoint waits for the queued batches", checkpoint.isAlive());
+    gated.gate.countDown();
+    checkpoint.join(30000);
+    Assert.assertFalse("checkpoint after the batches are sent", checkpoint.isAlive());
+    //the operator fails after window 2 and recovers from the checkpoint of window 1
+    gated.teardown();
+
+    KafkaSinglePortBatchOutputOperator<String, String> operator = createOperator();
+    sendWindow(operator, 2);
+    sendWindow(operator, 3);
+    Assert.assertEquals("skipped messages", MESSAGES_PER_WINDOW, operator.getSkippedMessages());
+    operator.beginWindow(4);
+    operator.inputPort.process(END_TUPLE);
+    operator.endWindow();
+    operator.teardown();
+
+    latch.await(30, TimeUnit.SECONDS);
+    List<String> received = new ArrayList<String>();
+    for (Message message : consumer.holdingBuffer) {
+      received.add(consumer.getMessage(message));
+    }
+    consumer.close();
+
+    List<String> expected = new ArrayList<String>();
+    for (long windowId = 0; windowId < 4; windowId++) {
+      for (int i = 0; i < MESSAGES_PER_WINDOW; i++) {
+        expected.add(windowId + "-" + i);
+      }
+    }
+    Assert.assertEquals("messages sent once", expected, received);
+    FileUtils.deleteDirectory(new File(WINDOW_LOG_PATH));
+  }
+
+  @Test
+  public void testWindowLogRolledOnCommit() throws Exception
+  {
+    FileUtils.deleteDirectory(new File(WINDOW_LOG_PATH));
+    KafkaSinglePortBatchOutputOperator<String, String> operator = createOperator();
+    for (long windowId = 0; windowId < 10; windowId++) {
+      sendWindow(operator, windowId);
+    }
+    operator.teardown();
+    File[] files = getLogFiles();
+    Assert.assertEquals("log files", 1, files.length);
+    Assert.assertEquals("logged windows", 10 * LOG_ENTRY_SIZE, files[0].length());
+
+    //the log is rolled over when the operator is set up
+    operator = createOperator();
+    File[] rolled = getLogFiles();
+    Assert.assertEquals("log files", 1, rolled.length);
+    Assert.assertFalse("new log file", rolled[0].getName().equals(files[0].getName()));
+    sendWindow(operator, 10);
+    operator.teardown();
+    Assert.assertEquals("logged windows", 2 * LOG_ENTRY_SIZE, getLogFiles()[0].length());
+
+    //and when a window is committed after windows were logged
+    operator = createOperator();
+    String name = getLogFiles()[0].getName();
+    operator.committed(10);
+    Assert.assertEquals("not rolled without logged windows", name, getLogFiles()[0].getName());
+    sendWindow(operator, 11);
+    long timeout = System.currentTimeMillis() + 30000;
+    while (getLogFiles()[0].getName().equals(name) && System.currentTimeMillis() < timeout) {
+      operator.committed(11);
+      Thread.sleep(10);
+    }
+    operator.teardown();
+    files = getLogFiles();
+    Assert.assertEquals("log files", 1, files.length);
+    Assert.assertFalse("rolled log file", files[0].getName().equals(name));
+    Assert.assertEquals("last window of the partition", LOG_ENTRY_SIZE, files[0].length());
+
+    //windows up to the last logged window are skipped
+    operator = createOperator();
+    sendWindow(operator, 11);
+    sendWindow(operator, 12);
+    Assert.assertEquals("skipped messages", MESSAGES_PER_WINDOW, operator.getSkippedMessages());
+    operator.teardown();
+    FileUtils.deleteDirectory(new File(WINDOW_LOG_PATH));
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.kafka;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+import kafka.message.Message;
+import kafka.message.MessageAndOffset;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import com.datatorrent.lib.util.SpscRingBuffer;
+
+/**
+ * Tests for the ONE_TO_MANY_HEURISTIC partitioning of {@link AbstractPartitionableKafkaInputOperator} with synthetic
+ * offsets, which need no kafka broker.
+ */
+public class KafkaLagPartitioningTest
+{
+  private static final double MSG_SIZE = 10;
+
+  public static class TestOperator extends AbstractPartitionableKafkaInputOperator
+  {
+    @Override
+    protected AbstractPartitionableKafkaInputOperator cloneOperator()
+    {
+      return new TestOperator();
+    }
+
+    @Override
+    protected void emitTuple(Message message)
+    {
+    }
+  }
+
+  public static class TestConsumer extends KafkaConsumer
+  {
+    @Override
+    protected void _stop()
+    {
+    }
+
+    @Override
+    protected KafkaConsumer cloneConsumer(Set<Integer> partitionIds)
+    {
+      return new TestConsumer();
+    }
+
+    @Override
+    protected KafkaConsumer cloneConsumer(Set<Integer> partitionIds, Map<Integer, Long> startOffset)
+    {
+      return new TestConsumer();
+    }
+
+    @Override
+    protected void commitOffset()
+    {
+    }
+
+    @Override
+    protected Map<Integer, Long> getCurrentOffsets()
+    {
+      return new HashMap<Integer, Long>();
+    }
+  }
+
+  private TestOperator createOperator(int operatorPartitions)
+  {
+    TestOperator operator = new TestOperator();
+    operator.setStrategy("one_to_many_heuristic");
+    operator.setMsgRateUpperBound(1000);
+    operator.setLagDrainInterval(10000);
+    for (int i = 0; i < operatorPartitions; i++) {
+      operator.currentPartitionInfo.add(new AbstractPartitionableKafkaInputOperator.PartitionInfo());
+    }
+    return operator;
+  }
+
+  private static Map<Integer, double[]> intakeRates(double... msgRates)
+  {
+    Map<Integer, double[]> rates = new HashMap<Integer, double[]>();
+    for (int i = 0; i < msgRates.length; i++) {
+      rates.put(i, new double[] {msgRates[i], msgRates[i] * MSG_SIZE});
+    }
+    return rates;
+  }
+
+  private static Map<Integer, Long> offsets(long... offsets)
+  {
+    Map<Integer, Long> map = new HashMap<Integer, Long>();
+    for (int i = 0; i < offsets.length; i++) {
+      map.put(i, offsets[i]);
+    }
+    return map;
+  }
+
+  private static Set<Set<Integer>> assignment(AbstractPartitionableKafkaInputOperator operator)
+  {
+    Set<Set<Integer>> assignment = new HashSet<Set<Integer>>();
+    for (AbstractPartitionableKafkaInputOperator.PartitionInfo pif : operator.lagPartitionInfo) {
+      assignment.add(pif.kpids);
+    }
+    return assignment;
+  }
+
+  @Test
+  public void testNoLag()
+  {
+    TestOperator operator = createOperator(1);
+    Assert.assertFalse("no repartition", operator.breakLagConstraint(intakeRates(100, 100, 100, 100),
+      offsets(500, 500, 500, 500), offsets(500, 500, 500, 500)));
+    Assert.assertNull("no assignment", operator.lagPartitionInfo);
+  }
+
+  @Test
+  public void testScaleUpWithLag()
+  {
+    TestOperator operator = createOperator(1);
+    //partitions 0 and 1 need 800 msgs/s to consume their lag within the drain interval
+    Assert.assertTrue("repartition", operator.breakLagConstraint(intakeRates(100, 100, 100, 100),
+      offsets(2000, 2000, 500, 500), offsets(10000, 10000, 500, 500)));
+    Set<Set<Integer>> expected = Sets.newHashSet();
+    expected.add(Sets.newHashSet(0));
+    expected.add(Sets.newHashSet(1));
+    expected.add(Sets.newHashSet(2, 3));
+    Assert.assertEquals("assignment", expected, assignment(operator));
+  }
+
+  @Test
+  public void testScaleDownOnceLagIsDrained()
+  {
+    TestOperator operator = createOperator(3);
+    //the packing needs one operator partition but the lag of 3000 msgs is more than a check interval of intake
+    Assert.assertFalse("no repartition", operator.breakLagConstraint(intakeRates(100, 100, 100, 100),
+      offsets(7000, 500, 500, 500), offsets(10000, 500, 500, 500)));
+    Assert.assertNull("no assignment", operator.lagPartitionInfo);
+
+    Assert.assertTrue("repartition", operator.breakLagConstraint(intakeRates(100, 100, 100, 100),
+      offsets(9000, 500, 500, 500), offsets(10000, 500, 500, 500)));
+    Set<Set<Integer>> expected = Sets.newHashSet();
+    expected.add(Sets.newHashSet(0, 1, 2, 3));
+    Assert.assertEquals("assignment", expected, assignment(operator));
+  }
+
+  @Test
+  public void testUnknownOffsets()
+  {
+    TestOperator operator = createOperator(1);
+    //without the offsets of a partition its lag is not known and only its intake rate is packed
+    Assert.assertFalse("no repartition", operator.breakLagConstraint(intakeRates(100, 100),
+      offsets(), offsets(100000, 100000)));
+  }
+
+  @Test
+  public void testEmittedOffsets() throws InterruptedException
+  {
+    TestConsumer consumer = new TestConsumer();
+    consumer.create();
+    SpscRingBuffer<MessageAndOffset> buffer0 = consumer.createHoldingBuffer(2);
+    SpscRingBuffer<MessageAndOffset> buffer1 = consumer.createHoldingBuffer(2);
+    Assert.assertEquals("nothing drained", -1, consumer.getEmittedOffset(buffer0));
+    //offsets of a compacted topic are not consecutive
+    for (int i = 0; i < 5; i++) {
+      buffer0.put(new MessageAndOffset(new Message(new byte[] {(byte)i}), i * 10));
+      buffer1.put(new MessageAndOffset(new Message(new byte[] {(byte)i}), 100 + i * 3));
+    }
+    Message[] messages = new Message[10];
+    Assert.assertEquals("drained", 6, consumer.drainMessages(messages, 0, 6));
+    Assert.assertEquals("emitted offset of buffer 0", 1, consumer.getEmittedOffset(buffer0));
+    Assert.assertEquals("emitted offset of buffer 1", 113, consumer.getEmittedOffset(buffer1));
+    Assert.assertNotNull("polled", consumer.pollMessage());
+    Assert.assertEquals("drained", 3, consumer.drainMessages(messages, 0, 10));
+    Assert.assertEquals("emitted offset of buffer 0", 41, consumer.getEmittedOffset(buffer0));
+    Assert.assertEquals("emitted offset of buffer 1", 113, consumer.getEmittedOffset(buffer1));
+
+    consumer.teardown();
+    Assert.assertEquals("emitted offset after teardown", -1, consumer.getEmittedOffset(buffer0));
+  }
+
+}
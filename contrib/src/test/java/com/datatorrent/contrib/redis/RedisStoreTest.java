@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.redis;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Tests for the write coalescing and the sharding of {@link RedisStore} which need no Redis server.
+ */
+public class RedisStoreTest
+{
+  @Test
+  public void testCoalescedIncrements()
+  {
+    RedisStore.PendingWrites writes = new RedisStore.PendingWrites();
+    writes.increment(1.5);
+    writes.increment(2);
+    writes.incrementHash("a", 1);
+    writes.incrementHash("b", 2);
+    writes.incrementHash("a", 3);
+    Assert.assertTrue("incremented", writes.incremented);
+    Assert.assertEquals("increment", 3.5, writes.increment, 0);
+    Assert.assertEquals("hash increments", ImmutableMap.of("a", 4.0, "b", 2.0), writes.hashIncrements);
+    Assert.assertFalse("delete", writes.delete);
+    Assert.assertFalse("delete only", writes.isDeleteOnly());
+  }
+
+  @Test
+  public void testSetReplacesEarlierWrites()
+  {
+    RedisStore.PendingWrites writes = new RedisStore.PendingWrites();
+    writes.increment(1);
+    writes.incrementHash("a", 1);
+    writes.setHash(ImmutableMap.of("b", "x"));
+    writes.set("v1");
+    writes.set("v2");
+    Assert.assertEquals("value", "v2", writes.value);
+    Assert.assertFalse("incremented", writes.incremented);
+    Assert.assertEquals("increment", 0, writes.increment, 0);
+    Assert.assertNull("hash values", writes.hashValues);
+    Assert.assertNull("hash increments", writes.hashIncrements);
+
+    writes.increment(2);
+    Assert.assertEquals("value", "v2", writes.value);
+    Assert.assertEquals("increment after set", 2, writes.increment, 0);
+  }
+
+  @Test
+  public void testHashSetReplacesFieldIncrements()
+  {
+    RedisStore.PendingWrites writes = new RedisStore.PendingWrites();
+    writes.incrementHash("a", 1);
+    writes.incrementHash("b", 2);
+    writes.setHash(ImmutableMap.of("a", "x"));
+    writes.setHash(ImmutableMap.of("c", "y"));
+    Assert.assertEquals("hash values", ImmutableMap.of("a", "x", "c", "y"), writes.hashValues);
+    Assert.assertEquals("hash increments", ImmutableMap.of("b", 2.0), writes.hashIncrements);
+
+    writes.incrementHash("a", 5);
+    Map<String, Double> increments = writes.hashIncrements;
+    Assert.assertEquals("increment after hash set", 5.0, increments.get("a"), 0);
+  }
+
+  @Test
+  public void testDelete()
+  {
+    RedisStore.PendingWrites writes = new RedisStore.PendingWrites();
+    writes.set("v");
+    writes.incrementHash("a", 1);
+    writes.delete();
+    Assert.assertTrue("delete", writes.delete);
+    Assert.assertTrue("delete only", writes.isDeleteOnly());
+
+    writes.increment(1);
+    Assert.assertTrue("delete", writes.delete);
+    Assert.assertFalse("delete only", writes.isDeleteOnly());
+    Assert.assertEquals("increment after delete", 1, writes.increment, 0);
+  }
+
+  @Test
+  public void testCrc16()
+  {
+    Assert.assertEquals("check value", 0x31C3, RedisStore.crc16("123456789"));
+    Assert.assertEquals("empty", 0, RedisStore.crc16(""));
+    //hash slots reported by CLUSTER KEYSLOT
+    Assert.assertEquals("foo", 12182, RedisStore.crc16("foo") % 16384);
+    Assert.assertEquals("hello", 866, RedisStore.crc16("hello") % 16384);
+  }
+
+  @Test
+  public void testGetShard()
+  {
+    Assert.assertEquals("single shard", 0, RedisStore.getShard("foo", 1));
+    Assert.assertEquals("foo", 1, RedisStore.getShard("foo", 2));
+    Assert.assertEquals("hello", 0, RedisStore.getShard("hello", 2));
+    for (int i = 0; i < 1000; i++) {
+      int shard = RedisStore.getShard("key" + i, 3);
+      Assert.assertTrue("shard of key" + i, shard >= 0 && shard < 3);
+    }
+  }
+
+  @Test
+  public void testHashTags()
+  {
+    for (int shards = 2; shards < 10; shards++) {
+      Assert.assertEquals("hash tag", RedisStore.getShard("hello", shards), RedisStore.getShard("{hello}.following", shards));
+      Assert.assertEquals("hash tag", RedisStore.getShard("hello", shards), RedisStore.getShard("x{hello}{foo}", shards));
+    }
+    Assert.assertEquals("empty hash tag", RedisStore.crc16("foo{}{bar}") % 16384 * 2 / 16384,
+      RedisStore.getShard("foo{}{bar}", 2));
+    Assert.assertEquals("first closing brace", RedisStore.getShard("{bar", 2), RedisStore.getShard("foo{{bar}}", 2));
+  }
+
+  @Test
+  public void testCheckReplies()
+  {
+    RedisStore.checkReplies(Arrays.<Object>asList("OK", 1L, null));
+    JedisDataException error = new JedisDataException("WRONGTYPE Operation against a key holding the wrong kind of value");
+    try {
+      RedisStore.checkReplies(Arrays.<Object>asList("OK", error, 2L));
+      Assert.fail("error reply is not thrown");
+    }
+    catch (JedisDataException ex) {
+      Assert.assertSame("error reply", error, ex);
+    }
+  }
+
+}
@@ -90,15 +90,12 @@ public class BottomNUnifier<K, V> implements Unifier<HashMap<K, ArrayList<V>>>
       TopNSort pqueue = kmap.get(e.getKey());
       ArrayList<V> values = e.getValue();
       if (pqueue == null) {
-        pqueue = new TopNSort<V>(5, values.size(), false);
+        // only the bottom N of all the partitions are kept
+        pqueue = new TopNSort<V>(5, getN(), false);
         kmap.put(e.getKey(), pqueue);
-        for (int i = (values.size()-1); i >= 0; i--) {
-          pqueue.offer(values.get(i));
-        }
-      } else {
-        for (int i = (values.size()-1); i >= 0; i--) {
-          pqueue.offer(values.get(i));
-        }
+      }
+      for (int i = (values.size()-1); i >= 0; i--) {
+        pqueue.offer(values.get(i));
       }
     }
   }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Mergeable sketch which estimates the frequency of values (Count-Min). <p>
+ * A sketch of width w and depth d keeps d rows of w counters; a value increments one counter per row and its
+ * frequency is estimated by the smallest of them. The estimate is never lower than the frequency, and is at most
+ * epsilon * total above it with probability 1 - delta, where w = e / epsilon and d = ln(1 / delta). Two sketches of the
+ * same dimensions are merged by adding their counters. <br>
+ *
+ * @since 0.9.4
+ */
+public class CountMinSketch
+{
+  private int width;
+  private int depth;
+  private long[] counters;
+  private long total;
+
+  @SuppressWarnings("unused")
+  private CountMinSketch()
+  {
+    // for kryo
+  }
+
+  /**
+   * @param epsilon maximum over-estimate as a fraction of the total count.
+   * @param delta   probability that the over-estimate is more than epsilon.
+   */
+  public CountMinSketch(double epsilon, double delta)
+  {
+    Preconditions.checkArgument(epsilon > 0 && epsilon < 1, "epsilon %s", epsilon);
+    Preconditions.checkArgument(delta > 0 && delta < 1, "delta %s", delta);
+    width = (int)Math.ceil(Math.E / epsilon);
+    depth = (int)Math.ceil(Math.log(1 / delta));
+    counters = new long[width * depth];
+  }
+
+  private int index(long hash, int row)
+  {
+    // rows use independent hashes derived from two halves of the hash (Kirsch-Mitzenmacher)
+    int h = (int)hash + row * (int)(hash >>> 32);
+    return row * width + ((h & Integer.MAX_VALUE) % width);
+  }
+
+  /**
+   * Adds a count to a value.
+   *
+   * @param value value.
+   * @param count count to add.
+   */
+  public void add(Object value, long count)
+  {
+    long hash = SketchHash.hash(value);
+    for (int row = 0; row < depth; row++) {
+      counters[index(hash, row)] += count;
+    }
+    total += count;
+  }
+
+  /**
+   * @param value value.
+   * @return estimated frequency of the value.
+   */
+  public long estimate(Object value)
+  {
+    long hash = SketchHash.hash(value);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters[index(hash, row)]);
+    }
+    return estimate;
+  }
+
+  /**
+   * Adds the counters of the other sketch.
+   *
+   * @param other sketch of the same dimensions.
+   */
+  public void merge(CountMinSketch other)
+  {
+    Preconditions.checkArgument(other.width == width && other.depth == depth, "dimensions %sx%s != %sx%s",
+                                other.depth, other.width, depth, width);
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] += other.counters[i];
+    }
+    total += other.total;
+  }
+
+  /**
+   * @return sum of all the counts added.
+   */
+  public long getTotal()
+  {
+    return total;
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  /**
+   * @return empty sketch with the same dimensions.
+   */
+  public CountMinSketch newInstance()
+  {
+    CountMinSketch instance = new CountMinSketch();
+    instance.width = width;
+    instance.depth = depth;
+    instance.counters = new long[counters.length];
+    return instance;
+  }
+
+  /**
+   * Resets all the counters.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = 0;
+    }
+    total = 0;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+
+/**
+ * Estimates the no. of distinct tuples in a window with a {@link HyperLogLog} sketch, in a few KB whatever the no. of
+ * distinct tuples. <p>
+ * This is an end of window operator. <br>
+ * <br>
+ * <b>StateFull : Yes, </b> tuples are aggregated over application window. <br>
+ * <b>Partitions : Yes, </b> the sketch is unified at the output port. The count port is correct only when not
+ * partitioned; to count the distinct tuples of a partitioned stream connect the sketch port to the sketches port of
+ * another estimator. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects K<br>
+ * <b>sketches</b>: expects HyperLogLog sketches to merge<br>
+ * <b>count</b>: emits Long, the estimated no. of distinct tuples<br>
+ * <b>sketch</b>: emits the HyperLogLog sketch of the window<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>precision</b>: no. of bits of the register index of the sketch; the relative standard error is
+ * 1.04 / sqrt(2^precision). Default is 12 (1.6% error).<br>
+ * <b>relativeError</b>: sets the precision from the desired relative standard error.<br>
+ * <br>
+ *
+ * @param <K> tuple type
+ * @since 0.9.4
+ */
+public class DistinctCountEstimator<K> extends BaseOperator
+{
+  private int precision = 12;
+  private HyperLogLog windowSketch;
+
+  @InputPortFieldAnnotation(name = "data", optional = true)
+  public final transient DefaultInputPort<K> data = new DefaultInputPort<K>()
+  {
+    /**
+     * Adds the tuple to the sketch of the window.
+     */
+    @Override
+    public void process(K tuple)
+    {
+      getWindowSketch().add(tuple);
+    }
+  };
+
+  @InputPortFieldAnnotation(name = "sketches", optional = true)
+  public final transient DefaultInputPort<HyperLogLog> sketches = new DefaultInputPort<HyperLogLog>()
+  {
+    /**
+     * Merges the sketch into the sketch of the window.
+     */
+    @Override
+    public void process(HyperLogLog tuple)
+    {
+      getWindowSketch().merge(tuple);
+    }
+  };
+
+  @OutputPortFieldAnnotation(name = "count", optional = true)
+  public final transient DefaultOutputPort<Long> count = new DefaultOutputPort<Long>();
+
+  @OutputPortFieldAnnotation(name = "sketch", optional = true)
+  public final transient DefaultOutputPort<HyperLogLog> sketch = new DefaultOutputPort<HyperLogLog>()
+  {
+    @Override
+    public Unifier<HyperLogLog> getUnifier()
+    {
+      return new HyperLogLogUnifier();
+    }
+  };
+
+  private HyperLogLog getWindowSketch()
+  {
+    if (windowSketch == null) {
+      windowSketch = new HyperLogLog(precision);
+    }
+    return windowSketch;
+  }
+
+  public int getPrecision()
+  {
+    return precision;
+  }
+
+  public void setPrecision(int precision)
+  {
+    this.precision = precision;
+  }
+
+  /**
+   * @param relativeError desired relative standard error of the count.
+   */
+  public void setRelativeError(double relativeError)
+  {
+    precision = HyperLogLog.precisionFor(relativeError);
+  }
+
+  /**
+   * Emits the estimated count and the sketch of the window.
+   */
+  @Override
+  public void endWindow()
+  {
+    if (windowSketch == null) {
+      return;
+    }
+    count.emit(windowSketch.cardinality());
+    if (sketch.isConnected()) {
+      sketch.emit(windowSketch);
+      windowSketch = null;
+    }
+    else {
+      windowSketch.clear();
+    }
+  }
+
+  /**
+   * Unifier which merges the sketches of the partitions and emits one sketch at the end of window.
+   */
+  public static class HyperLogLogUnifier extends BaseOperator implements Unifier<HyperLogLog>
+  {
+    private HyperLogLog mergedTuple;
+    public final transient DefaultOutputPort<HyperLogLog> mergedport = new DefaultOutputPort<HyperLogLog>();
+
+    @Override
+    public void process(HyperLogLog tuple)
+    {
+      if (mergedTuple == null) {
+        mergedTuple = new HyperLogLog(tuple.getPrecision());
+      }
+      mergedTuple.merge(tuple);
+    }
+
+    @Override
+    public void endWindow()
+    {
+      if (mergedTuple != null) {
+        mergedport.emit(mergedTuple);
+        mergedTuple = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.BaseKeyOperator;
+
+/**
+ * Estimates the k most frequent tuples of a window in bounded memory. <p>
+ * Candidates are monitored by a {@link SpaceSaving} summary and their counts are bounded by a {@link CountMinSketch};
+ * the emitted count of a tuple is the smaller of the two estimates. Both over-estimate a count by at most epsilon
+ * times the no. of tuples of the window (the Count-Min bound holds with probability 1 - delta). Unlike
+ * {@link MostFrequentKey} tuples are not counted exactly, so memory does not depend on the no. of distinct tuples.<br>
+ * This is an end of window operator. <br>
+ * <br>
+ * <b>StateFull : Yes, </b> tuples are aggregated over application window. <br>
+ * <b>Partitions : Yes, </b> the summary is unified at the output port. The top port is correct only when not
+ * partitioned; to find the heavy hitters of a partitioned stream connect the summary port to the summaries port of
+ * another heavy hitters operator. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects K<br>
+ * <b>summaries</b>: expects summaries to merge<br>
+ * <b>top</b>: emits HashMap&lt;K,Long&gt;, the k most frequent tuples and their estimated counts<br>
+ * <b>summary</b>: emits the summary of the window<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>k</b>: no. of tuples to emit. Default is 10.<br>
+ * <b>epsilon</b>: maximum over-estimate of a count as a fraction of the tuples of the window. Default is 0.001.<br>
+ * <b>delta</b>: probability that the Count-Min estimate exceeds the bound. Default is 0.01.<br>
+ * <br>
+ *
+ * @param <K> tuple type
+ * @since 0.9.4
+ */
+public class HeavyHitters<K> extends BaseKeyOperator<K>
+{
+  @Min(1)
+  private int k = 10;
+  private double epsilon = 0.001;
+  private double delta = 0.01;
+  private Summary<K> windowSummary;
+
+  @InputPortFieldAnnotation(name = "data", optional = true)
+  public final transient DefaultInputPort<K> data = new DefaultInputPort<K>()
+  {
+    /**
+     * Counts the tuple.
+     */
+    @Override
+    public void process(K tuple)
+    {
+      getWindowSummary().add(cloneKey(tuple), 1);
+    }
+  };
+
+  @InputPortFieldAnnotation(name = "summaries", optional = true)
+  public final transient DefaultInputPort<Summary<K>> summaries = new DefaultInputPort<Summary<K>>()
+  {
+    /**
+     * Merges the summary into the summary of the window.
+     */
+    @Override
+    public void process(Summary<K> tuple)
+    {
+      getWindowSummary().merge(tuple);
+    }
+  };
+
+  @OutputPortFieldAnnotation(name = "top", optional = true)
+  public final transient DefaultOutputPort<HashMap<K, Long>> top = new DefaultOutputPort<HashMap<K, Long>>();
+
+  @OutputPortFieldAnnotation(name = "summary", optional = true)
+  public final transient DefaultOutputPort<Summary<K>> summary = new DefaultOutputPort<Summary<K>>()
+  {
+    @Override
+    public Unifier<Summary<K>> getUnifier()
+    {
+      return new SummaryUnifier<K>();
+    }
+  };
+
+  private Summary<K> getWindowSummary()
+  {
+    if (windowSummary == null) {
+      windowSummary = new Summary<K>(epsilon, delta);
+    }
+    return windowSummary;
+  }
+
+  public int getK()
+  {
+    return k;
+  }
+
+  public void setK(int k)
+  {
+    this.k = k;
+  }
+
+  public double getEpsilon()
+  {
+    return epsilon;
+  }
+
+  public void setEpsilon(double epsilon)
+  {
+    this.epsilon = epsilon;
+  }
+
+  public double getDelta()
+  {
+    return delta;
+  }
+
+  public void setDelta(double delta)
+  {
+    this.delta = delta;
+  }
+
+  /**
+   * Emits the heavy hitters and the summary of the window.
+   */
+  @Override
+  public void endWindow()
+  {
+    if (windowSummary == null || windowSummary.getTotal() == 0) {
+      return;
+    }
+    if (top.isConnected()) {
+      HashMap<K, Long> tuple = new HashMap<K, Long>();
+      for (Map.Entry<K, Long> e : windowSummary.top(k)) {
+        tuple.put(e.getKey(), e.getValue());
+      }
+      top.emit(tuple);
+    }
+    if (summary.isConnected()) {
+      summary.emit(windowSummary);
+      windowSummary = null;
+    }
+    else {
+      windowSummary.clear();
+    }
+  }
+
+  /**
+   * Mergeable summary of the frequent tuples: a Space-Saving summary of the candidates and a Count-Min sketch of the
+   * counts.
+   *
+   * @param <K> tuple type
+   */
+  public static class Summary<K>
+  {
+    private SpaceSaving<K> candidates;
+    private CountMinSketch counts;
+
+    @SuppressWarnings("unused")
+    private Summary()
+    {
+      // for kryo
+    }
+
+    public Summary(double epsilon, double delta)
+    {
+      candidates = SpaceSaving.forError(epsilon);
+      counts = new CountMinSketch(epsilon, delta);
+    }
+
+    public void add(K tuple, long count)
+    {
+      candidates.add(tuple, count);
+      counts.add(tuple, count);
+    }
+
+    public void merge(Summary<K> other)
+    {
+      candidates.merge(other.candidates);
+      counts.merge(other.counts);
+    }
+
+    /**
+     * @param tuple tuple.
+     * @return estimated count of the tuple.
+     */
+    public long estimate(K tuple)
+    {
+      return Math.min(candidates.estimate(tuple), counts.estimate(tuple));
+    }
+
+    /**
+     * @param k no. of tuples.
+     * @return the k candidates with the largest estimated counts, largest first.
+     */
+    public List<Map.Entry<K, Long>> top(int k)
+    {
+      List<Map.Entry<K, Long>> top = new ArrayList<Map.Entry<K, Long>>(candidates.size());
+      for (Map.Entry<K, Long> e : candidates.top(candidates.size())) {
+        e = new AbstractMap.SimpleImmutableEntry<K, Long>(e.getKey(), Math.min(e.getValue(), counts.estimate(e.getKey())));
+        top.add(e);
+      }
+      Collections.sort(top, new Comparator<Map.Entry<K, Long>>()
+      {
+        @Override
+        public int compare(Map.Entry<K, Long> o1, Map.Entry<K, Long> o2)
+        {
+          return o2.getValue().compareTo(o1.getValue());
+        }
+      });
+      return top.size() > k ? new ArrayList<Map.Entry<K, Long>>(top.subList(0, k)) : top;
+    }
+
+    /**
+     * @return no. of tuples counted.
+     */
+    public long getTotal()
+    {
+      return counts.getTotal();
+    }
+
+    public void clear()
+    {
+      candidates.clear();
+      counts.clear();
+    }
+
+    /**
+     * @return empty summary with the same error bounds.
+     */
+    Summary<K> newInstance()
+    {
+      Summary<K> instance = new Summary<K>();
+      instance.candidates = new SpaceSaving<K>(candidates.getCapacity());
+      instance.counts = counts.newInstance();
+      return instance;
+    }
+  }
+
+  /**
+   * Unifier which merges the summaries of the partitions and emits one summary at the end of window.
+   *
+   * @param <K> tuple type
+   */
+  public static class SummaryUnifier<K> extends BaseOperator implements Unifier<Summary<K>>
+  {
+    private Summary<K> mergedTuple;
+    public final transient DefaultOutputPort<Summary<K>> mergedport = new DefaultOutputPort<Summary<K>>();
+
+    @Override
+    public void process(Summary<K> tuple)
+    {
+      if (mergedTuple == null) {
+        mergedTuple = tuple.newInstance();
+      }
+      mergedTuple.merge(tuple);
+    }
+
+    @Override
+    public void endWindow()
+    {
+      if (mergedTuple != null) {
+        mergedport.emit(mergedTuple);
+        mergedTuple = null;
+      }
+    }
+  }
+}
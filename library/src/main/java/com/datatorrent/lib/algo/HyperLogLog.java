@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Mergeable sketch which estimates the no. of distinct values added to it (HyperLogLog). <p>
+ * A sketch of precision p keeps 2^p registers of one byte; the relative standard error of the estimate is
+ * 1.04 / sqrt(2^p), e.g. 1.6% with the default precision of 12 and 4KB of registers. Two sketches of the same
+ * precision are merged by taking the maximum of every register, so sketches of partitions can be combined. <br>
+ *
+ * @since 0.9.4
+ */
+public class HyperLogLog
+{
+  private static final int DEFAULT_PRECISION = 12;
+
+  private byte[] registers;
+  private int precision;
+
+  public HyperLogLog()
+  {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision no. of bits of the register index, between 4 and 18.
+   */
+  public HyperLogLog(int precision)
+  {
+    Preconditions.checkArgument(precision >= 4 && precision <= 18, "precision %s", precision);
+    this.precision = precision;
+    registers = new byte[1 << precision];
+  }
+
+  /**
+   * @param relativeError desired relative standard error of the estimate.
+   * @return the smallest precision whose relative standard error is at most the given error.
+   */
+  public static int precisionFor(double relativeError)
+  {
+    Preconditions.checkArgument(relativeError > 0 && relativeError < 1, "relative error %s", relativeError);
+    double m = (1.04 / relativeError) * (1.04 / relativeError);
+    int precision = (int)Math.ceil(Math.log(m) / Math.log(2));
+    return Math.min(Math.max(precision, 4), 18);
+  }
+
+  /**
+   * Adds a value.
+   *
+   * @param value value.
+   */
+  public void add(Object value)
+  {
+    addHash(SketchHash.hash(value));
+  }
+
+  void addHash(long hash)
+  {
+    int index = (int)(hash >>> (64 - precision));
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte)rank;
+    }
+  }
+
+  /**
+   * Adds all the values of the other sketch.
+   *
+   * @param other sketch of the same precision.
+   */
+  public void merge(HyperLogLog other)
+  {
+    Preconditions.checkArgument(other.precision == precision, "precision %s != %s", other.precision, precision);
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /**
+   * @return estimated no. of distinct values.
+   */
+  public long cardinality()
+  {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double alpha;
+    switch (m) {
+      case 16:
+        alpha = 0.673;
+        break;
+      case 32:
+        alpha = 0.697;
+        break;
+      case 64:
+        alpha = 0.709;
+        break;
+      default:
+        alpha = 0.7213 / (1 + 1.079 / m);
+    }
+    double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double)m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  public int getPrecision()
+  {
+    return precision;
+  }
+
+  /**
+   * Removes all the values, keeping the registers.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < registers.length; i++) {
+      registers[i] = 0;
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "HyperLogLog{precision=" + precision + ", cardinality=" + cardinality() + '}';
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+/**
+ * 64 bit hashes of tuples for the sketches. <p>
+ * Strings and numbers are hashed by their content, other objects by their hashCode; the result is mixed with the
+ * murmur3 finalizer so that all the bits are usable. <br>
+ *
+ * @since 0.9.4
+ */
+final class SketchHash
+{
+  private SketchHash()
+  {
+  }
+
+  static long hash(Object o)
+  {
+    long h;
+    if (o == null) {
+      h = 0;
+    }
+    else if (o instanceof CharSequence) {
+      CharSequence s = (CharSequence)o;
+      h = 0xcbf29ce484222325L;
+      for (int i = 0; i < s.length(); i++) {
+        h ^= s.charAt(i);
+        h *= 0x100000001b3L;
+      }
+    }
+    else if (o instanceof Double || o instanceof Float) {
+      h = Double.doubleToLongBits(((Number)o).doubleValue());
+    }
+    else if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) {
+      h = ((Number)o).longValue();
+    }
+    else {
+      h = o.hashCode();
+    }
+    return mix(h);
+  }
+
+  static long mix(long h)
+  {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
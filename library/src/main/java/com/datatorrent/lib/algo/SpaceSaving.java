@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Mergeable summary of the most frequent values of a stream in bounded memory (Space-Saving). <p>
+ * The summary monitors at most capacity values with a count and an error. A value which is not monitored replaces the
+ * monitored value with the smallest count, and inherits that count as its error. Counts over-estimate frequencies by
+ * at most total / capacity, and every value whose frequency is more than total / capacity is monitored. <br>
+ * The monitored values are kept in a binary min heap of counts, so a value is counted in O(log capacity). Summaries
+ * are merged by adding the counts of the values, counting a value which is missing in a full summary with the
+ * smallest count of that summary, and keeping the capacity values with the largest counts. <br>
+ *
+ * @param <K> value type
+ * @since 0.9.4
+ */
+public class SpaceSaving<K>
+{
+  private int capacity;
+  private Object[] keys;
+  private long[] counts;
+  private long[] errors;
+  /**
+   * Min heap of slots ordered by count.
+   */
+  private int[] heap;
+  /**
+   * Position of every slot in the heap.
+   */
+  private int[] positions;
+  private int size;
+  private long total;
+  private transient HashMap<Object, Integer> slots;
+
+  @SuppressWarnings("unused")
+  private SpaceSaving()
+  {
+    // for kryo
+  }
+
+  /**
+   * @param capacity maximum no. of monitored values.
+   */
+  public SpaceSaving(int capacity)
+  {
+    Preconditions.checkArgument(capacity > 0, "capacity %s", capacity);
+    this.capacity = capacity;
+    keys = new Object[capacity];
+    counts = new long[capacity];
+    errors = new long[capacity];
+    heap = new int[capacity];
+    positions = new int[capacity];
+  }
+
+  /**
+   * @param epsilon maximum over-estimate of a count as a fraction of the total count.
+   * @return summary whose capacity guarantees the error.
+   */
+  public static <K> SpaceSaving<K> forError(double epsilon)
+  {
+    Preconditions.checkArgument(epsilon > 0 && epsilon < 1, "epsilon %s", epsilon);
+    return new SpaceSaving<K>((int)Math.ceil(1 / epsilon));
+  }
+
+  /**
+   * The map of the monitored values is transient and rebuilt after the summary is restored.
+   */
+  private HashMap<Object, Integer> getSlots()
+  {
+    if (slots == null) {
+      slots = new HashMap<Object, Integer>(capacity * 2);
+      for (int slot = 0; slot < size; slot++) {
+        slots.put(keys[slot], slot);
+      }
+    }
+    return slots;
+  }
+
+  /**
+   * Adds a count to a value.
+   *
+   * @param key   value.
+   * @param count count to add.
+   */
+  public void add(K key, long count)
+  {
+    add(key, count, 0);
+  }
+
+  private void add(K key, long count, long error)
+  {
+    total += count;
+    HashMap<Object, Integer> slotMap = getSlots();
+    Integer slot = slotMap.get(key);
+    if (slot != null) {
+      counts[slot] += count;
+      errors[slot] += error;
+      siftDown(positions[slot]);
+      return;
+    }
+    if (size < capacity) {
+      slot = size;
+      keys[slot] = key;
+      counts[slot] = count;
+      errors[slot] = error;
+      heap[size] = slot;
+      positions[slot] = size;
+      siftUp(size++);
+    }
+    else {
+      slot = heap[0];
+      slotMap.remove(keys[slot]);
+      keys[slot] = key;
+      errors[slot] = counts[slot] + error;
+      counts[slot] += count;
+      siftDown(0);
+    }
+    slotMap.put(key, slot);
+  }
+
+  /**
+   * @return smallest count of the monitored values if the summary is full, else 0.
+   */
+  public long getMinCount()
+  {
+    return size < capacity ? 0 : counts[heap[0]];
+  }
+
+  /**
+   * @param key value.
+   * @return count of the value, or an upper bound of its count if it is not monitored.
+   */
+  public long estimate(Object key)
+  {
+    Integer slot = getSlots().get(key);
+    return slot == null ? getMinCount() : counts[slot];
+  }
+
+  /**
+   * @param key value.
+   * @return maximum over-estimate of the count of the value.
+   */
+  public long error(Object key)
+  {
+    Integer slot = getSlots().get(key);
+    return slot == null ? getMinCount() : errors[slot];
+  }
+
+  /**
+   * Adds the counts of the other summary; the values with the largest merged counts are kept.
+   *
+   * @param other summary to merge.
+   */
+  @SuppressWarnings("unchecked")
+  public void merge(SpaceSaving<K> other)
+  {
+    long min = getMinCount();
+    long otherMin = other.getMinCount();
+    HashMap<Object, long[]> merged = new HashMap<Object, long[]>((size + other.size) * 2);
+    for (int slot = 0; slot < size; slot++) {
+      Integer otherSlot = other.getSlots().get(keys[slot]);
+      long otherCount = otherSlot == null ? otherMin : other.counts[otherSlot];
+      long otherError = otherSlot == null ? otherMin : other.errors[otherSlot];
+      merged.put(keys[slot], new long[] { counts[slot] + otherCount, errors[slot] + otherError });
+    }
+    for (int slot = 0; slot < other.size; slot++) {
+      if (!merged.containsKey(other.keys[slot])) {
+        merged.put(other.keys[slot], new long[] { other.counts[slot] + min, other.errors[slot] + min });
+      }
+    }
+    List<Map.Entry<Object, long[]>> entries = new ArrayList<Map.Entry<Object, long[]>>(merged.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<Object, long[]>>()
+    {
+      @Override
+      public int compare(Map.Entry<Object, long[]> o1, Map.Entry<Object, long[]> o2)
+      {
+        long c1 = o1.getValue()[0];
+        long c2 = o2.getValue()[0];
+        return c1 < c2 ? 1 : (c1 == c2 ? 0 : -1);
+      }
+    });
+    long mergedTotal = total + other.total;
+    clear();
+    for (int i = 0; i < entries.size() && i < capacity; i++) {
+      Map.Entry<Object, long[]> e = entries.get(i);
+      add((K)e.getKey(), e.getValue()[0], e.getValue()[1]);
+    }
+    total = mergedTotal;
+  }
+
+  /**
+   * @param k no. of values.
+   * @return the k monitored values with the largest counts and their counts, largest first.
+   */
+  @SuppressWarnings("unchecked")
+  public List<Map.Entry<K, Long>> top(int k)
+  {
+    Integer[] slotOrder = new Integer[size];
+    for (int slot = 0; slot < size; slot++) {
+      slotOrder[slot] = slot;
+    }
+    Arrays.sort(slotOrder, new Comparator<Integer>()
+    {
+      @Override
+      public int compare(Integer o1, Integer o2)
+      {
+        return counts[o1] < counts[o2] ? 1 : (counts[o1] == counts[o2] ? 0 : -1);
+      }
+    });
+    List<Map.Entry<K, Long>> top = new ArrayList<Map.Entry<K, Long>>(Math.min(k, size));
+    for (int i = 0; i < k && i < size; i++) {
+      int slot = slotOrder[i];
+      top.add(new AbstractMap.SimpleImmutableEntry<K, Long>((K)keys[slot], counts[slot]));
+    }
+    return top;
+  }
+
+  /**
+   * @return sum of all the counts added.
+   */
+  public long getTotal()
+  {
+    return total;
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * @return no. of monitored values.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Removes all the values, keeping the arrays.
+   */
+  public void clear()
+  {
+    for (int slot = 0; slot < size; slot++) {
+      keys[slot] = null;
+    }
+    size = 0;
+    total = 0;
+    if (slots != null) {
+      slots.clear();
+    }
+  }
+
+  private void siftUp(int i)
+  {
+    int slot = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (counts[heap[parent]] <= counts[slot]) {
+        break;
+      }
+      heap[i] = heap[parent];
+      positions[heap[i]] = i;
+      i = parent;
+    }
+    heap[i] = slot;
+    positions[slot] = i;
+  }
+
+  private void siftDown(int i)
+  {
+    int slot = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+        child++;
+      }
+      if (counts[slot] <= counts[heap[child]]) {
+        break;
+      }
+      heap[i] = heap[child];
+      positions[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = slot;
+    positions[slot] = i;
+  }
+}
@@ -85,9 +85,7 @@ public class TopN<K, V> extends AbstractBaseNNonUniqueOperatorMap<K,V> implement
   {
     for (Map.Entry<K, ArrayList<V>> entry : tuple.entrySet()) {
       for (V value : entry.getValue()) {
-        HashMap<K, V> item = new HashMap<K, V>();
-        item.put(entry.getKey(), value);
-        this.processTuple(item);
+        offer(entry.getKey(), value);
       }
     }
   }
@@ -16,10 +16,12 @@
 package com.datatorrent.lib.algo;
 
 import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator.Unifier;
 import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
 import com.datatorrent.lib.util.AbstractBaseNUniqueOperatorMap;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Orders tuples per key and emits top N unique tuples per key on end of window<p>
@@ -41,10 +43,19 @@ import java.util.HashMap;
  *
  * @since 0.3.2
  */
-public class TopNUnique<K, V> extends AbstractBaseNUniqueOperatorMap<K, V>
+public class TopNUnique<K, V> extends AbstractBaseNUniqueOperatorMap<K, V> implements Unifier<HashMap<K, ArrayList<HashMap<V,Integer>>>>
 {
   @OutputPortFieldAnnotation(name = "top")
-  public final transient DefaultOutputPort<HashMap<K, ArrayList<HashMap<V,Integer>>>> top = new DefaultOutputPort<HashMap<K, ArrayList<HashMap<V,Integer>>>>();
+  public final transient DefaultOutputPort<HashMap<K, ArrayList<HashMap<V,Integer>>>> top = new DefaultOutputPort<HashMap<K, ArrayList<HashMap<V,Integer>>>>()
+  {
+    @Override
+    public Unifier<HashMap<K, ArrayList<HashMap<V, Integer>>>> getUnifier()
+    {
+      TopNUnique<K, V> unifier = new TopNUnique<K, V>();
+      unifier.setN(getN());
+      return unifier;
+    }
+  };
 
   /**
    * returns true
@@ -65,4 +76,20 @@ public class TopNUnique<K, V> extends AbstractBaseNUniqueOperatorMap<K, V>
   {
     top.emit(tuple);
   }
+
+  /**
+   * Merges the top N values of a partition, adding the counts of values found in several partitions
+   * @param tuple
+   */
+  @Override
+  public void process(HashMap<K, ArrayList<HashMap<V, Integer>>> tuple)
+  {
+    for (Map.Entry<K, ArrayList<HashMap<V, Integer>>> entry : tuple.entrySet()) {
+      for (HashMap<V, Integer> values : entry.getValue()) {
+        for (Map.Entry<V, Integer> value : values.entrySet()) {
+          offer(entry.getKey(), value.getKey(), value.getValue());
+        }
+      }
+    }
+  }
 }
@@ -16,9 +16,6 @@
 package com.datatorrent.lib.algo;
 
 import java.util.HashMap;
-import java.util.Map;
-
-import org.apache.commons.lang.mutable.MutableInt;
 
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
@@ -73,14 +70,11 @@ public class UniqueCounter<K> extends BaseUniqueKeyCounter<K>
   @Override
   public void endWindow()
   {
-    HashMap<K, Integer> tuple = null;
-    for (Map.Entry<K, MutableInt> e: map.entrySet()) {
-      if (tuple == null) {
-        tuple = new HashMap<K, Integer>();
+    if (!map.isEmpty()) {
+      HashMap<K, Integer> tuple = new HashMap<K, Integer>(map.size() * 2);
+      for (int i = 0; i < map.size(); i++) {
+        tuple.put(map.getKey(i), (int)map.get(i));
       }
-      tuple.put(e.getKey(), e.getValue().toInteger());
-    }
-    if (tuple != null) {
       count.emit(tuple);
     }
     map.clear();
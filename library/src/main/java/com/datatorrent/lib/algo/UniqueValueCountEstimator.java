@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.BaseKeyValueOperator;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Estimates the no. of unique values of every key within a window with a {@link HyperLogLog} sketch per key. <p>
+ * Unlike {@link UniqueValueCount} the values are not kept nor shipped to the unifier, so memory per key is bounded by
+ * the precision. <br>
+ * <br>
+ * <b>StateFull : Yes, </b> tuples are aggregated over application window. <br>
+ * <b>Partitions : Yes, </b> the data port is partitioned by key and the sketches are unified per key at the sketch
+ * port. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects KeyValPair&lt;K,Object&gt;<br>
+ * <b>sketches</b>: expects KeyValPair&lt;K,HyperLogLog&gt; sketches to merge<br>
+ * <b>count</b>: emits KeyValPair&lt;K,Long&gt;, the estimated no. of unique values of a key<br>
+ * <b>sketch</b>: emits KeyValPair&lt;K,HyperLogLog&gt;, the sketch of a key<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>precision</b>: no. of bits of the register index of the sketches; the relative standard error is
+ * 1.04 / sqrt(2^precision). Default is 10 (3.3% error and 1KB per key).<br>
+ * <b>relativeError</b>: sets the precision from the desired relative standard error.<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public class UniqueValueCountEstimator<K> extends BaseKeyValueOperator<K, Object>
+{
+  private int precision = 10;
+  protected HashMap<K, HyperLogLog> windowSketches = new HashMap<K, HyperLogLog>();
+
+  @InputPortFieldAnnotation(name = "data", optional = true)
+  public final transient DefaultInputPort<KeyValPair<K, Object>> data = new DefaultInputPort<KeyValPair<K, Object>>()
+  {
+    /**
+     * Adds the value to the sketch of the key.
+     */
+    @Override
+    public void process(KeyValPair<K, Object> tuple)
+    {
+      getWindowSketch(tuple.getKey()).add(tuple.getValue());
+    }
+
+    /**
+     * Stream codec used for partitioning.
+     */
+    @Override
+    public Class<? extends StreamCodec<KeyValPair<K, Object>>> getStreamCodec()
+    {
+      return getKeyValPairStreamCodec();
+    }
+  };
+
+  @InputPortFieldAnnotation(name = "sketches", optional = true)
+  public final transient DefaultInputPort<KeyValPair<K, HyperLogLog>> sketches = new DefaultInputPort<KeyValPair<K, HyperLogLog>>()
+  {
+    /**
+     * Merges the sketch into the sketch of the key.
+     */
+    @Override
+    public void process(KeyValPair<K, HyperLogLog> tuple)
+    {
+      getWindowSketch(tuple.getKey()).merge(tuple.getValue());
+    }
+  };
+
+  @OutputPortFieldAnnotation(name = "count", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, Long>> count = new DefaultOutputPort<KeyValPair<K, Long>>();
+
+  @OutputPortFieldAnnotation(name = "sketch", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, HyperLogLog>> sketch = new DefaultOutputPort<KeyValPair<K, HyperLogLog>>()
+  {
+    @Override
+    public Unifier<KeyValPair<K, HyperLogLog>> getUnifier()
+    {
+      return new HyperLogLogKeyValUnifier<K>();
+    }
+  };
+
+  private HyperLogLog getWindowSketch(K key)
+  {
+    HyperLogLog keySketch = windowSketches.get(key);
+    if (keySketch == null) {
+      keySketch = new HyperLogLog(precision);
+      windowSketches.put(cloneKey(key), keySketch);
+    }
+    return keySketch;
+  }
+
+  public int getPrecision()
+  {
+    return precision;
+  }
+
+  public void setPrecision(int precision)
+  {
+    this.precision = precision;
+  }
+
+  /**
+   * @param relativeError desired relative standard error of the counts.
+   */
+  public void setRelativeError(double relativeError)
+  {
+    precision = HyperLogLog.precisionFor(relativeError);
+  }
+
+  /**
+   * Emits the estimated count and the sketch of every key.
+   */
+  @Override
+  public void endWindow()
+  {
+    for (Map.Entry<K, HyperLogLog> e : windowSketches.entrySet()) {
+      count.emit(new KeyValPair<K, Long>(e.getKey(), e.getValue().cardinality()));
+      sketch.emit(new KeyValPair<K, HyperLogLog>(e.getKey(), e.getValue()));
+    }
+    windowSketches.clear();
+  }
+
+  /**
+   * Unifier which merges the sketches of a key from all the partitions and emits one sketch per key at the end of
+   * window.
+   *
+   * @param <K> key type
+   */
+  public static class HyperLogLogKeyValUnifier<K> extends BaseOperator implements Unifier<KeyValPair<K, HyperLogLog>>
+  {
+    private HashMap<K, HyperLogLog> mergedTuple = new HashMap<K, HyperLogLog>();
+    public final transient DefaultOutputPort<KeyValPair<K, HyperLogLog>> mergedport = new DefaultOutputPort<KeyValPair<K, HyperLogLog>>();
+
+    @Override
+    public void process(KeyValPair<K, HyperLogLog> tuple)
+    {
+      HyperLogLog keySketch = mergedTuple.get(tuple.getKey());
+      if (keySketch == null) {
+        keySketch = new HyperLogLog(tuple.getValue().getPrecision());
+        mergedTuple.put(tuple.getKey(), keySketch);
+      }
+      keySketch.merge(tuple.getValue());
+    }
+
+    @Override
+    public void endWindow()
+    {
+      for (Map.Entry<K, HyperLogLog> e : mergedTuple.entrySet()) {
+        mergedport.emit(new KeyValPair<K, HyperLogLog>(e.getKey(), e.getValue()));
+      }
+      mergedTuple.clear();
+    }
+  }
+}
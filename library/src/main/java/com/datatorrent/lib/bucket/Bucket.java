@@ -21,7 +21,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Maps;
 
 /**
  * <p>
@@ -51,10 +50,17 @@ public class Bucket<T extends BucketEvent>
   public final transient long bucketKey;
   private transient long lastUpdateTime;
   private transient boolean isDataOnDiskLoaded;
+  private transient final BucketManager.EventKeyType eventKeyType;
 
   Bucket(long bucketKey)
+  {
+    this(bucketKey, BucketManager.EventKeyType.OBJECT);
+  }
+
+  Bucket(long bucketKey, @Nonnull BucketManager.EventKeyType eventKeyType)
   {
     this.bucketKey = Preconditions.checkNotNull(bucketKey, "bucket key");
+    this.eventKeyType = Preconditions.checkNotNull(eventKeyType, "event key type");
     this.isDataOnDiskLoaded = false;
   }
 
@@ -72,7 +78,7 @@ public class Bucket<T extends BucketEvent>
   void transferDataFromMemoryToStore()
   {
     if (writtenEvents == null) {
-      writtenEvents = Maps.newHashMap();
+      writtenEvents = eventKeyType.newBucketData();
     }
     writtenEvents.putAll(unwrittenEvents);
     unwrittenEvents = null;
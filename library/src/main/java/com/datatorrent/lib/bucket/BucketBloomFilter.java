@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Arrays;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * A Bloom filter of the event keys of a bucket.<br/>
+ * It answers whether an event key is definitely absent from the bucket or may be present. The filter remembers the
+ * key of the bucket it was created for because a bucket index is re-used by a later bucket when the earlier one
+ * expires.
+ * </p>
+ *
+ * <p>
+ * <code>long</code>, <code>int</code> and <code>byte[]</code> keys are hashed by value; other keys by their
+ * {@link Object#hashCode()} which is required to be consistent across jvms.
+ * </p>
+ */
+public class BucketBloomFilter
+{
+  private final long bucketKey;
+  private final int noOfHashFunctions;
+  private final long[] bits;
+
+  private BucketBloomFilter(long bucketKey, int noOfHashFunctions, long[] bits)
+  {
+    this.bucketKey = bucketKey;
+    this.noOfHashFunctions = noOfHashFunctions;
+    this.bits = bits;
+  }
+
+  /**
+   * Creates a filter sized for the expected no. of keys and false positive probability.
+   *
+   * @param bucketKey                key of the bucket.
+   * @param expectedNoOfKeys         expected no. of keys in the bucket.
+   * @param falsePositiveProbability desired false positive probability when the filter has the expected no. of keys.
+   */
+  public BucketBloomFilter(long bucketKey, int expectedNoOfKeys, double falsePositiveProbability)
+  {
+    Preconditions.checkArgument(expectedNoOfKeys > 0, "expected no. of keys %s", expectedNoOfKeys);
+    Preconditions.checkArgument(falsePositiveProbability > 0 && falsePositiveProbability < 1,
+                                "false positive probability %s", falsePositiveProbability);
+    this.bucketKey = bucketKey;
+    long noOfBits = (long) (-expectedNoOfKeys * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+    noOfBits = Math.max(64, noOfBits);
+    this.bits = new long[(int) ((noOfBits + 63) / 64)];
+    this.noOfHashFunctions = Math.max(1, (int) Math.round((double) noOfBits / expectedNoOfKeys * Math.log(2)));
+  }
+
+  public long getBucketKey()
+  {
+    return bucketKey;
+  }
+
+  private static long hash(Object key)
+  {
+    long hash;
+    if (key instanceof Long || key instanceof Integer) {
+      hash = ((Number) key).longValue();
+    }
+    else if (key instanceof byte[]) {
+      hash = Arrays.hashCode((byte[]) key);
+    }
+    else {
+      hash = key.hashCode();
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Adds the event key to the filter.
+   *
+   * @param key event key.
+   */
+  public void put(Object key)
+  {
+    long hash = hash(key);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    long noOfBits = (long) bits.length * 64;
+    for (int i = 1; i <= noOfHashFunctions; i++) {
+      long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % noOfBits;
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  /**
+   * @param key event key.
+   * @return false if the key was definitely never put; true if it might have been put.
+   */
+  public boolean mightContain(Object key)
+  {
+    long hash = hash(key);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    long noOfBits = (long) bits.length * 64;
+    for (int i = 1; i <= noOfHashFunctions; i++) {
+      long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % noOfBits;
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds all the keys of the other filter to this one. Both filters should belong to the same bucket and have the
+   * same size.
+   *
+   * @param other filter to merge.
+   */
+  public void merge(BucketBloomFilter other)
+  {
+    Preconditions.checkArgument(other.bucketKey == bucketKey, "bucket keys %s %s", bucketKey, other.bucketKey);
+    Preconditions.checkArgument(other.bits.length == bits.length && other.noOfHashFunctions == noOfHashFunctions,
+                                "incompatible filters");
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] |= other.bits[i];
+    }
+  }
+
+  /**
+   * Writes the filter to the output.
+   *
+   * @param output output.
+   */
+  public void writeTo(Output output)
+  {
+    output.writeLong(bucketKey);
+    output.writeInt(noOfHashFunctions, true);
+    output.writeInt(bits.length, true);
+    output.writeLongs(bits);
+  }
+
+  /**
+   * Reads a filter which was written by {@link #writeTo(Output)}.
+   *
+   * @param input input.
+   * @return filter.
+   */
+  public static BucketBloomFilter readFrom(Input input)
+  {
+    long bucketKey = input.readLong();
+    int noOfHashFunctions = input.readInt(true);
+    int length = input.readInt(true);
+    return new BucketBloomFilter(bucketKey, noOfHashFunctions, input.readLongs(length));
+  }
+}
@@ -15,11 +15,10 @@
  */
 package com.datatorrent.lib.bucket;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -33,6 +32,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.Sets;
 
+import com.datatorrent.api.CheckpointListener;
 import com.datatorrent.api.Operator;
 
 import com.datatorrent.common.util.DTThrowable;
@@ -69,12 +69,27 @@ import com.datatorrent.common.util.DTThrowable;
  * keep the event key. This reduces memory usage and is useful for operators like De-duplicator which are interested only
  * in the event key.
  * </li>
+ * <li>
+ * {@link #eventKeyType}: type of event keys. When only event keys are written and they are <code>long</code>,
+ * <code>int</code> or <code>byte[]</code>, the buckets keep them in specialized hash tables which do not box the keys
+ * or create an entry object per key. Default is {@link EventKeyType#OBJECT}.
+ * </li>
+ * <li>
+ * {@link #useBloomFilters}: when this is true, the manager keeps a bloom filter of the event keys of every bucket in
+ * memory. The filters are persisted by a {@link BucketStoreWithBloomFilter} and are sized by
+ * {@link #bloomFilterExpectedNoOfKeys} and {@link #bloomFilterFalsePositiveProbability}. An operator can query them
+ * through {@link #mightContainEvent(long, BucketEvent)} to find out if an event is definitely new without loading its
+ * bucket. The filters should be used from the first run as buckets which were stored without a filter are considered
+ * empty. The filters which changed are persisted when a window is check-pointed and not in every window.
+ * </li>
  * </ol>
  * </p>
  *
  * <p>
- * The manager has a dedicated thread running to fetch buckets from {@link BucketStore}. This thread operates on a queue of
- * {@link BucketManager.LoadCommand}.<br/>
+ * The manager has {@link #noOfLoaderThreads} dedicated threads running to fetch buckets from {@link BucketStore}. These
+ * threads operate on a queue of {@link BucketManager.LoadCommand}. A bucket which is already queued or being loaded is not
+ * queued again. Buckets at different indices are fetched in parallel while the book-keeping of buckets in memory is
+ * serialized.<br/>
  * Loading of buckets and saving new bucket events to storage is triggered by the Operator. Typically an Operator would:
  * <ol>
  * <li>invoke {@link #getBucket(long)}.</li>
@@ -86,7 +101,9 @@ import com.datatorrent.common.util.DTThrowable;
  * When the manager has loaded an event it informs {@link BucketManager.Listener} that a bucket is loaded by
  * calling {@link BucketManager.Listener#bucketLoaded(long)}.<br/>
  * If there were some buckets that were off-loaded during the process {@link BucketManager.Listener#bucketOffLoaded(long)}
- * callback is triggered.
+ * callback is triggered.<br/>
+ * The loader threads queue these callbacks and the listener is called on the operator thread when the operator
+ * invokes {@link #notifyListener()} or {@link #blockUntilAllBucketsLoaded()}.
  * </li>
  * <li>
  * The operator could then add new events to a bucket by invoking {@link #newEvent(long, BucketEvent)}. These events are
@@ -117,8 +134,16 @@ public class BucketManager<T extends BucketEvent> implements Runnable
   private int maxNoOfBucketsInMemory;
   @Min(0)
   private long millisPreventingBucketEviction;
+  @Min(1)
+  private int noOfLoaderThreads;
   private boolean writeEventKeysOnly;
   @Nonnull
+  private EventKeyType eventKeyType;
+  private boolean useBloomFilters;
+  @Min(1)
+  private int bloomFilterExpectedNoOfKeys;
+  private double bloomFilterFalsePositiveProbability;
+  @Nonnull
   private final Map<Long, Map<Object, T>> unwrittenBucketEvents;
   private long committedWindow;
 
@@ -130,11 +155,25 @@ public class BucketManager<T extends BucketEvent> implements Runnable
   @Nonnull
   protected transient Set<Long> knownBucketKeys;
   protected transient Listener listener;
+  //Indexed by bucket index. Null when bloom filters are not used.
+  protected transient BucketBloomFilter[] bloomFilters;
   @Nonnull
-  private transient final BlockingQueue<LoadCommand> eventQueue;
+  private transient final Set<Integer> dirtyBloomFilters;
   @Nonnull
-  private transient final Thread eventServiceThread;
+  private transient final BlockingQueue<LoadCommand> eventQueue;
+  private transient Thread[] eventServiceThreads;
   private transient volatile boolean running;
+  private transient volatile Throwable loadFailure;
+  @Nonnull
+  private transient final Set<Long> pendingBucketKeys;
+  //Callbacks of the listener which are delivered on the operator thread.
+  @Nonnull
+  private transient final Queue<Notification> notifications;
+  private transient Object[] bucketSlotLocks;
+  //Deletes the store data of expired buckets found by the bloom filters off the operator thread.
+  private transient ExecutorService deletionService;
+  @Nonnull
+  private transient final Map<Integer, Future<?>> pendingDeletions;
   @Nonnull
   private transient final Lock lock;
   @Nonnull
@@ -143,8 +182,11 @@ public class BucketManager<T extends BucketEvent> implements Runnable
   BucketManager()
   {
     eventQueue = new LinkedBlockingQueue<LoadCommand>();
-    eventServiceThread = new Thread(this, "BucketManager");
-    knownBucketKeys = Sets.newHashSet();
+    pendingBucketKeys = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    notifications = new ConcurrentLinkedQueue<Notification>();
+    knownBucketKeys = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    dirtyBloomFilters = Sets.newHashSet();
+    pendingDeletions = Maps.newConcurrentMap();
     unwrittenBucketEvents = Maps.newHashMap();
     bucketHeap = MinMaxPriorityQueue.orderedBy(new Comparator<Bucket<T>>()
     {
@@ -163,6 +205,10 @@ public class BucketManager<T extends BucketEvent> implements Runnable
     lock = new Lock();
     maxNoOfBucketsInMemory = this.noOfBucketsInMemory + 10;
     committedWindow = -1;
+    noOfLoaderThreads = 1;
+    eventKeyType = EventKeyType.OBJECT;
+    bloomFilterExpectedNoOfKeys = 100000;
+    bloomFilterFalsePositiveProbability = 0.01;
   }
 
   /**
@@ -207,79 +253,114 @@ public class BucketManager<T extends BucketEvent> implements Runnable
   @Override
   public void run()
   {
-    running = true;
     try {
       while (running) {
         LoadCommand item = eventQueue.poll(1, TimeUnit.SECONDS);
         if (item != null) {
-          if (item.bucketKey == -1) {
+          try {
+            loadBucket(item.bucketKey);
+          }
+          catch (Throwable cause) {
+            //the failure is visible before the bucket stops being pending
+            loadFailure = cause;
+            DTThrowable.rethrow(cause);
+          }
+          finally {
+            pendingBucketKeys.remove(item.bucketKey);
             synchronized (lock) {
               lock.notifyAll();
             }
           }
-          else {
-            int bucketIdx = (int) item.bucketKey % noOfBuckets;
-            Map<Object, T> bucketDataInStore = bucketStore.fetchBucket(bucketIdx);
+        }
+      }
+    }
+    catch (Throwable cause) {
+      running = false;
+      loadFailure = cause;
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+      DTThrowable.rethrow(cause);
+    }
+  }
 
-            if (buckets[bucketIdx] != null && buckets[bucketIdx].bucketKey != item.bucketKey) {
-              //Delete the old bucket in memory at that index.
-              Bucket<T> oldBucket = buckets[bucketIdx];
+  private void loadBucket(long bucketKey) throws Exception
+  {
+    int bucketIdx = (int) (bucketKey % noOfBuckets);
+
+    //Loads of different bucket slots proceed in parallel; loads of the same slot are serialized.
+    synchronized (bucketSlotLocks[bucketIdx % bucketSlotLocks.length]) {
+      awaitDeletion(bucketIdx);
+      Map<Object, T> bucketDataInStore = bucketStore.fetchBucket(bucketIdx);
+      if (eventKeyType != EventKeyType.OBJECT) {
+        Map<Object, T> bucketData = eventKeyType.newBucketData();
+        bucketData.putAll(bucketDataInStore);
+        bucketDataInStore = bucketData;
+      }
 
-              unwrittenBucketEvents.remove(oldBucket.bucketKey);
-              knownBucketKeys.remove(oldBucket.bucketKey);
-              buckets[bucketIdx] = null;
+      boolean deleteExpiredBucket = false;
+      synchronized (bucketHeap) {
+        Bucket<T> oldBucket = buckets[bucketIdx];
+        if (oldBucket != null && oldBucket.bucketKey > bucketKey) {
+          //The requested bucket expired while it was loaded; the newer bucket at that index is kept.
+          notifications.add(new Notification(bucketKey, true));
+          return;
+        }
+        if (oldBucket != null && oldBucket.bucketKey < bucketKey) {
+          //Delete the expired bucket in memory at that index.
+          unwrittenBucketEvents.remove(oldBucket.bucketKey);
+          knownBucketKeys.remove(oldBucket.bucketKey);
+          buckets[bucketIdx] = null;
+
+          notifications.add(new Notification(oldBucket.bucketKey, false));
+          deleteExpiredBucket = true;
+        }
 
-              listener.bucketOffLoaded(oldBucket.bucketKey);
-              bucketStore.deleteBucket(bucketIdx);
-              //logger.debug("deleted bucket {}", oldBucket.bucketKey);
+        //Delete the least recently used bucket in memory if the noOfBucketsInMemory threshold is reached.
+        if (knownBucketKeys.size() + 1 > noOfBucketsInMemory) {
+          for (long key : knownBucketKeys) {
+            int idx = (int) key % noOfBuckets;
+            if (buckets[idx] != null) {
+              bucketHeap.add(buckets[idx]);
             }
-
-            //Delete the least recently used bucket in memory if the noOfBucketsInMemory threshold is reached.
-            if (knownBucketKeys.size() + 1 > noOfBucketsInMemory) {
-              for (long key : knownBucketKeys) {
-                int idx = (int) key % noOfBuckets;
-                bucketHeap.add(buckets[idx]);
-              }
-              int overFlow = knownBucketKeys.size() + 1 - noOfBucketsInMemory;
-              while (overFlow >= 0) {
-                Bucket<T> lruBucket = bucketHeap.poll();
-                if (lruBucket == null) {
-                  break;
-                }
-                if (unwrittenBucketEvents.containsKey(lruBucket.bucketKey)) {
-                  break;
-                }
-                if (((System.currentTimeMillis() - lruBucket.lastUpdateTime()) < millisPreventingBucketEviction) &&
-                  ((knownBucketKeys.size() + 1) <= maxNoOfBucketsInMemory)) {
-                  break;
-                }
-                knownBucketKeys.remove(lruBucket.bucketKey);
-                int lruIdx = (int) lruBucket.bucketKey % noOfBuckets;
-                buckets[lruIdx] = null;
-                listener.bucketOffLoaded(lruBucket.bucketKey);
-                overFlow--;
-                //logger.debug("evicted bucket {}", lruBucket.bucketKey);
-              }
+          }
+          int overFlow = knownBucketKeys.size() + 1 - noOfBucketsInMemory;
+          while (overFlow >= 0) {
+            Bucket<T> lruBucket = bucketHeap.poll();
+            if (lruBucket == null) {
+              break;
             }
-
-            Bucket<T> bucket = buckets[bucketIdx];
-            if (bucket == null) {
-              bucket = new Bucket<T>(item.bucketKey);
-              buckets[bucketIdx] = bucket;
+            if (unwrittenBucketEvents.containsKey(lruBucket.bucketKey)) {
+              break;
             }
-            bucket.setWrittenEvents(bucketDataInStore);
-            bucket.updateAccessTime();
-            knownBucketKeys.add(item.bucketKey);
-            listener.bucketLoaded(item.bucketKey);
-
-            bucketHeap.clear();
+            if (((System.currentTimeMillis() - lruBucket.lastUpdateTime()) < millisPreventingBucketEviction) &&
+              ((knownBucketKeys.size() + 1) <= maxNoOfBucketsInMemory)) {
+              break;
+            }
+            knownBucketKeys.remove(lruBucket.bucketKey);
+            int lruIdx = (int) lruBucket.bucketKey % noOfBuckets;
+            buckets[lruIdx] = null;
+            notifications.add(new Notification(lruBucket.bucketKey, false));
+            overFlow--;
+            //logger.debug("evicted bucket {}", lruBucket.bucketKey);
           }
         }
+
+        Bucket<T> bucket = buckets[bucketIdx];
+        if (bucket == null) {
+          bucket = new Bucket<T>(bucketKey, eventKeyType);
+          buckets[bucketIdx] = bucket;
+        }
+        bucket.setWrittenEvents(bucketDataInStore);
+        bucket.updateAccessTime();
+        knownBucketKeys.add(bucketKey);
+        bucketHeap.clear();
       }
-    }
-    catch (Throwable cause) {
-      running = false;
-      DTThrowable.rethrow(cause);
+      if (deleteExpiredBucket) {
+        //The store is written at that index only by the holder of the slot lock.
+        bucketStore.deleteBucket(bucketIdx);
+      }
+      notifications.add(new Notification(bucketKey, true));
     }
   }
 
@@ -293,22 +374,56 @@ public class BucketManager<T extends BucketEvent> implements Runnable
   @SuppressWarnings("unchecked")
   public void startService(BucketStore<T> bucketStore, Listener listener) throws Exception
   {
+    Preconditions.checkArgument(writeEventKeysOnly || eventKeyType == EventKeyType.OBJECT,
+                                "event key type %s requires writing event keys only", eventKeyType);
     buckets = (Bucket<T>[]) Array.newInstance(Bucket.class, noOfBuckets);
     this.listener = Preconditions.checkNotNull(listener, "storageHandler");
     this.bucketStore = Preconditions.checkNotNull(bucketStore, "bucket store");
     this.bucketStore.setup(noOfBuckets, committedWindow, writeEventKeysOnly);
+    if (useBloomFilters) {
+      Preconditions.checkArgument(bucketStore instanceof BucketStoreWithBloomFilter,
+                                  "bloom filters need a store which implements %s", BucketStoreWithBloomFilter.class);
+      bloomFilters = new BucketBloomFilter[noOfBuckets];
+      deletionService = Executors.newSingleThreadExecutor(new ThreadFactory()
+      {
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable)
+        {
+          Thread thread = new Thread(runnable, "BucketManagerDeletion");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      for (int bucketIdx = 0; bucketIdx < noOfBuckets; bucketIdx++) {
+        bloomFilters[bucketIdx] = ((BucketStoreWithBloomFilter<T>) bucketStore).fetchBloomFilter(bucketIdx);
+      }
+    }
 
     //Create buckets for unwritten events which were check-pointed
     for (long bucketKey : unwrittenBucketEvents.keySet()) {
-      Bucket<T> startBucket = new Bucket<T>(bucketKey);
+      Bucket<T> startBucket = new Bucket<T>(bucketKey, eventKeyType);
       startBucket.setUnwrittenEvents(unwrittenBucketEvents.get(bucketKey));
 
       int idx = (int) bucketKey % noOfBuckets;
       buckets[idx] = startBucket;
       knownBucketKeys.add(bucketKey);
+      if (bloomFilters != null) {
+        for (Object eventKey : unwrittenBucketEvents.get(bucketKey).keySet()) {
+          updateBloomFilter(idx, bucketKey, eventKey);
+        }
+      }
     }
 
-    eventServiceThread.start();
+    bucketSlotLocks = new Object[Math.min(noOfBuckets, noOfLoaderThreads * 16)];
+    for (int i = 0; i < bucketSlotLocks.length; i++) {
+      bucketSlotLocks[i] = new Object();
+    }
+    running = true;
+    eventServiceThreads = new Thread[noOfLoaderThreads];
+    for (int i = 0; i < noOfLoaderThreads; i++) {
+      eventServiceThreads[i] = new Thread(this, "BucketManager-" + i);
+      eventServiceThreads[i].start();
+    }
   }
 
   /**
@@ -317,6 +432,15 @@ public class BucketManager<T extends BucketEvent> implements Runnable
   public void shutdownService()
   {
     running = false;
+    if (deletionService != null) {
+      deletionService.shutdown();
+      try {
+        deletionService.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
     bucketStore.teardown();
   }
 
@@ -350,6 +474,19 @@ public class BucketManager<T extends BucketEvent> implements Runnable
     return null;
   }
 
+  /**
+   * Finds whether a bucket has expired, which is when a bucket with a greater key is in memory at its index. An expired
+   * bucket is not loaded.
+   *
+   * @param bucketKey key of the bucket.
+   * @return true if the bucket has expired; false otherwise.
+   */
+  public boolean isExpired(long bucketKey)
+  {
+    Bucket<T> bucket = buckets[(int) (bucketKey % noOfBuckets)];
+    return bucket != null && bucket.bucketKey > bucketKey;
+  }
+
   /**
    * Adds the event to the un-written section of the bucket corresponding to the bucket key.
    *
@@ -358,7 +495,15 @@ public class BucketManager<T extends BucketEvent> implements Runnable
    */
   public void newEvent(long bucketKey, T event)
   {
-    Map<Object, T> unwritten = unwrittenBucketEvents.get(bucketKey);
+    int bucketIdx = (int) (bucketKey % noOfBuckets);
+    if (bloomFilters != null) {
+      updateBloomFilter(bucketIdx, bucketKey, event.getEventKey());
+    }
+    Map<Object, T> unwritten;
+    //the loader threads remove the events of expired buckets
+    synchronized (bucketHeap) {
+      unwritten = unwrittenBucketEvents.get(bucketKey);
+    }
     if (unwritten != null) {
       if (writeEventKeysOnly) {
         unwritten.put(event.getEventKey(), null);
@@ -369,49 +514,223 @@ public class BucketManager<T extends BucketEvent> implements Runnable
 
       return;
     }
-    unwritten = Maps.newHashMap();
+    unwritten = eventKeyType.newBucketData();
     if (writeEventKeysOnly) {
       unwritten.put(event.getEventKey(), null);
     }
     else {
       unwritten.put(event.getEventKey(), event);
     }
-    unwrittenBucketEvents.put(bucketKey, unwritten);
-    buckets[(int) (bucketKey % noOfBuckets)].setUnwrittenEvents(unwritten);
+
+    Bucket<T> bucket;
+    synchronized (bucketHeap) {
+      unwrittenBucketEvents.put(bucketKey, unwritten);
+      bucket = buckets[bucketIdx];
+      if (bucket == null || bucket.bucketKey != bucketKey) {
+        //The event was found to be new without loading the bucket.
+        if (bucket != null) {
+          offloadExpiredBucket(bucket);
+        }
+        bucket = new Bucket<T>(bucketKey, eventKeyType);
+        bucket.updateAccessTime();
+        buckets[bucketIdx] = bucket;
+        knownBucketKeys.add(bucketKey);
+      }
+    }
+    bucket.setUnwrittenEvents(unwritten);
+  }
+
+  private void offloadExpiredBucket(Bucket<T> oldBucket)
+  {
+    unwrittenBucketEvents.remove(oldBucket.bucketKey);
+    knownBucketKeys.remove(oldBucket.bucketKey);
+    buckets[(int) (oldBucket.bucketKey % noOfBuckets)] = null;
+    notifications.add(new Notification(oldBucket.bucketKey, false));
+  }
+
+  private void updateBloomFilter(int bucketIdx, long bucketKey, Object eventKey)
+  {
+    BucketBloomFilter filter = bloomFilters[bucketIdx];
+    if (filter == null || filter.getBucketKey() < bucketKey) {
+      if (filter != null) {
+        //the data in store belongs to an expired bucket at the same index.
+        deleteBucketInBackground(bucketIdx);
+      }
+      filter = new BucketBloomFilter(bucketKey, bloomFilterExpectedNoOfKeys, bloomFilterFalsePositiveProbability);
+      bloomFilters[bucketIdx] = filter;
+    }
+    if (filter.getBucketKey() == bucketKey) {
+      filter.put(eventKey);
+      dirtyBloomFilters.add(bucketIdx);
+    }
+  }
+
+  /**
+   * Deletes the data of an expired bucket from the store in the background. The store is not accessed at the index
+   * until the deletion is over.
+   */
+  private void deleteBucketInBackground(final int bucketIdx)
+  {
+    pendingDeletions.put(bucketIdx, deletionService.submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws IOException
+      {
+        bucketStore.deleteBucket(bucketIdx);
+        return null;
+      }
+    }));
+  }
+
+  /**
+   * Waits for the pending deletion of the bucket at the index to finish.
+   */
+  private void awaitDeletion(int bucketIdx) throws InterruptedException
+  {
+    Future<?> deletion = pendingDeletions.get(bucketIdx);
+    if (deletion != null) {
+      try {
+        deletion.get();
+      }
+      catch (ExecutionException e) {
+        DTThrowable.rethrow(e.getCause());
+      }
+      pendingDeletions.remove(bucketIdx, deletion);
+    }
+  }
+
+  /**
+   * Finds whether an event may be present in a bucket using the bloom filters. This does not require the bucket to be
+   * loaded.
+   *
+   * @param bucketKey key of the bucket.
+   * @param event     event.
+   * @return false if the event is definitely not present in the bucket; true if it may be present or bloom filters
+   *         are not used.
+   */
+  public boolean mightContainEvent(long bucketKey, T event)
+  {
+    if (bloomFilters == null) {
+      return true;
+    }
+    BucketBloomFilter filter = bloomFilters[(int) (bucketKey % noOfBuckets)];
+    if (filter == null || filter.getBucketKey() < bucketKey) {
+      return false;
+    }
+    return filter.getBucketKey() > bucketKey || filter.mightContain(event.getEventKey());
   }
 
   /**
    * Does end window operations which includes tracking the committed window and
-   * persisting all un-written events in the store.
+   * persisting all un-written events in the store.<br/>
+   * The un-written events are taken under the bucketHeap lock and stored after it is released. A bucket is stored while
+   * holding the lock of its slot, so that a loader does not evict it meanwhile.
    *
    * @param window window number.
    * @throws Exception
    */
   public void endWindow(long window) throws Exception
   {
-    for (Iterator<Map.Entry<Long, Map<Object, T>>> bucketIterator = unwrittenBucketEvents.entrySet().iterator();
-         bucketIterator.hasNext(); ) {
-      Map.Entry<Long, Map<Object, T>> entry = bucketIterator.next();
-      int bucketIdx = (int) (entry.getKey() % noOfBuckets);
-      Bucket<T> bucket = buckets[bucketIdx];
-      bucket.transferDataFromMemoryToStore();
-      bucketStore.storeBucketData(bucketIdx, window, entry.getValue());
-      bucketIterator.remove();
+    Map<Long, Map<Object, T>> unwritten;
+    synchronized (bucketHeap) {
+      unwritten = Maps.newHashMap(unwrittenBucketEvents);
+    }
+    for (Map.Entry<Long, Map<Object, T>> entry : unwritten.entrySet()) {
+      long bucketKey = entry.getKey();
+      int bucketIdx = (int) (bucketKey % noOfBuckets);
+      synchronized (bucketSlotLocks[bucketIdx % bucketSlotLocks.length]) {
+        Bucket<T> bucket;
+        synchronized (bucketHeap) {
+          if (unwrittenBucketEvents.get(bucketKey) != entry.getValue()) {
+            //a loader evicted the expired bucket
+            continue;
+          }
+          bucket = buckets[bucketIdx];
+        }
+        bucket.transferDataFromMemoryToStore();
+        awaitDeletion(bucketIdx);
+        bucketStore.storeBucketData(bucketIdx, window, entry.getValue());
+        synchronized (bucketHeap) {
+          unwrittenBucketEvents.remove(bucketKey);
+        }
+      }
     }
     committedWindow = window;
   }
 
   /**
-   * Blocks the calling thread until all the load requests of this window have been serviced.
+   * Persists the bloom filters which changed since the last checkpoint and informs the store that a window is
+   * check-pointed if the store is a {@link CheckpointListener}.<br/>
+   * The filters are stored as of the check-pointed window, so after a failure the filters of the window from which the
+   * operator is restored are found in the store.
+   *
+   * @param window check-pointed window.
+   */
+  public void checkpointed(long window)
+  {
+    if (!dirtyBloomFilters.isEmpty()) {
+      try {
+        for (int bucketIdx : dirtyBloomFilters) {
+          awaitDeletion(bucketIdx);
+          ((BucketStoreWithBloomFilter<T>) bucketStore).storeBloomFilter(bucketIdx, window, bloomFilters[bucketIdx]);
+        }
+      }
+      catch (Throwable cause) {
+        DTThrowable.rethrow(cause);
+      }
+      dirtyBloomFilters.clear();
+    }
+    if (bucketStore instanceof CheckpointListener) {
+      ((CheckpointListener) bucketStore).checkpointed(window);
+    }
+  }
+
+  /**
+   * Informs the store that a window is committed if the store is a {@link CheckpointListener}.
+   *
+   * @param window committed window.
+   */
+  public void committed(long window)
+  {
+    if (bucketStore instanceof CheckpointListener) {
+      ((CheckpointListener) bucketStore).committed(window);
+    }
+  }
+
+  /**
+   * Blocks the calling thread until all the load requests of this window have been serviced and informs the
+   * {@link Listener} of the loaded buckets.
    * @throws InterruptedException
    */
   public void blockUntilAllBucketsLoaded() throws InterruptedException
   {
     synchronized (lock) {
-      eventQueue.offer(LoadCommand.queryCommand);
-      lock.wait();
+      while (!pendingBucketKeys.isEmpty() && loadFailure == null) {
+        lock.wait();
+      }
+    }
+    if (loadFailure != null) {
+      DTThrowable.rethrow(loadFailure);
     }
     Preconditions.checkArgument(eventQueue.size() == 0, eventQueue);
+    notifyListener();
+  }
+
+  /**
+   * Informs the {@link Listener} of the buckets which were loaded or off-loaded since the last call. The listener is
+   * called on the calling thread, which should be the operator thread.
+   */
+  public void notifyListener()
+  {
+    Notification notification;
+    while ((notification = notifications.poll()) != null) {
+      if (notification.loaded) {
+        listener.bucketLoaded(notification.bucketKey);
+      }
+      else {
+        listener.bucketOffLoaded(notification.bucketKey);
+      }
+    }
   }
 
   /**
@@ -422,7 +741,10 @@ public class BucketManager<T extends BucketEvent> implements Runnable
    */
   public void loadBucketData(LoadCommand command)
   {
-    eventQueue.offer(command);
+    //A bucket which is being loaded is not requested again.
+    if (pendingBucketKeys.add(command.bucketKey)) {
+      eventQueue.offer(command);
+    }
   }
 
   /**
@@ -443,7 +765,7 @@ public class BucketManager<T extends BucketEvent> implements Runnable
 
           Map<Object, T> dest = partitionKeysToManagers.get(partition).unwrittenBucketEvents.get(unwrittenBucket.getKey());
           if (dest == null) {
-            dest = Maps.newHashMap();
+            dest = eventKeyType.newBucketData();
             partitionKeysToManagers.get(partition).unwrittenBucketEvents.put(unwrittenBucket.getKey(), dest);
           }
           if (writeEventKeysOnly) {
@@ -467,16 +789,139 @@ public class BucketManager<T extends BucketEvent> implements Runnable
     BucketManager<T> clone = new BucketManager<T>(writeEventKeysOnly, noOfBuckets, noOfBucketsInMemory,
       millisPreventingBucketEviction, maxNoOfBucketsInMemory);
     clone.committedWindow = committedWindow;
+    clone.noOfLoaderThreads = noOfLoaderThreads;
+    clone.eventKeyType = eventKeyType;
+    clone.useBloomFilters = useBloomFilters;
+    clone.bloomFilterExpectedNoOfKeys = bloomFilterExpectedNoOfKeys;
+    clone.bloomFilterFalsePositiveProbability = bloomFilterFalsePositiveProbability;
     return clone;
   }
 
+  /**
+   * Sets the no. of threads which load buckets from the store in parallel. Default is 1.
+   *
+   * @param noOfLoaderThreads no. of loader threads.
+   */
+  public void setNoOfLoaderThreads(int noOfLoaderThreads)
+  {
+    this.noOfLoaderThreads = noOfLoaderThreads;
+  }
+
+  public int getNoOfLoaderThreads()
+  {
+    return noOfLoaderThreads;
+  }
+
+  /**
+   * Sets whether a bloom filter of event keys is maintained for every bucket. This requires the store to be a
+   * {@link BucketStoreWithBloomFilter}.
+   *
+   * @param useBloomFilters true to maintain bloom filters; false otherwise.
+   */
+  public void setUseBloomFilters(boolean useBloomFilters)
+  {
+    this.useBloomFilters = useBloomFilters;
+  }
+
+  public boolean isUseBloomFilters()
+  {
+    return useBloomFilters;
+  }
+
+  /**
+   * Sets the expected no. of event keys in a bucket which is used to size the bloom filters. Default is 100000.
+   *
+   * @param bloomFilterExpectedNoOfKeys expected no. of keys in a bucket.
+   */
+  public void setBloomFilterExpectedNoOfKeys(int bloomFilterExpectedNoOfKeys)
+  {
+    this.bloomFilterExpectedNoOfKeys = bloomFilterExpectedNoOfKeys;
+  }
+
+  public int getBloomFilterExpectedNoOfKeys()
+  {
+    return bloomFilterExpectedNoOfKeys;
+  }
+
+  /**
+   * Sets the false positive probability of the bloom filters at the expected no. of keys. Default is 0.01.
+   *
+   * @param bloomFilterFalsePositiveProbability false positive probability.
+   */
+  public void setBloomFilterFalsePositiveProbability(double bloomFilterFalsePositiveProbability)
+  {
+    this.bloomFilterFalsePositiveProbability = bloomFilterFalsePositiveProbability;
+  }
+
+  public double getBloomFilterFalsePositiveProbability()
+  {
+    return bloomFilterFalsePositiveProbability;
+  }
+
+  /**
+   * Sets the type of event keys. A type other than {@link EventKeyType#OBJECT} can only be used when only event keys
+   * are written.
+   *
+   * @param eventKeyType type of event keys.
+   */
+  public void setEventKeyType(@Nonnull EventKeyType eventKeyType)
+  {
+    this.eventKeyType = Preconditions.checkNotNull(eventKeyType, "event key type");
+  }
+
+  public EventKeyType getEventKeyType()
+  {
+    return eventKeyType;
+  }
+
+  /**
+   * Type of event keys which determines how the events of a bucket are held in memory.
+   */
+  public static enum EventKeyType
+  {
+    /**
+     * Any key; events are kept in a hash map.
+     */
+    OBJECT
+      {
+        @Override
+        <T extends BucketEvent> Map<Object, T> newBucketData()
+        {
+          return Maps.newHashMap();
+        }
+      },
+    /**
+     * {@link Long} or {@link Integer} keys; keys are kept un-boxed.
+     */
+    LONG
+      {
+        @Override
+        <T extends BucketEvent> Map<Object, T> newBucketData()
+        {
+          return new LongKeyBucketData<T>();
+        }
+      },
+    /**
+     * <code>byte[]</code> keys which are compared by content.
+     */
+    BYTE_ARRAY
+      {
+        @Override
+        <T extends BucketEvent> Map<Object, T> newBucketData()
+        {
+          return new ByteArrayKeyBucketData<T>();
+        }
+      };
+
+    abstract <T extends BucketEvent> Map<Object, T> newBucketData();
+  }
+
   /**
    * Command issued to the {@link BucketManager} to load a bucket from persistent store.<br/>
    * Bucket key should be positive. Negative values are reserved by the storage manager.
    */
   public static class LoadCommand
   {
-    private static LoadCommand queryCommand = new LoadCommand(-1);
     final long bucketKey;
 
     public LoadCommand(long bucketKey)
@@ -513,6 +958,18 @@ public class BucketManager<T extends BucketEvent> implements Runnable
 
   }
 
+  private static class Notification
+  {
+    final long bucketKey;
+    final boolean loaded;
+
+    Notification(long bucketKey, boolean loaded)
+    {
+      this.bucketKey = bucketKey;
+      this.loaded = loaded;
+    }
+  }
+
   @SuppressWarnings("ClassMayBeInterface")
   private class Lock
   {
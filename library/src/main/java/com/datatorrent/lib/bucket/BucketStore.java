@@ -19,6 +19,9 @@ import java.io.IOException;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.datatorrent.api.Stats.OperatorStats.CustomStats;
 
 /**
  * Bucket store API.<br/>
@@ -59,7 +62,8 @@ public interface BucketStore<T extends BucketEvent>
   void deleteBucket(int bucketIdx) throws IOException;
 
   /**
-   * Fetches events of the bucket corresponding to the bucket index from the store.
+   * Fetches events of the bucket corresponding to the bucket index from the store.<br/>
+   * This may be invoked concurrently for different bucket indices by the loader threads of {@link BucketManager}.
    *
    * @param bucketIdx index of bucket.
    * @return bucket events
@@ -67,4 +71,12 @@ public interface BucketStore<T extends BucketEvent>
    */
   @Nonnull
   Map<Object, T> fetchBucket(int bucketIdx) throws Exception;
+
+  /**
+   * Stats of the store which the operator sends to the engine as its custom stats.
+   *
+   * @return stats of the store; null if the store does not track stats.
+   */
+  @Nullable
+  CustomStats getStats();
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link BucketStore} which also persists the Bloom filters of the buckets.
+ */
+public interface BucketStoreWithBloomFilter<T extends BucketEvent> extends BucketStore<T>
+{
+  /**
+   * Stores the Bloom filter of the bucket as of the given window. The filter contains all the keys of the bucket
+   * that were stored by the operator.
+   *
+   * @param bucketIdx index of bucket.
+   * @param window    window in which the filter was last updated.
+   * @param filter    Bloom filter of the bucket.
+   * @throws IOException
+   */
+  void storeBloomFilter(int bucketIdx, long window, BucketBloomFilter filter) throws IOException;
+
+  /**
+   * Fetches the Bloom filter of the bucket corresponding to the bucket index.
+   *
+   * @param bucketIdx index of bucket.
+   * @return Bloom filter of the bucket; null if no filter was stored for the bucket.
+   * @throws IOException
+   */
+  @Nullable
+  BucketBloomFilter fetchBloomFilter(int bucketIdx) throws IOException;
+}
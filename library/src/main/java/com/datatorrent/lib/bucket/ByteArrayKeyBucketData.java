@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.*;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Bucket data for events which have <code>byte[]</code> keys and are managed by a {@link BucketManager} which writes
+ * event keys only.
+ * </p>
+ *
+ * <p>
+ * The keys are kept in an open-addressing hash table with linear probing and are compared by their content, so there
+ * is no per-key entry object. Since only keys are kept, the value of every key is null.
+ * </p>
+ *
+ * @param <T> type of bucket event</T>
+ */
+public class ByteArrayKeyBucketData<T extends BucketEvent> extends AbstractMap<Object, T>
+{
+  private static final int DEFAULT_CAPACITY = 16;
+  private byte[][] keys;
+  private int size;
+
+  public ByteArrayKeyBucketData()
+  {
+    keys = new byte[DEFAULT_CAPACITY][];
+  }
+
+  private static int slot(byte[] key, int mask)
+  {
+    int hash = Arrays.hashCode(key);
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash & mask;
+  }
+
+  private int find(byte[] key)
+  {
+    int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    while (keys[slot] != null) {
+      if (Arrays.equals(keys[slot], key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Adds the key.
+   *
+   * @param key event key.
+   * @return true if the key was not present; false otherwise.
+   */
+  public boolean add(@Nonnull byte[] key)
+  {
+    if (find(key) >= 0) {
+      return false;
+    }
+    if ((size + 1) * 4 > keys.length * 3) {
+      resize(keys.length * 2);
+    }
+    insert(key);
+    size++;
+    return true;
+  }
+
+  private void insert(byte[] key)
+  {
+    int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    while (keys[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+  }
+
+  private void resize(int capacity)
+  {
+    byte[][] oldKeys = keys;
+    keys = new byte[capacity][];
+    for (byte[] key : oldKeys) {
+      if (key != null) {
+        insert(key);
+      }
+    }
+  }
+
+  private void removeAt(int slot)
+  {
+    int mask = keys.length - 1;
+    keys[slot] = null;
+    size--;
+    //shift back the following entries of the cluster
+    int next = (slot + 1) & mask;
+    while (keys[next] != null) {
+      byte[] key = keys[next];
+      keys[next] = null;
+      insert(key);
+      next = (next + 1) & mask;
+    }
+  }
+
+  @Override
+  public T put(Object key, T value)
+  {
+    Preconditions.checkArgument(value == null, "only event keys are stored");
+    add((byte[]) key);
+    return null;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return key instanceof byte[] && find((byte[]) key) >= 0;
+  }
+
+  @Override
+  public T get(Object key)
+  {
+    return null;
+  }
+
+  @Override
+  public T remove(Object key)
+  {
+    if (key instanceof byte[]) {
+      int slot = find((byte[]) key);
+      if (slot >= 0) {
+        removeAt(slot);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  @Override
+  public void clear()
+  {
+    Arrays.fill(keys, null);
+    size = 0;
+  }
+
+  @Override
+  @Nonnull
+  public Set<Entry<Object, T>> entrySet()
+  {
+    return new AbstractSet<Entry<Object, T>>()
+    {
+      @Override
+      @Nonnull
+      public Iterator<Entry<Object, T>> iterator()
+      {
+        return new Iterator<Entry<Object, T>>()
+        {
+          private final byte[][] snapshot = snapshot();
+          private int next = 0;
+          private int current = -1;
+
+          @Override
+          public boolean hasNext()
+          {
+            return next < snapshot.length;
+          }
+
+          @Override
+          public Entry<Object, T> next()
+          {
+            if (next >= snapshot.length) {
+              throw new NoSuchElementException();
+            }
+            current = next++;
+            return new SimpleImmutableEntry<Object, T>(snapshot[current], null);
+          }
+
+          @Override
+          public void remove()
+          {
+            Preconditions.checkState(current >= 0);
+            ByteArrayKeyBucketData.this.remove(snapshot[current]);
+            current = -1;
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Removal shifts entries of the table, therefore iteration works on a copy of the keys.
+   */
+  private byte[][] snapshot()
+  {
+    byte[][] snapshot = new byte[size][];
+    int count = 0;
+    for (byte[] key : keys) {
+      if (key != null) {
+        snapshot[count++] = key;
+      }
+    }
+    return snapshot;
+  }
+}
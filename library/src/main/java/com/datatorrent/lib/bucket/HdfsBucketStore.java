@@ -16,14 +16,19 @@
 package com.datatorrent.lib.bucket;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
@@ -40,20 +45,46 @@ import com.esotericsoftware.kryo.io.Output;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.CheckpointListener;
+import com.datatorrent.api.Stats.OperatorStats.CustomStats;
 
 /**
+ * <p>
  * {@link BucketStore} which works with HDFS.
+ * </p>
+ *
+ * <p>
+ * The un-written events of a bucket are written to a new file in every window. When a window is committed, the files of
+ * the committed windows of a bucket are compacted into a single file in the background once there are at least
+ * {@link #compactionThreshold} of them. An operator compacts only its own files. The files of the windows up to the
+ * committed window of last run, which other operators may read, are kept until a later run in which they are covered by
+ * a compacted file of a window up to the committed window of that run. A fetch which finds that a file was removed by
+ * another operator after it was listed lists the bucket again. The bloom filters of a bucket which were superseded by a
+ * filter of a committed window are deleted in the background as well. The store tracks the no. of files read and the
+ * time taken by bucket loads as well as the compactions in {@link BucketStoreStats}.
+ * </p>
  *
  * @param <T> type of bucket event</T>
  */
-public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
+public class HdfsBucketStore<T extends BucketEvent> implements BucketStoreWithBloomFilter<T>, CheckpointListener
 {
   static transient final String PATH_SEPARATOR = "/";
   static transient final String BUCKETS_SUBDIR = "buckets";
+  static transient final String BLOOM_FILTERS_SUBDIR = "bloomfilters";
+  static transient final String COMPACTED_SUBDIR = "compacted";
+  static transient final String COMPACTED_FILE_SEPARATOR = "-";
+  private static transient final int MAX_FETCH_ATTEMPTS = 3;
   private transient final String bucketFileSystemPath;
+  private transient final String bloomFilterFileSystemPath;
+  private transient final String compactedFileSystemPath;
   private transient Configuration configuration;
   private transient Kryo serde;
+  //fetchBucket is invoked by loader threads of the bucket manager
+  private transient ThreadLocal<Kryo> loadSerde;
   private transient Serializer<Map<Object, T>> bucketDataSerializer;
+  private transient Serializer<Map<Object, T>> compactionSerializer;
   private transient int operatorId;
   private transient final Set<Integer> partitionKeys;
   private transient int partitionMask;
@@ -62,6 +93,12 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
   private transient int memoizedBucketIdx;
   private transient String memoizedPath;
   private transient long committedWindowOfLastRun;
+  private transient int compactionThreshold;
+  private transient ExecutorService compactionService;
+  private transient final Set<Integer> bucketsToCompact;
+  private transient final Set<Integer> bloomFiltersToPrune;
+  private transient Object[] bucketLocks;
+  private transient final MutableStats stats;
 
   /**
    * Constructs a hdfs store.
@@ -77,6 +114,8 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
                          int partitionMask)
   {
     this.bucketFileSystemPath = applicationPath + PATH_SEPARATOR + BUCKETS_SUBDIR;
+    this.bloomFilterFileSystemPath = applicationPath + PATH_SEPARATOR + BLOOM_FILTERS_SUBDIR;
+    this.compactedFileSystemPath = applicationPath + PATH_SEPARATOR + COMPACTED_SUBDIR;
     this.operatorId = operatorId;
     this.maxNoOfBucketsInDir = maxNoOfBucketsInDir;
     this.partitionKeys = Preconditions.checkNotNull(partitionKeys, "partition keys");
@@ -85,9 +124,13 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
     memoizedPath = null;
     divisor = 1;
     committedWindowOfLastRun = -1;
+    compactionThreshold = 10;
+    bucketsToCompact = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    bloomFiltersToPrune = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    stats = new MutableStats();
   }
 
-  private String getParentBucketPath(int bucketIdx)
+  private synchronized String getParentBucketPath(int bucketIdx)
   {
     if (memoizedBucketIdx == bucketIdx) {
       return memoizedPath;
@@ -106,15 +149,29 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
    * {@inheritDoc}
    */
   @Override
-  public void setup(int noOfBuckets, final long committedWindowOfLastRun, boolean writeEventKeysOnly) throws IOException
+  public void setup(int noOfBuckets, long committedWindowOfLastRun, boolean writeEventKeysOnly) throws IOException
   {
     this.committedWindowOfLastRun = committedWindowOfLastRun;
     this.configuration = new Configuration();
     this.serde = new Kryo();
     this.serde.setClassLoader(Thread.currentThread().getContextClassLoader());
     this.serde.setReferences(false);
+    final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    this.loadSerde = new ThreadLocal<Kryo>()
+    {
+      @Override
+      protected Kryo initialValue()
+      {
+        Kryo kryo = new Kryo();
+        kryo.setClassLoader(classLoader);
+        kryo.setReferences(false);
+        return kryo;
+      }
+    };
     try {
       this.bucketDataSerializer = new BucketDataSerializer<T>(writeEventKeysOnly, partitionKeys, partitionMask);
+      //compaction keeps the events of all the partitions since other operators read the compacted files
+      this.compactionSerializer = new BucketDataSerializer<T>(writeEventKeysOnly, Sets.newHashSet(0), 0);
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -127,8 +184,32 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
     logger.debug("operator parameters {}, {}, {}", operatorId, partitionKeys, partitionMask);
     logger.debug("dir parameters {}", divisor);
 
+    deleteUncommittedWindows(bucketFileSystemPath, noOfBuckets);
+    deleteUncommittedWindows(bloomFilterFileSystemPath, noOfBuckets);
+
+    bucketLocks = new Object[Math.min(noOfBuckets, 64)];
+    for (int i = 0; i < bucketLocks.length; i++) {
+      bucketLocks[i] = new Object();
+    }
+    compactionService = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(@Nonnull Runnable runnable)
+      {
+        Thread thread = new Thread(runnable, "HdfsBucketStoreCompaction-" + operatorId);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Deletes bucket data which belongs to windows greater than committed window of last run.
+   */
+  private void deleteUncommittedWindows(String rootPath, int noOfBuckets) throws IOException
+  {
     String lParentPath = null;
-    Path rootBucketPath = new Path(bucketFileSystemPath);
+    Path rootBucketPath = new Path(rootPath);
     FileSystem fs = FileSystem.get(rootBucketPath.toUri(), configuration);
     if (fs.exists(rootBucketPath)) {
       for (int bucketIdx = 0; bucketIdx < noOfBuckets; bucketIdx++) {
@@ -136,8 +217,7 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
           lParentPath = getParentBucketPath(bucketIdx);
         }
 
-        //Delete bucket data which belongs to windows greater than committed window of last run
-        Path bucketPath = new Path(bucketFileSystemPath + PATH_SEPARATOR + lParentPath + bucketIdx);
+        Path bucketPath = new Path(rootPath + PATH_SEPARATOR + lParentPath + bucketIdx);
         if (fs.exists(bucketPath)) {
           FileStatus[] statusForDeletion = fs.listStatus(bucketPath, new PathFilter()
           {
@@ -173,6 +253,7 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
   @Override
   public void teardown()
   {
+    compactionService.shutdownNow();
     configuration.clear();
   }
 
@@ -182,6 +263,7 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
   @Override
   public void storeBucketData(int bucketIdx, long window, Map<Object, T> recentData) throws IOException
   {
+    bucketsToCompact.add(bucketIdx);
     OutputStream stream = getSaveStream(bucketIdx, window);
     if (stream != null) {
       Output output = new Output(stream);
@@ -196,63 +278,494 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
   @Override
   public void deleteBucket(int bucketIdx) throws IOException
   {
-    Path bucketPath = new Path(bucketFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx);
-    FileSystem fs = FileSystem.get(bucketPath.toUri(), configuration);
-    fs.delete(bucketPath, true);
-
+    synchronized (bucketLocks[bucketIdx % bucketLocks.length]) {
+      Path bucketPath = new Path(bucketFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx);
+      FileSystem fs = FileSystem.get(bucketPath.toUri(), configuration);
+      fs.delete(bucketPath, true);
+      fs.delete(new Path(compactedFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx), true);
+      fs.delete(new Path(bloomFilterFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx), true);
+    }
   }
 
   /**
    * {@inheritDoc}
    */
   @Override
-  @Nonnull
-  public Map<Object, T> fetchBucket(int bucketIdx) throws Exception
+  public void storeBloomFilter(int bucketIdx, long window, BucketBloomFilter filter) throws IOException
   {
-    Map<Object, T> bucketData = Maps.newHashMap();
+    bloomFiltersToPrune.add(bucketIdx);
+    Path path = new Path(bloomFilterFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx +
+      PATH_SEPARATOR + window + PATH_SEPARATOR + operatorId);
+    FileSystem fs = FileSystem.get(path.toUri(), configuration);
+    Output output = new Output(fs.create(path));
+    filter.writeTo(output);
+    output.close();
+  }
 
-    Path bucketPath = new Path(bucketFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx);
+  /**
+   * {@inheritDoc}<br/>
+   * Every operator writes a filter of all the keys it stored in the bucket, so the latest filter of every operator is
+   * read. Filters of other operators are considered only up to the committed window of last run. The keys of the data
+   * which was stored after the filter of an operator are added to the filter.
+   */
+  @Override
+  @Nullable
+  public BucketBloomFilter fetchBloomFilter(int bucketIdx) throws IOException
+  {
+    Path bucketPath = new Path(bloomFilterFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx);
     FileSystem fs = FileSystem.get(bucketPath.toUri(), configuration);
     if (!fs.exists(bucketPath)) {
-      return bucketData;
+      return null;
     }
+    FileStatus[] windowDirs = fs.listStatus(bucketPath);
+    Arrays.sort(windowDirs, new Comparator<FileStatus>()
+    {
+      @Override
+      public int compare(FileStatus status1, FileStatus status2)
+      {
+        long window1 = Long.parseLong(status1.getPath().getName());
+        long window2 = Long.parseLong(status2.getPath().getName());
+        return window1 > window2 ? -1 : (window1 == window2 ? 0 : 1);
+      }
+    });
 
-    List<FileStatus> windowsOfPreviousRun = Lists.newArrayList();
-    List<FileStatus> windowsOfCurrentRun = Lists.newArrayList();
+    BucketBloomFilter filter = null;
+    Set<String> operatorsRead = Sets.newHashSet();
+    //operator -> window of the filter of the operator which is merged in the result
+    Map<String, Long> filterWindows = Maps.newHashMap();
+    for (FileStatus windowDir : windowDirs) {
+      long window = Long.parseLong(windowDir.getPath().getName());
+      for (FileStatus operatorFile : fs.listStatus(windowDir.getPath())) {
+        String operator = operatorFile.getPath().getName();
+        if (operatorsRead.contains(operator) ||
+          (window > committedWindowOfLastRun && !operator.equals(Integer.toString(operatorId)))) {
+          continue;
+        }
+        operatorsRead.add(operator);
+        Input input = new Input(getLoadStream(operatorFile.getPath()));
+        BucketBloomFilter operatorFilter = BucketBloomFilter.readFrom(input);
+        input.close();
+        if (filter == null || filter.getBucketKey() < operatorFilter.getBucketKey()) {
+          filter = operatorFilter;
+          filterWindows.clear();
+          filterWindows.put(operator, window);
+        }
+        else if (filter.getBucketKey() == operatorFilter.getBucketKey()) {
+          filter.merge(operatorFilter);
+          filterWindows.put(operator, window);
+        }
+      }
+    }
+    if (filter != null) {
+      addKeysStoredAfterFilters(fs, bucketIdx, filter, filterWindows);
+    }
+    return filter;
+  }
 
+  /**
+   * The filters are stored when a window is check-pointed, so an operator which failed after a checkpoint but before
+   * its filters were stored has data of committed windows which are later than its latest filter. The keys of such
+   * data are added to the filter.
+   */
+  private void addKeysStoredAfterFilters(FileSystem fs, int bucketIdx, BucketBloomFilter filter,
+                                         Map<String, Long> filterWindows) throws IOException
+  {
+    Kryo lSerde = loadSerde.get();
+    for (Map.Entry<String, CompactedFile> entry : getCompactedFiles(fs, bucketIdx).entrySet()) {
+      Long filterWindow = filterWindows.get(entry.getKey());
+      long window = entry.getValue().window;
+      if (window <= committedWindowOfLastRun && (filterWindow == null || window > filterWindow)) {
+        for (Object key : readBucketData(lSerde, entry.getValue().path, bucketDataSerializer).keySet()) {
+          filter.put(key);
+        }
+      }
+    }
+    Path bucketPath = new Path(bucketFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx);
+    if (!fs.exists(bucketPath)) {
+      return;
+    }
     for (FileStatus windowDir : fs.listStatus(bucketPath)) {
       long window = Long.parseLong(windowDir.getPath().getName());
-
       if (window > committedWindowOfLastRun) {
-        windowsOfCurrentRun.add(windowDir);
+        continue;
       }
-      else {
-        windowsOfPreviousRun.add(windowDir);
+      for (FileStatus operatorFile : fs.listStatus(windowDir.getPath())) {
+        Long filterWindow = filterWindows.get(operatorFile.getPath().getName());
+        if (filterWindow == null || window > filterWindow) {
+          for (Object key : readBucketData(lSerde, operatorFile.getPath(), bucketDataSerializer).keySet()) {
+            filter.put(key);
+          }
+        }
       }
     }
-    for (FileStatus previousRunWindow : windowsOfPreviousRun) {
-      for (FileStatus operatorFiles : fs.listStatus(previousRunWindow.getPath())) {
-        InputStream bucketStream = getLoadStream(operatorFiles.getPath());
-        Input input = new Input(bucketStream);
-        @SuppressWarnings("unchecked")
-        Map<Object, T> bucketDataPerWindow = serde.readObject(input, bucketData.getClass(), bucketDataSerializer);
-        bucketData.putAll(bucketDataPerWindow);
+  }
+
+  /**
+   * {@inheritDoc}<br/>
+   * The latest compacted file of every operator is read along with the window files which it does not cover. Files of
+   * other operators are considered only up to the committed window of last run.
+   */
+  @Override
+  @Nonnull
+  public Map<Object, T> fetchBucket(int bucketIdx) throws Exception
+  {
+    long start = System.currentTimeMillis();
+    Map<Object, T> bucketData = Maps.newHashMap();
+    int noOfFilesRead;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        noOfFilesRead = fetchBucket(bucketIdx, bucketData);
+        break;
       }
-    }
-    for (FileStatus currentRunWindow : windowsOfCurrentRun) {
-      Path operatorFile = new Path(currentRunWindow.getPath().toString() + PATH_SEPARATOR + operatorId);
-      if (fs.exists(operatorFile)) {
-        InputStream bucketStream = getLoadStream(operatorFile);
-        Input input = new Input(bucketStream);
-        @SuppressWarnings("unchecked")
-        Map<Object, T> bucketDataPerWindow = serde.readObject(input, bucketData.getClass(), bucketDataSerializer);
-        bucketData.putAll(bucketDataPerWindow);
+      catch (FileNotFoundException e) {
+        //the file was compacted or deleted by another operator after it was listed
+        if (attempt == MAX_FETCH_ATTEMPTS) {
+          throw e;
+        }
+        logger.debug("listing bucket {} again", bucketIdx, e);
+        bucketData.clear();
       }
     }
 
+    long loadTime = System.currentTimeMillis() - start;
+    stats.noOfFetches.incrementAndGet();
+    stats.noOfFilesRead.addAndGet(noOfFilesRead);
+    stats.totalFetchTimeMillis.addAndGet(loadTime);
+    stats.lastFetchTimeMillis = loadTime;
+    stats.lastFetchNoOfFiles = noOfFilesRead;
     return bucketData;
   }
 
+  private int fetchBucket(int bucketIdx, Map<Object, T> bucketData) throws IOException
+  {
+    int noOfFilesRead = 0;
+    Kryo lSerde = loadSerde.get();
+
+    synchronized (bucketLocks[bucketIdx % bucketLocks.length]) {
+      Path bucketPath = new Path(bucketFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx);
+      FileSystem fs = FileSystem.get(bucketPath.toUri(), configuration);
+
+      //operator -> compacted file of the operator
+      Map<String, CompactedFile> compactedFiles = getCompactedFiles(fs, bucketIdx);
+      for (CompactedFile compactedFile : compactedFiles.values()) {
+        bucketData.putAll(readBucketData(lSerde, compactedFile.path, bucketDataSerializer));
+        noOfFilesRead++;
+      }
+
+      if (fs.exists(bucketPath)) {
+        List<FileStatus> windowsOfPreviousRun = Lists.newArrayList();
+        List<FileStatus> windowsOfCurrentRun = Lists.newArrayList();
+
+        for (FileStatus windowDir : fs.listStatus(bucketPath)) {
+          long window = Long.parseLong(windowDir.getPath().getName());
+
+          if (window > committedWindowOfLastRun) {
+            windowsOfCurrentRun.add(windowDir);
+          }
+          else {
+            windowsOfPreviousRun.add(windowDir);
+          }
+        }
+        for (FileStatus previousRunWindow : windowsOfPreviousRun) {
+          long window = Long.parseLong(previousRunWindow.getPath().getName());
+          for (FileStatus operatorFiles : fs.listStatus(previousRunWindow.getPath())) {
+            CompactedFile compactedFile = compactedFiles.get(operatorFiles.getPath().getName());
+            if (compactedFile != null && compactedFile.window >= window) {
+              continue;
+            }
+            bucketData.putAll(readBucketData(lSerde, operatorFiles.getPath(), bucketDataSerializer));
+            noOfFilesRead++;
+          }
+        }
+        CompactedFile ownCompactedFile = compactedFiles.get(Integer.toString(operatorId));
+        for (FileStatus currentRunWindow : windowsOfCurrentRun) {
+          long window = Long.parseLong(currentRunWindow.getPath().getName());
+          if (ownCompactedFile != null && ownCompactedFile.window >= window) {
+            continue;
+          }
+          Path operatorFile = new Path(currentRunWindow.getPath().toString() + PATH_SEPARATOR + operatorId);
+          if (fs.exists(operatorFile)) {
+            bucketData.putAll(readBucketData(lSerde, operatorFile, bucketDataSerializer));
+            noOfFilesRead++;
+          }
+        }
+      }
+    }
+    return noOfFilesRead;
+  }
+
+  private Map<Object, T> readBucketData(Kryo kryo, Path path, Serializer<Map<Object, T>> serializer) throws IOException
+  {
+    Input input = new Input(getLoadStream(path));
+    try {
+      @SuppressWarnings("unchecked")
+      Map<Object, T> bucketDataPerWindow = kryo.readObject(input, HashMap.class, serializer);
+      return bucketDataPerWindow;
+    }
+    finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Finds the latest compacted file of every operator for the bucket. Compacted files of other operators are considered
+   * only up to the committed window of last run.
+   */
+  private Map<String, CompactedFile> getCompactedFiles(FileSystem fs, int bucketIdx) throws IOException
+  {
+    String ownOperator = Integer.toString(operatorId);
+    Map<String, CompactedFile> compactedFiles = Maps.newHashMap();
+    Path compactedBucketPath = new Path(compactedFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) +
+      bucketIdx);
+    if (!fs.exists(compactedBucketPath)) {
+      return compactedFiles;
+    }
+    for (FileStatus status : fs.listStatus(compactedBucketPath)) {
+      String name = status.getPath().getName();
+      int separator = name.indexOf(COMPACTED_FILE_SEPARATOR);
+      if (separator < 0) {
+        //incomplete file of an interrupted compaction
+        continue;
+      }
+      String operator = name.substring(0, separator);
+      long window = Long.parseLong(name.substring(separator + 1));
+      if (window > committedWindowOfLastRun && !operator.equals(ownOperator)) {
+        continue;
+      }
+      CompactedFile existing = compactedFiles.get(operator);
+      if (existing == null || existing.window < window) {
+        compactedFiles.put(operator, new CompactedFile(status.getPath(), window));
+      }
+    }
+    return compactedFiles;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void checkpointed(long window)
+  {
+  }
+
+  /**
+   * {@inheritDoc}<br/>
+   * Schedules the compaction of buckets which were written since the last compaction and the deletion of the bloom
+   * filters which were superseded. Only the files of windows up to the committed window are compacted or deleted
+   * because the engine never rolls back beyond it.
+   */
+  @Override
+  public void committed(final long window)
+  {
+    final List<Integer> buckets = Lists.newArrayList();
+    if (compactionThreshold > 0) {
+      buckets.addAll(bucketsToCompact);
+      bucketsToCompact.removeAll(buckets);
+    }
+    final List<Integer> filters = Lists.newArrayList(bloomFiltersToPrune);
+    bloomFiltersToPrune.removeAll(filters);
+    if (buckets.isEmpty() && filters.isEmpty()) {
+      return;
+    }
+    compactionService.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        for (int bucketIdx : buckets) {
+          try {
+            compactBucket(bucketIdx, window);
+          }
+          catch (Throwable cause) {
+            logger.warn("compaction of bucket {} failed", bucketIdx, cause);
+            bucketsToCompact.add(bucketIdx);
+          }
+        }
+        for (int bucketIdx : filters) {
+          try {
+            pruneBloomFilters(bucketIdx, window);
+          }
+          catch (Throwable cause) {
+            logger.warn("deletion of bloom filters of bucket {} failed", bucketIdx, cause);
+            bloomFiltersToPrune.add(bucketIdx);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Deletes the filters of this operator which are older than its latest filter of a committed window.
+   */
+  private void pruneBloomFilters(int bucketIdx, long committedWindow) throws IOException
+  {
+    String ownOperator = Integer.toString(operatorId);
+    synchronized (bucketLocks[bucketIdx % bucketLocks.length]) {
+      Path bucketPath = new Path(bloomFilterFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) +
+        bucketIdx);
+      FileSystem fs = FileSystem.get(bucketPath.toUri(), configuration);
+      if (!fs.exists(bucketPath)) {
+        return;
+      }
+      TreeMap<Long, Path> filterFiles = Maps.newTreeMap();
+      for (FileStatus windowDir : fs.listStatus(bucketPath)) {
+        long window = Long.parseLong(windowDir.getPath().getName());
+        Path operatorFile = new Path(windowDir.getPath(), ownOperator);
+        if (!fs.exists(operatorFile)) {
+          continue;
+        }
+        if (window > committedWindow) {
+          //the filter supersedes the others when a later window is committed
+          bloomFiltersToPrune.add(bucketIdx);
+        }
+        else {
+          filterFiles.put(window, operatorFile);
+        }
+      }
+      if (filterFiles.size() < 2) {
+        return;
+      }
+      filterFiles.pollLastEntry();
+      for (Path filterFile : filterFiles.values()) {
+        deleteWindowFile(fs, filterFile);
+      }
+      logger.debug("deleted {} bloom filters of bucket {}", filterFiles.size(), bucketIdx);
+    }
+  }
+
+  /**
+   * Merges the files of the committed windows of this operator and its previous compacted file into a single file.
+   * The merged files are deleted only after the new compacted file is completely written so that a failure at any
+   * point leaves the bucket readable.<br/>
+   * Other operators read the files of this operator up to the committed window of last run, so those files are not
+   * deleted in this run. They are deleted in a later run once a compacted file up to the committed window of that run
+   * covers them.
+   */
+  private void compactBucket(int bucketIdx, long committedWindow) throws IOException
+  {
+    Kryo lSerde = loadSerde.get();
+    String ownOperator = Integer.toString(operatorId);
+    synchronized (bucketLocks[bucketIdx % bucketLocks.length]) {
+      Path bucketPath = new Path(bucketFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx);
+      FileSystem fs = FileSystem.get(bucketPath.toUri(), configuration);
+      if (!fs.exists(bucketPath)) {
+        return;
+      }
+      String compactedBucketPath = compactedFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx;
+      TreeMap<Long, Path> compactedFiles = Maps.newTreeMap();
+      Path compactedBucketDir = new Path(compactedBucketPath);
+      if (fs.exists(compactedBucketDir)) {
+        for (FileStatus status : fs.listStatus(compactedBucketDir)) {
+          String name = status.getPath().getName();
+          if (name.startsWith(ownOperator + COMPACTED_FILE_SEPARATOR)) {
+            compactedFiles.put(Long.parseLong(name.substring(ownOperator.length() + 1)), status.getPath());
+          }
+        }
+      }
+      Map.Entry<Long, Path> previous = compactedFiles.lastEntry();
+      long compactedUpTo = previous == null ? -1 : previous.getKey();
+      //the compacted file which the other operators of this run read
+      Map.Entry<Long, Path> base = compactedFiles.floorEntry(committedWindowOfLastRun);
+      long baseWindow = base == null ? -1 : base.getKey();
+
+      for (Map.Entry<Long, Path> compactedFile : compactedFiles.entrySet()) {
+        if (compactedFile.getKey() < baseWindow ||
+          (compactedFile.getKey() > committedWindowOfLastRun && compactedFile.getKey() < compactedUpTo)) {
+          fs.delete(compactedFile.getValue(), false);
+        }
+      }
+      List<Path> obsoleteFiles = Lists.newArrayList();
+      TreeMap<Long, Path> windowFiles = Maps.newTreeMap();
+      for (FileStatus windowDir : fs.listStatus(bucketPath)) {
+        long window = Long.parseLong(windowDir.getPath().getName());
+        Path operatorFile = new Path(windowDir.getPath(), ownOperator);
+        if (!fs.exists(operatorFile)) {
+          continue;
+        }
+        if (window <= compactedUpTo) {
+          if (window <= baseWindow || window > committedWindowOfLastRun) {
+            obsoleteFiles.add(operatorFile);
+          }
+        }
+        else if (window > committedWindow) {
+          //the bucket is considered again when a later window is committed
+          bucketsToCompact.add(bucketIdx);
+        }
+        else {
+          windowFiles.put(window, operatorFile);
+        }
+      }
+      for (Path obsoleteFile : obsoleteFiles) {
+        deleteWindowFile(fs, obsoleteFile);
+      }
+      if (windowFiles.size() < compactionThreshold) {
+        return;
+      }
+
+      Map<Object, T> bucketData = Maps.newHashMap();
+      if (previous != null) {
+        bucketData.putAll(readBucketData(lSerde, previous.getValue(), compactionSerializer));
+      }
+      for (Path windowFile : windowFiles.values()) {
+        bucketData.putAll(readBucketData(lSerde, windowFile, compactionSerializer));
+      }
+
+      long window = windowFiles.lastKey();
+      if (!bucketData.isEmpty()) {
+        Path temporaryPath = new Path(compactedBucketPath + PATH_SEPARATOR + ownOperator);
+        Output output = new Output(fs.create(temporaryPath, true));
+        lSerde.writeObject(output, bucketData, compactionSerializer);
+        output.close();
+        fs.rename(temporaryPath, new Path(compactedBucketPath + PATH_SEPARATOR + ownOperator +
+          COMPACTED_FILE_SEPARATOR + window));
+      }
+
+      if (previous != null && previous.getKey() > committedWindowOfLastRun) {
+        fs.delete(previous.getValue(), false);
+      }
+      for (Path windowFile : windowFiles.tailMap(committedWindowOfLastRun, false).values()) {
+        deleteWindowFile(fs, windowFile);
+      }
+      stats.noOfCompactions.incrementAndGet();
+      stats.noOfFilesCompacted.addAndGet(windowFiles.size());
+      logger.debug("compacted {} files of bucket {} up to {}", windowFiles.size(), bucketIdx, window);
+    }
+  }
+
+  /**
+   * Deletes a window file and the directory of the window when it is empty.
+   */
+  private void deleteWindowFile(FileSystem fs, Path file) throws IOException
+  {
+    fs.delete(file, false);
+    Path windowDir = file.getParent();
+    if (fs.listStatus(windowDir).length == 0) {
+      fs.delete(windowDir, true);
+    }
+  }
+
+  @Override
+  public BucketStoreStats getStats()
+  {
+    return stats.snapshot();
+  }
+
+  /**
+   * Sets the minimum no. of window files of a bucket which triggers the compaction of the bucket. Compaction is
+   * disabled when this is 0. Default is 10.
+   *
+   * @param compactionThreshold minimum no. of files to compact.
+   */
+  public void setCompactionThreshold(int compactionThreshold)
+  {
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  public int getCompactionThreshold()
+  {
+    return compactionThreshold;
+  }
+
   private OutputStream getSaveStream(int bucketIdx, long window) throws IOException
   {
     Path path = new Path(bucketFileSystemPath + PATH_SEPARATOR + getParentBucketPath(bucketIdx) + bucketIdx +
@@ -345,5 +858,121 @@ public class HdfsBucketStore<T extends BucketEvent> implements BucketStore<T>
     }
   }
 
+  private static class CompactedFile
+  {
+    final Path path;
+    final long window;
+
+    CompactedFile(Path path, long window)
+    {
+      this.path = path;
+      this.window = window;
+    }
+  }
+
+  private static class MutableStats
+  {
+    final AtomicLong noOfFetches = new AtomicLong();
+    final AtomicLong noOfFilesRead = new AtomicLong();
+    final AtomicLong totalFetchTimeMillis = new AtomicLong();
+    final AtomicLong noOfCompactions = new AtomicLong();
+    final AtomicLong noOfFilesCompacted = new AtomicLong();
+    volatile long lastFetchTimeMillis;
+    volatile int lastFetchNoOfFiles;
+
+    BucketStoreStats snapshot()
+    {
+      BucketStoreStats snapshot = new BucketStoreStats();
+      snapshot.noOfFetches = noOfFetches.get();
+      snapshot.noOfFilesRead = noOfFilesRead.get();
+      snapshot.totalFetchTimeMillis = totalFetchTimeMillis.get();
+      snapshot.lastFetchTimeMillis = lastFetchTimeMillis;
+      snapshot.lastFetchNoOfFiles = lastFetchNoOfFiles;
+      snapshot.noOfCompactions = noOfCompactions.get();
+      snapshot.noOfFilesCompacted = noOfFilesCompacted.get();
+      return snapshot;
+    }
+  }
+
+  /**
+   * Stats of the store which are sent to the engine as custom stats of the operator.
+   */
+  public static class BucketStoreStats implements CustomStats
+  {
+    private static final long serialVersionUID = 201405211500L;
+    private long noOfFetches;
+    private long noOfFilesRead;
+    private long totalFetchTimeMillis;
+    private long lastFetchTimeMillis;
+    private int lastFetchNoOfFiles;
+    private long noOfCompactions;
+    private long noOfFilesCompacted;
+
+    /**
+     * @return no. of buckets fetched from the store.
+     */
+    public long getNoOfFetches()
+    {
+      return noOfFetches;
+    }
+
+    /**
+     * @return no. of files read by all the fetches.
+     */
+    public long getNoOfFilesRead()
+    {
+      return noOfFilesRead;
+    }
+
+    /**
+     * @return total time in millis spent in fetching buckets.
+     */
+    public long getTotalFetchTimeMillis()
+    {
+      return totalFetchTimeMillis;
+    }
+
+    /**
+     * @return time in millis taken by the last fetch.
+     */
+    public long getLastFetchTimeMillis()
+    {
+      return lastFetchTimeMillis;
+    }
+
+    /**
+     * @return no. of files read by the last fetch.
+     */
+    public int getLastFetchNoOfFiles()
+    {
+      return lastFetchNoOfFiles;
+    }
+
+    /**
+     * @return no. of bucket compactions.
+     */
+    public long getNoOfCompactions()
+    {
+      return noOfCompactions;
+    }
+
+    /**
+     * @return no. of window files which were merged by compactions.
+     */
+    public long getNoOfFilesCompacted()
+    {
+      return noOfFilesCompacted;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "BucketStoreStats{" + "noOfFetches=" + noOfFetches + ", noOfFilesRead=" + noOfFilesRead +
+        ", totalFetchTimeMillis=" + totalFetchTimeMillis + ", lastFetchTimeMillis=" + lastFetchTimeMillis +
+        ", lastFetchNoOfFiles=" + lastFetchNoOfFiles + ", noOfCompactions=" + noOfCompactions +
+        ", noOfFilesCompacted=" + noOfFilesCompacted + '}';
+    }
+  }
+
   private static transient final Logger logger = LoggerFactory.getLogger(HdfsBucketStore.class);
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.*;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Bucket data for events which have <code>long</code> or <code>int</code> keys and are managed by a
+ * {@link BucketManager} which writes event keys only.
+ * </p>
+ *
+ * <p>
+ * The keys are kept un-boxed in an open-addressing hash table with linear probing, so there is no per-key entry
+ * object. Since only keys are kept, the value of every key is null.<br/>
+ * Whether the keys are handed out as {@link Integer}s or {@link Long}s is decided by the first key that is put.
+ * </p>
+ *
+ * @param <T> type of bucket event</T>
+ */
+public class LongKeyBucketData<T extends BucketEvent> extends AbstractMap<Object, T>
+{
+  private static final int DEFAULT_CAPACITY = 16;
+  private boolean intKeys;
+  private long[] keys;
+  private boolean[] used;
+  private int size;
+
+  public LongKeyBucketData()
+  {
+    keys = new long[DEFAULT_CAPACITY];
+    used = new boolean[DEFAULT_CAPACITY];
+  }
+
+  private static int slot(long key, int mask)
+  {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return (int) key & mask;
+  }
+
+  private int find(long key)
+  {
+    int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    while (used[slot]) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Adds the primitive key.
+   *
+   * @param key event key.
+   * @return true if the key was not present; false otherwise.
+   */
+  public boolean add(long key)
+  {
+    if (find(key) >= 0) {
+      return false;
+    }
+    if ((size + 1) * 4 > keys.length * 3) {
+      resize(keys.length * 2);
+    }
+    insert(key);
+    size++;
+    return true;
+  }
+
+  private void insert(long key)
+  {
+    int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    while (used[slot]) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    used[slot] = true;
+  }
+
+  private void resize(int capacity)
+  {
+    long[] oldKeys = keys;
+    boolean[] oldUsed = used;
+    keys = new long[capacity];
+    used = new boolean[capacity];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        insert(oldKeys[i]);
+      }
+    }
+  }
+
+  /**
+   * @param key event key.
+   * @return true if the primitive key is present; false otherwise.
+   */
+  public boolean contains(long key)
+  {
+    return find(key) >= 0;
+  }
+
+  private void removeAt(int slot)
+  {
+    int mask = keys.length - 1;
+    used[slot] = false;
+    size--;
+    //shift back the following entries of the cluster
+    int next = (slot + 1) & mask;
+    while (used[next]) {
+      long key = keys[next];
+      used[next] = false;
+      insert(key);
+      next = (next + 1) & mask;
+    }
+  }
+
+  @Override
+  public T put(Object key, T value)
+  {
+    Preconditions.checkArgument(value == null, "only event keys are stored");
+    Preconditions.checkArgument(isIntegral(key), "key is not integral %s", key);
+    if (size == 0) {
+      intKeys = key instanceof Integer;
+    }
+    add(((Number) key).longValue());
+    return null;
+  }
+
+  /**
+   * Only integral keys are present; a fractional number is never equal to a key.
+   */
+  private static boolean isIntegral(Object key)
+  {
+    return key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return isIntegral(key) && contains(((Number) key).longValue());
+  }
+
+  @Override
+  public T get(Object key)
+  {
+    return null;
+  }
+
+  @Override
+  public T remove(Object key)
+  {
+    if (isIntegral(key)) {
+      int slot = find(((Number) key).longValue());
+      if (slot >= 0) {
+        removeAt(slot);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  @Override
+  public void clear()
+  {
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  private Object box(long key)
+  {
+    if (intKeys) {
+      return (int) key;
+    }
+    return key;
+  }
+
+  @Override
+  @Nonnull
+  public Set<Entry<Object, T>> entrySet()
+  {
+    return new AbstractSet<Entry<Object, T>>()
+    {
+      @Override
+      @Nonnull
+      public Iterator<Entry<Object, T>> iterator()
+      {
+        return new Iterator<Entry<Object, T>>()
+        {
+          private final long[] snapshot = snapshot();
+          private int next = 0;
+          private int current = -1;
+
+          @Override
+          public boolean hasNext()
+          {
+            return next < snapshot.length;
+          }
+
+          @Override
+          public Entry<Object, T> next()
+          {
+            if (next >= snapshot.length) {
+              throw new NoSuchElementException();
+            }
+            current = next++;
+            return new SimpleImmutableEntry<Object, T>(box(snapshot[current]), null);
+          }
+
+          @Override
+          public void remove()
+          {
+            Preconditions.checkState(current >= 0);
+            LongKeyBucketData.this.remove(snapshot[current]);
+            current = -1;
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Removal shifts entries of the table, therefore iteration works on a copy of the keys.
+   */
+  private long[] snapshot()
+  {
+    long[] snapshot = new long[size];
+    int count = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i]) {
+        snapshot[count++] = keys[i];
+      }
+    }
+    return snapshot;
+  }
+}
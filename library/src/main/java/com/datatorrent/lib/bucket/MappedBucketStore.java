@@ -0,0 +1,627 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.Stats.OperatorStats.CustomStats;
+
+/**
+ * <p>
+ * {@link BucketStore} which keeps the data of every bucket in append-only segment files on the local file-system and
+ * reads them back through memory mapping.
+ * </p>
+ *
+ * <p>
+ * There is one segment file per bucket per operator. Every call to {@link #storeBucketData(int, long, Map)} appends a
+ * block to the segment which consists of:
+ * <ol>
+ * <li>a header: length of the block, window, no. of entries and offset of the index.</li>
+ * <li>the key and value classes followed by the serialized entries.</li>
+ * <li>an index of (key hash, entry offset) pairs sorted by the hash.</li>
+ * </ol>
+ * Blocks are appended in the order of windows, so during setup the segment of the operator is truncated at the first
+ * block which belongs to a window greater than the committed window of the last run.
+ * </p>
+ *
+ * <p>
+ * {@link #fetchBucket(int)} only maps the segment files and reads the block headers. It returns a map which resolves a
+ * key by a binary search on the key hash in the block indices and de-serializes just the matching entry. The entries
+ * are not de-serialized on the heap unless the map is iterated.<br/>
+ * Like {@link HdfsBucketStore} the store relies on {@link Object#hashCode()} of the event key to be consistent across
+ * jvms.
+ * </p>
+ *
+ * @param <T> type of bucket event</T>
+ */
+public class MappedBucketStore<T extends BucketEvent> implements BucketStore<T>
+{
+  static transient final int HEADER_LENGTH = 20;
+  static transient final int INDEX_ENTRY_LENGTH = 8;
+  private transient final String bucketsDirectory;
+  private transient final int operatorId;
+  private transient final Set<Integer> partitionKeys;
+  private transient final int partitionMask;
+  private transient Kryo serde;
+  //fetchBucket is invoked by loader threads of the bucket manager
+  private transient ThreadLocal<Kryo> loadSerde;
+  private transient boolean writeEventKeysOnly;
+  private transient long committedWindowOfLastRun;
+
+  /**
+   * Constructs a memory mapped store.
+   *
+   * @param bucketsDirectory local directory where the segment files are created.
+   * @param operatorId       operator id.
+   * @param partitionKeys    partitions of the operator.
+   * @param partitionMask    partition mask.
+   */
+  public MappedBucketStore(String bucketsDirectory, int operatorId, Set<Integer> partitionKeys, int partitionMask)
+  {
+    this.bucketsDirectory = Preconditions.checkNotNull(bucketsDirectory, "buckets directory");
+    this.operatorId = operatorId;
+    this.partitionKeys = Preconditions.checkNotNull(partitionKeys, "partition keys");
+    this.partitionMask = partitionMask;
+    committedWindowOfLastRun = -1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setup(int noOfBuckets, long committedWindowOfLastRun, boolean writeEventKeysOnly) throws IOException
+  {
+    this.committedWindowOfLastRun = committedWindowOfLastRun;
+    this.writeEventKeysOnly = writeEventKeysOnly;
+    this.serde = newKryo();
+    this.loadSerde = new ThreadLocal<Kryo>()
+    {
+      @Override
+      protected Kryo initialValue()
+      {
+        return newKryo();
+      }
+    };
+
+    File root = new File(bucketsDirectory);
+    if (!root.exists()) {
+      if (!root.mkdirs()) {
+        throw new IOException("could not create " + root);
+      }
+      return;
+    }
+    //Truncate the blocks of this operator which belong to windows greater than committed window of last run
+    for (int bucketIdx = 0; bucketIdx < noOfBuckets; bucketIdx++) {
+      File segment = getSegment(bucketIdx, operatorId);
+      if (segment.exists()) {
+        truncateUncommittedBlocks(segment);
+      }
+    }
+    logger.debug("operator parameters {}, {}, {}", operatorId, partitionKeys, partitionMask);
+  }
+
+  private void truncateUncommittedBlocks(File segment) throws IOException
+  {
+    RandomAccessFile file = new RandomAccessFile(segment, "rw");
+    try {
+      long position = 0;
+      long length = file.length();
+      while (position + HEADER_LENGTH <= length) {
+        file.seek(position);
+        int blockLength = file.readInt();
+        long window = file.readLong();
+        if (window > committedWindowOfLastRun || position + 4 + blockLength > length) {
+          break;
+        }
+        position += 4 + blockLength;
+      }
+      if (position < length) {
+        logger.debug("truncating {} from {} to {}", segment, length, position);
+        file.setLength(position);
+      }
+    }
+    finally {
+      file.close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void teardown()
+  {
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CustomStats getStats()
+  {
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void storeBucketData(int bucketIdx, long window, Map<Object, T> bucketData) throws IOException
+  {
+    if (bucketData.isEmpty()) {
+      return;
+    }
+    byte[] block = writeBlock(window, bucketData);
+
+    File segment = getSegment(bucketIdx, operatorId);
+    File bucketDir = segment.getParentFile();
+    if (!bucketDir.exists() && !bucketDir.mkdirs()) {
+      throw new IOException("could not create " + bucketDir);
+    }
+    RandomAccessFile file = new RandomAccessFile(segment, "rw");
+    try {
+      FileChannel channel = file.getChannel();
+      channel.position(channel.size());
+      ByteBuffer buffer = ByteBuffer.wrap(block);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    finally {
+      file.close();
+    }
+  }
+
+  private byte[] writeBlock(long window, Map<Object, T> bucketData)
+  {
+    Map.Entry<Object, T> first = bucketData.entrySet().iterator().next();
+    Output body = new Output(4096, -1);
+    Output entry = new Output(256, -1);
+
+    serde.writeClass(entry, first.getKey().getClass());
+    if (!writeEventKeysOnly) {
+      serde.writeClass(entry, first.getValue().getClass());
+    }
+    body.writeInt(entry.position());
+    body.writeBytes(entry.getBuffer(), 0, entry.position());
+    entry.clear();
+
+    long[] index = new long[bucketData.size()];
+    int count = 0;
+    for (Map.Entry<Object, T> event : bucketData.entrySet()) {
+      int entryOffset = HEADER_LENGTH + body.position();
+      index[count++] = ((long) event.getKey().hashCode() << 32) | (entryOffset & 0xffffffffL);
+
+      serde.writeObject(entry, event.getKey());
+      body.writeInt(entry.position());
+      body.writeBytes(entry.getBuffer(), 0, entry.position());
+      entry.clear();
+      if (!writeEventKeysOnly) {
+        serde.writeObject(entry, event.getValue());
+        body.writeInt(entry.position());
+        body.writeBytes(entry.getBuffer(), 0, entry.position());
+        entry.clear();
+      }
+    }
+    Arrays.sort(index);
+
+    int indexOffset = HEADER_LENGTH + body.position();
+    Output block = new Output(indexOffset + index.length * INDEX_ENTRY_LENGTH);
+    block.writeInt(indexOffset - 4 + index.length * INDEX_ENTRY_LENGTH);
+    block.writeLong(window);
+    block.writeInt(index.length);
+    block.writeInt(indexOffset);
+    block.writeBytes(body.getBuffer(), 0, body.position());
+    for (long indexEntry : index) {
+      block.writeLong(indexEntry);
+    }
+    return block.getBuffer();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void deleteBucket(int bucketIdx) throws IOException
+  {
+    FileUtils.deleteDirectory(getBucketDirectory(bucketIdx));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Nonnull
+  public Map<Object, T> fetchBucket(int bucketIdx) throws Exception
+  {
+    List<Block> blocks = Lists.newArrayList();
+    File bucketDir = getBucketDirectory(bucketIdx);
+    File[] segments = bucketDir.listFiles();
+    if (segments != null) {
+      for (File segment : segments) {
+        int segmentOperatorId;
+        try {
+          segmentOperatorId = Integer.parseInt(segment.getName());
+        }
+        catch (NumberFormatException nfe) {
+          logger.warn("invalid segment {}", segment, nfe);
+          continue;
+        }
+        readBlocks(segment, segmentOperatorId == operatorId, blocks);
+      }
+    }
+    //newest blocks are searched first
+    Collections.sort(blocks);
+    return new MappedBucketData<T>(this, blocks);
+  }
+
+  private void readBlocks(File segment, boolean ownSegment, List<Block> blocks) throws IOException
+  {
+    RandomAccessFile file = new RandomAccessFile(segment, "r");
+    MappedByteBuffer buffer;
+    try {
+      long length = file.length();
+      Preconditions.checkState(length <= Integer.MAX_VALUE, "segment too large %s", segment);
+      buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+    finally {
+      file.close();
+    }
+
+    Input input = new Input();
+    int position = 0;
+    while (position + HEADER_LENGTH <= buffer.limit()) {
+      int blockLength = buffer.getInt(position);
+      long window = buffer.getLong(position + 4);
+      if (position + 4 + blockLength > buffer.limit()) {
+        break;
+      }
+      //blocks of other operators written in the current run are not visible to this operator.
+      if (!ownSegment && window > committedWindowOfLastRun) {
+        break;
+      }
+      int classesLength = buffer.getInt(position + HEADER_LENGTH);
+      input.setBuffer(copy(buffer, position + HEADER_LENGTH + 4, classesLength));
+      Class<?> keyClass = loadSerde.get().readClass(input).getType();
+      Class<?> valueClass = writeEventKeysOnly ? null : loadSerde.get().readClass(input).getType();
+
+      blocks.add(new Block(buffer, position, window, buffer.getInt(position + 12), buffer.getInt(position + 16),
+        keyClass, valueClass));
+      position += 4 + blockLength;
+    }
+  }
+
+  private File getBucketDirectory(int bucketIdx)
+  {
+    return new File(bucketsDirectory, Integer.toString(bucketIdx));
+  }
+
+  private File getSegment(int bucketIdx, int segmentOperatorId)
+  {
+    return new File(getBucketDirectory(bucketIdx), Integer.toString(segmentOperatorId));
+  }
+
+  private static Kryo newKryo()
+  {
+    Kryo kryo = new Kryo();
+    kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    kryo.setReferences(false);
+    return kryo;
+  }
+
+  private static byte[] copy(ByteBuffer buffer, int offset, int length)
+  {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * A block of a mapped segment.
+   */
+  static class Block implements Comparable<Block>
+  {
+    final ByteBuffer buffer;
+    final int start;
+    final long window;
+    final int noOfEntries;
+    final int indexOffset;
+    final Class<?> keyClass;
+    final Class<?> valueClass;
+
+    Block(ByteBuffer buffer, int start, long window, int noOfEntries, int indexOffset, Class<?> keyClass,
+          Class<?> valueClass)
+    {
+      this.buffer = buffer;
+      this.start = start;
+      this.window = window;
+      this.noOfEntries = noOfEntries;
+      this.indexOffset = indexOffset;
+      this.keyClass = keyClass;
+      this.valueClass = valueClass;
+    }
+
+    int hashAt(int i)
+    {
+      return buffer.getInt(start + indexOffset + i * INDEX_ENTRY_LENGTH);
+    }
+
+    int entryOffsetAt(int i)
+    {
+      return start + buffer.getInt(start + indexOffset + i * INDEX_ENTRY_LENGTH + 4);
+    }
+
+    /**
+     * @return position of the first index entry with the given hash; -1 if there is none.
+     */
+    int firstIndexOf(int hash)
+    {
+      int low = 0;
+      int high = noOfEntries - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (hashAt(mid) < hash) {
+          low = mid + 1;
+        }
+        else {
+          high = mid - 1;
+        }
+      }
+      return low < noOfEntries && hashAt(low) == hash ? low : -1;
+    }
+
+    @Override
+    public int compareTo(@Nonnull Block block)
+    {
+      if (window != block.window) {
+        return window > block.window ? -1 : 1;
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * A map backed by the mapped blocks of a bucket.<br/>
+   * Events that are put after the bucket is fetched are kept on the heap. Events are de-serialized from the blocks
+   * only when they are looked up.
+   *
+   * @param <T> type of bucket event</T>
+   */
+  static class MappedBucketData<T extends BucketEvent> extends AbstractMap<Object, T>
+  {
+    private final MappedBucketStore<T> store;
+    private final List<Block> blocks;
+    private final Map<Object, T> recentData;
+    private final Set<Object> removedKeys;
+    private final Input input;
+    private transient Map<Object, T> materialized;
+
+    MappedBucketData(MappedBucketStore<T> store, List<Block> blocks)
+    {
+      this.store = store;
+      this.blocks = blocks;
+      this.recentData = Maps.newHashMap();
+      this.removedKeys = Sets.newHashSet();
+      this.input = new Input();
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+      if (recentData.containsKey(key)) {
+        return true;
+      }
+      if (removedKeys.contains(key)) {
+        return false;
+      }
+      return locate(key) != null;
+    }
+
+    @Override
+    public T get(Object key)
+    {
+      if (recentData.containsKey(key)) {
+        return recentData.get(key);
+      }
+      if (removedKeys.contains(key)) {
+        return null;
+      }
+      long[] location = locate(key);
+      if (location == null || store.writeEventKeysOnly) {
+        return null;
+      }
+      return readValue(blocks.get((int) location[0]), (int) location[1]);
+    }
+
+    @Override
+    public T put(Object key, T value)
+    {
+      materialized = null;
+      removedKeys.remove(key);
+      return recentData.put(key, value);
+    }
+
+    @Override
+    public T remove(Object key)
+    {
+      T previous = get(key);
+      materialized = null;
+      recentData.remove(key);
+      removedKeys.add(key);
+      return previous;
+    }
+
+    @Override
+    public void clear()
+    {
+      materialized = null;
+      recentData.clear();
+      blocks.clear();
+      removedKeys.clear();
+    }
+
+    @Override
+    public int size()
+    {
+      return materialize().size();
+    }
+
+    @Override
+    @Nonnull
+    public Set<Entry<Object, T>> entrySet()
+    {
+      return new AbstractSet<Entry<Object, T>>()
+      {
+        @Override
+        @Nonnull
+        public Iterator<Entry<Object, T>> iterator()
+        {
+          final Iterator<Entry<Object, T>> iterator = Lists.newArrayList(materialize().entrySet()).iterator();
+          return new Iterator<Entry<Object, T>>()
+          {
+            private Entry<Object, T> current;
+
+            @Override
+            public boolean hasNext()
+            {
+              return iterator.hasNext();
+            }
+
+            @Override
+            public Entry<Object, T> next()
+            {
+              return current = iterator.next();
+            }
+
+            @Override
+            public void remove()
+            {
+              Preconditions.checkState(current != null);
+              MappedBucketData.this.remove(current.getKey());
+              current = null;
+            }
+          };
+        }
+
+        @Override
+        public int size()
+        {
+          return MappedBucketData.this.size();
+        }
+      };
+    }
+
+    /**
+     * @return true if keys with the hash belong to the partitions of the operator; false otherwise.
+     */
+    private boolean isInPartitions(int hash)
+    {
+      return store.partitionKeys.contains(hash & store.partitionMask);
+    }
+
+    /**
+     * Finds the latest entry of the key in the blocks which belong to the partitions of the operator.
+     *
+     * @return pair of block position and entry offset; null if key is not present.
+     */
+    private long[] locate(Object key)
+    {
+      int hash = key.hashCode();
+      if (!isInPartitions(hash)) {
+        return null;
+      }
+      for (int blockPos = 0; blockPos < blocks.size(); blockPos++) {
+        Block block = blocks.get(blockPos);
+        int i = block.firstIndexOf(hash);
+        if (i < 0) {
+          continue;
+        }
+        for (; i < block.noOfEntries && block.hashAt(i) == hash; i++) {
+          int entryOffset = block.entryOffsetAt(i);
+          if (key.equals(readKey(block, entryOffset))) {
+            return new long[]{blockPos, entryOffset};
+          }
+        }
+      }
+      return null;
+    }
+
+    private Object readKey(Block block, int entryOffset)
+    {
+      int keyLength = block.buffer.getInt(entryOffset);
+      input.setBuffer(copy(block.buffer, entryOffset + 4, keyLength));
+      return store.serde.readObject(input, block.keyClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T readValue(Block block, int entryOffset)
+    {
+      int valueOffset = entryOffset + 4 + block.buffer.getInt(entryOffset);
+      int valueLength = block.buffer.getInt(valueOffset);
+      input.setBuffer(copy(block.buffer, valueOffset + 4, valueLength));
+      return (T) store.serde.readObject(input, block.valueClass);
+    }
+
+    /**
+     * De-serializes all the entries which belong to the partitions of the operator.
+     */
+    private Map<Object, T> materialize()
+    {
+      if (materialized != null) {
+        return materialized;
+      }
+      Map<Object, T> all = Maps.newHashMap();
+      //oldest block first so that the latest value of a key wins
+      for (int blockPos = blocks.size() - 1; blockPos >= 0; blockPos--) {
+        Block block = blocks.get(blockPos);
+        for (int i = 0; i < block.noOfEntries; i++) {
+          int entryOffset = block.entryOffsetAt(i);
+          Object key = readKey(block, entryOffset);
+          if (removedKeys.contains(key) || !isInPartitions(key.hashCode())) {
+            continue;
+          }
+          all.put(key, store.writeEventKeysOnly ? null : readValue(block, entryOffset));
+        }
+      }
+      all.putAll(recentData);
+      return materialized = all;
+    }
+  }
+
+  private static transient final Logger logger = LoggerFactory.getLogger(MappedBucketStore.class);
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.codec;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.lib.util.ColumnarBatch;
+
+/**
+ * <p>
+ * Stream codec for {@link ColumnarBatch} tuples.<br/>
+ * A batch is written column by column: the dictionary of keys once, the key indexes as variable length ints and the
+ * values as raw doubles, without any per row object.
+ * </p>
+ *
+ * <p>
+ * When the type of the keys is known the codec should be created by a sub-class which passes it, so that keys are
+ * written without their class:
+ * <pre>
+ * public static class SymbolBatchCodec extends ColumnarBatchStreamCodec&lt;String&gt;
+ * {
+ *   public SymbolBatchCodec()
+ *   {
+ *     super(String.class);
+ *   }
+ * }
+ * </pre>
+ * </p>
+ *
+ * <p>
+ * A batch may have rows of many keys so batches are not partitioned by key; operators which consume batches
+ * unify their outputs instead.
+ * </p>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public class ColumnarBatchStreamCodec<K> extends KryoStreamCodec<ColumnarBatch<K>>
+{
+  private final FieldCodec keyCodec;
+
+  public ColumnarBatchStreamCodec()
+  {
+    keyCodec = FieldCodec.OBJECT;
+  }
+
+  public ColumnarBatchStreamCodec(Class<K> keyClass)
+  {
+    keyCodec = FieldCodec.forType(keyClass);
+  }
+
+  @Override
+  protected void writeTuple(Kryo kryo, Output output, ColumnarBatch<K> tuple)
+  {
+    int size = tuple.size();
+    output.writeInt(size, true);
+    output.writeBoolean(tuple.isKeyed());
+    if (tuple.isKeyed()) {
+      int dictionarySize = tuple.getDictionarySize();
+      output.writeInt(dictionarySize, true);
+      for (int i = 0; i < dictionarySize; i++) {
+        keyCodec.write(kryo, output, tuple.getDictionaryKey(i));
+      }
+      int[] keyIndexes = tuple.getKeyIndexes();
+      for (int i = 0; i < size; i++) {
+        output.writeInt(keyIndexes[i], true);
+      }
+    }
+    double[] values = tuple.getValues();
+    for (int i = 0; i < size; i++) {
+      output.writeDouble(values[i]);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected ColumnarBatch<K> readTuple(Kryo kryo, Input input)
+  {
+    int size = input.readInt(true);
+    ColumnarBatch<K> batch = new ColumnarBatch<K>(size);
+    if (input.readBoolean()) {
+      int dictionarySize = input.readInt(true);
+      for (int i = 0; i < dictionarySize; i++) {
+        batch.encode((K)keyCodec.read(kryo, input));
+      }
+      int[] keyIndexes = new int[size];
+      for (int i = 0; i < size; i++) {
+        keyIndexes[i] = input.readInt(true);
+      }
+      for (int i = 0; i < size; i++) {
+        batch.add(keyIndexes[i], input.readDouble());
+      }
+    }
+    else {
+      for (int i = 0; i < size; i++) {
+        batch.add(input.readDouble());
+      }
+    }
+    return batch;
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.codec;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Writes values of a field whose type is known by the schema of a codec, so neither the class nor a reference marker
+ * is written. Values of types without a dedicated codec are written with their class.<br/>
+ * A value is preceded by a marker byte so that null values can be written.
+ */
+abstract class FieldCodec
+{
+  static final byte NULL = 0;
+  static final byte VALUE = 1;
+
+  /**
+   * Writes a non null value.
+   */
+  abstract void writeValue(Kryo kryo, Output output, Object value);
+
+  abstract Object readValue(Kryo kryo, Input input);
+
+  final void write(Kryo kryo, Output output, Object value)
+  {
+    if (value == null) {
+      output.writeByte(NULL);
+    }
+    else {
+      output.writeByte(VALUE);
+      writeValue(kryo, output, value);
+    }
+  }
+
+  final Object read(Kryo kryo, Input input)
+  {
+    return input.readByte() == NULL ? null : readValue(kryo, input);
+  }
+
+  static FieldCodec forType(Class<?> type)
+  {
+    if (type == Integer.class || type == int.class) {
+      return INTEGER;
+    }
+    if (type == Long.class || type == long.class) {
+      return LONG;
+    }
+    if (type == Double.class || type == double.class) {
+      return DOUBLE;
+    }
+    if (type == Float.class || type == float.class) {
+      return FLOAT;
+    }
+    if (type == String.class) {
+      return STRING;
+    }
+    if (type == Boolean.class || type == boolean.class) {
+      return BOOLEAN;
+    }
+    if (type == Short.class || type == short.class) {
+      return SHORT;
+    }
+    if (type == Byte.class || type == byte.class) {
+      return BYTE;
+    }
+    if (type == Character.class || type == char.class) {
+      return CHARACTER;
+    }
+    return OBJECT;
+  }
+
+  static final FieldCodec INTEGER = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeInt((Integer)value, false);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readInt(false);
+    }
+  };
+
+  static final FieldCodec LONG = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeLong((Long)value, false);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readLong(false);
+    }
+  };
+
+  static final FieldCodec DOUBLE = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeDouble((Double)value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readDouble();
+    }
+  };
+
+  static final FieldCodec FLOAT = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeFloat((Float)value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readFloat();
+    }
+  };
+
+  static final FieldCodec STRING = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeString((String)value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readString();
+    }
+  };
+
+  static final FieldCodec BOOLEAN = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeBoolean((Boolean)value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readBoolean();
+    }
+  };
+
+  static final FieldCodec SHORT = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeShort((Short)value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readShort();
+    }
+  };
+
+  static final FieldCodec BYTE = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeByte((Byte)value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readByte();
+    }
+  };
+
+  static final FieldCodec CHARACTER = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      output.writeChar((Character)value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return input.readChar();
+    }
+  };
+
+  static final FieldCodec OBJECT = new FieldCodec()
+  {
+    @Override
+    void writeValue(Kryo kryo, Output output, Object value)
+    {
+      kryo.writeClassAndObject(output, value);
+    }
+
+    @Override
+    Object readValue(Kryo kryo, Input input)
+    {
+      return kryo.readClassAndObject(input);
+    }
+  };
+}
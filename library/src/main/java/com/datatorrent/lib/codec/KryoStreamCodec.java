@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Preconditions;
+
+import com.datatorrent.api.StreamCodec;
+
+import com.datatorrent.common.util.Slice;
+
+/**
+ * <p>
+ * Kryo stream codec which does not allocate per tuple apart from the bytes of the serialized tuple.<br/>
+ * Every thread which uses the codec gets its own {@link Kryo} instance and its own input and output buffers, which
+ * are re-used for every tuple; a tuple is copied once from the output buffer into the slice.
+ * </p>
+ *
+ * <p>
+ * Classes registered with the codec are written as a small integer instead of their name. The registrations are
+ * applied when the kryo instance of a thread is created, so classes should be registered in the constructor of the
+ * codec, which is where the engine creates it.<br/>
+ * Reference tracking is disabled by default since tuples are rarely object graphs with shared or cyclic references;
+ * it can be enabled with {@link #setReferences(boolean)}.
+ * </p>
+ *
+ * <p>
+ * Sub-classes can write tuples with a fixed schema more compactly by overriding {@link #writeTuple(Kryo, Output, Object)}
+ * and {@link #readTuple(Kryo, Input)}, see {@link MapStreamCodec}, {@link PojoStreamCodec} and
+ * {@link KeyValPairStreamCodec}.
+ * </p>
+ *
+ * @param <T> tuple type
+ * @since 0.9.4
+ */
+public class KryoStreamCodec<T> implements StreamCodec<T>
+{
+  private static final int INITIAL_BUFFER_SIZE = 4096;
+  /**
+   * Kryo registers the primitive types and String with the ids below this one.
+   */
+  private static final int MIN_REGISTRATION_ID = 10;
+
+  private static class State
+  {
+    final Kryo kryo;
+    final Output output = new Output(INITIAL_BUFFER_SIZE, -1);
+    final Input input = new Input();
+
+    State(Kryo kryo)
+    {
+      this.kryo = kryo;
+    }
+  }
+
+  private final List<Class<?>> registeredClasses = new ArrayList<Class<?>>();
+  private final List<Integer> registeredIds = new ArrayList<Integer>();
+  private boolean references;
+  private final ThreadLocal<State> state = new ThreadLocal<State>()
+  {
+    @Override
+    protected State initialValue()
+    {
+      return new State(newKryo());
+    }
+  };
+
+  /**
+   * Creates the kryo instance of a thread.
+   *
+   * @return kryo with the classes of the codec registered.
+   */
+  protected Kryo newKryo()
+  {
+    Kryo kryo = new Kryo();
+    kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    kryo.setReferences(references);
+    for (int i = 0; i < registeredClasses.size(); i++) {
+      Integer id = registeredIds.get(i);
+      if (id == null) {
+        kryo.register(registeredClasses.get(i));
+      }
+      else {
+        kryo.register(registeredClasses.get(i), id);
+      }
+    }
+    return kryo;
+  }
+
+  /**
+   * Registers a class so that it is written as an id which kryo assigns in the order of registration.
+   *
+   * @param clazz class to register.
+   */
+  public void register(@Nonnull Class<?> clazz)
+  {
+    registeredClasses.add(clazz);
+    registeredIds.add(null);
+  }
+
+  /**
+   * Registers a class with the given id. The id must be at least 10, since kryo reserves the lower ids for its built-in
+   * registrations, and must not be taken by a class which is already registered.
+   *
+   * @param clazz class to register.
+   * @param id    id of the class.
+   */
+  public void register(@Nonnull Class<?> clazz, int id)
+  {
+    Preconditions.checkArgument(id >= MIN_REGISTRATION_ID, "id %s is reserved by kryo", id);
+    Preconditions.checkArgument(newKryo().getRegistration(id) == null, "id %s is already registered", id);
+    registeredClasses.add(clazz);
+    registeredIds.add(id);
+  }
+
+  /**
+   * @param references true if kryo should track references to objects which occur more than once in a tuple.
+   */
+  public void setReferences(boolean references)
+  {
+    this.references = references;
+  }
+
+  public boolean isReferences()
+  {
+    return references;
+  }
+
+  /**
+   * Writes the tuple. Writes the class and the object by default.
+   *
+   * @param kryo   kryo of the current thread.
+   * @param output output.
+   * @param tuple  tuple.
+   */
+  protected void writeTuple(Kryo kryo, Output output, T tuple)
+  {
+    kryo.writeClassAndObject(output, tuple);
+  }
+
+  /**
+   * Reads a tuple which was written by {@link #writeTuple(Kryo, Output, Object)}.
+   *
+   * @param kryo  kryo of the current thread.
+   * @param input input.
+   * @return tuple.
+   */
+  @SuppressWarnings("unchecked")
+  protected T readTuple(Kryo kryo, Input input)
+  {
+    return (T)kryo.readClassAndObject(input);
+  }
+
+  @Override
+  public T fromByteArray(Slice fragment)
+  {
+    State current = state.get();
+    current.input.setBuffer(fragment.buffer, fragment.offset, fragment.length);
+    return readTuple(current.kryo, current.input);
+  }
+
+  @Override
+  public Slice toByteArray(T tuple)
+  {
+    State current = state.get();
+    current.output.clear();
+    writeTuple(current.kryo, current.output, tuple);
+    byte[] bytes = current.output.toBytes();
+    return new Slice(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public int getPartition(T tuple)
+  {
+    return tuple.hashCode();
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.codec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Stream codec for <code>Map&lt;String, Object&gt;</code> tuples with a fixed schema.<br/>
+ * The keys of the schema are not written and their values are written by type, without a class. Keys which are not
+ * in the schema are written with their names and the classes of their values, so tuples with extra keys still
+ * round trip. The values of a schema key must be of the type it was added with or null.
+ * </p>
+ *
+ * <p>
+ * The schema is defined in the constructor of a sub-class, which is how the engine creates the codec:
+ * <pre>
+ * public static class TradeCodec extends MapStreamCodec
+ * {
+ *   public TradeCodec()
+ *   {
+ *     addField("symbol", String.class);
+ *     addField("price", Double.class);
+ *     setPartitionKey("symbol");
+ *   }
+ * }
+ * </pre>
+ * </p>
+ *
+ * <p>
+ * Tuples are deserialized as {@link HashMap}s.
+ * </p>
+ *
+ * @since 0.9.4
+ */
+public class MapStreamCodec extends KryoStreamCodec<Map<String, Object>>
+{
+  private static final byte ABSENT = 2;
+
+  private final List<String> fieldNames = new ArrayList<String>();
+  private final List<FieldCodec> fieldCodecs = new ArrayList<FieldCodec>();
+  private String partitionKey;
+
+  /**
+   * Adds a key to the schema.
+   *
+   * @param name name of the key.
+   * @param type type of the values of the key.
+   */
+  public void addField(@Nonnull String name, @Nonnull Class<?> type)
+  {
+    Preconditions.checkArgument(!fieldNames.contains(name), "duplicate field %s", name);
+    fieldNames.add(name);
+    fieldCodecs.add(FieldCodec.forType(type));
+  }
+
+  /**
+   * @param partitionKey key whose value decides the partition of a tuple; when it is null the hash code of the whole
+   *                     map is used.
+   */
+  public void setPartitionKey(String partitionKey)
+  {
+    this.partitionKey = partitionKey;
+  }
+
+  public String getPartitionKey()
+  {
+    return partitionKey;
+  }
+
+  @Override
+  protected void writeTuple(Kryo kryo, Output output, Map<String, Object> tuple)
+  {
+    int noOfSchemaKeys = 0;
+    for (int i = 0; i < fieldNames.size(); i++) {
+      String name = fieldNames.get(i);
+      Object value = tuple.get(name);
+      if (value == null && !tuple.containsKey(name)) {
+        output.writeByte(ABSENT);
+      }
+      else {
+        fieldCodecs.get(i).write(kryo, output, value);
+        noOfSchemaKeys++;
+      }
+    }
+    int noOfOtherKeys = tuple.size() - noOfSchemaKeys;
+    output.writeInt(noOfOtherKeys, true);
+    if (noOfOtherKeys > 0) {
+      for (Map.Entry<String, Object> entry : tuple.entrySet()) {
+        if (!fieldNames.contains(entry.getKey())) {
+          output.writeString(entry.getKey());
+          kryo.writeClassAndObject(output, entry.getValue());
+        }
+      }
+    }
+  }
+
+  @Override
+  protected Map<String, Object> readTuple(Kryo kryo, Input input)
+  {
+    HashMap<String, Object> tuple = new HashMap<String, Object>();
+    for (int i = 0; i < fieldNames.size(); i++) {
+      byte marker = input.readByte();
+      if (marker == FieldCodec.VALUE) {
+        tuple.put(fieldNames.get(i), fieldCodecs.get(i).readValue(kryo, input));
+      }
+      else if (marker == FieldCodec.NULL) {
+        tuple.put(fieldNames.get(i), null);
+      }
+    }
+    int noOfOtherKeys = input.readInt(true);
+    for (int i = 0; i < noOfOtherKeys; i++) {
+      String key = input.readString();
+      tuple.put(key, kryo.readClassAndObject(input));
+    }
+    return tuple;
+  }
+
+  @Override
+  public int getPartition(Map<String, Object> tuple)
+  {
+    if (partitionKey == null) {
+      return tuple.hashCode();
+    }
+    Object value = tuple.get(partitionKey);
+    return value == null ? 0 : value.hashCode();
+  }
+}
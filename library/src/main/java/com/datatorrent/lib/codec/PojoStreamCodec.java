@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.codec;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.common.util.DTThrowable;
+
+/**
+ * <p>
+ * Stream codec for tuples of a single class.<br/>
+ * The fields of the class are found once when the codec is created: the non static, non transient fields of the class
+ * and its super classes, ordered by class and by name. Every tuple is written as the values of these fields without
+ * any class or field names; primitive fields are read and written without boxing. Fields of types without a
+ * dedicated codec are written with their class.
+ * </p>
+ *
+ * <p>
+ * The class is given in the constructor of a sub-class, which is how the engine creates the codec:
+ * <pre>
+ * public static class TradeCodec extends PojoStreamCodec&lt;Trade&gt;
+ * {
+ *   public TradeCodec()
+ *   {
+ *     super(Trade.class);
+ *   }
+ * }
+ * </pre>
+ * The class needs a no-arg constructor, which may be private.
+ * </p>
+ *
+ * @param <T> tuple type
+ * @since 0.9.4
+ */
+public class PojoStreamCodec<T> extends KryoStreamCodec<T>
+{
+  private final Class<T> tupleClass;
+  private final Field[] fields;
+  private final FieldCodec[] fieldCodecs;
+
+  public PojoStreamCodec(@Nonnull Class<T> tupleClass)
+  {
+    this.tupleClass = tupleClass;
+    List<Field> fieldList = new ArrayList<Field>();
+    for (Class<?> clazz = tupleClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+      Field[] declaredFields = clazz.getDeclaredFields();
+      Arrays.sort(declaredFields, new Comparator<Field>()
+      {
+        @Override
+        public int compare(Field field1, Field field2)
+        {
+          return field1.getName().compareTo(field2.getName());
+        }
+      });
+      List<Field> classFields = new ArrayList<Field>();
+      for (Field field : declaredFields) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+          continue;
+        }
+        field.setAccessible(true);
+        classFields.add(field);
+      }
+      fieldList.addAll(0, classFields);
+    }
+    fields = fieldList.toArray(new Field[fieldList.size()]);
+    fieldCodecs = new FieldCodec[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      fieldCodecs[i] = FieldCodec.forType(fields[i].getType());
+    }
+  }
+
+  @Override
+  protected void writeTuple(Kryo kryo, Output output, T tuple)
+  {
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        Field field = fields[i];
+        Class<?> type = field.getType();
+        if (!type.isPrimitive()) {
+          fieldCodecs[i].write(kryo, output, field.get(tuple));
+        }
+        else if (type == int.class) {
+          output.writeInt(field.getInt(tuple), false);
+        }
+        else if (type == long.class) {
+          output.writeLong(field.getLong(tuple), false);
+        }
+        else if (type == double.class) {
+          output.writeDouble(field.getDouble(tuple));
+        }
+        else if (type == float.class) {
+          output.writeFloat(field.getFloat(tuple));
+        }
+        else if (type == boolean.class) {
+          output.writeBoolean(field.getBoolean(tuple));
+        }
+        else if (type == short.class) {
+          output.writeShort(field.getShort(tuple));
+        }
+        else if (type == byte.class) {
+          output.writeByte(field.getByte(tuple));
+        }
+        else {
+          output.writeChar(field.getChar(tuple));
+        }
+      }
+    }
+    catch (IllegalAccessException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  @Override
+  protected T readTuple(Kryo kryo, Input input)
+  {
+    T tuple = kryo.newInstance(tupleClass);
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        Field field = fields[i];
+        Class<?> type = field.getType();
+        if (!type.isPrimitive()) {
+          field.set(tuple, fieldCodecs[i].read(kryo, input));
+        }
+        else if (type == int.class) {
+          field.setInt(tuple, input.readInt(false));
+        }
+        else if (type == long.class) {
+          field.setLong(tuple, input.readLong(false));
+        }
+        else if (type == double.class) {
+          field.setDouble(tuple, input.readDouble());
+        }
+        else if (type == float.class) {
+          field.setFloat(tuple, input.readFloat());
+        }
+        else if (type == boolean.class) {
+          field.setBoolean(tuple, input.readBoolean());
+        }
+        else if (type == short.class) {
+          field.setShort(tuple, input.readShort());
+        }
+        else if (type == byte.class) {
+          field.setByte(tuple, input.readByte());
+        }
+        else {
+          field.setChar(tuple, input.readChar());
+        }
+      }
+    }
+    catch (IllegalAccessException ex) {
+      DTThrowable.rethrow(ex);
+    }
+    return tuple;
+  }
+}
@@ -15,35 +15,70 @@
  */
 package com.datatorrent.lib.database;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
+import javax.validation.constraints.Min;
+
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import com.datatorrent.api.*;
 
+import com.datatorrent.common.util.DTThrowable;
 import com.datatorrent.lib.util.KeyValPair;
 
 /**
  * <br>Base opertor that maintains a loading cache that has a maximum size and its entries expire after specified time.</br>
+ * <br>The hits, misses and evictions of the cache are reported as custom stats of the operator every window.</br>
  * <br>Concrete implementations of this class should provide:</br>
  * <ul>
  * <li>Datbase Connector: this holds connection parameters and setup/teardown functionality.</li>
  * <li>Method to extract a key from tuple.</li>
  * <li>Query to fetch the value of the key from tuple when the value is not present in the cache.</li>
  * </ul>
+ * <br>When batched lookups are enabled, the keys missing in the cache are collected into batches which are fetched
+ * with {@link #fetchValuesFromDatabase(Set)} by a pool of threads, so the operator thread is not blocked by the
+ * database. At most {@link #maxConcurrentLookups} batches are fetched at a time. The results are emitted either in the
+ * order of the input tuples or as soon as they are available and all the lookups of a window are emitted before the
+ * window ends.</br>
  *
  * @param <T> type of tuples </T>
  * @since 0.9.1
  */
-public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator, ActivationListener<Context.OperatorContext>
+public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator, ActivationListener<Context.OperatorContext>, IdleTimeHandler
 {
   private transient StoreManager storeManager;
+  private transient CacheStore cacheStore;
+  private transient Context.OperatorContext context;
 
   protected final CacheProperties cacheProperties;
 
   protected String cacheRefreshTime;
 
+  protected boolean batchedLookups;
+
+  @Min(1)
+  protected int lookupBatchSize = 100;
+
+  @Min(1)
+  protected int maxConcurrentLookups = 2;
+
+  protected boolean emitInOrder = true;
+
+  //Lookups of the current window which are not emitted yet
+  private transient final Queue<Lookup> pendingLookups = new LinkedList<Lookup>();
+  private transient final Map<Object, Batch> unresolvedKeys = Maps.newHashMap();
+  private transient Batch currentBatch;
+  private transient ExecutorService lookupService;
+  private transient Semaphore lookupPermits;
+  private transient final AtomicInteger completedBatches = new AtomicInteger();
+  private transient int lastCompletedBatches;
+  private transient long sleepTimeMillis;
+
   public AbstractDBLookupCacheBackedOperator()
   {
     cacheProperties = new CacheProperties();
@@ -55,6 +90,10 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
     public void process(T tuple)
     {
       Object key = getKeyFromTuple(tuple);
+      if (batchedLookups) {
+        lookup(key);
+        return;
+      }
       Object value = storeManager.get(key);
 
       if (value != null) {
@@ -74,19 +113,172 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
   @Override
   public void endWindow()
   {
-    //Do nothing
+    if (batchedLookups) {
+      submitCurrentBatch();
+      while (!pendingLookups.isEmpty()) {
+        Lookup lookup = pendingLookups.poll();
+        emit(lookup, lookup.batch == null ? null : lookup.batch.getResult());
+      }
+      unresolvedKeys.clear();
+    }
+    context.setCustomStats(cacheStore.getStats());
+  }
+
+  private void lookup(Object key)
+  {
+    Object value = cacheStore.getValueFor(key);
+    if (value != null) {
+      if (emitInOrder && !pendingLookups.isEmpty()) {
+        pendingLookups.add(new Lookup(key, null, value));
+      }
+      else {
+        output.emit(new KeyValPair<Object, Object>(key, value));
+      }
+      return;
+    }
+
+    Batch batch = unresolvedKeys.get(key);
+    if (batch == null) {
+      if (currentBatch == null) {
+        currentBatch = new Batch();
+      }
+      batch = currentBatch;
+      batch.keys.add(key);
+      unresolvedKeys.put(key, batch);
+    }
+    pendingLookups.add(new Lookup(key, batch, null));
+
+    if (currentBatch != null && currentBatch.keys.size() >= lookupBatchSize) {
+      submitCurrentBatch();
+    }
+    if (completedBatches.get() != lastCompletedBatches) {
+      emitCompletedLookups();
+    }
+  }
+
+  private void submitCurrentBatch()
+  {
+    if (currentBatch == null) {
+      return;
+    }
+    final Batch batch = currentBatch;
+    currentBatch = null;
+    try {
+      lookupPermits.acquire();
+    }
+    catch (InterruptedException ie) {
+      throw new RuntimeException(ie);
+    }
+    FutureTask<Map<Object, Object>> task = new FutureTask<Map<Object, Object>>(new Callable<Map<Object, Object>>()
+    {
+      @Override
+      public Map<Object, Object> call() throws Exception
+      {
+        try {
+          Map<Object, Object> values = fetchValuesFromDatabase(batch.keys);
+          if (values == null) {
+            return Collections.emptyMap();
+          }
+          for (Map.Entry<Object, Object> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+              cacheStore.setValueFor(entry.getKey(), entry.getValue());
+            }
+          }
+          return values;
+        }
+        finally {
+          lookupPermits.release();
+        }
+      }
+    })
+    {
+      @Override
+      protected void done()
+      {
+        completedBatches.incrementAndGet();
+      }
+    };
+    batch.future = task;
+    lookupService.execute(task);
+  }
+
+  /**
+   * Emits the lookups whose batches are fetched. When the results are emitted in order, this stops at the first
+   * lookup which is not resolved yet.
+   *
+   * @return true if any lookup was emitted; false otherwise.
+   */
+  private boolean emitCompletedLookups()
+  {
+    lastCompletedBatches = completedBatches.get();
+    boolean emitted = false;
+    for (Iterator<Lookup> iterator = pendingLookups.iterator(); iterator.hasNext(); ) {
+      Lookup lookup = iterator.next();
+      if (lookup.batch != null && !lookup.batch.isDone()) {
+        if (emitInOrder) {
+          break;
+        }
+        continue;
+      }
+      iterator.remove();
+      emit(lookup, lookup.batch == null ? null : lookup.batch.getResult());
+      emitted = true;
+    }
+    return emitted;
+  }
+
+  private void emit(Lookup lookup, Map<Object, Object> batchResult)
+  {
+    Object value = lookup.value;
+    if (lookup.batch != null) {
+      value = batchResult.get(lookup.key);
+      if (unresolvedKeys.get(lookup.key) == lookup.batch) {
+        unresolvedKeys.remove(lookup.key);
+      }
+    }
+    if (value != null) {
+      output.emit(new KeyValPair<Object, Object>(lookup.key, value));
+    }
+  }
+
+  @Override
+  public void handleIdleTime()
+  {
+    if (batchedLookups) {
+      submitCurrentBatch();
+      if (emitCompletedLookups()) {
+        return;
+      }
+    }
+    /* nothing to do here, so sleep for a while to avoid busy loop */
+    try {
+      Thread.sleep(sleepTimeMillis);
+    }
+    catch (InterruptedException ie) {
+      throw new RuntimeException(ie);
+    }
   }
 
   @Override
   public void setup(Context.OperatorContext context)
   {
-    storeManager = new StoreManager(new CacheStore(cacheProperties), new DatabaseStore());
+    this.context = context;
+    sleepTimeMillis = context.getValue(Context.OperatorContext.SPIN_MILLIS);
+    if (batchedLookups) {
+      lookupService = Executors.newFixedThreadPool(maxConcurrentLookups);
+      lookupPermits = new Semaphore(maxConcurrentLookups);
+    }
+    cacheStore = new CacheStore(cacheProperties);
+    storeManager = new StoreManager(cacheStore, new DatabaseStore());
     storeManager.initialize(cacheRefreshTime);
   }
 
   @Override
   public void teardown()
   {
+    if (lookupService != null) {
+      lookupService.shutdownNow();
+    }
     storeManager.shutdown();
   }
 
@@ -112,6 +304,38 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
     cacheProperties.setMaxCacheSize(maxCacheSize);
   }
 
+  /**
+   * Sets the maximum total weight of the cache entries.
+   *
+   * @param maxCacheWeight the max weight of cache entries in memory.
+   * @see CacheProperties#setMaxCacheWeight(long)
+   */
+  public void setMaxCacheWeight(long maxCacheWeight)
+  {
+    cacheProperties.setMaxCacheWeight(maxCacheWeight);
+  }
+
+  /**
+   * Sets the weigher of cache entries.
+   *
+   * @param weigher the weigher of cache entries.
+   */
+  public void setWeigher(Weigher<Object, Object> weigher)
+  {
+    cacheProperties.setWeigher(weigher);
+  }
+
+  /**
+   * Sets the minimum no. of recent lookups of a key before it is admitted into a full cache.
+   *
+   * @param admissionFrequency the minimum no. of recent lookups of a key.
+   * @see CacheProperties#setAdmissionFrequency(int)
+   */
+  public void setAdmissionFrequency(int admissionFrequency)
+  {
+    cacheProperties.setAdmissionFrequency(admissionFrequency);
+  }
+
   /**
    * Sets {@link CacheStore.ExpiryType} strategy.
    *
@@ -153,6 +377,69 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
     cacheRefreshTime = time;
   }
 
+  /**
+   * Enables fetching of the keys missing in cache in batches which are issued asynchronously.
+   *
+   * @param batchedLookups true to fetch missing keys in batches; false to fetch them one at a time.
+   */
+  public void setBatchedLookups(boolean batchedLookups)
+  {
+    this.batchedLookups = batchedLookups;
+  }
+
+  public boolean isBatchedLookups()
+  {
+    return batchedLookups;
+  }
+
+  /**
+   * Sets the no. of missing keys which are fetched together. A smaller batch is fetched when the operator is idle or
+   * the window ends.
+   *
+   * @param lookupBatchSize max no. of keys in a batch.
+   */
+  public void setLookupBatchSize(int lookupBatchSize)
+  {
+    this.lookupBatchSize = lookupBatchSize;
+  }
+
+  public int getLookupBatchSize()
+  {
+    return lookupBatchSize;
+  }
+
+  /**
+   * Sets the max no. of batches which are fetched from the database at the same time. The operator waits when
+   * these many batches are being fetched.
+   *
+   * @param maxConcurrentLookups max no. of concurrent batch fetches.
+   */
+  public void setMaxConcurrentLookups(int maxConcurrentLookups)
+  {
+    this.maxConcurrentLookups = maxConcurrentLookups;
+  }
+
+  public int getMaxConcurrentLookups()
+  {
+    return maxConcurrentLookups;
+  }
+
+  /**
+   * When true the results of batched lookups are emitted in the order of input tuples; otherwise they are emitted as
+   * soon as they are fetched. Default is true.
+   *
+   * @param emitInOrder whether to emit results in the order of input tuples.
+   */
+  public void setEmitInOrder(boolean emitInOrder)
+  {
+    this.emitInOrder = emitInOrder;
+  }
+
+  public boolean isEmitInOrder()
+  {
+    return emitInOrder;
+  }
+
   /**
    * <br>This operator receives tuples which encapsulates the keys. Concrete classes should
    * provide the implementation to extract a key from a tuple.</br>
@@ -174,6 +461,7 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
 
   /**
    * <br>Fetch values of multiple keys from the database.</br>
+   * <br>With batched lookups this is invoked concurrently by up to {@link #maxConcurrentLookups} threads.</br>
    *
    * @param keys set of keys.
    * @return map of keys to their values in the database.
@@ -196,6 +484,45 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
   @Nonnull
   public abstract DBConnector getDbConnector();
 
+  private static class Lookup
+  {
+    final Object key;
+    final Batch batch;
+    final Object value;
+
+    Lookup(Object key, Batch batch, Object value)
+    {
+      this.key = key;
+      this.batch = batch;
+      this.value = value;
+    }
+  }
+
+  private static class Batch
+  {
+    final Set<Object> keys = Sets.newHashSet();
+    Future<Map<Object, Object>> future;
+
+    boolean isDone()
+    {
+      return future != null && future.isDone();
+    }
+
+    Map<Object, Object> getResult()
+    {
+      try {
+        return future.get();
+      }
+      catch (ExecutionException ee) {
+        DTThrowable.rethrow(ee.getCause());
+      }
+      catch (InterruptedException ie) {
+        DTThrowable.rethrow(ie);
+      }
+      return null;
+    }
+  }
+
   public class DatabaseStore implements Store.Backup
   {
 
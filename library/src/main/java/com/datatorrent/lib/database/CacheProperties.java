@@ -17,6 +17,8 @@ package com.datatorrent.lib.database;
 
 import javax.validation.constraints.Min;
 
+import com.google.common.cache.Weigher;
+
 /**
  * <br>Properties and their default values which is used by {@link CacheStore} to create the cache.</br>
  *
@@ -36,6 +38,14 @@ public class CacheProperties
 
   CacheStore.ExpiryType entryExpiryStrategy = CacheStore.ExpiryType.EXPIRE_AFTER_ACCESS;
 
+  @Min(0)
+  long maxCacheWeight = 0;
+
+  Weigher<Object, Object> weigher;
+
+  @Min(0)
+  int admissionFrequency = 0;
+
   /**
    * Sets the max size of cache.
    * @param maxCacheSize the max size of cache in memory.
@@ -63,6 +73,36 @@ public class CacheProperties
     this.entryExpiryDurationInMillis = durationInMillis;
   }
 
+  /**
+   * Sets the max total weight of the entries in cache. When this is set, the cache is bounded by the weight of its
+   * entries computed by the {@link #setWeigher(Weigher) weigher} instead of the no. of entries.
+   * @param maxCacheWeight the max weight of entries in memory, e.g., bytes.
+   */
+  public void setMaxCacheWeight(long maxCacheWeight)
+  {
+    this.maxCacheWeight = maxCacheWeight;
+  }
+
+  /**
+   * Sets the weigher which computes the weight of cache entries. This is required when max cache weight is set.
+   * @param weigher the weigher of cache entries.
+   */
+  public void setWeigher(Weigher<Object, Object> weigher)
+  {
+    this.weigher = weigher;
+  }
+
+  /**
+   * Sets the minimum no. of recent lookups of a key before it is admitted into a full cache. A full cache evicts
+   * an entry to admit a new one, so this keeps rarely looked up keys from pushing frequently looked up keys out.
+   * When this is 0, every key is admitted.
+   * @param admissionFrequency the minimum no. of recent lookups of a key.
+   */
+  public void setAdmissionFrequency(int admissionFrequency)
+  {
+    this.admissionFrequency = admissionFrequency;
+  }
+
   /**
    * Sets the interval at which cache is cleaned up regularly.
    * @param durationInMillis the duration after which cache is cleaned up regularly.
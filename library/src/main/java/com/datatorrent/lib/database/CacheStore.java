@@ -15,15 +15,24 @@
  */
 package com.datatorrent.lib.database;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+import com.datatorrent.api.Stats.OperatorStats.CustomStats;
 
 /**
  * <br>A {@link Store.Primary} that keeps key/value pairs in memory.</br>
@@ -32,10 +41,14 @@ import com.google.common.cache.CacheBuilder;
  * <ul>
  * <li>Transient: It is not checkpointed.</li>
  * <li>Max Cache Size: it starts evicting entries before this limit is exceeded.</li>
+ * <li>Max Cache Weight: when set, the cache is bounded by the total weight of its entries instead of their count.</li>
+ * <li>Admission frequency: when set, a full cache admits a key only after it was looked up these many times recently and
+ * more often than the least recently used key, which it would evict.</li>
  * <li>Entry expirty time: the entries epire after the specified duration.</li>
  * <li>Cache cleanup interval: the interval at which the cache is cleaned up of expired entries periodically.</li>
  * </ul>
  * <br>These properties of the cache are encapsulated in {@link CacheProperties}</br>
+ * <br>The store counts hits, misses, evictions and rejected admissions which are available through {@link #getStats()}.</br>
  *
  * @since 0.9.2
  */
@@ -43,12 +56,75 @@ public class CacheStore implements Store.Primary
 {
   private transient ScheduledExecutorService cleanupScheduler;
   private transient Cache<Object, Object> cache;
+  private transient final FrequencySketch frequencySketch;
+  private transient final int admissionFrequency;
+  private transient final AtomicLong hitCount;
+  private transient final AtomicLong missCount;
+  private transient final AtomicLong evictionCount;
+  private transient final AtomicLong rejectionCount;
+  private transient final long maxCacheSize;
+  private transient final long maxCacheWeight;
+  private transient final Weigher<Object, Object> weigher;
+  //with admission, the keys in the order of their use, the first one is evicted next; guarded by itself
+  private transient final LinkedHashMap<Object, Boolean> usageOrder;
+  //with admission and a max weight, the total weight of the entries
+  private transient final AtomicLong totalWeight;
 
   public CacheStore(CacheProperties properties)
   {
     Preconditions.checkNotNull(properties.entryExpiryStrategy, "expiryType");
+    hitCount = new AtomicLong();
+    missCount = new AtomicLong();
+    evictionCount = new AtomicLong();
+    rejectionCount = new AtomicLong();
+    maxCacheSize = properties.maxCacheSize;
+    maxCacheWeight = properties.maxCacheWeight;
+    weigher = properties.weigher;
+    admissionFrequency = properties.admissionFrequency;
+    if (admissionFrequency > 0) {
+      frequencySketch = new FrequencySketch(properties.maxCacheSize);
+      usageOrder = new LinkedHashMap<Object, Boolean>(16, 0.75f, true);
+      totalWeight = new AtomicLong();
+    }
+    else {
+      frequencySketch = null;
+      usageOrder = null;
+      totalWeight = null;
+    }
 
     CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+    if (usageOrder != null) {
+      //a single segment evicts the least recently used entry of the whole cache, which is the victim of admission
+      cacheBuilder = cacheBuilder.concurrencyLevel(1);
+    }
+    if (properties.maxCacheWeight > 0) {
+      Preconditions.checkNotNull(properties.weigher, "weigher");
+      cacheBuilder = cacheBuilder.maximumWeight(properties.maxCacheWeight).weigher(properties.weigher);
+    }
+    else {
+      cacheBuilder.maximumSize(properties.maxCacheSize);
+    }
+    cacheBuilder = cacheBuilder.removalListener(new RemovalListener<Object, Object>()
+    {
+      @Override
+      public void onRemoval(RemovalNotification<Object, Object> notification)
+      {
+        if (notification.getCause() == RemovalCause.SIZE) {
+          evictionCount.incrementAndGet();
+        }
+        if (usageOrder != null) {
+          if (notification.getCause() != RemovalCause.REPLACED) {
+            synchronized (usageOrder) {
+              usageOrder.remove(notification.getKey());
+            }
+          }
+          if (maxCacheWeight > 0) {
+            totalWeight.addAndGet(-weigher.weigh(notification.getKey(), notification.getValue()));
+          }
+        }
+      }
+    });
+
     if (properties.entryExpiryStrategy == ExpiryType.EXPIRE_AFTER_ACCESS) {
       cacheBuilder.expireAfterAccess(properties.entryExpiryDurationInMillis, TimeUnit.MILLISECONDS);
     }
@@ -70,7 +146,47 @@ public class CacheStore implements Store.Primary
   @Override
   public void setValueFor(Object key, Object value)
   {
+    if (usageOrder == null) {
+      cache.put(key, value);
+      return;
+    }
+    if (!admit(key, value)) {
+      rejectionCount.incrementAndGet();
+      return;
+    }
     cache.put(key, value);
+    synchronized (usageOrder) {
+      usageOrder.put(key, Boolean.TRUE);
+    }
+    if (maxCacheWeight > 0) {
+      totalWeight.addAndGet(weigher.weigh(key, value));
+    }
+  }
+
+  /**
+   * A new key is admitted into a full cache only when it was looked up at least admissionFrequency times recently and
+   * more often than the key which would be evicted for it.
+   */
+  private boolean admit(Object key, Object value)
+  {
+    if (cache.asMap().containsKey(key)) {
+      return true;
+    }
+    boolean full = maxCacheWeight > 0 ? totalWeight.get() + weigher.weigh(key, value) > maxCacheWeight :
+      cache.size() >= maxCacheSize;
+    if (!full) {
+      return true;
+    }
+    int frequency = frequencySketch.frequency(key);
+    if (frequency < admissionFrequency) {
+      return false;
+    }
+    Object victim;
+    synchronized (usageOrder) {
+      Iterator<Object> iterator = usageOrder.keySet().iterator();
+      victim = iterator.hasNext() ? iterator.next() : null;
+    }
+    return victim == null || frequency > frequencySketch.frequency(victim);
   }
 
   @Override
@@ -82,19 +198,64 @@ public class CacheStore implements Store.Primary
   @Override
   public void bulkSet(Map<Object, Object> data)
   {
-    cache.asMap().putAll(data);
+    if (usageOrder == null) {
+      cache.asMap().putAll(data);
+      return;
+    }
+    for (Map.Entry<Object, Object> entry : data.entrySet()) {
+      setValueFor(entry.getKey(), entry.getValue());
+    }
   }
 
   @Override
   public Object getValueFor(Object key)
   {
-    return cache.getIfPresent(key);
+    if (frequencySketch != null) {
+      frequencySketch.increment(key);
+    }
+    Object value = cache.getIfPresent(key);
+    if (value != null) {
+      hitCount.incrementAndGet();
+      if (usageOrder != null) {
+        synchronized (usageOrder) {
+          usageOrder.get(key);
+        }
+      }
+    }
+    else {
+      missCount.incrementAndGet();
+    }
+    return value;
   }
 
   @Override
   public Map<Object, Object> bulkGet(Set<Object> keys)
   {
-    return cache.getAllPresent(keys);
+    Map<Object, Object> values = cache.getAllPresent(keys);
+    if (usageOrder != null) {
+      synchronized (usageOrder) {
+        for (Object key : values.keySet()) {
+          usageOrder.get(key);
+        }
+      }
+    }
+    hitCount.addAndGet(values.size());
+    missCount.addAndGet(keys.size() - values.size());
+    return values;
+  }
+
+  /**
+   * @return counts of the cache lookups and evictions.
+   */
+  public CacheStoreStats getStats()
+  {
+    CacheStoreStats stats = new CacheStoreStats();
+    stats.hitCount = hitCount.get();
+    stats.missCount = missCount.get();
+    stats.evictionCount = evictionCount.get();
+    stats.rejectionCount = rejectionCount.get();
+    stats.size = cache.size();
+    return stats;
   }
 
   @Override
@@ -103,6 +264,66 @@ public class CacheStore implements Store.Primary
     cleanupScheduler.shutdown();
   }
 
+  /**
+   * Stats of the cache which are sent to the engine as custom stats of the operator.
+   */
+  public static class CacheStoreStats implements CustomStats
+  {
+    private static final long serialVersionUID = 201405221200L;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long rejectionCount;
+    private long size;
+
+    /**
+     * @return no. of lookups of keys which were present in the cache.
+     */
+    public long getHitCount()
+    {
+      return hitCount;
+    }
+
+    /**
+     * @return no. of lookups of keys which were not present in the cache.
+     */
+    public long getMissCount()
+    {
+      return missCount;
+    }
+
+    /**
+     * @return no. of entries evicted because the cache was full.
+     */
+    public long getEvictionCount()
+    {
+      return evictionCount;
+    }
+
+    /**
+     * @return no. of keys which were not admitted into the full cache.
+     */
+    public long getRejectionCount()
+    {
+      return rejectionCount;
+    }
+
+    /**
+     * @return approximate no. of entries in the cache.
+     */
+    public long getSize()
+    {
+      return size;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "CacheStoreStats{" + "hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" +
+        evictionCount + ", rejectionCount=" + rejectionCount + ", size=" + size + '}';
+    }
+  }
+
   /**
    * Strategies for time-based expiration of entries.
    */
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.database;
+
+/**
+ * <br>Approximate count of recent lookups of keys which is used by {@link CacheStore} to decide whether a key is
+ * admitted into a full cache.</br>
+ * <br>This is a count-min sketch of 4 rows of saturating counters. All the counters are halved after a sample of
+ * lookups so that the counts reflect the recent popularity of keys.</br>
+ */
+class FrequencySketch
+{
+  private static final int NO_OF_ROWS = 4;
+  private static final int MAX_COUNT = 15;
+  private static final int MAX_WIDTH = 1 << 20;
+  private static final int[] SEEDS = {0x97cb3127, 0xb3b2ab5d, 0x5bd1e995, 0x1b873593};
+
+  private final byte[][] counters;
+  private final int mask;
+  private final int sampleSize;
+  private int noOfIncrements;
+
+  /**
+   * @param expectedNoOfKeys expected no. of keys in the cache.
+   */
+  FrequencySketch(long expectedNoOfKeys)
+  {
+    int width = 16;
+    while (width < expectedNoOfKeys && width < MAX_WIDTH) {
+      width <<= 1;
+    }
+    counters = new byte[NO_OF_ROWS][width];
+    mask = width - 1;
+    sampleSize = 10 * width;
+  }
+
+  private int index(int hash, int row)
+  {
+    int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+    h ^= h >>> 16;
+    return h & mask;
+  }
+
+  private static int spread(Object key)
+  {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    return h;
+  }
+
+  /**
+   * Records a lookup of the key.
+   *
+   * @param key key.
+   */
+  synchronized void increment(Object key)
+  {
+    int hash = spread(key);
+    for (int row = 0; row < NO_OF_ROWS; row++) {
+      int index = index(hash, row);
+      if (counters[row][index] < MAX_COUNT) {
+        counters[row][index]++;
+      }
+    }
+    if (++noOfIncrements >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * @param key key.
+   * @return estimated no. of recent lookups of the key.
+   */
+  synchronized int frequency(Object key)
+  {
+    int hash = spread(key);
+    int frequency = MAX_COUNT;
+    for (int row = 0; row < NO_OF_ROWS; row++) {
+      frequency = Math.min(frequency, counters[row][index(hash, row)]);
+    }
+    return frequency;
+  }
+
+  private void reset()
+  {
+    for (byte[] row : counters) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] >>= 1;
+      }
+    }
+    noOfIncrements /= 2;
+  }
+}
@@ -97,7 +97,9 @@ public class StoreManager
 
   public void shutdown()
   {
-    refresher.cancel();
+    if (refresher != null) {
+      refresher.cancel();
+    }
     primary.shutdownStore();
     backup.shutdownStore();
   }
@@ -15,6 +15,7 @@
  */
 package com.datatorrent.lib.db;
 
+import java.io.Flushable;
 import java.io.IOException;
 
 import com.datatorrent.api.BaseOperator;
@@ -24,7 +25,8 @@ import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 
 /**
  * This abstract class is for any implementation of an output adapter of non-transactional store {@link Connectable}
- * without the transactional exactly once feature.
+ * without the transactional exactly once feature. A store which buffers its writes and is {@link Flushable} is flushed
+ * at the end of every window.
  *
  * @param <T> The tuple type
  * @param <S> The store type
@@ -82,6 +84,19 @@ public abstract class AbstractStoreOutputOperator<T, S extends Connectable> exte
   {
   }
 
+  @Override
+  public void endWindow()
+  {
+    if (store instanceof Flushable) {
+      try {
+        ((Flushable)store).flush();
+      }
+      catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+
   @Override
   public void teardown()
   {
@@ -31,6 +31,7 @@ import com.google.common.collect.Sets;
 
 import com.datatorrent.api.*;
 import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.Stats.OperatorStats.CustomStats;
 
 import com.datatorrent.common.util.DTThrowable;
 import com.datatorrent.lib.bucket.Bucket;
@@ -59,6 +60,10 @@ import com.datatorrent.lib.bucket.BucketStore;
  * <li>
  * If the bucket is loaded, the operator drop the event if it is already present in the bucket; drops it otherwise.
  * </li>
+ * <li>
+ * If the {@link BucketManager} maintains bloom filters and the bloom filter of the bucket does not contain the event,
+ * the event is emitted without loading the bucket.
+ * </li>
  * </ol>
  * </p>
  *
@@ -70,7 +75,8 @@ import com.datatorrent.lib.bucket.BucketStore;
  * @param <OUTPUT> type of output tuple</OUTPUT>
  */
 public abstract class Deduper<INPUT extends BucketEvent, OUTPUT>
-  implements Operator, ActivationListener<Context.OperatorContext>, BucketManager.Listener, IdleTimeHandler, Partitionable<Deduper<INPUT, OUTPUT>>
+  implements Operator, ActivationListener<Context.OperatorContext>, BucketManager.Listener, IdleTimeHandler, Partitionable<Deduper<INPUT, OUTPUT>>,
+  CheckpointListener
 {
   //Check-pointed state
   @Nonnull
@@ -87,6 +93,8 @@ public abstract class Deduper<INPUT extends BucketEvent, OUTPUT>
   protected transient Set<Integer> partitionKeys;
   protected transient int partitionMask;
   private transient long sleepTimeMillis;
+  private transient OperatorContext context;
+  private transient BucketStore<INPUT> bucketStore;
 
   public Deduper()
   {
@@ -115,12 +123,16 @@ public abstract class Deduper<INPUT extends BucketEvent, OUTPUT>
     } //ignore event
 
     Bucket<INPUT> bucket = bucketManager.getBucket(bucketKey);
+    if (bucket == null && bucketManager.isExpired(bucketKey)) {
+      return;
+    } //ignore event of an expired bucket
 
     if (bucket != null && bucket.containsEvent(tuple)) {
       return;
     } //ignore event
 
-    if (bucket != null && bucket.isDataOnDiskLoaded()) {
+    if ((bucket != null && bucket.isDataOnDiskLoaded()) || !bucketManager.mightContainEvent(bucketKey, tuple)) {
+      //Either the bucket is loaded or the bloom filter of the bucket guarantees that the event is not in the store.
       bucketManager.newEvent(bucketKey, tuple);
       output.emit(convert(tuple));
     }
@@ -150,8 +162,10 @@ public abstract class Deduper<INPUT extends BucketEvent, OUTPUT>
   public void setup(Context.OperatorContext context)
   {
     sleepTimeMillis = context.getValue(OperatorContext.SPIN_MILLIS);
+    this.context = context;
+    bucketStore = getBucketStore(context);
     try {
-      bucketManager.startService(getBucketStore(context), this);
+      bucketManager.startService(bucketStore, this);
     }
     catch (Throwable cause) {
       DTThrowable.rethrow(cause);
@@ -191,15 +205,32 @@ public abstract class Deduper<INPUT extends BucketEvent, OUTPUT>
       handleIdleTime();
       Preconditions.checkArgument(waitingEvents.isEmpty(), waitingEvents.keySet());
       bucketManager.endWindow(currentWindow);
+      CustomStats stats = bucketStore.getStats();
+      if (stats != null) {
+        context.setCustomStats(stats);
+      }
     }
     catch (Throwable cause) {
       DTThrowable.rethrow(cause);
     }
   }
 
+  @Override
+  public void checkpointed(long window)
+  {
+    bucketManager.checkpointed(window);
+  }
+
+  @Override
+  public void committed(long window)
+  {
+    bucketManager.committed(window);
+  }
+
   @Override
   public void handleIdleTime()
   {
+    bucketManager.notifyListener();
     if (bucketsLoaded.isEmpty()) {
       /* nothing to do here, so sleep for a while to avoid busy loop */
       try {
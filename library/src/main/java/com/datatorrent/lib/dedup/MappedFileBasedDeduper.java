@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.dedup;
+
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.api.Context;
+
+import com.datatorrent.lib.bucket.BucketStore;
+import com.datatorrent.lib.bucket.MappedBucketStore;
+import com.datatorrent.lib.bucket.TimeEvent;
+
+/**
+ * A deduper which uses memory mapped segment files on the local file-system as its backing store.<br/>
+ * The {@link #bucketsDirectory} should be a local directory which survives container restarts.
+ */
+public abstract class MappedFileBasedDeduper<INPUT extends TimeEvent, OUTPUT> extends DeduperWithTimeBuckets<INPUT, OUTPUT>
+{
+  @NotNull
+  protected String bucketsDirectory;
+
+  /**
+   * Sets the local directory where the bucket segment files are created.
+   *
+   * @param bucketsDirectory local directory of bucket segments.
+   */
+  public void setBucketsDirectory(String bucketsDirectory)
+  {
+    this.bucketsDirectory = bucketsDirectory;
+  }
+
+  public String getBucketsDirectory()
+  {
+    return bucketsDirectory;
+  }
+
+  @Override
+  protected BucketStore<INPUT> getBucketStore(Context.OperatorContext context)
+  {
+    return new MappedBucketStore<INPUT>(bucketsDirectory, context.getId(), partitionKeys, partitionMask);
+  }
+
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream.SyncFlag;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.common.util.DTThrowable;
+
+/**
+ * Adapter for writing to HDFS in large blocks from a background thread
+ * <p>
+ * The bytes of the tuples are copied into blocks of blockSize bytes. Full blocks are handed to a writer thread which
+ * compresses them with the Hadoop codec compressionCodec, if set, and writes them to the file, so the operator
+ * thread neither compresses nor waits for HDFS until the end of the window. Blocks are re-used, and at most
+ * maxPendingBlocks are waiting to be written. At the end of the window the rest of the window is written and the
+ * compressed stream is finished, so every window ends on a boundary where the file can be cut. The file is synced at
+ * the end of every window, with the length updated on the name node when the file system is HDFS, so the data of the
+ * checkpointed length is durable.
+ * </p>
+ * <p>
+ * Files are rolled at window boundaries when the next window is expected to make the file larger than maxFileSize,
+ * after rollWindowCount windows or after rollIntervalMillis. maxFileSize defaults to the block size of the file
+ * system and files are created with a block size of maxFileSize, so a file fills a single block. A file is written
+ * with the suffix .tmp and renamed when it is rolled.
+ * </p>
+ * <p>
+ * The part index of the file and its length at the end of the last window are checkpointed. When a failed operator is
+ * recovered the lease of the file held by the failed writer is recovered first, then the file is cut back to its
+ * length at the checkpoint and the files rolled after the checkpoint are removed, so the replayed windows are written
+ * exactly once.
+ * </p>
+ * <p>
+ * The file path pattern must have the place holders %(operatorId) and %(partIndex), e.g.
+ * hdfs:///mydir/adviews.out.%(operatorId).part-%(partIndex). The default extension of the codec is appended.
+ * </p>
+ *
+ * @param <T> tuple type
+ * @since 0.9.4
+ */
+public abstract class AbstractBlockHdfsOutputOperator<T> extends BaseOperator
+{
+  public static final String FNAME_SUB_OPERATOR_ID = "%(operatorId)";
+  public static final String FNAME_SUB_PART_INDEX = "%(partIndex)";
+  private static final String TMP_EXTENSION = ".tmp";
+
+  @NotNull
+  private String filePathPattern;
+  private String compressionCodec;
+  @Min(1)
+  private int blockSize = 4 * 1024 * 1024;
+  @Min(1)
+  private int maxPendingBlocks = 4;
+  private long maxFileSize;
+  private int rollWindowCount;
+  private long rollIntervalMillis;
+  private int replication;
+  @Min(1)
+  private long leaseRecoveryPollMillis = 1000;
+
+  // checkpointed state of the file being written
+  private int partIndex;
+  private long fileLength;
+  private long lastWindowLength;
+  private int fileWindowCount;
+  private long fileOpenTime;
+  private long totalBytesWritten;
+
+  private transient int operatorId;
+  private transient FileSystem fs;
+  private transient CompressionCodec codec;
+  private transient FSDataOutputStream fsOutput;
+  private transient CompressionOutputStream codecOutput;
+  private transient Block current;
+  private transient BlockingQueue<Block> freeBlocks;
+  private transient BlockingQueue<Block> pendingBlocks;
+  private transient BlockingQueue<Long> windowLengths;
+  private transient Thread writerThread;
+  private transient volatile Throwable writerError;
+
+  private static class Block
+  {
+    final byte[] bytes;
+    int length;
+    boolean windowEnd;
+
+    Block(int size)
+    {
+      bytes = new byte[size];
+    }
+  }
+
+  public final transient DefaultInputPort<T> input = new DefaultInputPort<T>()
+  {
+    @Override
+    public void process(T t)
+    {
+      write(getBytesForTuple(t));
+    }
+  };
+
+  public String getFilePathPattern()
+  {
+    return filePathPattern;
+  }
+
+  /**
+   * @param filePathPattern path of the files with the place holders %(operatorId) and %(partIndex).
+   */
+  public void setFilePathPattern(String filePathPattern)
+  {
+    this.filePathPattern = filePathPattern;
+  }
+
+  public String getCompressionCodec()
+  {
+    return compressionCodec;
+  }
+
+  /**
+   * @param compressionCodec class or name of a Hadoop compression codec, e.g. gzip, snappy or lz4; null to write
+   *                         uncompressed files.
+   */
+  public void setCompressionCodec(String compressionCodec)
+  {
+    this.compressionCodec = compressionCodec;
+  }
+
+  public int getBlockSize()
+  {
+    return blockSize;
+  }
+
+  public void setBlockSize(int blockSize)
+  {
+    this.blockSize = blockSize;
+  }
+
+  public int getMaxPendingBlocks()
+  {
+    return maxPendingBlocks;
+  }
+
+  public void setMaxPendingBlocks(int maxPendingBlocks)
+  {
+    this.maxPendingBlocks = maxPendingBlocks;
+  }
+
+  public long getMaxFileSize()
+  {
+    return maxFileSize;
+  }
+
+  /**
+   * @param maxFileSize size in bytes after which files are rolled; 0 for the block size of the file system.
+   */
+  public void setMaxFileSize(long maxFileSize)
+  {
+    this.maxFileSize = maxFileSize;
+  }
+
+  public int getRollWindowCount()
+  {
+    return rollWindowCount;
+  }
+
+  /**
+   * @param rollWindowCount no. of windows after which files are rolled; 0 to not roll by windows.
+   */
+  public void setRollWindowCount(int rollWindowCount)
+  {
+    this.rollWindowCount = rollWindowCount;
+  }
+
+  public long getRollIntervalMillis()
+  {
+    return rollIntervalMillis;
+  }
+
+  /**
+   * @param rollIntervalMillis time after which files are rolled; 0 to not roll by time.
+   */
+  public void setRollIntervalMillis(long rollIntervalMillis)
+  {
+    this.rollIntervalMillis = rollIntervalMillis;
+  }
+
+  /**
+   * @param replication replication factor; value <= 0 indicates that the file systems default replication is used.
+   */
+  public void setReplication(int replication)
+  {
+    this.replication = replication;
+  }
+
+  public long getLeaseRecoveryPollMillis()
+  {
+    return leaseRecoveryPollMillis;
+  }
+
+  /**
+   * @param leaseRecoveryPollMillis interval at which recovery checks whether the lease of the file of a failed writer
+   *                                was released.
+   */
+  public void setLeaseRecoveryPollMillis(long leaseRecoveryPollMillis)
+  {
+    this.leaseRecoveryPollMillis = leaseRecoveryPollMillis;
+  }
+
+  public long getTotalBytesWritten()
+  {
+    return totalBytesWritten;
+  }
+
+  /**
+   * @param partIndex part index of the file.
+   * @return final path of the file.
+   */
+  protected Path getFilePath(int partIndex)
+  {
+    String path = filePathPattern.replace(FNAME_SUB_OPERATOR_ID, Integer.toString(operatorId))
+      .replace(FNAME_SUB_PART_INDEX, Integer.toString(partIndex));
+    return new Path(codec == null ? path : path + codec.getDefaultExtension());
+  }
+
+  private Path getTmpFilePath(int partIndex)
+  {
+    Path path = getFilePath(partIndex);
+    return new Path(path.getParent(), path.getName() + TMP_EXTENSION);
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    Preconditions.checkArgument(filePathPattern.contains(FNAME_SUB_PART_INDEX), "%s does not have %s", filePathPattern,
+                                FNAME_SUB_PART_INDEX);
+    operatorId = context.getId();
+    try {
+      Configuration conf = new Configuration();
+      if (compressionCodec != null) {
+        codec = new CompressionCodecFactory(conf).getCodecByName(compressionCodec);
+        Preconditions.checkArgument(codec != null, "unknown codec %s", compressionCodec);
+      }
+      Path path = getFilePath(partIndex);
+      fs = FileSystem.newInstance(path.toUri(), conf);
+      if (maxFileSize <= 0) {
+        maxFileSize = fs.getDefaultBlockSize(path);
+      }
+      if (replication <= 0) {
+        replication = fs.getDefaultReplication(path);
+      }
+      recover();
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+
+    freeBlocks = new ArrayBlockingQueue<Block>(maxPendingBlocks + 1);
+    for (int i = 0; i <= maxPendingBlocks; i++) {
+      freeBlocks.add(new Block(blockSize));
+    }
+    pendingBlocks = new ArrayBlockingQueue<Block>(maxPendingBlocks + 1);
+    windowLengths = new ArrayBlockingQueue<Long>(1);
+    current = freeBlocks.poll();
+    writerError = null;
+    writerThread = new Thread(new Writer(), "BlockHdfsWriter-" + operatorId);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Cuts the file being written back to its length at the checkpoint and removes the files which were created after.
+   */
+  private void recover() throws IOException
+  {
+    Path tmpPath = getTmpFilePath(partIndex);
+    Path path = getFilePath(partIndex);
+    if (!fs.exists(tmpPath) && fs.exists(path)) {
+      fs.rename(path, tmpPath);
+    }
+    for (int i = partIndex + 1; fs.exists(getTmpFilePath(i)) || fs.exists(getFilePath(i)); i++) {
+      fs.delete(getTmpFilePath(i), false);
+      fs.delete(getFilePath(i), false);
+    }
+    if (fileLength == 0) {
+      fs.delete(tmpPath, false);
+      return;
+    }
+    Preconditions.checkState(fs.exists(tmpPath), "%s is missing", tmpPath);
+    recoverLease(tmpPath);
+    long length = fs.getFileStatus(tmpPath).getLen();
+    Preconditions.checkState(length >= fileLength, "%s has %s bytes, %s expected", tmpPath, length, fileLength);
+    if (length == fileLength) {
+      fsOutput = fs.append(tmpPath);
+    }
+    else {
+      logger.info("cutting {} from {} to {} bytes", tmpPath, length, fileLength);
+      Path oldPath = new Path(tmpPath.getParent(), tmpPath.getName() + ".old");
+      fs.rename(tmpPath, oldPath);
+      createFile(tmpPath);
+      InputStream in = fs.open(oldPath);
+      try {
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = fileLength;
+        while (remaining > 0) {
+          int n = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+          if (n < 0) {
+            throw new IOException("unexpected end of " + oldPath);
+          }
+          fsOutput.write(buffer, 0, n);
+          remaining -= n;
+        }
+      }
+      finally {
+        in.close();
+      }
+      syncFile();
+      fs.delete(oldPath, false);
+    }
+    if (codec != null) {
+      codecOutput = codec.createOutputStream(fsOutput);
+    }
+  }
+
+  /**
+   * Closes the file if it is still open by a failed writer, so that its length is final and it can be appended to.
+   */
+  private void recoverLease(Path path) throws IOException
+  {
+    if (!(fs instanceof DistributedFileSystem)) {
+      return;
+    }
+    DistributedFileSystem dfs = (DistributedFileSystem)fs;
+    boolean closed = dfs.recoverLease(path);
+    while (!closed) {
+      logger.info("waiting for the lease of {} to be recovered", path);
+      try {
+        Thread.sleep(leaseRecoveryPollMillis);
+      }
+      catch (InterruptedException ex) {
+        DTThrowable.rethrow(ex);
+      }
+      closed = dfs.isFileClosed(path);
+    }
+  }
+
+  /**
+   * Makes the data written so far durable, and visible in the length of the file on HDFS.
+   */
+  private void syncFile() throws IOException
+  {
+    if (fsOutput instanceof HdfsDataOutputStream) {
+      ((HdfsDataOutputStream)fsOutput).hsync(EnumSet.of(SyncFlag.UPDATE_LENGTH));
+    }
+    else {
+      fsOutput.hflush();
+    }
+  }
+
+  private void createFile(Path tmpPath) throws IOException
+  {
+    long fileBlockSize = (maxFileSize + 511) / 512 * 512;
+    fsOutput = fs.create(tmpPath, true, 64 * 1024, (short)replication, fileBlockSize);
+    logger.debug("creating {} with replication {} and block size {}", tmpPath, replication, fileBlockSize);
+  }
+
+  private void openFile() throws IOException
+  {
+    createFile(getTmpFilePath(partIndex));
+    if (codec != null) {
+      codecOutput = codec.createOutputStream(fsOutput);
+    }
+    fileLength = 0;
+    fileWindowCount = 0;
+    fileOpenTime = System.currentTimeMillis();
+  }
+
+  private void closeFile() throws IOException
+  {
+    if (codecOutput != null) {
+      codecOutput.close();
+      codecOutput = null;
+    }
+    else if (fsOutput != null) {
+      fsOutput.close();
+    }
+    fsOutput = null;
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (writerThread != null) {
+      writerThread.interrupt();
+      try {
+        writerThread.join();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      writerThread = null;
+    }
+    try {
+      closeFile();
+      fs.close();
+    }
+    catch (IOException ex) {
+      logger.warn("Exception while closing {}", getTmpFilePath(partIndex), ex);
+    }
+    fs = null;
+  }
+
+  /**
+   * Copies the bytes into the current block and hands the full blocks to the writer thread.
+   *
+   * @param bytes bytes of a tuple.
+   */
+  protected void write(byte[] bytes)
+  {
+    int offset = 0;
+    while (offset < bytes.length) {
+      int n = Math.min(bytes.length - offset, current.bytes.length - current.length);
+      System.arraycopy(bytes, offset, current.bytes, current.length, n);
+      current.length += n;
+      offset += n;
+      if (current.length == current.bytes.length) {
+        submit(false);
+      }
+    }
+    totalBytesWritten += bytes.length;
+  }
+
+  private void submit(boolean windowEnd)
+  {
+    current.windowEnd = windowEnd;
+    try {
+      pendingBlocks.put(current);
+      current = freeBlocks.take();
+    }
+    catch (InterruptedException ex) {
+      DTThrowable.rethrow(ex);
+    }
+    if (writerError != null) {
+      DTThrowable.rethrow(writerError);
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    if (fsOutput == null) {
+      try {
+        openFile();
+      }
+      catch (IOException ex) {
+        DTThrowable.rethrow(ex);
+      }
+    }
+  }
+
+  /**
+   * Writes the rest of the window, waits for the writer thread and rolls the file if needed.
+   */
+  @Override
+  public void endWindow()
+  {
+    submit(true);
+    long length = 0;
+    try {
+      length = windowLengths.take();
+    }
+    catch (InterruptedException ex) {
+      DTThrowable.rethrow(ex);
+    }
+    if (writerError != null) {
+      DTThrowable.rethrow(writerError);
+    }
+    lastWindowLength = length - fileLength;
+    fileLength = length;
+    fileWindowCount++;
+    try {
+      if (isRollNeeded()) {
+        closeFile();
+        fs.rename(getTmpFilePath(partIndex), getFilePath(partIndex));
+        partIndex++;
+        fileLength = 0;
+      }
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  private boolean isRollNeeded()
+  {
+    return fileLength + lastWindowLength > maxFileSize
+           || (rollWindowCount > 0 && fileWindowCount >= rollWindowCount)
+           || (rollIntervalMillis > 0 && System.currentTimeMillis() - fileOpenTime >= rollIntervalMillis);
+  }
+
+  /**
+   * Writes the blocks, and finishes the compressed stream and syncs the file at the end of every window.
+   */
+  private class Writer implements Runnable
+  {
+    @Override
+    public void run()
+    {
+      try {
+        while (true) {
+          Block block = pendingBlocks.take();
+          OutputStream out = codecOutput != null ? codecOutput : fsOutput;
+          out.write(block.bytes, 0, block.length);
+          if (block.windowEnd) {
+            if (codecOutput != null) {
+              codecOutput.finish();
+              codecOutput.resetState();
+            }
+            syncFile();
+            windowLengths.put(fsOutput.getPos());
+          }
+          block.length = 0;
+          freeBlocks.put(block);
+        }
+      }
+      catch (InterruptedException ex) {
+        // teardown
+      }
+      catch (Throwable t) {
+        logger.error("Failed to write to {}", getTmpFilePath(partIndex), t);
+        writerError = t;
+        freeBlocks.clear();
+        freeBlocks.add(new Block(0));
+        windowLengths.offer(-1L);
+      }
+    }
+  }
+
+  /**
+   * This function returns the byte array for the given tuple.
+   *
+   * @param t tuple.
+   * @return bytes to write.
+   */
+  public abstract byte[] getBytesForTuple(T t);
+
+  private static final Logger logger = LoggerFactory.getLogger(AbstractBlockHdfsOutputOperator.class);
+}
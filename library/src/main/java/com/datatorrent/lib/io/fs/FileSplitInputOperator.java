@@ -0,0 +1,531 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.api.ActivationListener;
+import com.datatorrent.api.CheckpointListener;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.Partitionable;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.DTThrowable;
+
+/**
+ * <p>
+ * Reads the lines of a local file in large blocks and emits every line as a String.<br/>
+ * The file is read by positional reads of a {@link FileChannel} into a buffer of bufferSize bytes, and lines are
+ * found by scanning the bytes of the buffer for the line feed; a line is decoded once, when it is emitted. A trailing
+ * carriage return is removed. Sub-classes which parse the bytes of a line may override
+ * {@link #emitLine(byte[], int, int)} to avoid decoding.
+ * </p>
+ *
+ * <p>
+ * The operator is partitionable: the file is divided into as many byte ranges as there are initial partitions and
+ * every partition reads the lines which start in its range, the same way Hadoop splits text files. Splits are
+ * defined before reading starts and are not changed afterwards.
+ * </p>
+ *
+ * <p>
+ * The offset of the next line is checkpointed, so a recovered partition resumes at a line boundary. When
+ * windowLogPath is set, the offset at the end of every window is also written to a log in that directory of the
+ * default file system; a recovered partition replays the windows after its checkpoint with exactly the same lines,
+ * including the windows which emitted none. Committed windows are removed from the log by writing the remaining
+ * windows to a temporary file which replaces the log.
+ * </p>
+ *
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>output</b>: emits &lt;String&gt;<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>filePath</b>: Path of the file to be read.<br>
+ * <b>bufferSize</b>: Size of the read buffer in bytes. It grows if a line is longer. Default is 1 MB.<br>
+ * <b>emitBatchSize</b>: Maximum number of lines emitted in a single emitTuples call. Default is 1000.<br>
+ * <b>charsetName</b>: Charset of the file. Default is UTF-8.<br>
+ * <b>windowLogPath</b>: Directory of the window offset logs; if not set windows are not replayed exactly.<br>
+ * <b>splitStart</b>, <b>splitEnd</b>: Byte range of the partition; set by partitioning.<br>
+ * <br>
+ *
+ * @since 0.9.4
+ */
+public class FileSplitInputOperator implements InputOperator, ActivationListener<OperatorContext>, CheckpointListener, Partitionable<FileSplitInputOperator>
+{
+  @NotNull
+  private String filePath;
+  @Min(1)
+  private int bufferSize = 1024 * 1024;
+  @Min(1)
+  private int emitBatchSize = 1000;
+  @NotNull
+  private String charsetName = "UTF-8";
+  private String windowLogPath;
+  private long splitStart;
+  private long splitEnd = Long.MAX_VALUE;
+  /**
+   * Offset of the next line; -1 until the start of the split is found.
+   */
+  private long offset = -1;
+  /**
+   * Id of the last window which ended; the logged windows after it are replayed on recovery.
+   */
+  private long lastWindowId = -1;
+
+  @OutputPortFieldAnnotation(name = "output")
+  public final transient DefaultOutputPort<String> output = new DefaultOutputPort<String>();
+
+  private transient FileChannel channel;
+  private transient Charset charset;
+  private transient byte[] bytes;
+  private transient ByteBuffer byteBuffer;
+  private transient long bufferPosition;
+  private transient int limit;
+  private transient int scanIndex;
+  private transient boolean eof;
+  private transient long windowId;
+  private transient long replayEnd;
+  private transient TreeMap<Long, Long> replayOffsets = new TreeMap<Long, Long>();
+  /**
+   * Offsets of the logged windows which are not committed yet.
+   */
+  private transient TreeMap<Long, Long> loggedOffsets = new TreeMap<Long, Long>();
+  private transient FileSystem fs;
+  private transient Path logPath;
+  private transient FSDataOutputStream windowLog;
+
+  public String getFilePath()
+  {
+    return filePath;
+  }
+
+  public void setFilePath(String filePath)
+  {
+    this.filePath = filePath;
+  }
+
+  public int getBufferSize()
+  {
+    return bufferSize;
+  }
+
+  public void setBufferSize(int bufferSize)
+  {
+    this.bufferSize = bufferSize;
+  }
+
+  public int getEmitBatchSize()
+  {
+    return emitBatchSize;
+  }
+
+  public void setEmitBatchSize(int emitBatchSize)
+  {
+    this.emitBatchSize = emitBatchSize;
+  }
+
+  public String getCharsetName()
+  {
+    return charsetName;
+  }
+
+  public void setCharsetName(String charsetName)
+  {
+    this.charsetName = charsetName;
+  }
+
+  public String getWindowLogPath()
+  {
+    return windowLogPath;
+  }
+
+  public void setWindowLogPath(String windowLogPath)
+  {
+    this.windowLogPath = windowLogPath;
+  }
+
+  public long getSplitStart()
+  {
+    return splitStart;
+  }
+
+  public void setSplitStart(long splitStart)
+  {
+    this.splitStart = splitStart;
+  }
+
+  public long getSplitEnd()
+  {
+    return splitEnd;
+  }
+
+  public void setSplitEnd(long splitEnd)
+  {
+    this.splitEnd = splitEnd;
+  }
+
+  /**
+   * @return offset of the next line to be read or -1 if reading has not started.
+   */
+  public long getOffset()
+  {
+    return offset;
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    charset = Charset.forName(charsetName);
+    if (windowLogPath == null) {
+      return;
+    }
+    try {
+      logPath = new Path(windowLogPath, "offsets-" + splitStart);
+      fs = FileSystem.newInstance(logPath.toUri(), new Configuration());
+      // the temporary log is complete when the log was deleted before it was renamed
+      Path path = fs.exists(logPath) ? logPath : getTmpLogPath();
+      if (offset >= 0 && fs.exists(path)) {
+        DataInputStream in = fs.open(path);
+        try {
+          while (true) {
+            long loggedWindowId = in.readLong();
+            long loggedOffset = in.readLong();
+            if (loggedWindowId > lastWindowId) {
+              replayOffsets.put(loggedWindowId, loggedOffset);
+            }
+          }
+        }
+        catch (EOFException ex) {
+          // end of the log
+        }
+        finally {
+          in.close();
+        }
+      }
+      loggedOffsets.putAll(replayOffsets);
+      writeLog();
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  private Path getTmpLogPath()
+  {
+    return new Path(logPath.getParent(), logPath.getName() + ".tmp");
+  }
+
+  /**
+   * Writes the windows which are not committed to a temporary file which replaces the log. The windows which end
+   * later are appended to that file.
+   */
+  private void writeLog() throws IOException
+  {
+    if (windowLog != null) {
+      windowLog.close();
+    }
+    Path tmpPath = getTmpLogPath();
+    windowLog = fs.create(tmpPath, true);
+    for (Map.Entry<Long, Long> e : loggedOffsets.entrySet()) {
+      windowLog.writeLong(e.getKey());
+      windowLog.writeLong(e.getValue());
+    }
+    windowLog.hflush();
+    fs.delete(logPath, false);
+    if (!fs.rename(tmpPath, logPath)) {
+      throw new IOException("failed to rename " + tmpPath + " to " + logPath);
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    try {
+      if (windowLog != null) {
+        windowLog.close();
+        windowLog = null;
+      }
+      loggedOffsets.clear();
+      if (fs != null) {
+        fs.close();
+        fs = null;
+      }
+    }
+    catch (IOException ex) {
+      logger.warn("Exception while closing the window log", ex);
+    }
+  }
+
+  /**
+   * Opens the file and, the first time, skips to the first line which starts in the split.
+   */
+  @Override
+  public void activate(OperatorContext context)
+  {
+    try {
+      channel = new FileInputStream(filePath).getChannel();
+      bytes = new byte[bufferSize];
+      byteBuffer = ByteBuffer.wrap(bytes);
+      limit = 0;
+      scanIndex = 0;
+      eof = false;
+      if (offset < 0) {
+        if (splitStart == 0) {
+          bufferPosition = offset = 0;
+        }
+        else {
+          // the line which contains the byte before the split belongs to the previous split
+          bufferPosition = offset = splitStart - 1;
+          nextLine(false);
+        }
+      }
+      else {
+        bufferPosition = offset;
+      }
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  @Override
+  public void deactivate()
+  {
+    try {
+      channel.close();
+    }
+    catch (IOException ex) {
+      logger.warn("Exception while closing the file", ex);
+    }
+    channel = null;
+    bytes = null;
+    byteBuffer = null;
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    this.windowId = windowId;
+    Long end = replayOffsets.isEmpty() ? null : replayOffsets.get(windowId);
+    if (end == null) {
+      replayEnd = -1;
+      if (!replayOffsets.isEmpty() && windowId > replayOffsets.lastKey()) {
+        replayOffsets.clear();
+      }
+    }
+    else {
+      replayEnd = end;
+    }
+  }
+
+  /**
+   * Emits up to emitBatchSize lines which start in the split or, when a window is replayed, all the lines of the
+   * window.
+   */
+  @Override
+  public void emitTuples()
+  {
+    long end = replayEnd >= 0 ? replayEnd : splitEnd;
+    int count = replayEnd >= 0 ? Integer.MAX_VALUE : emitBatchSize;
+    try {
+      while (count-- > 0 && offset < end && nextLine(true)) {
+      }
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    lastWindowId = windowId;
+    if (windowLog != null && replayEnd < 0) {
+      loggedOffsets.put(windowId, offset);
+      try {
+        windowLog.writeLong(windowId);
+        windowLog.writeLong(offset);
+        windowLog.hflush();
+      }
+      catch (IOException ex) {
+        DTThrowable.rethrow(ex);
+      }
+    }
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+  }
+
+  /**
+   * Removes the committed windows from the log, since they are never replayed.
+   */
+  @Override
+  public void committed(long windowId)
+  {
+    if (windowLog == null || loggedOffsets.isEmpty() || loggedOffsets.firstKey() > windowId) {
+      return;
+    }
+    loggedOffsets.headMap(windowId, true).clear();
+    try {
+      writeLog();
+    }
+    catch (IOException ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  /**
+   * Emits a line. The bytes are only valid during the call.
+   *
+   * @param buffer buffer which holds the line.
+   * @param start  index of the first byte of the line.
+   * @param length no. of bytes of the line, without the line terminator.
+   */
+  protected void emitLine(byte[] buffer, int start, int length)
+  {
+    output.emit(new String(buffer, start, length, charset));
+  }
+
+  /**
+   * Reads the next line and moves the offset after it.
+   *
+   * @param emit false to skip the line.
+   * @return false if the end of the file was reached.
+   */
+  private boolean nextLine(boolean emit) throws IOException
+  {
+    while (true) {
+      int start = (int)(offset - bufferPosition);
+      for (int i = scanIndex; i < limit; i++) {
+        if (bytes[i] == '\n') {
+          if (emit) {
+            emitLine(bytes, start, (i > start && bytes[i - 1] == '\r' ? i - 1 : i) - start);
+          }
+          offset = bufferPosition + i + 1;
+          scanIndex = i + 1;
+          return true;
+        }
+      }
+      scanIndex = limit;
+      if (eof) {
+        if (limit == start) {
+          return false;
+        }
+        // last line of the file without a line terminator
+        if (emit) {
+          emitLine(bytes, start, limit - start);
+        }
+        offset = bufferPosition + limit;
+        return true;
+      }
+      fill(start);
+    }
+  }
+
+  /**
+   * Moves the unread bytes to the beginning of the buffer, grows the buffer if it is full and reads more bytes.
+   */
+  private void fill(int start) throws IOException
+  {
+    if (start > 0) {
+      System.arraycopy(bytes, start, bytes, 0, limit - start);
+      bufferPosition += start;
+      limit -= start;
+      scanIndex -= start;
+    }
+    if (limit == bytes.length) {
+      byte[] newBytes = new byte[bytes.length * 2];
+      System.arraycopy(bytes, 0, newBytes, 0, limit);
+      bytes = newBytes;
+      byteBuffer = ByteBuffer.wrap(bytes);
+    }
+    byteBuffer.limit(bytes.length);
+    byteBuffer.position(limit);
+    int n = channel.read(byteBuffer, bufferPosition + limit);
+    if (n < 0) {
+      eof = true;
+    }
+    else {
+      limit += n;
+    }
+  }
+
+  /**
+   * Divides the file into as many byte ranges as there are partitions. Partitions are not changed once reading has
+   * started.
+   */
+  @Override
+  public Collection<Partition<FileSplitInputOperator>> definePartitions(Collection<Partition<FileSplitInputOperator>> partitions, int incrementalCapacity)
+  {
+    int count = partitions.size() + incrementalCapacity;
+    for (Partition<FileSplitInputOperator> partition : partitions) {
+      if (partition.getPartitionedInstance().offset >= 0) {
+        return partitions;
+      }
+    }
+    if (partitions.size() == count) {
+      return partitions;
+    }
+
+    FileSplitInputOperator template = partitions.iterator().next().getPartitionedInstance();
+    long length = new File(template.filePath).length();
+    long splitLength = Math.max(1, (length + count - 1) / count);
+    Kryo kryo = new Kryo();
+    Output output = new Output(4096, -1);
+    kryo.writeObject(output, template);
+    List<Partition<FileSplitInputOperator>> newPartitions = new ArrayList<Partition<FileSplitInputOperator>>(count);
+    for (int i = 0; i < count; i++) {
+      FileSplitInputOperator oper = kryo.readObject(new Input(output.getBuffer(), 0, output.position()), template.getClass());
+      oper.splitStart = i * splitLength;
+      oper.splitEnd = i == count - 1 ? Long.MAX_VALUE : (i + 1) * splitLength;
+      newPartitions.add(new DefaultPartition<FileSplitInputOperator>(oper));
+      logger.debug("split [{}, {})", oper.splitStart, oper.splitEnd);
+    }
+    return newPartitions;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(FileSplitInputOperator.class);
+}
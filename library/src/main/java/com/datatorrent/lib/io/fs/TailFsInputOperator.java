@@ -18,6 +18,8 @@ package com.datatorrent.lib.io.fs;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,6 +82,13 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
 
   private transient RandomAccessFile reader;
   private transient File file;
+  /**
+   * Bytes read from the file and not emitted yet, starting at position
+   */
+  private transient byte[] buffer;
+  private transient int bufferOffset;
+  private transient int bufferLimit;
+  private transient int scanIndex;
 
   /**
    * @return the filePath
@@ -191,12 +200,6 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
   @Override
   public void endWindow()
   {
-    try {
-      this.position = reader.getFilePointer();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-
   }
 
   @Override
@@ -217,6 +220,8 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
       reader = new RandomAccessFile(file, "r");
       position = end ? file.length() : position;
       reader.seek(position);
+      buffer = new byte[BUFFER_SIZE];
+      bufferOffset = bufferLimit = scanIndex = 0;
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -256,26 +261,49 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
     }
   }
 
+  /**
+   * Reads the file in blocks and scans the bytes for the delimiter. A partial line at the end of the file is kept in
+   * the buffer until the rest of it is written.
+   *
+   * @return the next line or null if the file does not have a complete line.
+   * @throws IOException
+   */
   private String readLine() throws IOException
   {
-    StringBuffer sb = new StringBuffer();
-    char readChar;
-    int ch;
-    long pos = reader.getFilePointer();
-    while ((ch = reader.read()) != -1) {
-      readChar = (char) ch;
-      if (readChar != delimiter) {
-        sb.append(readChar);
-      } else {
-        return sb.toString();
+    while (true) {
+      for (int i = scanIndex; i < bufferLimit; i++) {
+        if ((char)(buffer[i] & 0xff) == delimiter) {
+          String line = new String(buffer, bufferOffset, i - bufferOffset, CHARSET);
+          position += i + 1 - bufferOffset;
+          bufferOffset = scanIndex = i + 1;
+          return line;
+        }
+      }
+      scanIndex = bufferLimit;
+      if (bufferOffset > 0) {
+        System.arraycopy(buffer, bufferOffset, buffer, 0, bufferLimit - bufferOffset);
+        bufferLimit -= bufferOffset;
+        scanIndex -= bufferOffset;
+        bufferOffset = 0;
+      }
+      if (bufferLimit == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
       }
+      int n = reader.read(buffer, bufferLimit, buffer.length - bufferLimit);
+      if (n <= 0) {
+        return null;
+      }
+      bufferLimit += n;
     }
-    reader.seek(pos);
-    return null;
   }
 
   public final transient DefaultOutputPort<String> output = new DefaultOutputPort<String>();
 
+  /**
+   * Every byte is one char, as when the file was read a byte at a time.
+   */
+  private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+  private static final int BUFFER_SIZE = 64 * 1024;
   private static final Logger logger = LoggerFactory.getLogger(TailFsInputOperator.class);
 
 }
@@ -31,7 +31,8 @@ import com.datatorrent.api.Context.OperatorContext;
 
 /**
  * Parse Apache log lines one line at a time. logRegex is used as a parser. The fields extracted are defined as a
- * property
+ * property. When logRegex is not set, lines are parsed by an {@link ApacheLogParser}, which scans the line once and
+ * returns the groups of the default regex.
  * <p>
  * This is a pass through operator<br>
  * <br>
@@ -59,6 +60,8 @@ public class ApacheLogParseMapOutputOperator extends BaseOperator
   @NotNull
   private Map<String, Integer> groupMap;
   private transient Pattern accessLogPattern;
+  private transient ApacheLogParser parser;
+  private final transient ApacheLogRecord record = new ApacheLogRecord();
 
   /**
    * Input log line port.
@@ -116,26 +119,6 @@ public class ApacheLogParseMapOutputOperator extends BaseOperator
     accessLogPattern = Pattern.compile(this.logRegex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
   }
 
-  /**
-   * Get apache log pattern regex.
-   * 
-   * @return regex string.
-   */
-  private String getAccessLogRegex()
-  {
-    String regex1 = "^([\\d\\.]+)"; // Client IP
-    String regex2 = " (\\S+)"; // -
-    String regex3 = " (\\S+)"; // -
-    String regex4 = " \\[([\\w:/]+\\s[+\\-]\\d{4})\\]"; // Date
-    String regex5 = " \"[A-Z]+ (.+?) HTTP/\\S+\""; // url
-    String regex6 = " (\\d{3})"; // HTTP code
-    String regex7 = " (\\d+)"; // Number of bytes
-    String regex8 = " \"([^\"]+)\""; // Referer
-    String regex9 = " \"([^\"]+)\""; // Agent
-    String regex10 = ".*"; // ignore the rest
-    return regex1 + regex2 + regex3 + regex4 + regex5 + regex6 + regex7 + regex8 + regex9 + regex10;
-  }
-
   /**
    * 
    * @param context
@@ -144,7 +127,7 @@ public class ApacheLogParseMapOutputOperator extends BaseOperator
   public void setup(OperatorContext context)
   {
     if (logRegex == null) {
-      setLogRegex(getAccessLogRegex());
+      parser = new ApacheLogParser();
     }
     if (groupMap == null || groupMap.size() == 0) {
       throw new RuntimeException("The mapping from group Ids to names can't be null");
@@ -164,6 +147,16 @@ public class ApacheLogParseMapOutputOperator extends BaseOperator
    */
   public void processTuple(String line) throws ParseException
   {
+    if (parser != null) {
+      if (parser.parse(line, record) && record.isCombined()) {
+        Map<String, Object> outputMap = new HashMap<String, Object>();
+        for (Map.Entry<String, Integer> entry : groupMap.entrySet()) {
+          outputMap.put(entry.getKey(), record.getGroup(entry.getValue().intValue()).trim());
+        }
+        output.emit(outputMap);
+      }
+      return;
+    }
     Matcher accessLogEntryMatcher = accessLogPattern.matcher(line);
     if (accessLogEntryMatcher.matches()) {
       Map<String, Object> outputMap = new HashMap<String, Object>();
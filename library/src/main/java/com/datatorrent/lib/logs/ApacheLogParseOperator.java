@@ -21,13 +21,13 @@ import com.datatorrent.api.DefaultOutputPort;
 
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  *
- * Parse Apache log lines one line at a time. Regex (getAccessLogRegex) is used
- * as a parser. The fields extracted include i/p (outputIPAddress), url
+ * Parse Apache log lines one line at a time. Lines are parsed by an
+ * {@link ApacheLogParser}, which scans the line once and falls back to the
+ * regex (getAccessLogRegex) only for lines the scan does not accept. Only the
+ * fields of connected ports are extracted. The fields extracted include i/p (outputIPAddress), url
  * (outputUrl), status code (outputStatusCode), bytes (outputBytes), referer
  * (outputReferer), and agent (outputAgent)
  * <p>
@@ -97,6 +97,9 @@ public class ApacheLogParseOperator extends BaseOperator
 	 */
 	public final transient DefaultOutputPort<String> outputAgent = new DefaultOutputPort<String>();
 
+	private final transient ApacheLogParser parser = new ApacheLogParser();
+	private final transient ApacheLogRecord record = new ApacheLogRecord();
+
 	/**
 	 * Get apache log pattern regex.
 	 * @return regex string.
@@ -130,35 +133,25 @@ public class ApacheLogParseOperator extends BaseOperator
 	 */
 	public void processTuple(String line) throws ParseException
 	{
-		// Apapche log attaributes on each line.
-		String url;
-		String httpStatusCode;
-		long numOfBytes;
-		String referer;
-		String agent;
-		String ipAddr;
-
-		// Parse each log line.
-		Pattern accessLogPattern = Pattern.compile(getAccessLogRegex(),
-				Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-		Matcher accessLogEntryMatcher;
-		accessLogEntryMatcher = accessLogPattern.matcher(line);
-
-		if (accessLogEntryMatcher.matches()) {
-			// System.out.println("MATCHED!");
-			ipAddr = accessLogEntryMatcher.group(1);
-			url = accessLogEntryMatcher.group(5);
-			httpStatusCode = accessLogEntryMatcher.group(6);
-			numOfBytes = Long.parseLong(accessLogEntryMatcher.group(7));
-			referer = accessLogEntryMatcher.group(8);
-			agent = accessLogEntryMatcher.group(9);
-
-			outputIPAddress.emit(ipAddr);
-			outputUrl.emit(url);
-			outputStatusCode.emit(httpStatusCode);
-			outputBytes.emit(numOfBytes);
-			outputReferer.emit(referer);
-			outputAgent.emit(agent);
+		if (parser.parse(line, record) && record.isCombined()) {
+			if (outputIPAddress.isConnected()) {
+				outputIPAddress.emit(record.getIpAddress());
+			}
+			if (outputUrl.isConnected()) {
+				outputUrl.emit(record.getUrl());
+			}
+			if (outputStatusCode.isConnected()) {
+				outputStatusCode.emit(record.getField(ApacheLogRecord.STATUS_CODE));
+			}
+			if (outputBytes.isConnected()) {
+				outputBytes.emit(record.getBytes());
+			}
+			if (outputReferer.isConnected()) {
+				outputReferer.emit(record.getReferer());
+			}
+			if (outputAgent.isConnected()) {
+				outputAgent.emit(record.getAgent());
+			}
 		}
 	}
 }
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.logs;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser of Apache access log lines in the common, combined and virtual host combined formats. <p>
+ * Lines are parsed by a single scan which records the offsets of the fields in an {@link ApacheLogRecord}, without
+ * compiling or running a regex and without allocating. Lines which the scan does not accept, e.g. a request with a
+ * quote in the url, are matched against the access log regex of the operators, which is compiled once, so the
+ * fields of a line are the groups the regex would return. <br>
+ * The virtual host format has the server name as the first field. A line is parsed as {@link ApacheLogRecord#isCombined()
+ * combined}, with referer and agent, exactly when the regex matches it. The regex does not match the common format,
+ * which has no referer and agent; the scan accepts it and its bytes may be "-". <br>
+ *
+ * @since 0.9.4
+ */
+public class ApacheLogParser
+{
+  private static final Pattern ACCESS_LOG_PATTERN = Pattern.compile(ApacheLogParseOperator.getAccessLogRegex(),
+                                                                    Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final Pattern VIRTUAL_ACCESS_LOG_PATTERN = Pattern.compile(ApacheVirtualLogParseOperator.getAccessLogRegex(),
+                                                                            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  private final boolean virtualHost;
+
+  public ApacheLogParser()
+  {
+    this(false);
+  }
+
+  /**
+   * @param virtualHost true if the lines start with the server name.
+   */
+  public ApacheLogParser(boolean virtualHost)
+  {
+    this.virtualHost = virtualHost;
+  }
+
+  public boolean isVirtualHost()
+  {
+    return virtualHost;
+  }
+
+  /**
+   * Parses a line into the record.
+   *
+   * @param line   log line.
+   * @param record record which is reset and filled with the fields of the line.
+   * @return false if the line is not an access log line, in which case the record has no fields.
+   */
+  public boolean parse(String line, ApacheLogRecord record)
+  {
+    record.reset(line);
+    if (scan(line, record)) {
+      return true;
+    }
+    record.reset(line);
+    return match(line, record);
+  }
+
+  private static boolean expect(String line, int index, char c)
+  {
+    return index < line.length() && line.charAt(index) == c;
+  }
+
+  private static boolean isDigit(char c)
+  {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(char c)
+  {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  /**
+   * @return true if c is matched by \s.
+   */
+  private static boolean isWhitespace(char c)
+  {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+
+  /**
+   * @return true if the chars from start to end are matched by \S+.
+   */
+  private static boolean isToken(String line, int start, int end)
+  {
+    if (start >= end) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (isWhitespace(line.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the chars from start to end are matched by [\w:/]+\s[+\-]\d{4}, e.g. 04/Apr/2013:17:17:21 -0700.
+   */
+  private static boolean isTime(String line, int start, int end)
+  {
+    int zone = end - 5;
+    if (zone - 1 <= start || !isWhitespace(line.charAt(zone - 1))) {
+      return false;
+    }
+    if (line.charAt(zone) != '+' && line.charAt(zone) != '-') {
+      return false;
+    }
+    for (int i = zone + 1; i < end; i++) {
+      if (!isDigit(line.charAt(i))) {
+        return false;
+      }
+    }
+    for (int i = start; i < zone - 1; i++) {
+      char c = line.charAt(i);
+      if (!isDigit(c) && !isLetter(c) && c != '_' && c != ':' && c != '/') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean scan(String line, ApacheLogRecord record)
+  {
+    int length = line.length();
+    int i = 0;
+    int start;
+    int end;
+    if (virtualHost) {
+      end = line.indexOf(' ');
+      if (end <= 0 || line.lastIndexOf('"', end) >= 0) {
+        return false;
+      }
+      record.setField(ApacheLogRecord.SERVER_NAME, 0, end);
+      i = end + 1;
+    }
+
+    // client ip
+    start = i;
+    while (i < length && (isDigit(line.charAt(i)) || line.charAt(i) == '.')) {
+      i++;
+    }
+    if (i == start || !expect(line, i, ' ')) {
+      return false;
+    }
+    record.setField(ApacheLogRecord.IP_ADDRESS, start, i++);
+
+    // identity and user
+    for (int field = ApacheLogRecord.IDENTITY; field <= ApacheLogRecord.USER; field++) {
+      end = line.indexOf(' ', i);
+      if (!isToken(line, i, end)) {
+        return false;
+      }
+      record.setField(field, i, end);
+      i = end + 1;
+    }
+
+    // date
+    if (!expect(line, i, '[')) {
+      return false;
+    }
+    end = line.indexOf(']', ++i);
+    if (end <= i || !isTime(line, i, end)) {
+      return false;
+    }
+    record.setField(ApacheLogRecord.TIME, i, end);
+    i = end + 1;
+
+    // request: method, url and protocol
+    if (!expect(line, i, ' ') || !expect(line, i + 1, '"')) {
+      return false;
+    }
+    i += 2;
+    start = i;
+    while (i < length && isLetter(line.charAt(i))) {
+      i++;
+    }
+    if (i == start || !expect(line, i, ' ')) {
+      return false;
+    }
+    record.setField(ApacheLogRecord.METHOD, start, i++);
+    int quote = line.indexOf('"', i);
+    if (quote < 0) {
+      return false;
+    }
+    int space = line.lastIndexOf(' ', quote - 1);
+    if (space <= i || !line.regionMatches(true, space + 1, "HTTP/", 0, 5) || !isToken(line, space + 6, quote)) {
+      return false;
+    }
+    record.setField(ApacheLogRecord.URL, i, space);
+    record.setField(ApacheLogRecord.PROTOCOL, space + 1, quote);
+    i = quote + 1;
+
+    // status code
+    if (!expect(line, i++, ' ') || i + 3 > length) {
+      return false;
+    }
+    int statusCode = 0;
+    for (int j = i; j < i + 3; j++) {
+      char c = line.charAt(j);
+      if (!isDigit(c)) {
+        return false;
+      }
+      statusCode = statusCode * 10 + (c - '0');
+    }
+    record.setField(ApacheLogRecord.STATUS_CODE, i, i + 3);
+    i += 3;
+
+    // bytes
+    if (!expect(line, i++, ' ')) {
+      return false;
+    }
+    start = i;
+    long bytes = 0;
+    boolean noBytes = expect(line, i, '-');
+    if (noBytes) {
+      i++;
+    }
+    else {
+      while (i < length && isDigit(line.charAt(i))) {
+        bytes = bytes * 10 + (line.charAt(i++) - '0');
+      }
+    }
+    if (i == start) {
+      return false;
+    }
+    record.setField(ApacheLogRecord.BYTES, start, i);
+    record.statusCode = statusCode;
+    record.bytes = bytes;
+
+    // referer and agent, absent in the common log format
+    if (!expect(line, i, ' ') || !expect(line, i + 1, '"')) {
+      return true;
+    }
+    if (noBytes) {
+      // the regex needs the bytes of a combined line
+      return false;
+    }
+    for (int field = ApacheLogRecord.REFERER; field <= ApacheLogRecord.AGENT; field++) {
+      if (!expect(line, i, ' ') || !expect(line, i + 1, '"')) {
+        return false;
+      }
+      i += 2;
+      end = line.indexOf('"', i);
+      if (end <= i) {
+        return false;
+      }
+      record.setField(field, i, end);
+      i = end + 1;
+    }
+    return true;
+  }
+
+  private boolean match(String line, ApacheLogRecord record)
+  {
+    Matcher matcher = (virtualHost ? VIRTUAL_ACCESS_LOG_PATTERN : ACCESS_LOG_PATTERN).matcher(line);
+    if (!matcher.matches()) {
+      return false;
+    }
+    int offset = 0;
+    if (virtualHost) {
+      record.setField(ApacheLogRecord.SERVER_NAME, matcher.start(1), matcher.end(1));
+      offset = 1;
+    }
+    for (int field = ApacheLogRecord.IP_ADDRESS; field <= ApacheLogRecord.AGENT; field++) {
+      record.setField(field, matcher.start(field + offset), matcher.end(field + offset));
+    }
+    int urlStart = matcher.start(ApacheLogRecord.URL + offset);
+    int urlEnd = matcher.end(ApacheLogRecord.URL + offset);
+    record.setField(ApacheLogRecord.METHOD, line.lastIndexOf('"', urlStart) + 1, urlStart - 1);
+    record.setField(ApacheLogRecord.PROTOCOL, urlEnd + 1, line.indexOf('"', urlEnd));
+    record.statusCode = Integer.parseInt(matcher.group(ApacheLogRecord.STATUS_CODE + offset));
+    record.bytes = Long.parseLong(matcher.group(ApacheLogRecord.BYTES + offset));
+    return true;
+  }
+}
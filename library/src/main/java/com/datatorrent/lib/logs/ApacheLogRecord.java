@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.logs;
+
+import java.util.Arrays;
+
+/**
+ * An Apache access log line parsed by {@link ApacheLogParser}. <p>
+ * The record keeps the line and the offsets of its fields, so parsing a line does not allocate; the text of a field is
+ * extracted only when it is asked for. Status code and bytes are also available as numbers. A record is re-used for
+ * every line, so it must not be emitted or kept after the next line is parsed. <br>
+ * The field ids from {@link #IP_ADDRESS} to {@link #AGENT} are the group ids of
+ * {@link ApacheLogParseOperator#getAccessLogRegex()}. <br>
+ *
+ * @since 0.9.4
+ */
+public class ApacheLogRecord
+{
+  public static final int SERVER_NAME = 0;
+  public static final int IP_ADDRESS = 1;
+  public static final int IDENTITY = 2;
+  public static final int USER = 3;
+  public static final int TIME = 4;
+  public static final int URL = 5;
+  public static final int STATUS_CODE = 6;
+  public static final int BYTES = 7;
+  public static final int REFERER = 8;
+  public static final int AGENT = 9;
+  public static final int METHOD = 10;
+  public static final int PROTOCOL = 11;
+  private static final int FIELDS = 12;
+
+  private String line;
+  private final int[] starts = new int[FIELDS];
+  private final int[] ends = new int[FIELDS];
+  int statusCode;
+  long bytes;
+
+  /**
+   * Clears the fields and sets the line they refer to.
+   *
+   * @param line log line.
+   */
+  void reset(String line)
+  {
+    this.line = line;
+    Arrays.fill(starts, -1);
+    statusCode = 0;
+    bytes = 0;
+  }
+
+  void setField(int field, int start, int end)
+  {
+    starts[field] = start;
+    ends[field] = end;
+  }
+
+  /**
+   * @param field field id.
+   * @return true if the field is present in the line.
+   */
+  public boolean hasField(int field)
+  {
+    return starts[field] >= 0;
+  }
+
+  /**
+   * @param field field id.
+   * @return text of the field or null if it is not present in the line.
+   */
+  public String getField(int field)
+  {
+    return starts[field] < 0 ? null : line.substring(starts[field], ends[field]);
+  }
+
+  /**
+   * Text of a group of {@link ApacheLogParseOperator#getAccessLogRegex()}, like {@link java.util.regex.Matcher#group(int)}.
+   *
+   * @param group group id.
+   * @return text of the group or null if it is not present in the line.
+   * @throws IndexOutOfBoundsException if there is no group with the id.
+   */
+  public String getGroup(int group)
+  {
+    if (group < IP_ADDRESS || group > AGENT) {
+      throw new IndexOutOfBoundsException("No group " + group);
+    }
+    return getField(group);
+  }
+
+  /**
+   * @return true if the line has the referer and agent of the combined log format.
+   */
+  public boolean isCombined()
+  {
+    return starts[AGENT] >= 0;
+  }
+
+  public String getLine()
+  {
+    return line;
+  }
+
+  public String getServerName()
+  {
+    return getField(SERVER_NAME);
+  }
+
+  public String getIpAddress()
+  {
+    return getField(IP_ADDRESS);
+  }
+
+  public String getIdentity()
+  {
+    return getField(IDENTITY);
+  }
+
+  public String getUser()
+  {
+    return getField(USER);
+  }
+
+  public String getTime()
+  {
+    return getField(TIME);
+  }
+
+  public String getMethod()
+  {
+    return getField(METHOD);
+  }
+
+  public String getUrl()
+  {
+    return getField(URL);
+  }
+
+  public String getProtocol()
+  {
+    return getField(PROTOCOL);
+  }
+
+  public int getStatusCode()
+  {
+    return statusCode;
+  }
+
+  /**
+   * @return no. of bytes served; 0 if the line has "-".
+   */
+  public long getBytes()
+  {
+    return bytes;
+  }
+
+  public String getReferer()
+  {
+    return getField(REFERER);
+  }
+
+  public String getAgent()
+  {
+    return getField(AGENT);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "ApacheLogRecord{" + line + '}';
+  }
+}
@@ -23,12 +23,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Please refer to docs for {@link com.datatorrent.lib.logs.ApacheLogParseOperator} documentation.
- * More output ports in this operator.
+ * More output ports in this operator. Lines start with the server name of the
+ * virtual host and are parsed by an {@link ApacheLogParser}.
  *
  * @since 0.3.2
  */
@@ -59,6 +58,9 @@ public class ApacheVirtualLogParseOperator extends BaseOperator {
     public final transient DefaultOutputPort<Integer> clientDataUsage = new DefaultOutputPort<Integer>();
     public final transient DefaultOutputPort<Integer> viewCount = new DefaultOutputPort<Integer>();
 
+    private final transient ApacheLogParser parser = new ApacheLogParser(true);
+    private final transient ApacheLogRecord record = new ApacheLogRecord();
+
     protected static String getAccessLogRegex() {
     	  String regex0 = "^([^\"]+)";
         String regex1 = " ([\\d\\.]+)";                         // Client IP
@@ -84,53 +86,46 @@ public class ApacheVirtualLogParseOperator extends BaseOperator {
      */
     public void processTuple(String line) throws ParseException {
 
-    	  // Apache log properties.
-        String url;
-        String httpStatusCode;
-        long numOfBytes;
-        String referer;
-        String agent;
-        String ipAddr;
-        String serverName;
-
-        // Parser log.
-        Pattern accessLogPattern = Pattern.compile(getAccessLogRegex(), Pattern.CASE_INSENSITIVE
-                | Pattern.DOTALL);
-        Matcher accessLogEntryMatcher;
-        accessLogEntryMatcher = accessLogPattern.matcher(line);
-
-        if (accessLogEntryMatcher.matches()) {
-            
-        	  serverName = accessLogEntryMatcher.group(1);
-            ipAddr = accessLogEntryMatcher.group(2);
-            url = accessLogEntryMatcher.group(6);
-            httpStatusCode = accessLogEntryMatcher.group(7);
-            numOfBytes = Long.parseLong(accessLogEntryMatcher.group(8));
-            referer = accessLogEntryMatcher.group(9);
-            agent = accessLogEntryMatcher.group(10);
+        if (!parser.parse(line, record) || !record.isCombined()) {
+            return;
+        }
+        String url = record.getUrl();
+        String httpStatusCode = record.getField(ApacheLogRecord.STATUS_CODE);
+        String serverName = record.getServerName();
+        int numOfBytes = (int)record.getBytes();
 
-            outputIPAddress.emit(ipAddr);
-            outputUrl.emit(url);
-            outputStatusCode.emit(httpStatusCode);
+        if (outputIPAddress.isConnected()) {
+            outputIPAddress.emit(record.getIpAddress());
+        }
+        outputUrl.emit(url);
+        outputStatusCode.emit(httpStatusCode);
+        if (outputBytes.isConnected()) {
             Map<String, Integer> ipdata = new HashMap<String, Integer>();
-            ipdata.put(ipAddr, (int)numOfBytes);
+            ipdata.put(record.getIpAddress(), numOfBytes);
             outputBytes.emit(ipdata);
-            outputReferer.emit(referer);
-            outputAgent.emit(agent);
-            outputServerName.emit(serverName);
-            outputServerName1.emit(serverName);
-            
+        }
+        if (outputReferer.isConnected()) {
+            outputReferer.emit(record.getReferer());
+        }
+        if (outputAgent.isConnected()) {
+            outputAgent.emit(record.getAgent());
+        }
+        outputServerName.emit(serverName);
+        outputServerName1.emit(serverName);
+
+        if (outUrlStatus.isConnected()) {
             HashMap<String, String> urlStatus = new HashMap<String, String>();
             urlStatus.put(url, httpStatusCode);
             outUrlStatus.emit(urlStatus);
-            
+        }
+
+        if (outServerStatus.isConnected()) {
             HashMap<String, String> serverStatus = new HashMap<String, String>();
             serverStatus.put(serverName, httpStatusCode);
             outServerStatus.emit(serverStatus);
-            
-            clientDataUsage.emit((int)numOfBytes);
-            viewCount.emit(new Integer(1));
         }
+
+        clientDataUsage.emit(numOfBytes);
+        viewCount.emit(new Integer(1));
     }
 }
-
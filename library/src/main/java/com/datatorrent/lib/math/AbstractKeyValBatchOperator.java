@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.math;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.lib.util.BaseFilteredKeyValueOperator;
+import com.datatorrent.lib.util.ColumnarBatch;
+
+/**
+ * Base class of the operators which aggregate the values of keyed {@link ColumnarBatch}es per key. <p>
+ * The state of a key is looked up once per distinct key of a batch; the rows of the batch are then aggregated by
+ * {@link #aggregate(KeyState[], int[], double[], int)} in a loop over the primitive columns. At the end of the window
+ * the results of the keys which received rows are emitted as one batch. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects keyed ColumnarBatch&lt;K&gt;<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>inverse</b>: if set to true the key in the filter will block tuple<br>
+ * <b>filterBy</b>: list of keys to filter on<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public abstract class AbstractKeyValBatchOperator<K> extends BaseFilteredKeyValueOperator<K, Double>
+{
+  /**
+   * Aggregation state of a key.
+   */
+  protected static class KeyState
+  {
+    public double value;
+    public long count;
+    public boolean changed;
+  }
+
+  /**
+   * State of every key.
+   */
+  protected HashMap<K, KeyState> states = new HashMap<K, KeyState>();
+
+  private transient KeyState[] batchStates = new KeyState[16];
+
+  /**
+   * Input port to receive keyed batches.
+   */
+  @InputPortFieldAnnotation(name = "data")
+  public final transient DefaultInputPort<ColumnarBatch<K>> data = new DefaultInputPort<ColumnarBatch<K>>()
+  {
+    @Override
+    public void process(ColumnarBatch<K> tuple)
+    {
+      processBatch(tuple);
+    }
+  };
+
+  /**
+   * Looks up the state of every key of the batch and aggregates its rows.
+   *
+   * @param batch keyed batch.
+   */
+  protected void processBatch(ColumnarBatch<K> batch)
+  {
+    if (batch.size() == 0) {
+      return;
+    }
+    Preconditions.checkArgument(batch.isKeyed(), "batch is not keyed");
+    int dictionarySize = batch.getDictionarySize();
+    if (batchStates.length < dictionarySize) {
+      batchStates = new KeyState[Math.max(dictionarySize, batchStates.length * 2)];
+    }
+    for (int i = 0; i < dictionarySize; i++) {
+      K key = batch.getDictionaryKey(i);
+      if (!doprocessKey(key)) {
+        batchStates[i] = null;
+        continue;
+      }
+      KeyState state = states.get(key);
+      if (state == null) {
+        state = new KeyState();
+        states.put(cloneKey(key), state);
+      }
+      state.changed = true;
+      batchStates[i] = state;
+    }
+    aggregate(batchStates, batch.getKeyIndexes(), batch.getValues(), batch.size());
+    Arrays.fill(batchStates, 0, dictionarySize, null);
+  }
+
+  /**
+   * Aggregates the rows of a batch.
+   *
+   * @param states     state of the key of every dictionary index of the batch; null for keys which are filtered out.
+   * @param keyIndexes key indexes column of the batch.
+   * @param values     values column of the batch.
+   * @param size       no. of rows of the batch.
+   */
+  protected abstract void aggregate(KeyState[] states, int[] keyIndexes, double[] values, int size);
+
+  /**
+   * @param state state of a key.
+   * @return result of the key.
+   */
+  protected abstract double getResult(KeyState state);
+
+  /**
+   * Emits the results of the window.
+   *
+   * @param results batch with the result of every key which received rows.
+   */
+  protected abstract void emit(ColumnarBatch<K> results);
+
+  /**
+   * Cumulative operators emit the results of all the keys every window, so that the unifier combines the results of
+   * all the partitions.
+   *
+   * @return true if the state of the keys is kept across windows.
+   */
+  protected boolean isCumulative()
+  {
+    return false;
+  }
+
+  /**
+   * Emits the results of the keys which received rows in the window, or of all keys if the operator is cumulative, as
+   * one batch.
+   */
+  @Override
+  public void endWindow()
+  {
+    if (!states.isEmpty()) {
+      ColumnarBatch<K> results = new ColumnarBatch<K>(states.size());
+      for (Map.Entry<K, KeyState> e : states.entrySet()) {
+        KeyState state = e.getValue();
+        if (state.changed || isCumulative()) {
+          results.add(e.getKey(), getResult(state));
+        }
+      }
+      if (results.size() > 0) {
+        emit(results);
+      }
+    }
+    if (isCumulative()) {
+      for (KeyState state : states.values()) {
+        state.changed = false;
+      }
+    }
+    else {
+      states.clear();
+    }
+  }
+}
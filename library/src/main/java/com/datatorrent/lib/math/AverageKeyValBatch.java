@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.math;
+
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OperatorAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.ColumnarBatch;
+
+/**
+ * Batch version of {@link AverageKeyVal}: emits the average of values for each key of keyed batches at the end of window. <p>
+ * This is an end window operator. Batches are not partitioned by key and an average cannot be combined from the
+ * averages of partitions, hence the operator is not partitionable.<br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects keyed ColumnarBatch&lt;K&gt;<br>
+ * <b>average</b>: emits a ColumnarBatch&lt;K&gt; with the average of every key<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>inverse</b>: if set to true the key in the filter will block tuple<br>
+ * <b>filterBy</b>: list of keys to filter on<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+@OperatorAnnotation(partitionable = false)
+public class AverageKeyValBatch<K> extends AbstractKeyValBatchOperator<K>
+{
+  /**
+   * Output average port.
+   */
+  @OutputPortFieldAnnotation(name = "average", optional = true)
+  public final transient DefaultOutputPort<ColumnarBatch<K>> average = new DefaultOutputPort<ColumnarBatch<K>>();
+
+  @Override
+  protected void aggregate(KeyState[] states, int[] keyIndexes, double[] values, int size)
+  {
+    for (int i = 0; i < size; i++) {
+      KeyState state = states[keyIndexes[i]];
+      if (state != null) {
+        state.value += values[i];
+        state.count++;
+      }
+    }
+  }
+
+  @Override
+  protected double getResult(KeyState state)
+  {
+    return state.value / state.count;
+  }
+
+  @Override
+  protected void emit(ColumnarBatch<K> results)
+  {
+    average.emit(results);
+  }
+}
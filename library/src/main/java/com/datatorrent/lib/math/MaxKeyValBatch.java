@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.math;
+
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.ColumnarBatch;
+import com.datatorrent.lib.util.UnifierColumnarBatch;
+
+/**
+ * Batch version of {@link MaxKeyVal}: emits the maximum of values for each key of keyed batches at the end of window. <p>
+ * This is an end window operator. Batches are not partitioned by key, so the batches of the partitions are combined
+ * by the unifier.<br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects keyed ColumnarBatch&lt;K&gt;<br>
+ * <b>max</b>: emits a ColumnarBatch&lt;K&gt; with the maximum of every key<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>inverse</b>: if set to true the key in the filter will block tuple<br>
+ * <b>filterBy</b>: list of keys to filter on<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public class MaxKeyValBatch<K> extends AbstractKeyValBatchOperator<K>
+{
+  /**
+   * Output maximum port.
+   */
+  @OutputPortFieldAnnotation(name = "max", optional = true)
+  public final transient DefaultOutputPort<ColumnarBatch<K>> max = new DefaultOutputPort<ColumnarBatch<K>>()
+  {
+    @Override
+    public UnifierColumnarBatch<K> getUnifier()
+    {
+      return new UnifierColumnarBatch<K>(UnifierColumnarBatch.Combiner.MAX);
+    }
+  };
+
+  @Override
+  protected void aggregate(KeyState[] states, int[] keyIndexes, double[] values, int size)
+  {
+    for (int i = 0; i < size; i++) {
+      KeyState state = states[keyIndexes[i]];
+      if (state != null) {
+        if (state.count++ == 0 || values[i] > state.value) {
+          state.value = values[i];
+        }
+      }
+    }
+  }
+
+  @Override
+  protected double getResult(KeyState state)
+  {
+    return state.value;
+  }
+
+  @Override
+  protected void emit(ColumnarBatch<K> results)
+  {
+    max.emit(results);
+  }
+}
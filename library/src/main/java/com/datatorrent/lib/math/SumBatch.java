@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.math;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.ColumnarBatch;
+import com.datatorrent.lib.util.UnifierSumNumber;
+
+/**
+ * <p>
+ * Batch version of {@link Sum}: emits the sum of the values of batches at the end of window. <br>
+ * The values of a batch are summed in a loop over its values column, keys are ignored. <br>
+ * <b>StateFull : Yes</b>, sum is computed over application window >= 1. <br>
+ * <b>Partitions : Yes</b>, sum is unified at output port. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects ColumnarBatch<br>
+ * <b>sum</b>: emits Double<br>
+ * <br>
+ * <b>Properties: </b> <br>
+ * <b>cumulative </b> Sum has to be cumulative. <br>
+ * <br>
+ *
+ * @since 0.9.4
+ */
+public class SumBatch extends BaseOperator
+{
+  /**
+   * Sum value.
+   */
+  protected double sums = 0;
+
+  /**
+   * Input tuple processed flag.
+   */
+  protected boolean tupleAvailable = false;
+
+  /**
+   * Accumulate sum flag.
+   */
+  protected boolean cumulative = false;
+
+  /**
+   * Input port to receive batches.
+   */
+  @InputPortFieldAnnotation(name = "data")
+  public final transient DefaultInputPort<ColumnarBatch<?>> data = new DefaultInputPort<ColumnarBatch<?>>()
+  {
+    @Override
+    public void process(ColumnarBatch<?> tuple)
+    {
+      double[] values = tuple.getValues();
+      double batchSum = 0;
+      for (int i = 0; i < tuple.size(); i++) {
+        batchSum += values[i];
+      }
+      sums += batchSum;
+      tupleAvailable = true;
+    }
+  };
+
+  /**
+   * Output sum port.
+   */
+  @OutputPortFieldAnnotation(name = "sum", optional = true)
+  public final transient DefaultOutputPort<Double> sum = new DefaultOutputPort<Double>()
+  {
+    @Override
+    public Unifier<Double> getUnifier()
+    {
+      UnifierSumNumber<Double> ret = new UnifierSumNumber<Double>();
+      ret.setType(Double.class);
+      return ret;
+    }
+  };
+
+  public boolean isCumulative()
+  {
+    return cumulative;
+  }
+
+  public void setCumulative(boolean cumulative)
+  {
+    this.cumulative = cumulative;
+  }
+
+  /**
+   * Emits the sum if a batch was received in the window.
+   */
+  @Override
+  public void endWindow()
+  {
+    if (tupleAvailable) {
+      sum.emit(sums);
+      tupleAvailable = false;
+    }
+    if (!cumulative) {
+      sums = 0;
+    }
+  }
+}
@@ -15,10 +15,7 @@
  */
 package com.datatorrent.lib.math;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import org.apache.commons.lang.mutable.MutableDouble;
+import java.util.BitSet;
 
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
@@ -27,10 +24,11 @@ import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
 import com.datatorrent.lib.util.BaseNumberKeyValueOperator;
 import com.datatorrent.lib.util.KeyValPair;
+import com.datatorrent.lib.util.KeyedDoubleAccumulator;
 
 /**
  *
- * Emits the sum of values for each key at the end of window. <p> This is an end window operator. Default unifier works as this operator follows sticky partition.<br> <br> <b>Ports</b>:<br>
+ * Emits the sum of values for each key at the end of window. <p> This is an end window operator. Sums are kept in a primitive keyed map which is re-used across windows. Default unifier works as this operator follows sticky partition.<br> <br> <b>Ports</b>:<br>
  * <b>data</b>: expects KeyValPair&lt;K,V extends Number&gt;<br> <b>sum</b>: emits KeyValPair&lt;K,V extends Number&gt;<br> <br> <b>Properties</b>:<br> <b>inverse</b>: If set to true the key in the
  * filter will block tuple<br> <b>filterBy</b>: List of keys to filter on<br>
  * <b>cumulative</b>: boolean flag, if set the sum is not cleared at the end of window, <br>
@@ -42,28 +40,16 @@ import com.datatorrent.lib.util.KeyValPair;
  */
 public class SumKeyVal<K, V extends Number> extends BaseNumberKeyValueOperator<K, V>
 {
-  protected class SumEntry
-  {
-    public MutableDouble sum;
-    public boolean changed = true;
-
-    SumEntry()
-    {
-    }
-
-    SumEntry(MutableDouble sum, boolean changed)
-    {
-      this.sum = sum;
-      this.changed = changed;
-    }
-
-  }
-
   /**
    * Sums key map.
    */
-  protected HashMap<K, SumEntry> sums = new HashMap<K, SumEntry>();
-  
+  protected KeyedDoubleAccumulator<K> sums = new KeyedDoubleAccumulator<K>();
+
+  /**
+   * Indexes of the keys in {@link #sums} which received tuples in the window.
+   */
+  protected transient BitSet changed = new BitSet();
+
   /**
    * Cumulative sum flag.
    */
@@ -85,15 +71,12 @@ public class SumKeyVal<K, V extends Number> extends BaseNumberKeyValueOperator<K
       if (!doprocessKey(key)) {
         return;
       }
-      SumEntry val = sums.get(key);
-      if (val == null) {
-        val = new SumEntry(new MutableDouble(tuple.getValue().doubleValue()), true);
-      }
-      else {
-        val.sum.add(tuple.getValue().doubleValue());
-        val.changed = true;
+      int index = sums.indexOf(key);
+      if (index < 0) {
+        index = sums.insert(cloneKey(key));
       }
-      sums.put(cloneKey(key), val);
+      sums.addAt(index, tuple.getValue().doubleValue());
+      changed.set(index);
     }
 
     /**
@@ -168,17 +151,15 @@ public class SumKeyVal<K, V extends Number> extends BaseNumberKeyValueOperator<K
   @Override
   public void endWindow()
   {
-    for (Map.Entry<K, SumEntry> e: sums.entrySet()) {
-      K key = e.getKey();
-      SumEntry val = e.getValue();
-      if (val.changed) {
-        sum.emit(new KeyValPair<K, V>(key, getValue(val.sum.doubleValue())));
-        sumDouble.emit(new KeyValPair<K, Double>(key, val.sum.doubleValue()));
-        sumInteger.emit(new KeyValPair<K, Integer>(key, val.sum.intValue()));
-        sumFloat.emit(new KeyValPair<K, Float>(key, val.sum.floatValue()));
-        sumShort.emit(new KeyValPair<K, Short>(key, val.sum.shortValue()));
-        sumLong.emit(new KeyValPair<K, Long>(key, val.sum.longValue()));
-      }
+    for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+      K key = sums.getKey(i);
+      double val = sums.get(i);
+      sum.emit(new KeyValPair<K, V>(key, getValue(val)));
+      sumDouble.emit(new KeyValPair<K, Double>(key, val));
+      sumInteger.emit(new KeyValPair<K, Integer>(key, (int)val));
+      sumFloat.emit(new KeyValPair<K, Float>(key, (float)val));
+      sumShort.emit(new KeyValPair<K, Short>(key, (short)val));
+      sumLong.emit(new KeyValPair<K, Long>(key, (long)val));
     }
     clearCache();
   }
@@ -188,15 +169,10 @@ public class SumKeyVal<K, V extends Number> extends BaseNumberKeyValueOperator<K
    */
   public void clearCache()
   {
-    if (cumulative) {
-      for (Map.Entry<K, SumEntry> e: sums.entrySet()) {
-        SumEntry val = e.getValue();
-        val.changed = false;
-      }
-    }
-    else {
+    if (!cumulative) {
       sums.clear();
     }
+    changed.clear();
   }
 
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.lib.util.BaseNumberKeyValueOperator;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Base class of the operators which emit an aggregate of the values of every key over the last N streaming windows,
+ * at the end of every streaming window. <p>
+ * Every key has a {@link SlidingWindowAggregate} which is updated incrementally, so the cost of a slide per key is
+ * O(1) whatever the no. of streaming windows in the sliding window; e.g. a one hour window of 500ms streaming windows
+ * does not iterate over 7200 windows per key. A key is dropped when its sliding window has no more values. <br>
+ * The input is partitioned by key, so the output does not need a unifier. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects KeyValPair&lt;K,V extends Number&gt;<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>inverse</b>: if set to true the key in the filter will block tuple<br>
+ * <b>filterBy</b>: List of keys to filter on<br>
+ * <b>windowSize i.e. N</b>: Number of streaming windows in the sliding window<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @param <A> aggregate type
+ * @since 0.9.4
+ */
+public abstract class AbstractSlidingWindowAggregateKeyVal<K, V extends Number, A extends SlidingWindowAggregate>
+  extends BaseNumberKeyValueOperator<K, V>
+{
+  /**
+   * Aggregate of every key whose sliding window has values.
+   */
+  protected HashMap<K, A> aggregates = new HashMap<K, A>();
+
+  /**
+   * Length of sliding windows. Minimum value is 2.
+   */
+  @Min(2)
+  protected int windowSize = 2;
+
+  /**
+   * Input port for getting incoming data.
+   */
+  @InputPortFieldAnnotation(name = "data")
+  public final transient DefaultInputPort<KeyValPair<K, V>> data = new DefaultInputPort<KeyValPair<K, V>>()
+  {
+    @Override
+    public void process(KeyValPair<K, V> tuple)
+    {
+      K key = tuple.getKey();
+      if (!doprocessKey(key) || tuple.getValue() == null) {
+        return;
+      }
+      A aggregate = aggregates.get(key);
+      if (aggregate == null) {
+        aggregate = createAggregate(windowSize);
+        aggregates.put(cloneKey(key), aggregate);
+      }
+      aggregate.add(tuple.getValue().doubleValue());
+    }
+
+    @Override
+    public Class<? extends StreamCodec<KeyValPair<K, V>>> getStreamCodec()
+    {
+      return getKeyValPairStreamCodec();
+    }
+  };
+
+  public int getWindowSize()
+  {
+    return windowSize;
+  }
+
+  public void setWindowSize(int windowSize)
+  {
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * @param windowSize no. of streaming windows in the sliding window.
+   * @return empty aggregate of a key.
+   */
+  protected abstract A createAggregate(int windowSize);
+
+  /**
+   * Emits the aggregate of a key.
+   *
+   * @param key       key.
+   * @param aggregate aggregate of the sliding window of the key, which is not empty.
+   */
+  protected abstract void emitTuple(K key, A aggregate);
+
+  /**
+   * Emits the aggregate of every key and slides its window.
+   */
+  @Override
+  public void endWindow()
+  {
+    for (Iterator<Map.Entry<K, A>> iterator = aggregates.entrySet().iterator(); iterator.hasNext();) {
+      Map.Entry<K, A> e = iterator.next();
+      A aggregate = e.getValue();
+      emitTuple(e.getKey(), aggregate);
+      aggregate.slide();
+      if (aggregate.isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+}
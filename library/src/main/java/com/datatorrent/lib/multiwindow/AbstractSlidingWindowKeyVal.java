@@ -55,7 +55,8 @@ public abstract class AbstractSlidingWindowKeyVal<K, V extends Number, S extends
 	 */
 	protected HashMap<K, ArrayList<S>> buffer = new HashMap<K, ArrayList<S>>();
 	/**
-	 * Index of windows stating at 0.
+	 * Index of the state of the current window in the state lists, which are ring
+	 * buffers.
 	 */
 	protected int currentstate = -1;
 
@@ -114,9 +115,11 @@ public abstract class AbstractSlidingWindowKeyVal<K, V extends Number, S extends
 	};
 
 	/**
-	 * Moves buffer by 1 and clear contents of current. If you override
-	 * beginWindow, you must call super.beginWindow(windowId) to ensure proper
-	 * operator behavior.
+	 * Moves the cursor of the buffers by 1 and clears the state it points to. The
+	 * state lists are used as ring buffers, so a move does not shift the states of
+	 * the keys; currentstate is the index of the state of the current window. If
+	 * you override beginWindow, you must call super.beginWindow(windowId) to ensure
+	 * proper operator behavior.
 	 * 
 	 * @param windowId
 	 */
@@ -126,13 +129,7 @@ public abstract class AbstractSlidingWindowKeyVal<K, V extends Number, S extends
 		this.windowId = windowId;
 		currentstate++;
 		if (currentstate >= windowSize) {
-			for (Map.Entry<K, ArrayList<S>> e : buffer.entrySet()) {
-				ArrayList<S> states = e.getValue();
-                		S first = states.get(0);
-				for (int i=1; i < windowSize; i++) states.set(i-1, states.get(i));
-				states.set(windowSize-1, first);
-			}
-			currentstate = windowSize-1;
+			currentstate = 0;
 		}
 		for (Map.Entry<K, ArrayList<S>> e : buffer.entrySet()) {
 			e.getValue().get(currentstate).clear();
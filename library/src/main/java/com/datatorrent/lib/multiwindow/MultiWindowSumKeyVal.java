@@ -19,7 +19,6 @@ import com.datatorrent.api.annotation.OperatorAnnotation;
 import com.datatorrent.lib.math.SumKeyVal;
 import com.datatorrent.lib.util.KeyValPair;
 
-import java.util.Map;
 import javax.validation.constraints.Min;
 
 /**
@@ -77,16 +76,14 @@ public class MultiWindowSumKeyVal<K, V extends Number> extends SumKeyVal<K, V>
 		boolean dosum = sum.isConnected();
 
 		if (dosum) {
-			for (Map.Entry<K, SumEntry> e : sums.entrySet()) {
-				K key = e.getKey();
-				if (dosum) {
-					sum.emit(new KeyValPair(key, getValue(e.getValue().sum.doubleValue())));
-				}
+			for (int i = 0; i < sums.size(); i++) {
+				sum.emit(new KeyValPair(sums.getKey(i), getValue(sums.get(i))));
 			}
 		}
 
 		// Clear cumulative sum at the end of application window boundary.
 		sums.clear();
+		changed.clear();
 	}
 }
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Minimum and maximum of the values of the last N streaming windows. <p>
+ * Min and max are not invertible, so the expiring streaming window cannot be subtracted from a running value. The
+ * minimum and maximum of the completed streaming windows are kept in a queue implemented as two stacks over a single
+ * ring buffer: the front of the queue holds the aggregate of every window up to the back of the front stack, and the
+ * back stack holds the raw windows with one running aggregate. Evicting a window pops the front stack; when it is
+ * empty the back stack is flipped into it by one pass which computes the suffix aggregates. Every window is flipped
+ * once, so a slide costs amortized O(1) and a query costs O(1) whatever the no. of streaming windows. <br>
+ *
+ * @since 0.9.4
+ */
+public class SlidingMinMax implements SlidingWindowAggregate
+{
+  private double[] mins;
+  private double[] maxs;
+  private int front;
+  private int boundary;
+  private int end;
+  private double backMin = Double.POSITIVE_INFINITY;
+  private double backMax = Double.NEGATIVE_INFINITY;
+  private double currentMin = Double.POSITIVE_INFINITY;
+  private double currentMax = Double.NEGATIVE_INFINITY;
+  private long[] counts;
+  private int cursor;
+  private long count;
+
+  private SlidingMinMax()
+  {
+    // for kryo
+  }
+
+  /**
+   * @param windowSize no. of streaming windows in the sliding window.
+   */
+  public SlidingMinMax(int windowSize)
+  {
+    Preconditions.checkArgument(windowSize > 1, "window size %s", windowSize);
+    mins = new double[windowSize - 1];
+    maxs = new double[windowSize - 1];
+    counts = new long[windowSize];
+  }
+
+  @Override
+  public void add(double value)
+  {
+    if (value < currentMin) {
+      currentMin = value;
+    }
+    if (value > currentMax) {
+      currentMax = value;
+    }
+    counts[cursor]++;
+    count++;
+  }
+
+  @Override
+  public void slide()
+  {
+    int capacity = mins.length;
+    if (end - front == capacity) {
+      evict();
+    }
+    int index = end % capacity;
+    mins[index] = currentMin;
+    maxs[index] = currentMax;
+    end++;
+    backMin = Math.min(backMin, currentMin);
+    backMax = Math.max(backMax, currentMax);
+    currentMin = Double.POSITIVE_INFINITY;
+    currentMax = Double.NEGATIVE_INFINITY;
+
+    cursor++;
+    if (cursor == counts.length) {
+      cursor = 0;
+    }
+    count -= counts[cursor];
+    counts[cursor] = 0;
+  }
+
+  private void evict()
+  {
+    int capacity = mins.length;
+    if (front == boundary) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = end - 1; i >= front; i--) {
+        int index = i % capacity;
+        min = Math.min(mins[index], min);
+        max = Math.max(maxs[index], max);
+        mins[index] = min;
+        maxs[index] = max;
+      }
+      boundary = end;
+      backMin = Double.POSITIVE_INFINITY;
+      backMax = Double.NEGATIVE_INFINITY;
+    }
+    front++;
+    if (front >= capacity) {
+      front -= capacity;
+      boundary -= capacity;
+      end -= capacity;
+    }
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return count == 0;
+  }
+
+  /**
+   * @return minimum of the sliding window or positive infinity if it is empty.
+   */
+  public double getMin()
+  {
+    double min = Math.min(currentMin, backMin);
+    return front < boundary ? Math.min(mins[front % mins.length], min) : min;
+  }
+
+  /**
+   * @return maximum of the sliding window or negative infinity if it is empty.
+   */
+  public double getMax()
+  {
+    double max = Math.max(currentMax, backMax);
+    return front < boundary ? Math.max(maxs[front % maxs.length], max) : max;
+  }
+
+  public long getCount()
+  {
+    return count;
+  }
+
+  public int getWindowSize()
+  {
+    return counts.length;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Sum and count of the values of the last N streaming windows. <p>
+ * The sum and count of every streaming window are kept in ring buffers and a running total is kept for the sliding
+ * window. Since sum and count are invertible the values of the expiring streaming window are subtracted from the
+ * totals, so a slide costs O(1) whatever the no. of streaming windows. To bound the rounding error of the subtractions
+ * the total sum is recomputed from the ring once every N slides. <br>
+ *
+ * @since 0.9.4
+ */
+public class SlidingSum implements SlidingWindowAggregate
+{
+  private double[] sums;
+  private long[] counts;
+  private int cursor;
+  private double sum;
+  private long count;
+
+  private SlidingSum()
+  {
+    // for kryo
+  }
+
+  /**
+   * @param windowSize no. of streaming windows in the sliding window.
+   */
+  public SlidingSum(int windowSize)
+  {
+    Preconditions.checkArgument(windowSize > 0, "window size %s", windowSize);
+    sums = new double[windowSize];
+    counts = new long[windowSize];
+  }
+
+  @Override
+  public void add(double value)
+  {
+    sums[cursor] += value;
+    counts[cursor]++;
+    sum += value;
+    count++;
+  }
+
+  @Override
+  public void slide()
+  {
+    cursor++;
+    if (cursor == sums.length) {
+      cursor = 0;
+    }
+    sum -= sums[cursor];
+    count -= counts[cursor];
+    sums[cursor] = 0;
+    counts[cursor] = 0;
+    if (count == 0) {
+      sum = 0;
+    }
+    else if (cursor == 0) {
+      sum = 0;
+      for (double s : sums) {
+        sum += s;
+      }
+    }
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return count == 0;
+  }
+
+  public double getSum()
+  {
+    return sum;
+  }
+
+  public long getCount()
+  {
+    return count;
+  }
+
+  /**
+   * @return average of the values of the sliding window or NaN if it is empty.
+   */
+  public double getAverage()
+  {
+    return count == 0 ? Double.NaN : sum / count;
+  }
+
+  public int getWindowSize()
+  {
+    return sums.length;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+/**
+ * Aggregate of the values of the last N streaming windows which is maintained incrementally. <p>
+ * Values are added to the current streaming window; {@link #slide()} starts the next streaming window and expires
+ * the oldest one in constant time, without iterating over the windows which are kept.
+ *
+ * @since 0.9.4
+ */
+public interface SlidingWindowAggregate
+{
+  /**
+   * Adds a value to the current streaming window.
+   *
+   * @param value value.
+   */
+  public void add(double value);
+
+  /**
+   * Starts a new streaming window and expires the values of the oldest one.
+   */
+  public void slide();
+
+  /**
+   * @return true if no streaming window in the sliding window has values.
+   */
+  public boolean isEmpty();
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.HighLow;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Emits the minimum, maximum and range of the values of every key over the last N streaming windows at the end of
+ * every streaming window. <p>
+ * Unlike {@link MultiWindowRangeKeyVal}, which emits once every N windows, the window slides by one streaming window.
+ * Min and max of every key are kept by a {@link SlidingMinMax} so a slide is amortized O(1) per key. <br>
+ * <br>
+ * <b>StateFull : Yes</b>, values of the last N streaming windows are aggregated. <br>
+ * <b>Partitions : Yes</b>, the input is partitioned by key. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects KeyValPair&lt;K,V extends Number&gt;<br>
+ * <b>min</b>: emits KeyValPair&lt;K,V&gt;<br>
+ * <b>max</b>: emits KeyValPair&lt;K,V&gt;<br>
+ * <b>range</b>: emits KeyValPair&lt;K,HighLow&lt;V&gt;&gt;<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>inverse</b>: if set to true the key in the filter will block tuple<br>
+ * <b>filterBy</b>: List of keys to filter on<br>
+ * <b>windowSize i.e. N</b>: Number of streaming windows in the sliding window<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @since 0.9.4
+ */
+public class SlidingWindowRangeKeyVal<K, V extends Number> extends AbstractSlidingWindowAggregateKeyVal<K, V, SlidingMinMax>
+{
+  /**
+   * Output port to emit the minimum of the sliding window of every key.
+   */
+  @OutputPortFieldAnnotation(name = "min", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, V>> min = new DefaultOutputPort<KeyValPair<K, V>>();
+
+  /**
+   * Output port to emit the maximum of the sliding window of every key.
+   */
+  @OutputPortFieldAnnotation(name = "max", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, V>> max = new DefaultOutputPort<KeyValPair<K, V>>();
+
+  /**
+   * Output port to emit the range of the sliding window of every key.
+   */
+  @OutputPortFieldAnnotation(name = "range", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, HighLow<V>>> range = new DefaultOutputPort<KeyValPair<K, HighLow<V>>>();
+
+  @Override
+  protected SlidingMinMax createAggregate(int windowSize)
+  {
+    return new SlidingMinMax(windowSize);
+  }
+
+  @Override
+  protected void emitTuple(K key, SlidingMinMax aggregate)
+  {
+    V low = getValue(aggregate.getMin());
+    V high = getValue(aggregate.getMax());
+    if (min.isConnected()) {
+      min.emit(new KeyValPair<K, V>(key, low));
+    }
+    if (max.isConnected()) {
+      max.emit(new KeyValPair<K, V>(key, high));
+    }
+    if (range.isConnected()) {
+      range.emit(new KeyValPair<K, HighLow<V>>(key, new HighLow<V>(high, low)));
+    }
+  }
+}
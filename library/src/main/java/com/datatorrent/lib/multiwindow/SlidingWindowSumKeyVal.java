@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Emits the sum, count and average of the values of every key over the last N streaming windows at the end of every
+ * streaming window. <p>
+ * Unlike {@link MultiWindowSumKeyVal}, which emits once every N windows, the window slides by one streaming window.
+ * The totals of every key are kept by a {@link SlidingSum} so a slide is O(1) per key. <br>
+ * <br>
+ * <b>StateFull : Yes</b>, values of the last N streaming windows are aggregated. <br>
+ * <b>Partitions : Yes</b>, the input is partitioned by key. <br>
+ * <br>
+ * <b>Ports</b>:<br>
+ * <b>data</b>: expects KeyValPair&lt;K,V extends Number&gt;<br>
+ * <b>sum</b>: emits KeyValPair&lt;K,V&gt;<br>
+ * <b>count</b>: emits KeyValPair&lt;K,Long&gt;<br>
+ * <b>average</b>: emits KeyValPair&lt;K,Double&gt;<br>
+ * <br>
+ * <b>Properties</b>:<br>
+ * <b>inverse</b>: if set to true the key in the filter will block tuple<br>
+ * <b>filterBy</b>: List of keys to filter on<br>
+ * <b>windowSize i.e. N</b>: Number of streaming windows in the sliding window<br>
+ * <br>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @since 0.9.4
+ */
+public class SlidingWindowSumKeyVal<K, V extends Number> extends AbstractSlidingWindowAggregateKeyVal<K, V, SlidingSum>
+{
+  /**
+   * Output port to emit the sum of the sliding window of every key.
+   */
+  @OutputPortFieldAnnotation(name = "sum", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, V>> sum = new DefaultOutputPort<KeyValPair<K, V>>();
+
+  /**
+   * Output port to emit the no. of values in the sliding window of every key.
+   */
+  @OutputPortFieldAnnotation(name = "count", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, Long>> count = new DefaultOutputPort<KeyValPair<K, Long>>();
+
+  /**
+   * Output port to emit the average of the sliding window of every key.
+   */
+  @OutputPortFieldAnnotation(name = "average", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, Double>> average = new DefaultOutputPort<KeyValPair<K, Double>>();
+
+  @Override
+  protected SlidingSum createAggregate(int windowSize)
+  {
+    return new SlidingSum(windowSize);
+  }
+
+  @Override
+  protected void emitTuple(K key, SlidingSum aggregate)
+  {
+    if (sum.isConnected()) {
+      sum.emit(new KeyValPair<K, V>(key, getValue(aggregate.getSum())));
+    }
+    if (count.isConnected()) {
+      count.emit(new KeyValPair<K, Long>(key, aggregate.getCount()));
+    }
+    if (average.isConnected()) {
+      average.emit(new KeyValPair<K, Double>(key, aggregate.getAverage()));
+    }
+  }
+}
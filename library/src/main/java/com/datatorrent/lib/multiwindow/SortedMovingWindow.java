@@ -15,10 +15,9 @@
  */
 package com.datatorrent.lib.multiwindow;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
@@ -56,7 +55,7 @@ public class SortedMovingWindow<T, K> extends AbstractSlidingWindow<T, List<T>>
   
   private Map<K, PriorityQueue<T>> sortedListInSlidingWin = new HashMap<K, PriorityQueue<T>>();
 
-  private List<T> tuplesInCurrentStreamWindow = new LinkedList<T>();
+  private List<T> tuplesInCurrentStreamWindow = new ArrayList<T>();
 
   @NotNull
   private Function<T, K> function = new SingleKeyMappingFunction<T, K>();
@@ -88,7 +87,7 @@ public class SortedMovingWindow<T, K> extends AbstractSlidingWindow<T, List<T>>
   public void endWindow()
   {
     super.endWindow();
-    tuplesInCurrentStreamWindow = new LinkedList<T>();
+    tuplesInCurrentStreamWindow = new ArrayList<T>();
     if(lastExpiredWindowState == null){
       // not ready to emit value or empty in a certain window
       return;
@@ -97,8 +96,8 @@ public class SortedMovingWindow<T, K> extends AbstractSlidingWindow<T, List<T>>
     for (T expiredTuple : lastExpiredWindowState) {
       // Find sorted list for the given key
       PriorityQueue<T> sortedListForE = sortedListInSlidingWin.get(function.apply(expiredTuple));
-      for (Iterator<T> iterator = sortedListForE.iterator(); iterator.hasNext();) {
-        T minElemInSortedList = iterator.next();
+      T minElemInSortedList;
+      while ((minElemInSortedList = sortedListForE.peek()) != null) {
         int k = 0;
         if (comparator == null) {
           if (expiredTuple instanceof Comparable) {
@@ -113,12 +112,9 @@ public class SortedMovingWindow<T, K> extends AbstractSlidingWindow<T, List<T>>
         if (k < 0) {
           // If the expiring tuple is less than the first element of the sorted list. No more tuples to emit
           break;
-        } else {
-          // Emit the element in sorted list if it's less than the expiring tuple 
-          outputPort.emit(minElemInSortedList);
-          // remove the element from the sorted list
-          iterator.remove();
         }
+        // Emit the head of the sorted list, which is not greater than the expiring tuple, and remove it in O(log n)
+        outputPort.emit(sortedListForE.poll());
       }
     }
   }
@@ -36,7 +36,10 @@ import com.datatorrent.api.DefaultOutputPort;
  * <br>
  * <b>StateFull : Yes</b>, value are aggregated over application window. <br>
  * <b>Partitions : No</b>, no will yield wrong results. <br>
- * <br>+
+ * <br>
+ * All the values of a window are kept and sorted; {@link QuantileOperator} estimates the median in bounded memory and
+ * can be partitioned. <br>
+ * <br>
  *
  * @since 0.3.4
  */
@@ -15,15 +15,13 @@
  */
 package com.datatorrent.lib.statistics;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import com.datatorrent.api.BaseOperator;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 import com.datatorrent.api.annotation.OperatorAnnotation;
 import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.KeyedLongAccumulator;
 
 /**
  * This operator computes weighted mean of incoming data. <br>
@@ -46,7 +44,7 @@ public class ModeOperator<V extends Comparable<?>> extends BaseOperator
   /**
    * Value/Count map.
    */
-  HashMap<V, Integer>   values = new  HashMap<V, Integer>();
+  KeyedLongAccumulator<V> values = new KeyedLongAccumulator<V>();
   /**
    * Input data port.
    */
@@ -59,12 +57,7 @@ public class ModeOperator<V extends Comparable<?>> extends BaseOperator
     @Override
     public void process(V tuple)
     {
-      if (values.containsKey(tuple)) {
-        Integer count = values.remove(tuple);
-        values.put(tuple, count+1);
-      } else {
-        values.put(tuple, 1);
-      }
+      values.increment(tuple);
     }
   };
   
@@ -81,11 +74,11 @@ public class ModeOperator<V extends Comparable<?>> extends BaseOperator
   public void endWindow()
   {
     V modeValue = null;
-    int max = 0;
-    for (Map.Entry<V, Integer> entry : values.entrySet()) {
-      if (entry.getValue() > max) {
-        modeValue = entry.getKey();
-        max = entry.getValue();
+    long max = 0;
+    for (int i = 0; i < values.size(); i++) {
+      if (values.get(i) > max) {
+        modeValue = values.getKey(i);
+        max = values.get(i);
       }
     }
     if (mode != null) {
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.lib.util.BaseFilteredKeyValueOperator;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * This operator estimates quantiles of the values of every key, such as the median and the 95th and 99th
+ * percentiles, in bounded memory using a {@link TDigest} per key. <br>
+ * <br>
+ * <b>Input Port(s) : </b><br>
+ * <b>data : </b> expects KeyValPair&lt;K,V extends Number&gt; <br>
+ * <b>digests : </b> Digests of keys to merge, e.g. the digest port of another keyed quantile operator. <br>
+ * <br>
+ * <b>Output Port(s) : </b> <br>
+ * <b>quantile : </b> emits KeyValPair&lt;K,HashMap&lt;Double,Double&gt;&gt;, the estimated value of every configured
+ * quantile, one entry per key. <br>
+ * <b>median : </b> emits the median as KeyValPair&lt;K,Double&gt;, one entry per key. <br>
+ * <b>digest : </b> emits the digest of every key as KeyValPair&lt;K,TDigest&gt;; digests are merged by the unifier. <br>
+ * <br>
+ * <b>StateFull : Yes</b>, value are aggregated over application window. <br>
+ * <b>Partitions : Yes</b>, the data port is partitioned by key. <br>
+ * <br>
+ * <b>Properties : </b> <br>
+ * <b>inverse : </b> if set to true the key in the filter will block tuple. <br>
+ * <b>filterBy : </b> list of keys to filter on. <br>
+ * <b>quantiles : </b> quantiles to estimate between 0 and 1. Default is 0.5, 0.95 and 0.99. <br>
+ * <b>compression : </b> accuracy of the digests; the no. of centroids of a key is bounded by about this value.
+ * Default is 100. <br>
+ * <br>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @since 0.9.4
+ */
+public class QuantileKeyValOperator<K, V extends Number> extends BaseFilteredKeyValueOperator<K, V>
+{
+  @NotNull
+  private double[] quantiles = new double[] { 0.5, 0.95, 0.99 };
+  @Min(10)
+  private double compression = 100;
+  protected HashMap<K, TDigest> windowDigests = new HashMap<K, TDigest>();
+
+  /**
+   * Input data port.
+   */
+  @InputPortFieldAnnotation(name = "data", optional = true)
+  public final transient DefaultInputPort<KeyValPair<K, V>> data = new DefaultInputPort<KeyValPair<K, V>>()
+  {
+    /**
+     * Adds the value to the digest of the key
+     */
+    @Override
+    public void process(KeyValPair<K, V> tuple)
+    {
+      K key = tuple.getKey();
+      if (doprocessKey(key)) {
+        getWindowDigest(key).add(tuple.getValue().doubleValue());
+      }
+    }
+
+    /**
+     * Stream codec used for partitioning.
+     */
+    @Override
+    public Class<? extends StreamCodec<KeyValPair<K, V>>> getStreamCodec()
+    {
+      return getKeyValPairStreamCodec();
+    }
+  };
+
+  /**
+   * Input digests port.
+   */
+  @InputPortFieldAnnotation(name = "digests", optional = true)
+  public final transient DefaultInputPort<KeyValPair<K, TDigest>> digests = new DefaultInputPort<KeyValPair<K, TDigest>>()
+  {
+    /**
+     * Merges the digest into the digest of the key
+     */
+    @Override
+    public void process(KeyValPair<K, TDigest> tuple)
+    {
+      K key = tuple.getKey();
+      if (doprocessKey(key)) {
+        getWindowDigest(key).merge(tuple.getValue());
+      }
+    }
+  };
+
+  /**
+   * Quantiles output port.
+   */
+  @OutputPortFieldAnnotation(name = "quantile", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, HashMap<Double, Double>>> quantile = new DefaultOutputPort<KeyValPair<K, HashMap<Double, Double>>>();
+
+  /**
+   * Median output port.
+   */
+  @OutputPortFieldAnnotation(name = "median", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, Double>> median = new DefaultOutputPort<KeyValPair<K, Double>>();
+
+  /**
+   * Digest output port.
+   */
+  @OutputPortFieldAnnotation(name = "digest", optional = true)
+  public final transient DefaultOutputPort<KeyValPair<K, TDigest>> digest = new DefaultOutputPort<KeyValPair<K, TDigest>>()
+  {
+    @Override
+    public Unifier<KeyValPair<K, TDigest>> getUnifier()
+    {
+      return new UnifierTDigestKeyVal<K>();
+    }
+  };
+
+  private TDigest getWindowDigest(K key)
+  {
+    TDigest keyDigest = windowDigests.get(key);
+    if (keyDigest == null) {
+      keyDigest = new TDigest(compression);
+      windowDigests.put(cloneKey(key), keyDigest);
+    }
+    return keyDigest;
+  }
+
+  public double[] getQuantiles()
+  {
+    return quantiles;
+  }
+
+  public void setQuantiles(double[] quantiles)
+  {
+    this.quantiles = quantiles;
+  }
+
+  public double getCompression()
+  {
+    return compression;
+  }
+
+  public void setCompression(double compression)
+  {
+    this.compression = compression;
+  }
+
+  /**
+   * Emits the quantiles, the median and the digest of every key which received values in the window.
+   */
+  @Override
+  public void endWindow()
+  {
+    for (Map.Entry<K, TDigest> e : windowDigests.entrySet()) {
+      K key = e.getKey();
+      TDigest keyDigest = e.getValue();
+      if (quantile.isConnected()) {
+        HashMap<Double, Double> tuple = new HashMap<Double, Double>();
+        for (double q : quantiles) {
+          tuple.put(q, keyDigest.quantile(q));
+        }
+        quantile.emit(new KeyValPair<K, HashMap<Double, Double>>(key, tuple));
+      }
+      if (median.isConnected()) {
+        median.emit(new KeyValPair<K, Double>(key, keyDigest.quantile(0.5)));
+      }
+      digest.emit(new KeyValPair<K, TDigest>(key, keyDigest));
+    }
+    windowDigests.clear();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.HashMap;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+
+/**
+ * This operator estimates quantiles of incoming data, such as the median and the 95th and 99th percentiles, in bounded
+ * memory using a {@link TDigest}. <br>
+ * Unlike {@link MedianOperator} values are not kept, so memory does not depend on the no. of values in a window. <br>
+ * <br>
+ * <b>Input Port(s) : </b><br>
+ * <b>data : </b> Data values input port. <br>
+ * <b>digests : </b> Digests to merge, e.g. the unified digest port of a partitioned quantile operator. <br>
+ * <br>
+ * <b>Output Port(s) : </b> <br>
+ * <b>quantile : </b> emits HashMap&lt;Double,Double&gt;, the estimated value of every configured quantile. <br>
+ * <b>median : </b> Median output port. <br>
+ * <b>digest : </b> emits the digest of the window; the digests of partitions are merged by the unifier. <br>
+ * <br>
+ * <b>StateFull : Yes</b>, value are aggregated over application window. <br>
+ * <b>Partitions : Yes</b>, the digest is unified at the output port. The quantile and median ports are correct only
+ * when not partitioned; to compute quantiles of a partitioned stream connect the digest port to the digests port of
+ * another quantile operator. <br>
+ * <br>
+ * <b>Properties : </b> <br>
+ * <b>quantiles : </b> quantiles to estimate between 0 and 1. Default is 0.5, 0.95 and 0.99. <br>
+ * <b>compression : </b> accuracy of the digest; the no. of centroids is bounded by about this value. Default is 100. <br>
+ * <br>
+ *
+ * @since 0.9.4
+ */
+public class QuantileOperator extends BaseOperator
+{
+  @NotNull
+  private double[] quantiles = new double[] { 0.5, 0.95, 0.99 };
+  @Min(10)
+  private double compression = 100;
+  private TDigest windowDigest;
+
+  /**
+   * Input data port.
+   */
+  @InputPortFieldAnnotation(name = "data", optional = true)
+  public final transient DefaultInputPort<Number> data = new DefaultInputPort<Number>()
+  {
+    /**
+     * Adds the value to the digest
+     */
+    @Override
+    public void process(Number tuple)
+    {
+      getWindowDigest().add(tuple.doubleValue());
+    }
+  };
+
+  /**
+   * Input digests port.
+   */
+  @InputPortFieldAnnotation(name = "digests", optional = true)
+  public final transient DefaultInputPort<TDigest> digests = new DefaultInputPort<TDigest>()
+  {
+    /**
+     * Merges the digest into the digest of the window
+     */
+    @Override
+    public void process(TDigest tuple)
+    {
+      getWindowDigest().merge(tuple);
+    }
+  };
+
+  /**
+   * Quantiles output port.
+   */
+  @OutputPortFieldAnnotation(name = "quantile", optional = true)
+  public final transient DefaultOutputPort<HashMap<Double, Double>> quantile = new DefaultOutputPort<HashMap<Double, Double>>();
+
+  /**
+   * Median output port.
+   */
+  @OutputPortFieldAnnotation(name = "median", optional = true)
+  public final transient DefaultOutputPort<Double> median = new DefaultOutputPort<Double>();
+
+  /**
+   * Digest output port.
+   */
+  @OutputPortFieldAnnotation(name = "digest", optional = true)
+  public final transient DefaultOutputPort<TDigest> digest = new DefaultOutputPort<TDigest>()
+  {
+    @Override
+    public Unifier<TDigest> getUnifier()
+    {
+      return new UnifierTDigest();
+    }
+  };
+
+  private TDigest getWindowDigest()
+  {
+    if (windowDigest == null) {
+      windowDigest = new TDigest(compression);
+    }
+    return windowDigest;
+  }
+
+  public double[] getQuantiles()
+  {
+    return quantiles;
+  }
+
+  public void setQuantiles(double[] quantiles)
+  {
+    this.quantiles = quantiles;
+  }
+
+  public double getCompression()
+  {
+    return compression;
+  }
+
+  public void setCompression(double compression)
+  {
+    this.compression = compression;
+  }
+
+  /**
+   * Emits the quantiles, the median and the digest of the window.
+   */
+  @Override
+  public void endWindow()
+  {
+    if (windowDigest == null || windowDigest.getCount() == 0) {
+      return;
+    }
+    if (quantile.isConnected()) {
+      HashMap<Double, Double> tuple = new HashMap<Double, Double>();
+      for (double q : quantiles) {
+        tuple.put(q, windowDigest.quantile(q));
+      }
+      quantile.emit(tuple);
+    }
+    if (median.isConnected()) {
+      median.emit(windowDigest.quantile(0.5));
+    }
+    if (digest.isConnected()) {
+      digest.emit(windowDigest);
+      windowDigest = null;
+    }
+    else {
+      windowDigest.clear();
+    }
+  }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Mergeable sketch of a distribution of doubles which estimates its quantiles in bounded memory (merging t-digest). <p>
+ * Values are summarized by centroids, a mean and a weight, which are small near the tails of the distribution and
+ * large near the median, hence quantiles near 0 and 1 have a small relative error. The no. of centroids is bounded by
+ * about the compression; values are added to a buffer which is merged into the centroids when it is full. <br>
+ * Two digests are merged by merging their centroids, so digests of partitions can be combined into the digest of the
+ * whole stream. <br>
+ * Quantiles are interpolated between the centers of the centroids; with less values than centroids the quantiles are
+ * exact, e.g. the median of an even no. of values is the mean of the middle two. <br>
+ *
+ * @since 0.9.4
+ */
+public class TDigest
+{
+  private static final double DEFAULT_COMPRESSION = 100;
+
+  private double compression;
+  private double[] means;
+  private double[] weights;
+  private int centroidCount;
+  private double[] bufferMeans;
+  private double[] bufferWeights;
+  private int bufferCount;
+  private double totalWeight;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+  private transient double[] mergedMeans;
+  private transient double[] mergedWeights;
+
+  public TDigest()
+  {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * @param compression bound on the no. of centroids; higher values are more accurate. 100 is a good default.
+   */
+  public TDigest(double compression)
+  {
+    Preconditions.checkArgument(compression >= 10, "compression %s", compression);
+    this.compression = compression;
+    int capacity = (int)Math.ceil(compression) * 2 + 10;
+    means = new double[capacity];
+    weights = new double[capacity];
+    bufferMeans = new double[capacity * 4];
+    bufferWeights = new double[capacity * 4];
+  }
+
+  /**
+   * Adds a value.
+   *
+   * @param value value.
+   */
+  public void add(double value)
+  {
+    add(value, 1);
+  }
+
+  /**
+   * Adds a value with a weight.
+   *
+   * @param value  value.
+   * @param weight weight of the value.
+   */
+  public void add(double value, double weight)
+  {
+    Preconditions.checkArgument(!Double.isNaN(value), "NaN");
+    if (bufferCount == bufferMeans.length) {
+      compress();
+    }
+    bufferMeans[bufferCount] = value;
+    bufferWeights[bufferCount++] = weight;
+    totalWeight += weight;
+    if (value < min) {
+      min = value;
+    }
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  /**
+   * Adds all the values of the other digest.
+   *
+   * @param other digest to merge into this one.
+   */
+  public void merge(TDigest other)
+  {
+    other.compress();
+    if (other.centroidCount == 0) {
+      return;
+    }
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    for (int i = 0; i < other.centroidCount; i++) {
+      if (bufferCount == bufferMeans.length) {
+        compress();
+      }
+      bufferMeans[bufferCount] = other.means[i];
+      bufferWeights[bufferCount++] = other.weights[i];
+      totalWeight += other.weights[i];
+    }
+  }
+
+  /**
+   * Merges the buffered values into the centroids.
+   */
+  public void compress()
+  {
+    if (bufferCount == 0) {
+      return;
+    }
+    sort(bufferMeans, bufferWeights, 0, bufferCount - 1);
+
+    int count = centroidCount + bufferCount;
+    if (mergedMeans == null || mergedMeans.length < count) {
+      mergedMeans = new double[count];
+      mergedWeights = new double[count];
+    }
+    int i = 0;
+    int j = 0;
+    for (int k = 0; k < count; k++) {
+      if (j == bufferCount || (i < centroidCount && means[i] <= bufferMeans[j])) {
+        mergedMeans[k] = means[i];
+        mergedWeights[k] = weights[i++];
+      }
+      else {
+        mergedMeans[k] = bufferMeans[j];
+        mergedWeights[k] = bufferWeights[j++];
+      }
+    }
+    bufferCount = 0;
+
+    centroidCount = 0;
+    double weightSoFar = 0;
+    double mean = mergedMeans[0];
+    double weight = mergedWeights[0];
+    double qLimit = qLimit(0);
+    for (int k = 1; k < count; k++) {
+      double proposedWeight = weight + mergedWeights[k];
+      if ((weightSoFar + proposedWeight) / totalWeight <= qLimit) {
+        mean += (mergedMeans[k] - mean) * mergedWeights[k] / proposedWeight;
+        weight = proposedWeight;
+      }
+      else {
+        addCentroid(mean, weight);
+        weightSoFar += weight;
+        qLimit = qLimit(weightSoFar / totalWeight);
+        mean = mergedMeans[k];
+        weight = mergedWeights[k];
+      }
+    }
+    addCentroid(mean, weight);
+  }
+
+  private void addCentroid(double mean, double weight)
+  {
+    if (centroidCount == means.length) {
+      means = Arrays.copyOf(means, centroidCount * 2);
+      weights = Arrays.copyOf(weights, centroidCount * 2);
+    }
+    means[centroidCount] = mean;
+    weights[centroidCount++] = weight;
+  }
+
+  /**
+   * Scale function k(q) = compression / (2 * PI) * asin(2q - 1); a centroid which starts at q may span one unit of k.
+   *
+   * @param q quantile at which the centroid starts.
+   * @return quantile at which the centroid has to end.
+   */
+  private double qLimit(double q)
+  {
+    double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+    if (k >= compression / 4) {
+      return 1;
+    }
+    return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+  }
+
+  /**
+   * Estimates a quantile.
+   *
+   * @param q quantile between 0 and 1.
+   * @return estimated value of the quantile or NaN if the digest is empty.
+   */
+  public double quantile(double q)
+  {
+    Preconditions.checkArgument(q >= 0 && q <= 1, "quantile %s", q);
+    compress();
+    if (centroidCount == 0) {
+      return Double.NaN;
+    }
+    if (centroidCount == 1) {
+      return means[0];
+    }
+    double index = q * totalWeight;
+    if (index <= weights[0] / 2) {
+      return min + (means[0] - min) * index / (weights[0] / 2);
+    }
+    double center = weights[0] / 2;
+    for (int i = 0; i < centroidCount - 1; i++) {
+      double nextCenter = center + (weights[i] + weights[i + 1]) / 2;
+      if (index <= nextCenter) {
+        return means[i] + (means[i + 1] - means[i]) * (index - center) / (nextCenter - center);
+      }
+      center = nextCenter;
+    }
+    return means[centroidCount - 1] + (max - means[centroidCount - 1]) * (index - center) / (weights[centroidCount - 1] / 2);
+  }
+
+  /**
+   * @return total weight of the values, the no. of values if they were added without weight.
+   */
+  public double getCount()
+  {
+    return totalWeight;
+  }
+
+  public double getMin()
+  {
+    return min;
+  }
+
+  public double getMax()
+  {
+    return max;
+  }
+
+  public double getCompression()
+  {
+    return compression;
+  }
+
+  /**
+   * @return no. of centroids after the buffered values are merged.
+   */
+  public int getCentroidCount()
+  {
+    compress();
+    return centroidCount;
+  }
+
+  /**
+   * Removes all the values, keeping the arrays.
+   */
+  public void clear()
+  {
+    centroidCount = 0;
+    bufferCount = 0;
+    totalWeight = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Sorts the keys between from and to inclusive together with the values.
+   */
+  private static void sort(double[] keys, double[] values, int from, int to)
+  {
+    while (to - from > 16) {
+      double pivot = keys[(from + to) >>> 1];
+      int i = from;
+      int j = to;
+      while (i <= j) {
+        while (keys[i] < pivot) {
+          i++;
+        }
+        while (keys[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(keys, values, i++, j--);
+        }
+      }
+      if (j - from < to - i) {
+        sort(keys, values, from, j);
+        from = i;
+      }
+      else {
+        sort(keys, values, i, to);
+        to = j;
+      }
+    }
+    for (int i = from + 1; i <= to; i++) {
+      for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+        swap(keys, values, j, j - 1);
+      }
+    }
+  }
+
+  private static void swap(double[] keys, double[] values, int i, int j)
+  {
+    double key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    double value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "TDigest{count=" + totalWeight + ", min=" + min + ", max=" + max + ", median=" + quantile(0.5) + '}';
+  }
+}
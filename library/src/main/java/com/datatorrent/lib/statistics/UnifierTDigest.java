@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator.Unifier;
+
+/**
+ * Combiner for an output port that emits {@link TDigest}s. The digests of all the partitions are merged into one
+ * digest which is emitted at the end of the window.
+ *
+ * @since 0.9.4
+ */
+public class UnifierTDigest extends BaseOperator implements Unifier<TDigest>
+{
+  private TDigest mergedTuple;
+  public final transient DefaultOutputPort<TDigest> mergedport = new DefaultOutputPort<TDigest>();
+
+  /**
+   * Merges the digest of a partition.
+   * @param tuple digest of a partition
+   */
+  @Override
+  public void process(TDigest tuple)
+  {
+    if (mergedTuple == null) {
+      mergedTuple = new TDigest(tuple.getCompression());
+    }
+    mergedTuple.merge(tuple);
+  }
+
+  /**
+   * emits the merged digest on mergedport if a digest was received
+   */
+  @Override
+  public void endWindow()
+  {
+    if (mergedTuple != null) {
+      mergedport.emit(mergedTuple);
+      mergedTuple = null;
+    }
+  }
+}
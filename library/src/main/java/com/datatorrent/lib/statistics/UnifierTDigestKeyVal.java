@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Combiner for an output port that emits a {@link TDigest} per key. The digests of a key from all the partitions are
+ * merged and one digest per key is emitted at the end of the window.
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public class UnifierTDigestKeyVal<K> extends BaseOperator implements Unifier<KeyValPair<K, TDigest>>
+{
+  private HashMap<K, TDigest> mergedTuple = new HashMap<K, TDigest>();
+  public final transient DefaultOutputPort<KeyValPair<K, TDigest>> mergedport = new DefaultOutputPort<KeyValPair<K, TDigest>>();
+
+  /**
+   * Merges the digest of a key from a partition.
+   * @param tuple digest of a key
+   */
+  @Override
+  public void process(KeyValPair<K, TDigest> tuple)
+  {
+    TDigest digest = mergedTuple.get(tuple.getKey());
+    if (digest == null) {
+      digest = new TDigest(tuple.getValue().getCompression());
+      mergedTuple.put(tuple.getKey(), digest);
+    }
+    digest.merge(tuple.getValue());
+  }
+
+  /**
+   * emits the merged digest of every key on mergedport
+   */
+  @Override
+  public void endWindow()
+  {
+    for (Map.Entry<K, TDigest> e : mergedTuple.entrySet()) {
+      mergedport.emit(new KeyValPair<K, TDigest>(e.getKey(), e.getValue()));
+    }
+    mergedTuple.clear();
+  }
+}
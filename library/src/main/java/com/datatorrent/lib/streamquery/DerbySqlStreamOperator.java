@@ -26,6 +26,7 @@ import java.util.Map;
 
 /**
  * Embedded derby sql input operator.
+ * {@link InMemorySqlStreamOperator} executes the same SELECT statements without a database.
  *
  * @since 0.3.2
  */
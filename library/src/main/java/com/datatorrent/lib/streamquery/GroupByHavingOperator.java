@@ -16,17 +16,31 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Preconditions;
+
 import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
-import com.datatorrent.api.annotation.OperatorAnnotation;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.api.Partitionable;
 import com.datatorrent.lib.streamquery.condition.Condition;
 import com.datatorrent.lib.streamquery.condition.HavingCondition;
+import com.datatorrent.lib.streamquery.function.Accumulator;
 import com.datatorrent.lib.streamquery.function.FunctionIndex;
 import com.datatorrent.lib.streamquery.index.ColumnIndex;
 
@@ -39,7 +53,12 @@ import com.datatorrent.lib.streamquery.index.ColumnIndex;
  * output port. <br>
  * <br>
  * <b>StateFull : Yes,</b> Operator aggregates input over application window. <br>
- * <b>Partitions : No, </b> will yield wrong result(s). <br>
+ * <b>Partitions : Yes, </b> only when partial aggregates are emitted, which are combined by
+ * {@link GroupByHavingUnifier}; the operator is not partitioned otherwise. A single partition emits the finished rows
+ * even when partial aggregates are enabled, since no unifier combines them. <br>
+ * <br>
+ * In incremental mode, the rows are not buffered. Every aggregate and having condition aggregate of a group is
+ * computed as rows arrive by an {@link Accumulator} of the {@link FunctionIndex}. <br>
  * <br>
  * <b>Ports</b>:<br>
  * <b> inport : </b> Input hash map(row) port, expects
@@ -52,13 +71,19 @@ import com.datatorrent.lib.streamquery.index.ColumnIndex;
  * <b> columnGroupIndexes : </b> Group by names list. <br>
  * <b> indexes : </b> Select column indexes. <br>
  * <b> havingConditions : </b> Having filter conditions for aggregate(s). <br>
+ * <b> incremental : </b> Compute aggregates as rows arrive. <br>
+ * <b> emitPartialAggregates : </b> Emit accumulators of groups which are combined by unifier, requires incremental;
+ * allows the operator to be partitioned. <br>
  * <br>
  *
  * @since 0.3.4
  */
-@OperatorAnnotation(partitionable = false)
-public class GroupByHavingOperator extends BaseOperator
+public class GroupByHavingOperator extends BaseOperator implements Partitionable<GroupByHavingOperator>
 {
+  /**
+   * Key of the accumulators in a partial aggregate row.
+   */
+  public static final String PARTIAL_AGGREGATES = "__partialAggregates";
 
   /**
    * aggregate indexes.
@@ -85,6 +110,26 @@ public class GroupByHavingOperator extends BaseOperator
    */
   private ArrayList<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
 
+  /**
+   * Compute aggregates as rows arrive.
+   */
+  private boolean incremental = false;
+
+  /**
+   * Emit partial aggregates which are combined by unifier.
+   */
+  private boolean emitPartialAggregates = false;
+
+  /**
+   * Whether the operator is one of many partitions, whose partial aggregates are combined by the unifier.
+   */
+  private boolean partitioned = false;
+
+  /**
+   * Aggregates of groups in incremental mode.
+   */
+  private HashMap<ArrayList<Object>, GroupAggregate> groups = new HashMap<ArrayList<Object>, GroupAggregate>();
+
   public void addAggregateIndex(@NotNull FunctionIndex index)
   {
     aggregates.add(index);
@@ -108,6 +153,51 @@ public class GroupByHavingOperator extends BaseOperator
     this.condition = condition;
   }
 
+  public boolean isIncremental()
+  {
+    return incremental;
+  }
+
+  /**
+   * @param incremental compute aggregates as rows arrive instead of at end window.
+   */
+  public void setIncremental(boolean incremental)
+  {
+    this.incremental = incremental;
+  }
+
+  public boolean isEmitPartialAggregates()
+  {
+    return emitPartialAggregates;
+  }
+
+  /**
+   * @param emitPartialAggregates emit accumulators of groups, which are combined by {@link GroupByHavingUnifier},
+   *                              so that the operator can be partitioned. A single partition emits finished rows.
+   */
+  public void setEmitPartialAggregates(boolean emitPartialAggregates)
+  {
+    this.emitPartialAggregates = emitPartialAggregates;
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    Preconditions.checkArgument(incremental || !emitPartialAggregates, "partial aggregates need incremental mode");
+    if (incremental) {
+      for (FunctionIndex aggregate : aggregates) {
+        Preconditions.checkArgument(aggregate.newAccumulator() != null, "no accumulator for %s",
+          aggregate.getOutputName());
+      }
+      for (HavingCondition havingCondition : havingConditions) {
+        Preconditions.checkArgument(havingCondition.isIncremental(), "%s does not support incremental mode",
+          havingCondition.getClass().getName());
+        Preconditions.checkArgument(havingCondition.getAggregateIndex().newAccumulator() != null,
+          "no accumulator for %s", havingCondition.getAggregateIndex().getOutputName());
+      }
+    }
+  }
+
   /**
    * Input port.
    */
@@ -119,6 +209,10 @@ public class GroupByHavingOperator extends BaseOperator
     {
       if ((condition != null) && (!condition.isValidRow(tuple)))
         return;
+      if (incremental) {
+        accumulate(tuple);
+        return;
+      }
       rows.add(tuple);
     }
   };
@@ -126,7 +220,83 @@ public class GroupByHavingOperator extends BaseOperator
   /**
    * Output port.
    */
-  public final transient DefaultOutputPort<Map<String, Object>> outport = new DefaultOutputPort<Map<String, Object>>();
+  public final transient DefaultOutputPort<Map<String, Object>> outport = new DefaultOutputPort<Map<String, Object>>()
+  {
+    @Override
+    public Unifier<Map<String, Object>> getUnifier()
+    {
+      if (emitPartialAggregates) {
+        return new GroupByHavingUnifier(aggregates, havingConditions);
+      }
+      return super.getUnifier();
+    }
+  };
+
+  /**
+   * Partitions the operator only when it emits partial aggregates; the groups of partitions which emit finished rows
+   * would not be merged.
+   */
+  @Override
+  public Collection<Partition<GroupByHavingOperator>> definePartitions(Collection<Partition<GroupByHavingOperator>> partitions, int incrementalCapacity)
+  {
+    int count = emitPartialAggregates ? Math.max(partitions.size() + incrementalCapacity, 1) : 1;
+    if (count == partitions.size()) {
+      return partitions;
+    }
+
+    // groups and rows are cleared at end window, so a new partition only needs the configuration
+    GroupByHavingOperator template = partitions.iterator().next().getPartitionedInstance();
+    Kryo kryo = new Kryo();
+    Output output = new Output(4096, -1);
+    kryo.writeObject(output, template);
+    List<Partition<GroupByHavingOperator>> newPartitions = new ArrayList<Partition<GroupByHavingOperator>>(count);
+    for (int i = 0; i < count; i++) {
+      GroupByHavingOperator oper = kryo.readObject(new Input(output.getBuffer(), 0, output.position()), template.getClass());
+      oper.partitioned = count > 1;
+      newPartitions.add(new DefaultPartition<GroupByHavingOperator>(oper));
+    }
+    if (count > 1) {
+      DefaultPartition.assignPartitionKeys(newPartitions, inport);
+    }
+    return newPartitions;
+  }
+
+  /**
+   * Update accumulators of the group of row.
+   */
+  private void accumulate(Map<String, Object> tuple)
+  {
+    if (columnGroupIndexes.size() == 0) {
+      return;
+    }
+    ArrayList<Object> key = new ArrayList<Object>(columnGroupIndexes.size());
+    for (ColumnIndex index : columnGroupIndexes) {
+      key.add(tuple.get(index.getColumn()));
+    }
+    GroupAggregate group = groups.get(key);
+    if (group == null) {
+      Map<String, Object> columns = new HashMap<String, Object>();
+      for (ColumnIndex index : columnGroupIndexes) {
+        index.filter(tuple, columns);
+      }
+      ArrayList<Accumulator> accumulators = new ArrayList<Accumulator>();
+      for (FunctionIndex aggregate : aggregates) {
+        accumulators.add(aggregate.newAccumulator());
+      }
+      for (HavingCondition havingCondition : havingConditions) {
+        accumulators.add(havingCondition.getAggregateIndex().newAccumulator());
+      }
+      group = new GroupAggregate(columns, accumulators);
+      groups.put(key, group);
+    }
+    for (Accumulator accumulator : group.accumulators) {
+      try {
+        accumulator.accumulate(tuple);
+      } catch (Exception e) {
+        logger.warn("accumulating {}", tuple, e);
+      }
+    }
+  }
 
   /**
    * Create aggregate at end window.
@@ -134,6 +304,23 @@ public class GroupByHavingOperator extends BaseOperator
   @Override
   public void endWindow()
   {
+    if (incremental) {
+      for (GroupAggregate group : groups.values()) {
+        if (emitPartialAggregates && partitioned) {
+          Map<String, Object> partial = new HashMap<String, Object>(group.columns);
+          partial.put(PARTIAL_AGGREGATES, group.accumulators);
+          outport.emit(partial);
+          continue;
+        }
+        Map<String, Object> result = group.getResult(aggregates, havingConditions);
+        if (result != null) {
+          outport.emit(result);
+        }
+      }
+      groups = new HashMap<ArrayList<Object>, GroupAggregate>();
+      return;
+    }
+
     // group names
     if (columnGroupIndexes.size() == 0) {
       rows = new ArrayList<Map<String, Object>>();
@@ -194,6 +381,50 @@ public class GroupByHavingOperator extends BaseOperator
     rows = new ArrayList<Map<String, Object>>();
   }
 
+  /**
+   * Group columns and accumulators of aggregates followed by accumulators of having conditions of a group.
+   */
+  static class GroupAggregate
+  {
+    Map<String, Object> columns;
+    List<Accumulator> accumulators;
+
+    private GroupAggregate()
+    {
+    }
+
+    GroupAggregate(Map<String, Object> columns, List<Accumulator> accumulators)
+    {
+      this.columns = columns;
+      this.accumulators = accumulators;
+    }
+
+    /**
+     * Get result row of the group.
+     * @return result row, null if having conditions are not satisfied.
+     */
+    Map<String, Object> getResult(List<FunctionIndex> aggregates, List<HavingCondition> havingConditions)
+    {
+      Map<String, Object> result = new HashMap<String, Object>(columns);
+      for (int i = 0; i < aggregates.size(); i++) {
+        aggregates.get(i).filter(accumulators.get(i), result);
+      }
+      for (int i = 0; i < havingConditions.size(); i++) {
+        try {
+          if (!havingConditions.get(i).isValidAggregate(accumulators.get(aggregates.size() + i))) {
+            return null;
+          }
+        } catch (Exception e) {
+          logger.warn("having condition {}", havingConditions.get(i), e);
+          return null;
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(GroupByHavingOperator.class);
+
   /**
    * multi key compare class.
    */
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.lib.streamquery.GroupByHavingOperator.GroupAggregate;
+import com.datatorrent.lib.streamquery.condition.HavingCondition;
+import com.datatorrent.lib.streamquery.function.Accumulator;
+import com.datatorrent.lib.streamquery.function.FunctionIndex;
+
+/**
+ * Unifier for partitions of {@link GroupByHavingOperator} which emit partial aggregates. <br>
+ * Accumulators of same group from all partitions are merged and the aggregates of groups which satisfy the having
+ * conditions are emitted at end window. Rows which are not partial aggregates are emitted as is. <br>
+ *
+ * @since 0.9.4
+ */
+public class GroupByHavingUnifier implements Unifier<Map<String, Object>>
+{
+  /**
+   * aggregate indexes.
+   */
+  private List<FunctionIndex> aggregates;
+
+  /**
+   * having aggregate condtions.
+   */
+  private List<HavingCondition> havingConditions;
+
+  /**
+   * Merged aggregates by group columns.
+   */
+  private HashMap<Map<String, Object>, GroupAggregate> groups = new HashMap<Map<String, Object>, GroupAggregate>();
+
+  public final transient DefaultOutputPort<Map<String, Object>> mergedport = new DefaultOutputPort<Map<String, Object>>();
+
+  private GroupByHavingUnifier()
+  {
+  }
+
+  /**
+   * @param aggregates       aggregate indexes of the operator.
+   * @param havingConditions having conditions of the operator.
+   */
+  public GroupByHavingUnifier(List<FunctionIndex> aggregates, List<HavingCondition> havingConditions)
+  {
+    this.aggregates = aggregates;
+    this.havingConditions = havingConditions;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void process(Map<String, Object> tuple)
+  {
+    List<Accumulator> accumulators = (List<Accumulator>) tuple.get(GroupByHavingOperator.PARTIAL_AGGREGATES);
+    if (accumulators == null) {
+      mergedport.emit(tuple);
+      return;
+    }
+    Map<String, Object> columns = new HashMap<String, Object>(tuple);
+    columns.remove(GroupByHavingOperator.PARTIAL_AGGREGATES);
+    GroupAggregate group = groups.get(columns);
+    if (group == null) {
+      groups.put(columns, new GroupAggregate(columns, new ArrayList<Accumulator>(accumulators)));
+      return;
+    }
+    for (int i = 0; i < accumulators.size(); i++) {
+      group.accumulators.get(i).merge(accumulators.get(i));
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+  }
+
+  @Override
+  public void endWindow()
+  {
+    for (GroupAggregate group : groups.values()) {
+      Map<String, Object> result = group.getResult(aggregates, havingConditions);
+      if (result != null) {
+        mergedport.emit(result);
+      }
+    }
+    groups = new HashMap<Map<String, Object>, GroupAggregate>();
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+  }
+
+  @Override
+  public void teardown()
+  {
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.lib.streamquery.AbstractSqlStreamOperator.InputSchema.ColumnInfo;
+import com.datatorrent.lib.streamquery.sql.ColumnarTable;
+import com.datatorrent.lib.streamquery.sql.SelectStatement;
+import com.datatorrent.lib.streamquery.sql.SqlParser;
+
+/**
+ * Sql stream operator which executes the statement in memory, without a database. <br>
+ * <br>
+ * It is a replacement of {@link DerbySqlStreamOperator} for the SELECT statements of {@link SqlParser}: the
+ * statement is parsed and compiled once in setup, the rows of every input table are buffered column by column during
+ * the window and the statement is executed over them in endWindow, after which the buffers are cleared. Tables are
+ * referred to by the names of their input schemas, optionally qualified by a schema such as <code>SESSION</code>, so
+ * statements written for {@link DerbySqlStreamOperator} work unchanged. Column values are converted to the sql types
+ * of the input schema and the keys of the result rows are the upper cased column names or aliases, as with derby. <br>
+ * Conditions on a single table are checked when a row arrives, so rows which can never be selected are not buffered.
+ * <br>
+ * The select, join and group by operators of this package each run one clause as a separate operator of the DAG with
+ * conditions on map rows, which cannot express a whole statement with arithmetic, null handling and bindings in one
+ * operator, so the statement is evaluated by the expressions of {@link SqlParser}; the aggregates use the
+ * accumulators of the {@link com.datatorrent.lib.streamquery.function} package. <br>
+ *
+ * @since 0.9.4
+ */
+public class InMemorySqlStreamOperator extends AbstractSqlStreamOperator
+{
+  protected transient SelectStatement selectStatement;
+  protected transient ArrayList<ColumnarTable> tables;
+  private transient boolean[] referenced;
+  private final transient ArrayList<HashMap<String, Object>> resultRows = new ArrayList<HashMap<String, Object>>();
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    tables = new ArrayList<ColumnarTable>(inputSchemas.size());
+    for (InputSchema inputSchema : inputSchemas) {
+      if (inputSchema == null || inputSchema.columnInfoMap.isEmpty()) {
+        tables.add(null);
+        continue;
+      }
+      String[] columnNames = new String[inputSchema.columnInfoMap.size()];
+      String[] columnTypes = new String[columnNames.length];
+      int i = 0;
+      for (Map.Entry<String, ColumnInfo> entry : inputSchema.columnInfoMap.entrySet()) {
+        columnNames[i] = entry.getKey();
+        columnTypes[i++] = entry.getValue().type;
+      }
+      tables.add(new ColumnarTable(inputSchema.name, columnNames, columnTypes));
+    }
+    selectStatement = SqlParser.parse(statement);
+    selectStatement.compile(tables);
+    referenced = new boolean[tables.size()];
+    for (int i = 0; i < referenced.length; i++) {
+      referenced[i] = selectStatement.isReferenced(i);
+    }
+  }
+
+  @Override
+  public void processTuple(int tableNum, HashMap<String, Object> tuple)
+  {
+    if (tableNum >= referenced.length || !referenced[tableNum]) {
+      return;
+    }
+    ColumnarTable table = tables.get(tableNum);
+    table.add(tuple);
+    if (!selectStatement.accept(tableNum, table)) {
+      table.removeLast();
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    try {
+      selectStatement.execute(tables, bindings, resultRows);
+      for (HashMap<String, Object> resultRow : resultRows) {
+        result.emit(resultRow);
+      }
+    }
+    finally {
+      resultRows.clear();
+      for (ColumnarTable table : tables) {
+        if (table != null) {
+          table.clear();
+        }
+      }
+      bindings = null;
+    }
+  }
+}
@@ -17,14 +17,19 @@ package com.datatorrent.lib.streamquery;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
+import javax.validation.constraints.Min;
+
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.Operator;
 import com.datatorrent.api.annotation.OperatorAnnotation;
 import com.datatorrent.lib.streamquery.condition.Condition;
+import com.datatorrent.lib.streamquery.condition.JoinColumnEqualCondition;
 import com.datatorrent.lib.streamquery.index.Index;
 
 /**
@@ -44,7 +49,10 @@ import com.datatorrent.lib.streamquery.index.Index;
  *  <b> joinCondition : </b> Join condition for table rows. <br>
  *  <b> table1Columns : </b> Columns to be selected from table1. <br>
  *  <b> table2Columns : </b> Columns to be selected from table2. <br>
+ *  <b> windowRetention : </b> No. of windows for which rows of a table are joined with arriving rows, default 1. <br>
  *  <br>
+ *  When the join condition is a {@link JoinColumnEqualCondition}, the rows of both the tables are indexed on the
+ *  join columns, so an arriving row is joined with only the matching rows of the other table. <br>
  *
  * @since 0.3.3
  */
@@ -77,6 +85,28 @@ public class InnerJoinOperator  implements Operator
 	 */
 	protected ArrayList<Map<String, Object>> table2;
 	
+  /**
+   * Rows of table1 of the previous windows which are retained.
+   */
+  protected LinkedList<ArrayList<Map<String, Object>>> previousTable1 = new LinkedList<ArrayList<Map<String, Object>>>();
+
+  /**
+   * Rows of table2 of the previous windows which are retained.
+   */
+  protected LinkedList<ArrayList<Map<String, Object>>> previousTable2 = new LinkedList<ArrayList<Map<String, Object>>>();
+
+  /**
+   * No. of windows for which the rows of a table are joined with the arriving rows of the other table.
+   */
+  @Min(1)
+  private int windowRetention = 1;
+
+  /**
+   * Rows of the retained windows by the value of join column when the join condition is an equi-join.
+   */
+  private transient Map<Object, List<Map<String, Object>>> index1;
+  private transient Map<Object, List<Map<String, Object>>> index2;
+
   /**
    * Input port 1.
    */
@@ -85,6 +115,27 @@ public class InnerJoinOperator  implements Operator
 		public void process(Map<String, Object> tuple)
 		{
       table1.add(tuple);
+      if (index1 != null) {
+        Object value = tuple.get(((JoinColumnEqualCondition) joinCondition).getColumn1());
+        if (value == null) {
+          return;
+        }
+        addToIndex(index1, value, tuple);
+        List<Map<String, Object>> rows = index2.get(value);
+        if (rows != null) {
+          for (Map<String, Object> row : rows) {
+            joinRows(tuple, row);
+          }
+        }
+        return;
+      }
+      for (ArrayList<Map<String, Object>> rows : previousTable2) {
+        for (Map<String, Object> row : rows) {
+          if ((joinCondition == null) || (joinCondition.isValidJoin(tuple, row))) {
+            joinRows(tuple, row);
+          }
+        }
+      }
       for (int j = 0; j < table2.size(); j++) {
         if ((joinCondition == null)
             || (joinCondition.isValidJoin(tuple, table2.get(j)))) {
@@ -102,6 +153,27 @@ public class InnerJoinOperator  implements Operator
 		public void process(Map<String, Object> tuple)
 		{
 	    table2.add(tuple);
+      if (index2 != null) {
+        Object value = tuple.get(((JoinColumnEqualCondition) joinCondition).getColumn2());
+        if (value == null) {
+          return;
+        }
+        addToIndex(index2, value, tuple);
+        List<Map<String, Object>> rows = index1.get(value);
+        if (rows != null) {
+          for (Map<String, Object> row : rows) {
+            joinRows(row, tuple);
+          }
+        }
+        return;
+      }
+      for (ArrayList<Map<String, Object>> rows : previousTable1) {
+        for (Map<String, Object> row : rows) {
+          if ((joinCondition == null) || (joinCondition.isValidJoin(row, tuple))) {
+            joinRows(row, tuple);
+          }
+        }
+      }
       for (int j = 0; j < table1.size(); j++) {
         if ((joinCondition == null)
             || (joinCondition.isValidJoin(table1.get(j), tuple))) {
@@ -130,10 +202,75 @@ public class InnerJoinOperator  implements Operator
 	@Override
   public void beginWindow(long arg0)
   { 
+    if (table1 != null) {
+      previousTable1.addLast(table1);
+      previousTable2.addLast(table2);
+    }
+    boolean equiJoin = joinCondition instanceof JoinColumnEqualCondition;
+    while (previousTable1.size() >= windowRetention) {
+      ArrayList<Map<String, Object>> expired1 = previousTable1.removeFirst();
+      ArrayList<Map<String, Object>> expired2 = previousTable2.removeFirst();
+      if (equiJoin && index1 != null) {
+        removeFromIndex(index1, ((JoinColumnEqualCondition) joinCondition).getColumn1(), expired1);
+        removeFromIndex(index2, ((JoinColumnEqualCondition) joinCondition).getColumn2(), expired2);
+      }
+    }
+    if (equiJoin && index1 == null) {
+      //indexes are not check-pointed so they are re-built from the retained rows
+      index1 = new HashMap<Object, List<Map<String, Object>>>();
+      index2 = new HashMap<Object, List<Map<String, Object>>>();
+      for (ArrayList<Map<String, Object>> rows : previousTable1) {
+        for (Map<String, Object> row : rows) {
+          Object value = row.get(((JoinColumnEqualCondition) joinCondition).getColumn1());
+          if (value != null) {
+            addToIndex(index1, value, row);
+          }
+        }
+      }
+      for (ArrayList<Map<String, Object>> rows : previousTable2) {
+        for (Map<String, Object> row : rows) {
+          Object value = row.get(((JoinColumnEqualCondition) joinCondition).getColumn2());
+          if (value != null) {
+            addToIndex(index2, value, row);
+          }
+        }
+      }
+    }
 		table1 = new ArrayList<Map<String, Object>>();
 		table2 = new ArrayList<Map<String, Object>>();
   }
 
+  private static void addToIndex(Map<Object, List<Map<String, Object>>> index, Object value, Map<String, Object> row)
+  {
+    List<Map<String, Object>> rows = index.get(value);
+    if (rows == null) {
+      rows = new ArrayList<Map<String, Object>>(1);
+      index.put(value, rows);
+    }
+    rows.add(row);
+  }
+
+  /**
+   * Removes the rows of an expired window. These are the oldest rows of the index.
+   */
+  private static void removeFromIndex(Map<Object, List<Map<String, Object>>> index, String column,
+                                      List<Map<String, Object>> expiredRows)
+  {
+    for (Map<String, Object> row : expiredRows) {
+      Object value = row.get(column);
+      if (value == null) {
+        continue;
+      }
+      List<Map<String, Object>> rows = index.get(value);
+      if (rows != null) {
+        rows.remove(0);
+        if (rows.isEmpty()) {
+          index.remove(value);
+        }
+      }
+    }
+  }
+
 	@Override
   public void endWindow()
   {
@@ -153,6 +290,27 @@ public class InnerJoinOperator  implements Operator
   public void setJoinCondition(Condition joinCondition)
   {
 	  this.joinCondition = joinCondition;
+    index1 = null;
+    index2 = null;
+  }
+
+  /**
+   * @return no. of windows for which the rows are retained.
+   */
+  public int getWindowRetention()
+  {
+    return windowRetention;
+  }
+
+  /**
+   * Sets the no. of windows for which the rows of a table are joined with the arriving rows of the other table.
+   * Default is 1 which joins the rows of the current window only.
+   *
+   * @param windowRetention no. of windows.
+   */
+  public void setWindowRetention(int windowRetention)
+  {
+    this.windowRetention = windowRetention;
   }
   
   /**
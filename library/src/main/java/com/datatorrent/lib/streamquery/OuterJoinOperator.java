@@ -15,6 +15,10 @@
  */
 package com.datatorrent.lib.streamquery;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 /**
  * This operator provides sql left/right/full outer join operation semantic on
  * live stream. <br>
@@ -24,6 +28,9 @@ package com.datatorrent.lib.streamquery;
  * <b> Properties : </b> <br>
  * <b> isLeftJoin : </b> Left join flag. <br>
  * <b> isFullJoin : </b> Full join flag. <br>
+ * <br>
+ * A row which was not joined with any row of the other table while it was retained is emitted at the end of the
+ * window after which it expires, i.e. at the end of its window when windowRetention is 1. <br>
  *
  * @since 0.3.4
  */
@@ -33,63 +40,40 @@ public class OuterJoinOperator extends InnerJoinOperator
   private boolean isLeftJoin = true;
   private boolean isFullJoin = false;
 
+  /**
+   * Retained rows which were joined with a row of the other table, check-pointed with the retained rows.
+   */
+  private IdentityHashMap<Map<String, Object>, Boolean> joinedRows1 = new IdentityHashMap<Map<String, Object>, Boolean>();
+  private IdentityHashMap<Map<String, Object>, Boolean> joinedRows2 = new IdentityHashMap<Map<String, Object>, Boolean>();
+
   @Override
-  public void endWindow()
+  protected void joinRows(Map<String, Object> row1, Map<String, Object> row2)
   {
-    // full outer join
-    if (isFullJoin) {
-      for (int i = 0; i < table1.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table2.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(i), table2.get(j)))) {
-            merged = true;
-          }
-        }
-        if (!merged) {
-          joinRows(table1.get(i), null);
-        }
-      }
-      for (int i = 0; i < table2.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table1.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(j), table2.get(i)))) {
-            merged = true;
-          }
-        }
-        if (!merged) { // only output non merged rows
-          joinRows(null, table2.get(i));
-        }
-      }
-      return;
+    if (row1 != null && row2 != null) {
+      joinedRows1.put(row1, Boolean.TRUE);
+      joinedRows2.put(row2, Boolean.TRUE);
     }
+    super.joinRows(row1, row2);
+  }
 
-    // left or right join
-    if (isLeftJoin) {
-      for (int i = 0; i < table1.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table2.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(i), table2.get(j)))) {
-            merged = true;
-          }
-        }
-        if (!merged) {
-          joinRows(table1.get(i), null);
+  /**
+   * Emits the rows which expire after this window and were never joined.
+   */
+  @Override
+  public void endWindow()
+  {
+    int expiringWindows = previousTable1.size() + 1 - (getWindowRetention() - 1);
+    for (int i = 0; i < expiringWindows; i++) {
+      ArrayList<Map<String, Object>> rows1 = i < previousTable1.size() ? previousTable1.get(i) : table1;
+      ArrayList<Map<String, Object>> rows2 = i < previousTable2.size() ? previousTable2.get(i) : table2;
+      for (Map<String, Object> row : rows1) {
+        if (joinedRows1.remove(row) == null && (isFullJoin || isLeftJoin)) {
+          joinRows(row, null);
         }
       }
-    } else {
-      for (int i = 0; i < table2.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table1.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(j), table2.get(i)))) {
-            merged = true;
-          }
-        }
-        if (!merged) { // only output non merged rows
-          joinRows(null, table2.get(i));
+      for (Map<String, Object> row : rows2) {
+        if (joinedRows2.remove(row) == null && (isFullJoin || !isLeftJoin)) { // only output non merged rows
+          joinRows(null, row);
         }
       }
     }
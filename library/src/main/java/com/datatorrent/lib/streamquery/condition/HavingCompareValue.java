@@ -20,6 +20,7 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.function.Accumulator;
 import com.datatorrent.lib.streamquery.function.FunctionIndex;
 
 /**
@@ -45,6 +46,10 @@ public class HavingCompareValue<T extends Comparable>   extends HavingCondition
    */
   private int compareType; 
   
+  private HavingCompareValue()
+  {
+  }
+
   /**
    * @param aggregateIndex   aggregate index for comparison. <br>
    * @param compareValue     Value to be compared. <br>
@@ -68,4 +73,20 @@ public class HavingCompareValue<T extends Comparable>   extends HavingCondition
       return (compareType == compareValue.compareTo(computed));
   }
 
+  /**
+   * Validate aggregate computed incrementally. <br>
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public boolean isValidAggregate(@NotNull Accumulator accumulator) throws Exception
+  {
+    return (compareType == compareValue.compareTo(accumulator.getValue()));
+  }
+
+  @Override
+  public boolean isIncremental()
+  {
+    return true;
+  }
+
 }
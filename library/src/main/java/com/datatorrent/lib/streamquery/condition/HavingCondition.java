@@ -20,6 +20,7 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.function.Accumulator;
 import com.datatorrent.lib.streamquery.function.FunctionIndex;
 
 /**
@@ -34,6 +35,10 @@ public abstract class HavingCondition
    */
   protected FunctionIndex  aggregateIndex = null;
   
+  protected HavingCondition()
+  {
+  }
+
   /**
    * @param aggregateIndex  Aggregate index to be validated.
    */
@@ -45,4 +50,31 @@ public abstract class HavingCondition
    *  Check if aggregate is valid.
    */
   abstract public boolean isValidAggregate(@NotNull ArrayList<Map<String, Object>> rows) throws Exception;
+
+  /**
+   *  Check if aggregate computed incrementally by an accumulator of the aggregate index is valid.
+   *  Called only when {@link #isIncremental()} is true; conditions which can only be checked over all the rows do
+   *  not override this.
+   */
+  public boolean isValidAggregate(@NotNull Accumulator accumulator) throws Exception
+  {
+    throw new UnsupportedOperationException("incremental aggregation is not supported by " + getClass().getName());
+  }
+
+  /**
+   * @return true if the condition checks aggregates computed incrementally, i.e. it overrides
+   *         {@link #isValidAggregate(Accumulator)}; false otherwise.
+   */
+  public boolean isIncremental()
+  {
+    return false;
+  }
+
+  /**
+   * @return aggregate index to be validated.
+   */
+  public FunctionIndex getAggregateIndex()
+  {
+    return aggregateIndex;
+  }
 }
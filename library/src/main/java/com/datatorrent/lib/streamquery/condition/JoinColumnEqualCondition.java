@@ -69,4 +69,20 @@ public class JoinColumnEqualCondition  extends Condition
     Object value2 = row2.get(column2);
     return value1.equals(value2);
   }
+
+  /**
+   * @return join column of the first table.
+   */
+  public String getColumn1()
+  {
+    return column1;
+  }
+
+  /**
+   * @return join column of the second table.
+   */
+  public String getColumn2()
+  {
+    return column2;
+  }
 }
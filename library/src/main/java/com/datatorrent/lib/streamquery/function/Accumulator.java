@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.function;
+
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Computes the value of an aggregate function incrementally as rows arrive. <br>
+ * Accumulators of the same function which were computed over different rows can be merged, so partitions can
+ * emit partial aggregates which are combined by a unifier. <br>
+ *
+ * @since 0.9.4
+ */
+public interface Accumulator
+{
+  /**
+   * Adds the row to the aggregate.
+   * @param row row containing column/value map.
+   */
+  void accumulate(@NotNull Map<String, Object> row) throws Exception;
+
+  /**
+   * Adds the rows aggregated by another accumulator of the same function.
+   * @param other accumulator of the same function.
+   */
+  void merge(@NotNull Accumulator other);
+
+  /**
+   * @return aggregate value of the rows accumulated so far.
+   */
+  Object getValue();
+}
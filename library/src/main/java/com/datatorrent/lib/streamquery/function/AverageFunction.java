@@ -34,6 +34,10 @@ import org.apache.commons.lang.StringUtils;
  */
 public class AverageFunction  extends FunctionIndex
 {
+  private AverageFunction()
+  {
+  }
+
   /**
    * @param column Aggregate over given column values, must be non null. 
    * @param alias  Alias name for aggregate output.
@@ -57,6 +61,15 @@ public class AverageFunction  extends FunctionIndex
     return sum/rows.size();
   }
 
+  /**
+   * Create accumulator of the average.
+   */
+  @Override
+  public Accumulator newAccumulator()
+  {
+    return new AverageAccumulator(column);
+  }
+
   /**
    * Get aggregate name.
    * @return name.
@@ -67,4 +80,44 @@ public class AverageFunction  extends FunctionIndex
     if (!StringUtils.isEmpty(alias)) return alias;
     return "AVG(" + column + ")";
   }
+
+  /**
+   * Incremental average of column values.
+   */
+  public static class AverageAccumulator implements Accumulator
+  {
+    private String column;
+    private double sum;
+    private long count;
+
+    private AverageAccumulator()
+    {
+    }
+
+    public AverageAccumulator(@NotNull String column)
+    {
+      this.column = column;
+    }
+
+    @Override
+    public void accumulate(@NotNull Map<String, Object> row) throws Exception
+    {
+      sum += ((Number)row.get(column)).doubleValue();
+      count++;
+    }
+
+    @Override
+    public void merge(@NotNull Accumulator other)
+    {
+      sum += ((AverageAccumulator)other).sum;
+      count += ((AverageAccumulator)other).count;
+    }
+
+    @Override
+    public Object getValue()
+    {
+      if (count == 0) return 0.0;
+      return sum/count;
+    }
+  }
 }
@@ -34,6 +34,10 @@ import org.apache.commons.lang.StringUtils;
  */
 public class CountFunction extends FunctionIndex
 {
+  private CountFunction()
+  {
+  }
+
   /**
    * @param column column for values count, must be non null. 
    * @param alias  Alias name for aggregate output.
@@ -58,6 +62,15 @@ public class CountFunction extends FunctionIndex
     return count;
   }
 
+  /**
+   * Create accumulator of the count.
+   */
+  @Override
+  public Accumulator newAccumulator()
+  {
+    return new CountAccumulator(column);
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
@@ -69,4 +82,40 @@ public class CountFunction extends FunctionIndex
     return "COUNT(" + column + ")";
   }
 
+  /**
+   * Incremental count of column values.
+   */
+  public static class CountAccumulator implements Accumulator
+  {
+    private String column;
+    private long count;
+
+    private CountAccumulator()
+    {
+    }
+
+    public CountAccumulator(@NotNull String column)
+    {
+      this.column = column;
+    }
+
+    @Override
+    public void accumulate(@NotNull Map<String, Object> row) throws Exception
+    {
+      if (column.equals("*") || (row.containsKey(column) && (row.get(column) != null))) count++;
+    }
+
+    @Override
+    public void merge(@NotNull Accumulator other)
+    {
+      count += ((CountAccumulator)other).count;
+    }
+
+    @Override
+    public Object getValue()
+    {
+      if (column.equals("*")) return (int)count;
+      return count;
+    }
+  }
 }
@@ -40,6 +40,10 @@ public class FirstLastFunction extends FunctionIndex
    */
   private boolean isFirst;
   
+  private FirstLastFunction()
+  {
+  }
+
   /**
    * @param column  column name for first/last value.
    * @param  alias   Alias name for output.
@@ -70,6 +74,15 @@ public class FirstLastFunction extends FunctionIndex
     return null;
   }
 
+  /**
+   * Create accumulator of the first/last value.
+   */
+  @Override
+  public Accumulator newAccumulator()
+  {
+    return new FirstLastAccumulator(column, isFirst);
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
@@ -94,4 +107,45 @@ public class FirstLastFunction extends FunctionIndex
     this.isFirst = isFirst;
   }
 
+  /**
+   * Incremental first/last non null value of column.
+   */
+  public static class FirstLastAccumulator implements Accumulator
+  {
+    private String column;
+    private boolean isFirst;
+    private Object value;
+
+    private FirstLastAccumulator()
+    {
+    }
+
+    public FirstLastAccumulator(@NotNull String column, boolean isFirst)
+    {
+      this.column = column;
+      this.isFirst = isFirst;
+    }
+
+    @Override
+    public void accumulate(@NotNull Map<String, Object> row) throws Exception
+    {
+      Object columnValue = row.get(column);
+      if (columnValue == null) return;
+      if (!isFirst || value == null) value = columnValue;
+    }
+
+    @Override
+    public void merge(@NotNull Accumulator other)
+    {
+      Object otherValue = ((FirstLastAccumulator)other).value;
+      if (otherValue == null) return;
+      if (!isFirst || value == null) value = otherValue;
+    }
+
+    @Override
+    public Object getValue()
+    {
+      return value;
+    }
+  }
 }
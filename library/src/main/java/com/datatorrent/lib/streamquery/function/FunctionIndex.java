@@ -42,6 +42,10 @@ abstract public class FunctionIndex
    */
   protected String alias;
   
+  protected FunctionIndex()
+  {
+  }
+
   /**
    * @param column Column name for aggregation.
    * @param alias Output value alias name.
@@ -65,6 +69,15 @@ abstract public class FunctionIndex
    */
   abstract protected String aggregateName();
   
+  /**
+   * Create an accumulator which computes the aggregate incrementally, implementation in sub class.
+   * @return accumulator, null if the aggregate can only be computed over all the rows.
+   */
+  public Accumulator newAccumulator()
+  {
+    return null;
+  }
+
   /**
    * Apply compute function to given rows and store result in collect by output value name.
    * @param  rows Tuple list over application window.
@@ -72,9 +85,27 @@ abstract public class FunctionIndex
   public void filter(ArrayList<Map<String, Object>> rows, Map<String, Object> collect) throws Exception
   {
     if (rows == null) return;
+    collect.put(getOutputName(), compute(rows));
+  }
+
+  /**
+   * Store value of the accumulator in collect by output value name.
+   * @param  accumulator accumulator created by {@link #newAccumulator()}.
+   */
+  public void filter(Accumulator accumulator, Map<String, Object> collect)
+  {
+    collect.put(getOutputName(), accumulator.getValue());
+  }
+
+  /**
+   * Get output value name.
+   * @return name string.
+   */
+  public String getOutputName()
+  {
     String name = column;
     if (alias != null) name = alias;
     if (name == null) name = aggregateName();
-    collect.put(name, compute(rows));
+    return name;
   }
 }
@@ -40,6 +40,10 @@ public class MaxMinFunction extends FunctionIndex
    */
   private boolean isMax = true;
   
+  private MaxMinFunction()
+  {
+  }
+
   /**
    * @param column column name for values max/min computation.   <br>
    * @param alias  Alias name for output. <br>
@@ -66,6 +70,15 @@ public class MaxMinFunction extends FunctionIndex
     return minMax;
   }
 
+  /**
+   * Create accumulator of the max/min.
+   */
+  @Override
+  public Accumulator newAccumulator()
+  {
+    return new MaxMinAccumulator(column, isMax);
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
@@ -88,4 +101,46 @@ public class MaxMinFunction extends FunctionIndex
     this.isMax = isMax;
   }
 
+  /**
+   * Incremental max/min of column values.
+   */
+  public static class MaxMinAccumulator implements Accumulator
+  {
+    private String column;
+    private boolean isMax;
+    private double minMax = 0.0;
+
+    private MaxMinAccumulator()
+    {
+    }
+
+    public MaxMinAccumulator(@NotNull String column, boolean isMax)
+    {
+      this.column = column;
+      this.isMax = isMax;
+    }
+
+    @Override
+    public void accumulate(@NotNull Map<String, Object> row) throws Exception
+    {
+      update(((Number)row.get(column)).doubleValue());
+    }
+
+    private void update(double value)
+    {
+      if ((isMax && (minMax < value))||(!isMax && (minMax > value))) minMax = value;
+    }
+
+    @Override
+    public void merge(@NotNull Accumulator other)
+    {
+      update(((MaxMinAccumulator)other).minMax);
+    }
+
+    @Override
+    public Object getValue()
+    {
+      return minMax;
+    }
+  }
 }
@@ -14,6 +14,10 @@ import javax.validation.constraints.NotNull;
  */
 public class SumFunction extends FunctionIndex
 {
+  private SumFunction()
+  {
+  }
+
   public SumFunction(String column, String alias) throws Exception
   {
     super(column, alias);
@@ -30,10 +34,52 @@ public class SumFunction extends FunctionIndex
     return result;
   }
 
+  @Override
+  public Accumulator newAccumulator()
+  {
+    return new SumAccumulator(column);
+  }
+
   @Override
   protected String aggregateName()
   {
    return "Sum(" + column;
   }
 
+  /**
+   * Incremental sum of column values.
+   */
+  public static class SumAccumulator implements Accumulator
+  {
+    private String column;
+    private double sum;
+
+    private SumAccumulator()
+    {
+    }
+
+    public SumAccumulator(@NotNull String column)
+    {
+      this.column = column;
+    }
+
+    @Override
+    public void accumulate(@NotNull Map<String, Object> row) throws Exception
+    {
+      if (!row.containsKey(column)) return;
+      sum += ((Number)row.get(column)).doubleValue();
+    }
+
+    @Override
+    public void merge(@NotNull Accumulator other)
+    {
+      sum += ((SumAccumulator)other).sum;
+    }
+
+    @Override
+    public Object getValue()
+    {
+      return sum;
+    }
+  }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.sql;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Rows of an input table which arrived in the current window, kept column by column. <br>
+ * Values are converted to the sql type of their column when they are added, so expressions compare and compute over
+ * typed values. The arrays are retained across windows and only the references are cleared. <br>
+ *
+ * @since 0.9.4
+ */
+public class ColumnarTable
+{
+  static final int STRING = 0;
+  static final int INTEGER = 1;
+  static final int LONG = 2;
+  static final int DOUBLE = 3;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String name;
+  private final String[] columnNames;
+  private final int[] types;
+  private final Object[][] columns;
+  private int size;
+
+  /**
+   * @param name        name of the table.
+   * @param columnNames names of the columns.
+   * @param sqlTypes    sql types of the columns, e.g. <code>varchar(10)</code>, <code>integer</code>,
+   *                    <code>float</code>.
+   */
+  public ColumnarTable(@NotNull String name, @NotNull String[] columnNames, @NotNull String[] sqlTypes)
+  {
+    Preconditions.checkArgument(columnNames.length > 0 && columnNames.length == sqlTypes.length, "columns of %s", name);
+    this.name = name;
+    this.columnNames = columnNames.clone();
+    types = new int[columnNames.length];
+    columns = new Object[columnNames.length][];
+    for (int i = 0; i < columnNames.length; i++) {
+      types[i] = typeOf(sqlTypes[i]);
+      columns[i] = new Object[INITIAL_CAPACITY];
+    }
+  }
+
+  static int typeOf(String sqlType)
+  {
+    String type = sqlType.trim().toLowerCase(Locale.ENGLISH);
+    int paren = type.indexOf('(');
+    if (paren >= 0) {
+      type = type.substring(0, paren).trim();
+    }
+    if (type.equals("int") || type.equals("integer") || type.equals("smallint") || type.equals("tinyint")) {
+      return INTEGER;
+    }
+    if (type.equals("bigint") || type.equals("long")) {
+      return LONG;
+    }
+    if (type.equals("float") || type.startsWith("double") || type.equals("real") || type.equals("decimal")
+      || type.equals("numeric")) {
+      return DOUBLE;
+    }
+    return STRING;
+  }
+
+  static Object convert(Object value, int type)
+  {
+    if (value == null) {
+      return null;
+    }
+    switch (type) {
+      case INTEGER:
+        return value instanceof Integer ? value
+               : value instanceof Number ? ((Number)value).intValue() : Integer.valueOf(value.toString().trim());
+      case LONG:
+        return value instanceof Long ? value
+               : value instanceof Number ? ((Number)value).longValue() : Long.valueOf(value.toString().trim());
+      case DOUBLE:
+        return value instanceof Double ? value
+               : value instanceof Number ? ((Number)value).doubleValue() : Double.valueOf(value.toString().trim());
+      default:
+        return value.toString();
+    }
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public int getColumnCount()
+  {
+    return columnNames.length;
+  }
+
+  public String getColumnName(int column)
+  {
+    return columnNames[column];
+  }
+
+  int getType(int column)
+  {
+    return types[column];
+  }
+
+  /**
+   * @param columnName name of the column, compared case insensitively.
+   * @return index of the column or -1 when the table has no such column.
+   */
+  public int getColumnIndex(String columnName)
+  {
+    for (int i = 0; i < columnNames.length; i++) {
+      if (columnNames[i].equalsIgnoreCase(columnName)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds a row. Values of columns which are not in the table are ignored and missing columns are null.
+   *
+   * @param tuple column name/value map.
+   */
+  public void add(@NotNull Map<String, Object> tuple)
+  {
+    if (size == columns[0].length) {
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = Arrays.copyOf(columns[i], size * 2);
+      }
+    }
+    for (int i = 0; i < columns.length; i++) {
+      columns[i][size] = convert(tuple.get(columnNames[i]), types[i]);
+    }
+    size++;
+  }
+
+  /**
+   * Removes the row which was added last.
+   */
+  public void removeLast()
+  {
+    size--;
+    for (Object[] column : columns) {
+      column[size] = null;
+    }
+  }
+
+  public Object get(int column, int row)
+  {
+    return columns[column][row];
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public void clear()
+  {
+    for (Object[] column : columns) {
+      Arrays.fill(column, 0, size, null);
+    }
+    size = 0;
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.sql;
+
+import java.util.List;
+
+/**
+ * State an {@link Expression} is evaluated against: the current row of every table of the FROM clause, the values
+ * bound to the parameters of the statement and, for grouped queries, the values of the aggregates of the group.
+ * A row index of -1 means there is no current row of that table.
+ */
+class EvaluationContext
+{
+  final ColumnarTable[] tables;
+  final int[] rows;
+  List<Object> bindings;
+  Object[] aggregateValues;
+
+  EvaluationContext(ColumnarTable[] tables)
+  {
+    this.tables = tables;
+    rows = new int[tables.length];
+  }
+}
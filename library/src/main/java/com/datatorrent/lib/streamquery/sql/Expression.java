@@ -0,0 +1,677 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.sql;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Node of a compiled sql expression. <br>
+ * Predicates evaluate to {@link Boolean} or to null when the result is unknown, which follows the three valued logic
+ * of sql: a comparison with null is unknown and a row is selected only when its predicate is true. <br>
+ */
+abstract class Expression
+{
+  private static final Expression[] NO_CHILDREN = new Expression[0];
+
+  abstract Object evaluate(EvaluationContext context);
+
+  Expression[] children()
+  {
+    return NO_CHILDREN;
+  }
+
+  /**
+   * Resolves the column references of the expression against the tables of the statement.
+   */
+  void resolve(SelectStatement statement)
+  {
+    for (Expression child : children()) {
+      child.resolve(statement);
+    }
+  }
+
+  /**
+   * @return bit mask of the positions of the tables in the FROM clause which the expression reads.
+   */
+  int tables()
+  {
+    int tables = 0;
+    for (Expression child : children()) {
+      tables |= child.tables();
+    }
+    return tables;
+  }
+
+  boolean hasBinding()
+  {
+    for (Expression child : children()) {
+      if (child.hasBinding()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean hasAggregate()
+  {
+    for (Expression child : children()) {
+      if (child.hasAggregate()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void collectAggregates(List<Aggregate> aggregates)
+  {
+    for (Expression child : children()) {
+      child.collectAggregates(aggregates);
+    }
+  }
+
+  /**
+   * @return true only if the predicate evaluates to true.
+   */
+  final boolean isTrue(EvaluationContext context)
+  {
+    return Boolean.TRUE.equals(evaluate(context));
+  }
+
+  static boolean isIntegral(Object value)
+  {
+    return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+  }
+
+  static Number toNumber(Object value)
+  {
+    if (value instanceof Number) {
+      return (Number)value;
+    }
+    return Double.valueOf(value.toString().trim());
+  }
+
+  /**
+   * Compares two non null values. Numbers are compared by value, a string compared with a number is parsed as a
+   * number and all other values are compared by their string forms unless they are comparable with each other.
+   */
+  @SuppressWarnings("unchecked")
+  static int compare(Object value1, Object value2)
+  {
+    if (value1 instanceof Number || value2 instanceof Number) {
+      Number number1 = toNumber(value1);
+      Number number2 = toNumber(value2);
+      if (isIntegral(number1) && isIntegral(number2)) {
+        long long1 = number1.longValue();
+        long long2 = number2.longValue();
+        return long1 < long2 ? -1 : (long1 == long2 ? 0 : 1);
+      }
+      return Double.compare(number1.doubleValue(), number2.doubleValue());
+    }
+    if (value1 instanceof Comparable && value1.getClass() == value2.getClass()) {
+      return ((Comparable<Object>)value1).compareTo(value2);
+    }
+    return value1.toString().compareTo(value2.toString());
+  }
+
+  static class Literal extends Expression
+  {
+    final Object value;
+
+    Literal(Object value)
+    {
+      this.value = value;
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      return value;
+    }
+  }
+
+  /**
+   * Parameter of the statement, whose value is taken from the bindings of the window.
+   */
+  static class Binding extends Expression
+  {
+    private final int index;
+
+    Binding(int index)
+    {
+      this.index = index;
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      if (context.bindings == null || index >= context.bindings.size()) {
+        throw new IllegalStateException("no value is bound to parameter " + (index + 1));
+      }
+      return context.bindings.get(index);
+    }
+
+    @Override
+    boolean hasBinding()
+    {
+      return true;
+    }
+  }
+
+  static class Column extends Expression
+  {
+    final String[] nameParts;
+    int table = -1;
+    int column = -1;
+    int type;
+
+    Column(String[] nameParts)
+    {
+      this.nameParts = nameParts;
+    }
+
+    String getColumnName()
+    {
+      return nameParts[nameParts.length - 1];
+    }
+
+    @Override
+    void resolve(SelectStatement statement)
+    {
+      statement.resolve(this);
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      int row = context.rows[table];
+      return row < 0 ? null : context.tables[table].get(column, row);
+    }
+
+    @Override
+    int tables()
+    {
+      return 1 << table;
+    }
+  }
+
+  static class Negate extends Expression
+  {
+    private final Expression operand;
+
+    Negate(Expression operand)
+    {
+      this.operand = operand;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {operand};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value = operand.evaluate(context);
+      if (value == null) {
+        return null;
+      }
+      Number number = toNumber(value);
+      if (number instanceof Integer) {
+        return -number.intValue();
+      }
+      if (isIntegral(number)) {
+        return -number.longValue();
+      }
+      return -number.doubleValue();
+    }
+  }
+
+  /**
+   * Arithmetic operators and string concatenation. Integral operands give an integral result, as in sql, otherwise
+   * the result is a double.
+   */
+  static class Arithmetic extends Expression
+  {
+    static final char CONCAT = '|';
+
+    private final char operator;
+    private final Expression left;
+    private final Expression right;
+
+    Arithmetic(char operator, Expression left, Expression right)
+    {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {left, right};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value1 = left.evaluate(context);
+      Object value2 = right.evaluate(context);
+      if (value1 == null || value2 == null) {
+        return null;
+      }
+      if (operator == CONCAT) {
+        return value1.toString() + value2.toString();
+      }
+      Number number1 = toNumber(value1);
+      Number number2 = toNumber(value2);
+      if (isIntegral(number1) && isIntegral(number2)) {
+        long result = compute(number1.longValue(), number2.longValue());
+        if (number1 instanceof Integer && number2 instanceof Integer) {
+          return (int)result;
+        }
+        return result;
+      }
+      return compute(number1.doubleValue(), number2.doubleValue());
+    }
+
+    private long compute(long value1, long value2)
+    {
+      switch (operator) {
+        case '+':
+          return value1 + value2;
+        case '-':
+          return value1 - value2;
+        case '*':
+          return value1 * value2;
+        case '/':
+          return value1 / value2;
+        default:
+          return value1 % value2;
+      }
+    }
+
+    private double compute(double value1, double value2)
+    {
+      switch (operator) {
+        case '+':
+          return value1 + value2;
+        case '-':
+          return value1 - value2;
+        case '*':
+          return value1 * value2;
+        case '/':
+          return value1 / value2;
+        default:
+          return value1 % value2;
+      }
+    }
+  }
+
+  static class Comparison extends Expression
+  {
+    enum Operator
+    {
+      EQ, NE, LT, LE, GT, GE
+    }
+
+    final Operator operator;
+    final Expression left;
+    final Expression right;
+
+    Comparison(Operator operator, Expression left, Expression right)
+    {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {left, right};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value1 = left.evaluate(context);
+      if (value1 == null) {
+        return null;
+      }
+      Object value2 = right.evaluate(context);
+      if (value2 == null) {
+        return null;
+      }
+      int compare = compare(value1, value2);
+      switch (operator) {
+        case EQ:
+          return compare == 0;
+        case NE:
+          return compare != 0;
+        case LT:
+          return compare < 0;
+        case LE:
+          return compare <= 0;
+        case GT:
+          return compare > 0;
+        default:
+          return compare >= 0;
+      }
+    }
+  }
+
+  static class And extends Expression
+  {
+    final Expression left;
+    final Expression right;
+
+    And(Expression left, Expression right)
+    {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {left, right};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value1 = left.evaluate(context);
+      if (Boolean.FALSE.equals(value1)) {
+        return false;
+      }
+      Object value2 = right.evaluate(context);
+      if (Boolean.FALSE.equals(value2)) {
+        return false;
+      }
+      return value1 == null || value2 == null ? null : true;
+    }
+  }
+
+  static class Or extends Expression
+  {
+    private final Expression left;
+    private final Expression right;
+
+    Or(Expression left, Expression right)
+    {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {left, right};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value1 = left.evaluate(context);
+      if (Boolean.TRUE.equals(value1)) {
+        return true;
+      }
+      Object value2 = right.evaluate(context);
+      if (Boolean.TRUE.equals(value2)) {
+        return true;
+      }
+      return value1 == null || value2 == null ? null : false;
+    }
+  }
+
+  static class Not extends Expression
+  {
+    private final Expression operand;
+
+    Not(Expression operand)
+    {
+      this.operand = operand;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {operand};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value = operand.evaluate(context);
+      return value == null ? null : !((Boolean)value);
+    }
+  }
+
+  static class IsNull extends Expression
+  {
+    private final Expression operand;
+    private final boolean negated;
+
+    IsNull(Expression operand, boolean negated)
+    {
+      this.operand = operand;
+      this.negated = negated;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {operand};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      return (operand.evaluate(context) == null) != negated;
+    }
+  }
+
+  static class Between extends Expression
+  {
+    private final Expression operand;
+    private final Expression low;
+    private final Expression high;
+    private final boolean negated;
+
+    Between(Expression operand, Expression low, Expression high, boolean negated)
+    {
+      this.operand = operand;
+      this.low = low;
+      this.high = high;
+      this.negated = negated;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {operand, low, high};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value = operand.evaluate(context);
+      Object lowValue = low.evaluate(context);
+      Object highValue = high.evaluate(context);
+      if (value == null || lowValue == null || highValue == null) {
+        return null;
+      }
+      return (compare(value, lowValue) >= 0 && compare(value, highValue) <= 0) != negated;
+    }
+  }
+
+  static class In extends Expression
+  {
+    private final Expression operand;
+    private final Expression[] values;
+    private final boolean negated;
+
+    In(Expression operand, Expression[] values, boolean negated)
+    {
+      this.operand = operand;
+      this.values = values;
+      this.negated = negated;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      Expression[] children = new Expression[values.length + 1];
+      children[0] = operand;
+      System.arraycopy(values, 0, children, 1, values.length);
+      return children;
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value = operand.evaluate(context);
+      if (value == null) {
+        return null;
+      }
+      boolean unknown = false;
+      for (Expression expression : values) {
+        Object candidate = expression.evaluate(context);
+        if (candidate == null) {
+          unknown = true;
+        }
+        else if (compare(value, candidate) == 0) {
+          return !negated;
+        }
+      }
+      return unknown ? null : negated;
+    }
+  }
+
+  /**
+   * LIKE with the <code>%</code> and <code>_</code> wildcards. A literal pattern is compiled once.
+   */
+  static class Like extends Expression
+  {
+    private final Expression operand;
+    private final Expression pattern;
+    private final boolean negated;
+    private final Pattern compiledPattern;
+
+    Like(Expression operand, Expression pattern, boolean negated)
+    {
+      this.operand = operand;
+      this.pattern = pattern;
+      this.negated = negated;
+      if (pattern instanceof Literal && ((Literal)pattern).value != null) {
+        compiledPattern = compile(((Literal)pattern).value.toString());
+      }
+      else {
+        compiledPattern = null;
+      }
+    }
+
+    static Pattern compile(String pattern)
+    {
+      StringBuilder regex = new StringBuilder(pattern.length() + 8);
+      int start = 0;
+      for (int i = 0; i < pattern.length(); i++) {
+        char c = pattern.charAt(i);
+        if (c == '%' || c == '_') {
+          if (i > start) {
+            regex.append(Pattern.quote(pattern.substring(start, i)));
+          }
+          regex.append(c == '%' ? ".*" : ".");
+          start = i + 1;
+        }
+      }
+      if (start < pattern.length()) {
+        regex.append(Pattern.quote(pattern.substring(start)));
+      }
+      return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return new Expression[] {operand, pattern};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      Object value = operand.evaluate(context);
+      if (value == null) {
+        return null;
+      }
+      Pattern regex = compiledPattern;
+      if (regex == null) {
+        Object patternValue = pattern.evaluate(context);
+        if (patternValue == null) {
+          return null;
+        }
+        regex = compile(patternValue.toString());
+      }
+      return regex.matcher(value.toString()).matches() != negated;
+    }
+  }
+
+  /**
+   * Aggregate function of a grouped query. Its value is computed per group by the statement and read from the
+   * context.
+   */
+  static class Aggregate extends Expression
+  {
+    final String function;
+    /**
+     * null for <code>COUNT(*)</code>.
+     */
+    final Expression argument;
+    int index;
+
+    Aggregate(String function, Expression argument)
+    {
+      this.function = function;
+      this.argument = argument;
+    }
+
+    @Override
+    Expression[] children()
+    {
+      return argument == null ? super.children() : new Expression[] {argument};
+    }
+
+    @Override
+    Object evaluate(EvaluationContext context)
+    {
+      return context.aggregateValues[index];
+    }
+
+    @Override
+    boolean hasAggregate()
+    {
+      return true;
+    }
+
+    @Override
+    void collectAggregates(List<Aggregate> aggregates)
+    {
+      aggregates.add(this);
+    }
+  }
+}
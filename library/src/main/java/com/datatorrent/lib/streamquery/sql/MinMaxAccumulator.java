@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.sql;
+
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.lib.streamquery.function.Accumulator;
+
+/**
+ * Sql MIN/MAX of values of any comparable type. Unlike
+ * {@link com.datatorrent.lib.streamquery.function.MaxMinFunction.MaxMinAccumulator} it keeps the value itself, so
+ * strings can be aggregated and the result has the type of the column.
+ */
+class MinMaxAccumulator implements Accumulator
+{
+  private final boolean isMax;
+  private Object value;
+
+  MinMaxAccumulator(boolean isMax)
+  {
+    this.isMax = isMax;
+  }
+
+  @Override
+  public void accumulate(@NotNull Map<String, Object> row)
+  {
+    for (Object rowValue : row.values()) {
+      update(rowValue);
+    }
+  }
+
+  private void update(Object rowValue)
+  {
+    if (rowValue == null) {
+      return;
+    }
+    if (value == null) {
+      value = rowValue;
+      return;
+    }
+    int compare = Expression.compare(rowValue, value);
+    if (isMax ? compare > 0 : compare < 0) {
+      value = rowValue;
+    }
+  }
+
+  @Override
+  public void merge(@NotNull Accumulator other)
+  {
+    update(((MinMaxAccumulator)other).value);
+  }
+
+  @Override
+  public Object getValue()
+  {
+    return value;
+  }
+}
@@ -0,0 +1,752 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.sql;
+
+import java.util.*;
+
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.common.util.DTThrowable;
+import com.datatorrent.lib.streamquery.function.Accumulator;
+import com.datatorrent.lib.streamquery.function.AverageFunction;
+import com.datatorrent.lib.streamquery.function.CountFunction;
+import com.datatorrent.lib.streamquery.function.SumFunction;
+
+/**
+ * A parsed sql SELECT statement and, once it is compiled against the input tables, its execution plan. <br>
+ * <br>
+ * The conditions of the WHERE clause which are joined by AND are placed as early as possible: a condition on a
+ * single table without parameters is checked when a row arrives, see {@link #accept(int, ColumnarTable)}, so rows
+ * which can never be selected are not buffered; an equality of columns of two tables is executed as a hash join
+ * and the remaining conditions are checked as soon as all the tables they read are joined. The tables are joined in
+ * the order of the FROM clause. <br>
+ * Grouped queries aggregate the joined rows incrementally per group with {@link Accumulator}s; SUM and AVG are
+ * computed as doubles. <br>
+ * A statement is not thread safe. <br>
+ *
+ * @since 0.9.4
+ */
+public class SelectStatement
+{
+  private static final String ARGUMENT = "value";
+
+  private static class SelectItem
+  {
+    final Expression expression;
+    final String name;
+
+    SelectItem(Expression expression, String name)
+    {
+      this.expression = expression;
+      this.name = name;
+    }
+  }
+
+  private static class OrderItem
+  {
+    Expression expression;
+    int selectIndex = -1;
+    final boolean descending;
+
+    OrderItem(Expression expression, boolean descending)
+    {
+      this.expression = expression;
+      this.descending = descending;
+    }
+  }
+
+  /**
+   * How a table of the FROM clause is joined to the tables before it.
+   */
+  private static class JoinStep
+  {
+    Expression[] filters;
+    int keyColumn = -1;
+    Expression probe;
+    final Map<Object, RowList> index = new HashMap<Object, RowList>();
+  }
+
+  private static class RowList
+  {
+    int[] rows = new int[2];
+    int size;
+
+    void add(int row)
+    {
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+      }
+      rows[size++] = row;
+    }
+  }
+
+  private static class Group
+  {
+    final int[] rows;
+    final Accumulator[] accumulators;
+    final long[] counts;
+
+    Group(int[] rows, Accumulator[] accumulators)
+    {
+      this.rows = rows;
+      this.accumulators = accumulators;
+      counts = new long[accumulators.length];
+    }
+  }
+
+  private static class ResultRow
+  {
+    final Object[] values;
+    final Object[] keys;
+
+    ResultRow(Object[] values, Object[] keys)
+    {
+      this.values = values;
+      this.keys = keys;
+    }
+  }
+
+  private final String sql;
+  boolean distinct;
+  private final List<SelectItem> selectItems = new ArrayList<SelectItem>();
+  private final List<String> tableNames = new ArrayList<String>();
+  private final List<String> tableAliases = new ArrayList<String>();
+  Expression where;
+  final List<Expression> groupBy = new ArrayList<Expression>();
+  Expression having;
+  private final List<OrderItem> orderBy = new ArrayList<OrderItem>();
+  int parameterCount;
+
+  private boolean compiled;
+  private ColumnarTable[] tables;
+  private int[] inputs;
+  private String[] names;
+  private Expression[] constantFilters;
+  private JoinStep[] steps;
+  private Expression[][] arrivalFilters;
+  private int[] arrivalPositions;
+  private EvaluationContext context;
+  private EvaluationContext arrivalContext;
+  private boolean grouped;
+  private Expression.Aggregate[] aggregates;
+  private final Map<List<Object>, Group> groups = new LinkedHashMap<List<Object>, Group>();
+  private final Map<String, Object> argumentRow = new HashMap<String, Object>(2);
+  private final List<ResultRow> resultRows = new ArrayList<ResultRow>();
+
+  SelectStatement(String sql)
+  {
+    this.sql = sql;
+  }
+
+  void addSelectAll()
+  {
+    selectItems.add(new SelectItem(null, null));
+  }
+
+  void addSelectItem(Expression expression, String alias)
+  {
+    selectItems.add(new SelectItem(expression, alias));
+  }
+
+  void addTable(String name, String alias)
+  {
+    tableNames.add(name);
+    tableAliases.add(alias);
+  }
+
+  void addOrderBy(Expression expression, boolean descending)
+  {
+    orderBy.add(new OrderItem(expression, descending));
+  }
+
+  private IllegalArgumentException error(String message)
+  {
+    return new IllegalArgumentException(message + " in \"" + sql + "\"");
+  }
+
+  public int getParameterCount()
+  {
+    return parameterCount;
+  }
+
+  /**
+   * @return names of the columns of the result rows.
+   */
+  public String[] getColumnNames()
+  {
+    return names.clone();
+  }
+
+  /**
+   * @param input index of the input table.
+   * @return true if the FROM clause refers to the input table.
+   */
+  public boolean isReferenced(int input)
+  {
+    for (int fromInput : inputs) {
+      if (fromInput == input) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void resolve(Expression.Column column)
+  {
+    String[] nameParts = column.nameParts;
+    String columnName = column.getColumnName();
+    String qualifier = nameParts.length > 1 ? nameParts[nameParts.length - 2] : null;
+    for (int i = 0; i < tables.length; i++) {
+      if (qualifier != null && !qualifier.equalsIgnoreCase(tableAliases.get(i))) {
+        continue;
+      }
+      int index = tables[i].getColumnIndex(columnName);
+      if (index >= 0) {
+        if (column.table >= 0) {
+          throw error("ambiguous column " + columnName);
+        }
+        column.table = i;
+        column.column = index;
+        column.type = tables[i].getType(index);
+      }
+    }
+    if (column.table < 0) {
+      throw error("unknown column " + (qualifier == null ? columnName : qualifier + "." + columnName));
+    }
+  }
+
+  /**
+   * Compiles the statement into an execution plan.
+   *
+   * @param inputTables tables of the input ports; the FROM clause refers to them by name. Entries of ports without an
+   *                    input schema are null.
+   * @throws IllegalArgumentException if the statement refers to unknown tables or columns or is not a valid query.
+   */
+  public void compile(@NotNull List<ColumnarTable> inputTables)
+  {
+    if (compiled) {
+      throw new IllegalStateException("statement is already compiled");
+    }
+    int noOfTables = tableNames.size();
+    if (noOfTables > Integer.SIZE - 1) {
+      throw error("too many tables");
+    }
+    tables = new ColumnarTable[noOfTables];
+    inputs = new int[noOfTables];
+    for (int i = 0; i < noOfTables; i++) {
+      inputs[i] = -1;
+      for (int j = 0; j < inputTables.size(); j++) {
+        ColumnarTable inputTable = inputTables.get(j);
+        if (inputTable != null && inputTable.getName().equalsIgnoreCase(tableNames.get(i))) {
+          inputs[i] = j;
+          tables[i] = inputTable;
+          break;
+        }
+      }
+      if (inputs[i] < 0) {
+        throw error("unknown table " + tableNames.get(i));
+      }
+      for (int j = 0; j < i; j++) {
+        if (tableAliases.get(j).equalsIgnoreCase(tableAliases.get(i))) {
+          throw error("duplicate table name " + tableAliases.get(i));
+        }
+      }
+    }
+
+    compileSelect();
+    compileOrderBy();
+
+    if (where != null) {
+      where.resolve(this);
+      if (where.hasAggregate()) {
+        throw error("aggregate in WHERE");
+      }
+    }
+    for (Expression expression : groupBy) {
+      expression.resolve(this);
+      if (expression.hasAggregate()) {
+        throw error("aggregate in GROUP BY");
+      }
+    }
+    List<Expression.Aggregate> aggregateList = new ArrayList<Expression.Aggregate>();
+    for (SelectItem item : selectItems) {
+      item.expression.collectAggregates(aggregateList);
+    }
+    if (having != null) {
+      having.resolve(this);
+      having.collectAggregates(aggregateList);
+    }
+    for (OrderItem item : orderBy) {
+      if (item.expression != null) {
+        item.expression.collectAggregates(aggregateList);
+      }
+    }
+    aggregates = aggregateList.toArray(new Expression.Aggregate[aggregateList.size()]);
+    for (int i = 0; i < aggregates.length; i++) {
+      aggregates[i].index = i;
+    }
+    grouped = !groupBy.isEmpty() || having != null || aggregates.length > 0;
+
+    compileWhere();
+    context = new EvaluationContext(new ColumnarTable[noOfTables]);
+    arrivalContext = new EvaluationContext(new ColumnarTable[noOfTables]);
+    compiled = true;
+  }
+
+  private void compileSelect()
+  {
+    List<SelectItem> items = new ArrayList<SelectItem>();
+    for (SelectItem item : selectItems) {
+      if (item.expression == null) {
+        for (int i = 0; i < tables.length; i++) {
+          for (int j = 0; j < tables[i].getColumnCount(); j++) {
+            String columnName = tables[i].getColumnName(j);
+            Expression.Column column = new Expression.Column(new String[] {tableAliases.get(i), columnName});
+            column.resolve(this);
+            items.add(new SelectItem(column, columnName.toUpperCase(Locale.ENGLISH)));
+          }
+        }
+      }
+      else {
+        item.expression.resolve(this);
+        String name = item.name;
+        if (name == null) {
+          if (item.expression instanceof Expression.Column) {
+            name = ((Expression.Column)item.expression).getColumnName().toUpperCase(Locale.ENGLISH);
+          }
+          else {
+            name = String.valueOf(items.size() + 1);
+          }
+        }
+        items.add(new SelectItem(item.expression, name));
+      }
+    }
+    selectItems.clear();
+    selectItems.addAll(items);
+    names = new String[items.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = items.get(i).name;
+    }
+  }
+
+  /**
+   * An ORDER BY item is a position in the select list, a name of the select list or an expression.
+   */
+  private void compileOrderBy()
+  {
+    for (OrderItem item : orderBy) {
+      if (item.expression instanceof Expression.Literal && ((Expression.Literal)item.expression).value instanceof Integer) {
+        int position = (Integer)((Expression.Literal)item.expression).value;
+        if (position < 1 || position > names.length) {
+          throw error("invalid ORDER BY position " + position);
+        }
+        item.selectIndex = position - 1;
+        item.expression = null;
+        continue;
+      }
+      if (item.expression instanceof Expression.Column && ((Expression.Column)item.expression).nameParts.length == 1) {
+        String name = ((Expression.Column)item.expression).getColumnName();
+        for (int i = 0; i < names.length; i++) {
+          if (names[i].equals(name)) {
+            item.selectIndex = i;
+            item.expression = null;
+            break;
+          }
+        }
+        if (item.expression == null) {
+          continue;
+        }
+      }
+      item.expression.resolve(this);
+    }
+  }
+
+  private static void addConjuncts(Expression expression, List<Expression> conjuncts)
+  {
+    if (expression instanceof Expression.And) {
+      addConjuncts(((Expression.And)expression).left, conjuncts);
+      addConjuncts(((Expression.And)expression).right, conjuncts);
+    }
+    else {
+      conjuncts.add(expression);
+    }
+  }
+
+  private static boolean isNumeric(int type)
+  {
+    return type != ColumnarTable.STRING;
+  }
+
+  private void compileWhere()
+  {
+    List<Expression> conjuncts = new ArrayList<Expression>();
+    if (where != null) {
+      addConjuncts(where, conjuncts);
+    }
+    List<Expression> constants = new ArrayList<Expression>();
+    List<List<Expression>> filters = new ArrayList<List<Expression>>();
+    List<List<Expression>> inputFilters = new ArrayList<List<Expression>>();
+    steps = new JoinStep[tables.length];
+    for (int i = 0; i < tables.length; i++) {
+      filters.add(new ArrayList<Expression>());
+      inputFilters.add(new ArrayList<Expression>());
+      steps[i] = new JoinStep();
+    }
+
+    for (Expression conjunct : conjuncts) {
+      int tableMask = conjunct.tables();
+      if (tableMask == 0) {
+        constants.add(conjunct);
+        continue;
+      }
+      int level = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(tableMask);
+      if (Integer.bitCount(tableMask) == 1 && !conjunct.hasBinding() && isOnlyReference(level)) {
+        inputFilters.get(level).add(conjunct);
+        continue;
+      }
+      JoinStep step = steps[level];
+      if (step.keyColumn < 0 && conjunct instanceof Expression.Comparison) {
+        Expression.Comparison comparison = (Expression.Comparison)conjunct;
+        if (comparison.operator == Expression.Comparison.Operator.EQ
+          && comparison.left instanceof Expression.Column && comparison.right instanceof Expression.Column) {
+          Expression.Column left = (Expression.Column)comparison.left;
+          Expression.Column right = (Expression.Column)comparison.right;
+          Expression.Column key = left.table == level ? left : right;
+          Expression.Column probe = left.table == level ? right : left;
+          if (probe.table != level && isNumeric(key.type) == isNumeric(probe.type)) {
+            step.keyColumn = key.column;
+            step.probe = probe;
+            continue;
+          }
+        }
+      }
+      filters.get(level).add(conjunct);
+    }
+
+    constantFilters = constants.toArray(new Expression[constants.size()]);
+    arrivalFilters = new Expression[tables.length][];
+    arrivalPositions = new int[tables.length];
+    Arrays.fill(arrivalPositions, -1);
+    for (int i = 0; i < tables.length; i++) {
+      steps[i].filters = filters.get(i).toArray(new Expression[filters.get(i).size()]);
+      if (!inputFilters.get(i).isEmpty()) {
+        arrivalFilters[i] = inputFilters.get(i).toArray(new Expression[inputFilters.get(i).size()]);
+        arrivalPositions[i] = inputs[i];
+      }
+    }
+  }
+
+  /**
+   * Rows of an input table which is joined with itself cannot be filtered on arrival by the conditions of one of its
+   * occurrences.
+   */
+  private boolean isOnlyReference(int position)
+  {
+    for (int i = 0; i < inputs.length; i++) {
+      if (i != position && inputs[i] == inputs[position]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the conditions of the WHERE clause which only read the row of the input table which was added last.
+   *
+   * @param input index of the input table.
+   * @param table input table.
+   * @return false if the row can never be selected and should be removed.
+   */
+  public boolean accept(int input, @NotNull ColumnarTable table)
+  {
+    for (int i = 0; i < arrivalPositions.length; i++) {
+      if (arrivalPositions[i] == input) {
+        arrivalContext.tables[i] = table;
+        arrivalContext.rows[i] = table.size() - 1;
+        for (Expression filter : arrivalFilters[i]) {
+          if (!filter.isTrue(arrivalContext)) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Executes the statement over the rows of the input tables.
+   *
+   * @param inputTables tables of the input ports, in the order they were compiled with.
+   * @param bindings    values of the parameters of the statement; may be null if it has none.
+   * @param results     result rows are added to this list.
+   */
+  public void execute(@NotNull List<ColumnarTable> inputTables, List<Object> bindings,
+                      @NotNull List<HashMap<String, Object>> results)
+  {
+    if (!compiled) {
+      throw new IllegalStateException("statement is not compiled");
+    }
+    for (int i = 0; i < tables.length; i++) {
+      context.tables[i] = inputTables.get(inputs[i]);
+    }
+    Arrays.fill(context.rows, -1);
+    context.bindings = bindings;
+    context.aggregateValues = null;
+    try {
+      boolean selected = true;
+      for (Expression filter : constantFilters) {
+        if (!filter.isTrue(context)) {
+          selected = false;
+          break;
+        }
+      }
+      if (selected) {
+        for (int i = 1; i < tables.length; i++) {
+          JoinStep step = steps[i];
+          if (step.keyColumn >= 0) {
+            ColumnarTable table = context.tables[i];
+            for (int row = 0; row < table.size(); row++) {
+              Object key = hashKey(table.get(step.keyColumn, row));
+              if (key != null) {
+                RowList rows = step.index.get(key);
+                if (rows == null) {
+                  rows = new RowList();
+                  step.index.put(key, rows);
+                }
+                rows.add(row);
+              }
+            }
+          }
+        }
+        join(0, results);
+      }
+      if (grouped) {
+        if (groupBy.isEmpty() && groups.isEmpty()) {
+          groups.put(Collections.<Object>emptyList(), newGroup());
+        }
+        context.aggregateValues = new Object[aggregates.length];
+        for (Group group : groups.values()) {
+          System.arraycopy(group.rows, 0, context.rows, 0, group.rows.length);
+          for (int i = 0; i < aggregates.length; i++) {
+            boolean empty = group.counts[i] == 0 && !aggregates[i].function.equals("COUNT");
+            context.aggregateValues[i] = empty ? null : group.accumulators[i].getValue();
+          }
+          if (having == null || having.isTrue(context)) {
+            addResult(results);
+          }
+        }
+      }
+      if (!resultRows.isEmpty()) {
+        if (!orderBy.isEmpty()) {
+          Collections.sort(resultRows, new Comparator<ResultRow>()
+          {
+            @Override
+            public int compare(ResultRow row1, ResultRow row2)
+            {
+              return compareKeys(row1, row2);
+            }
+          });
+        }
+        Set<List<Object>> distinctRows = distinct ? new HashSet<List<Object>>() : null;
+        for (ResultRow row : resultRows) {
+          if (distinctRows == null || distinctRows.add(Arrays.asList(row.values))) {
+            results.add(toMap(row.values));
+          }
+        }
+      }
+    }
+    finally {
+      for (JoinStep step : steps) {
+        step.index.clear();
+      }
+      groups.clear();
+      resultRows.clear();
+      context.bindings = null;
+      Arrays.fill(context.tables, null);
+      Arrays.fill(arrivalContext.tables, null);
+    }
+  }
+
+  /**
+   * Numbers which are equal by value have equal keys.
+   */
+  private static Object hashKey(Object value)
+  {
+    if (value instanceof Number) {
+      if (Expression.isIntegral(value)) {
+        return ((Number)value).longValue();
+      }
+      double doubleValue = ((Number)value).doubleValue();
+      long longValue = (long)doubleValue;
+      return longValue == doubleValue ? (Object)longValue : (Object)doubleValue;
+    }
+    return value;
+  }
+
+  private void join(int level, List<HashMap<String, Object>> results)
+  {
+    if (level == tables.length) {
+      if (grouped) {
+        accumulate();
+      }
+      else {
+        addResult(results);
+      }
+      return;
+    }
+    ColumnarTable table = context.tables[level];
+    JoinStep step = steps[level];
+    if (step.keyColumn >= 0) {
+      RowList rows = null;
+      Object key = hashKey(step.probe.evaluate(context));
+      if (key != null) {
+        rows = step.index.get(key);
+      }
+      if (rows != null) {
+        for (int i = 0; i < rows.size; i++) {
+          context.rows[level] = rows.rows[i];
+          if (isSelected(step.filters)) {
+            join(level + 1, results);
+          }
+        }
+      }
+    }
+    else {
+      for (int row = 0; row < table.size(); row++) {
+        context.rows[level] = row;
+        if (isSelected(step.filters)) {
+          join(level + 1, results);
+        }
+      }
+    }
+    context.rows[level] = -1;
+  }
+
+  private boolean isSelected(Expression[] filters)
+  {
+    for (Expression filter : filters) {
+      if (!filter.isTrue(context)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Group newGroup()
+  {
+    Accumulator[] accumulators = new Accumulator[aggregates.length];
+    for (int i = 0; i < aggregates.length; i++) {
+      String function = aggregates[i].function;
+      if (function.equals("SUM")) {
+        accumulators[i] = new SumFunction.SumAccumulator(ARGUMENT);
+      }
+      else if (function.equals("AVG")) {
+        accumulators[i] = new AverageFunction.AverageAccumulator(ARGUMENT);
+      }
+      else if (function.equals("COUNT")) {
+        accumulators[i] = new CountFunction.CountAccumulator(aggregates[i].argument == null ? "*" : ARGUMENT);
+      }
+      else {
+        accumulators[i] = new MinMaxAccumulator(function.equals("MAX"));
+      }
+    }
+    return new Group(context.rows.clone(), accumulators);
+  }
+
+  private void accumulate()
+  {
+    List<Object> key;
+    if (groupBy.isEmpty()) {
+      key = Collections.<Object>emptyList();
+    }
+    else {
+      key = new ArrayList<Object>(groupBy.size());
+      for (Expression expression : groupBy) {
+        key.add(hashKey(expression.evaluate(context)));
+      }
+    }
+    Group group = groups.get(key);
+    if (group == null) {
+      group = newGroup();
+      groups.put(key, group);
+    }
+    try {
+      for (int i = 0; i < aggregates.length; i++) {
+        Expression argument = aggregates[i].argument;
+        Object value = argument == null ? null : argument.evaluate(context);
+        if (argument != null && value == null) {
+          continue;
+        }
+        argumentRow.put(ARGUMENT, value);
+        group.accumulators[i].accumulate(argumentRow);
+        group.counts[i]++;
+      }
+    }
+    catch (Exception ex) {
+      DTThrowable.rethrow(ex);
+    }
+  }
+
+  private void addResult(List<HashMap<String, Object>> results)
+  {
+    Object[] values = new Object[selectItems.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = selectItems.get(i).expression.evaluate(context);
+    }
+    if (orderBy.isEmpty() && !distinct) {
+      results.add(toMap(values));
+      return;
+    }
+    Object[] keys = new Object[orderBy.size()];
+    for (int i = 0; i < keys.length; i++) {
+      OrderItem item = orderBy.get(i);
+      keys[i] = item.selectIndex >= 0 ? values[item.selectIndex] : item.expression.evaluate(context);
+    }
+    resultRows.add(new ResultRow(values, keys));
+  }
+
+  /**
+   * Nulls are ordered after all values, like in most databases.
+   */
+  private int compareKeys(ResultRow row1, ResultRow row2)
+  {
+    for (int i = 0; i < orderBy.size(); i++) {
+      Object key1 = row1.keys[i];
+      Object key2 = row2.keys[i];
+      int compare;
+      if (key1 == null || key2 == null) {
+        compare = key1 == null ? (key2 == null ? 0 : 1) : -1;
+      }
+      else {
+        compare = Expression.compare(key1, key2);
+      }
+      if (compare != 0) {
+        return orderBy.get(i).descending ? -compare : compare;
+      }
+    }
+    return 0;
+  }
+
+  private HashMap<String, Object> toMap(Object[] values)
+  {
+    HashMap<String, Object> row = new HashMap<String, Object>();
+    for (int i = 0; i < values.length; i++) {
+      row.put(names[i], values[i]);
+    }
+    return row;
+  }
+}
@@ -0,0 +1,550 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.lib.streamquery.sql.Expression.Comparison;
+
+/**
+ * Parses a sql SELECT statement into a {@link SelectStatement}. <br>
+ * <br>
+ * The supported grammar is: <br>
+ * <code>SELECT [DISTINCT] item [, item]* FROM table [[AS] alias] [, table [[AS] alias]]* [WHERE condition]
+ * [GROUP BY expression [, expression]*] [HAVING condition] [ORDER BY expression [ASC|DESC] [, ...]*]</code> <br>
+ * JOIN ... ON and LIMIT are rejected with an error; tables are joined by listing them in FROM with the join condition
+ * in WHERE. <br>
+ * where an item is <code>*</code> or an expression with an optional alias, tables may be qualified by a schema
+ * (e.g. <code>SESSION.t1</code>) and columns by a table and schema. Expressions are built from columns, numeric and
+ * string literals, NULL, <code>?</code> parameters, the arithmetic operators <code>+ - * / %</code>, string
+ * concatenation <code>||</code>, comparisons, AND, OR, NOT, IS [NOT] NULL, [NOT] BETWEEN, [NOT] IN, [NOT] LIKE and the
+ * aggregates SUM, COUNT, AVG, MIN and MAX. <br>
+ * Unquoted identifiers are case insensitive and are upper cased, like in most databases, so the names of the result
+ * columns are upper case unless they are quoted. <br>
+ *
+ * @since 0.9.4
+ */
+public class SqlParser
+{
+  private enum TokenType
+  {
+    IDENTIFIER, QUOTED_IDENTIFIER, NUMBER, STRING, SYMBOL, PARAMETER, END
+  }
+
+  private static class Token
+  {
+    final TokenType type;
+    final String text;
+    final int position;
+
+    Token(TokenType type, String text, int position)
+    {
+      this.type = type;
+      this.text = text;
+      this.position = position;
+    }
+  }
+
+  private final String sql;
+  private final List<Token> tokens = new ArrayList<Token>();
+  private int current;
+  private int parameterCount;
+
+  private SqlParser(String sql)
+  {
+    this.sql = sql;
+    tokenize();
+  }
+
+  /**
+   * @param sql sql SELECT statement.
+   * @return parsed statement which still has to be compiled against the input tables.
+   * @throws IllegalArgumentException if the statement is malformed or not supported.
+   */
+  public static SelectStatement parse(@NotNull String sql)
+  {
+    return new SqlParser(sql).parseSelect();
+  }
+
+  private IllegalArgumentException error(String message, int position)
+  {
+    return new IllegalArgumentException(message + " at position " + position + " of \"" + sql + "\"");
+  }
+
+  private void tokenize()
+  {
+    int i = 0;
+    int length = sql.length();
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      }
+      else if (Character.isLetter(c) || c == '_') {
+        int start = i;
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+          i++;
+        }
+        tokens.add(new Token(TokenType.IDENTIFIER, sql.substring(start, i).toUpperCase(Locale.ENGLISH), start));
+      }
+      else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1)))) {
+        int start = i;
+        while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+          i++;
+        }
+        if (i < length && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+          i++;
+          if (i < length && (sql.charAt(i) == '+' || sql.charAt(i) == '-')) {
+            i++;
+          }
+          while (i < length && Character.isDigit(sql.charAt(i))) {
+            i++;
+          }
+        }
+        tokens.add(new Token(TokenType.NUMBER, sql.substring(start, i), start));
+      }
+      else if (c == '\'' || c == '"') {
+        int start = i++;
+        StringBuilder text = new StringBuilder();
+        while (true) {
+          if (i >= length) {
+            throw error("unterminated quote", start);
+          }
+          char q = sql.charAt(i++);
+          if (q == c) {
+            if (i < length && sql.charAt(i) == c) {
+              text.append(c);
+              i++;
+            }
+            else {
+              break;
+            }
+          }
+          else {
+            text.append(q);
+          }
+        }
+        tokens.add(new Token(c == '\'' ? TokenType.STRING : TokenType.QUOTED_IDENTIFIER, text.toString(), start));
+      }
+      else if (c == '?') {
+        tokens.add(new Token(TokenType.PARAMETER, "?", i++));
+      }
+      else {
+        String symbol = i + 1 < length ? sql.substring(i, i + 2) : null;
+        if ("<>".equals(symbol) || "<=".equals(symbol) || ">=".equals(symbol) || "!=".equals(symbol) || "||".equals(symbol)) {
+          tokens.add(new Token(TokenType.SYMBOL, symbol, i));
+          i += 2;
+        }
+        else if ("=<>+-*/%(),.".indexOf(c) >= 0) {
+          tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c), i++));
+        }
+        else {
+          throw error("unexpected character '" + c + "'", i);
+        }
+      }
+    }
+    tokens.add(new Token(TokenType.END, "", length));
+  }
+
+  private Token peek()
+  {
+    return tokens.get(current);
+  }
+
+  private Token next()
+  {
+    return tokens.get(current++);
+  }
+
+  private boolean isKeyword(String keyword)
+  {
+    Token token = peek();
+    return token.type == TokenType.IDENTIFIER && token.text.equals(keyword);
+  }
+
+  private boolean acceptKeyword(String keyword)
+  {
+    if (isKeyword(keyword)) {
+      current++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectKeyword(String keyword)
+  {
+    if (!acceptKeyword(keyword)) {
+      throw error("expected " + keyword, peek().position);
+    }
+  }
+
+  private boolean isSymbol(String symbol)
+  {
+    Token token = peek();
+    return token.type == TokenType.SYMBOL && token.text.equals(symbol);
+  }
+
+  private boolean acceptSymbol(String symbol)
+  {
+    if (isSymbol(symbol)) {
+      current++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectSymbol(String symbol)
+  {
+    if (!acceptSymbol(symbol)) {
+      throw error("expected '" + symbol + "'", peek().position);
+    }
+  }
+
+  private static boolean isReserved(String word)
+  {
+    return word.equals("FROM") || word.equals("WHERE") || word.equals("GROUP") || word.equals("HAVING")
+      || word.equals("ORDER") || word.equals("AND") || word.equals("OR") || word.equals("NOT") || word.equals("AS")
+      || word.equals("ON") || word.equals("ASC") || word.equals("DESC") || word.equals("BY") || word.equals("JOIN")
+      || word.equals("INNER") || word.equals("LEFT") || word.equals("RIGHT") || word.equals("FULL")
+      || word.equals("CROSS") || word.equals("LIMIT");
+  }
+
+  private String identifier()
+  {
+    Token token = next();
+    if (token.type == TokenType.QUOTED_IDENTIFIER || (token.type == TokenType.IDENTIFIER && !isReserved(token.text))) {
+      return token.text;
+    }
+    throw error("expected an identifier", token.position);
+  }
+
+  private String optionalAlias()
+  {
+    if (acceptKeyword("AS")) {
+      return identifier();
+    }
+    Token token = peek();
+    if (token.type == TokenType.QUOTED_IDENTIFIER || (token.type == TokenType.IDENTIFIER && !isReserved(token.text))) {
+      current++;
+      return token.text;
+    }
+    return null;
+  }
+
+  private SelectStatement parseSelect()
+  {
+    SelectStatement statement = new SelectStatement(sql);
+    expectKeyword("SELECT");
+    statement.distinct = acceptKeyword("DISTINCT");
+    do {
+      if (acceptSymbol("*")) {
+        statement.addSelectAll();
+      }
+      else {
+        Expression expression = expression();
+        statement.addSelectItem(expression, optionalAlias());
+      }
+    }
+    while (acceptSymbol(","));
+
+    expectKeyword("FROM");
+    do {
+      List<String> nameParts = new ArrayList<String>();
+      nameParts.add(identifier());
+      while (acceptSymbol(".")) {
+        nameParts.add(identifier());
+      }
+      String tableName = nameParts.get(nameParts.size() - 1);
+      String alias = optionalAlias();
+      statement.addTable(tableName, alias == null ? tableName : alias);
+    }
+    while (acceptSymbol(","));
+    if (isKeyword("JOIN") || isKeyword("INNER") || isKeyword("LEFT") || isKeyword("RIGHT") || isKeyword("FULL")
+      || isKeyword("CROSS")) {
+      throw error("JOIN is not supported, list the tables in FROM and the join condition in WHERE", peek().position);
+    }
+
+    if (acceptKeyword("WHERE")) {
+      statement.where = expression();
+    }
+    if (acceptKeyword("GROUP")) {
+      expectKeyword("BY");
+      do {
+        statement.groupBy.add(expression());
+      }
+      while (acceptSymbol(","));
+    }
+    if (acceptKeyword("HAVING")) {
+      statement.having = expression();
+    }
+    if (acceptKeyword("ORDER")) {
+      expectKeyword("BY");
+      do {
+        Expression expression = expression();
+        boolean descending = false;
+        if (acceptKeyword("DESC")) {
+          descending = true;
+        }
+        else {
+          acceptKeyword("ASC");
+        }
+        statement.addOrderBy(expression, descending);
+      }
+      while (acceptSymbol(","));
+    }
+    if (isKeyword("LIMIT")) {
+      throw error("LIMIT is not supported", peek().position);
+    }
+    if (peek().type != TokenType.END) {
+      throw error("unexpected '" + peek().text + "'", peek().position);
+    }
+    statement.parameterCount = parameterCount;
+    return statement;
+  }
+
+  private Expression expression()
+  {
+    Expression expression = and();
+    while (acceptKeyword("OR")) {
+      expression = new Expression.Or(expression, and());
+    }
+    return expression;
+  }
+
+  private Expression and()
+  {
+    Expression expression = not();
+    while (acceptKeyword("AND")) {
+      expression = new Expression.And(expression, not());
+    }
+    return expression;
+  }
+
+  private Expression not()
+  {
+    if (acceptKeyword("NOT")) {
+      return new Expression.Not(not());
+    }
+    return predicate();
+  }
+
+  private Expression predicate()
+  {
+    Expression left = additive();
+    Comparison.Operator operator = comparisonOperator();
+    if (operator != null) {
+      return new Comparison(operator, left, additive());
+    }
+    if (acceptKeyword("IS")) {
+      boolean negated = acceptKeyword("NOT");
+      expectKeyword("NULL");
+      return new Expression.IsNull(left, negated);
+    }
+    boolean negated = acceptKeyword("NOT");
+    if (acceptKeyword("BETWEEN")) {
+      Expression low = additive();
+      expectKeyword("AND");
+      return new Expression.Between(left, low, additive(), negated);
+    }
+    if (acceptKeyword("IN")) {
+      expectSymbol("(");
+      List<Expression> values = new ArrayList<Expression>();
+      do {
+        values.add(additive());
+      }
+      while (acceptSymbol(","));
+      expectSymbol(")");
+      return new Expression.In(left, values.toArray(new Expression[values.size()]), negated);
+    }
+    if (acceptKeyword("LIKE")) {
+      return new Expression.Like(left, additive(), negated);
+    }
+    if (negated) {
+      throw error("expected BETWEEN, IN or LIKE", peek().position);
+    }
+    return left;
+  }
+
+  private Comparison.Operator comparisonOperator()
+  {
+    Token token = peek();
+    if (token.type != TokenType.SYMBOL) {
+      return null;
+    }
+    Comparison.Operator operator;
+    if (token.text.equals("=")) {
+      operator = Comparison.Operator.EQ;
+    }
+    else if (token.text.equals("<>") || token.text.equals("!=")) {
+      operator = Comparison.Operator.NE;
+    }
+    else if (token.text.equals("<")) {
+      operator = Comparison.Operator.LT;
+    }
+    else if (token.text.equals("<=")) {
+      operator = Comparison.Operator.LE;
+    }
+    else if (token.text.equals(">")) {
+      operator = Comparison.Operator.GT;
+    }
+    else if (token.text.equals(">=")) {
+      operator = Comparison.Operator.GE;
+    }
+    else {
+      return null;
+    }
+    current++;
+    return operator;
+  }
+
+  private Expression additive()
+  {
+    Expression expression = multiplicative();
+    while (true) {
+      if (acceptSymbol("+")) {
+        expression = new Expression.Arithmetic('+', expression, multiplicative());
+      }
+      else if (acceptSymbol("-")) {
+        expression = new Expression.Arithmetic('-', expression, multiplicative());
+      }
+      else if (acceptSymbol("||")) {
+        expression = new Expression.Arithmetic(Expression.Arithmetic.CONCAT, expression, multiplicative());
+      }
+      else {
+        return expression;
+      }
+    }
+  }
+
+  private Expression multiplicative()
+  {
+    Expression expression = unary();
+    while (true) {
+      if (acceptSymbol("*")) {
+        expression = new Expression.Arithmetic('*', expression, unary());
+      }
+      else if (acceptSymbol("/")) {
+        expression = new Expression.Arithmetic('/', expression, unary());
+      }
+      else if (acceptSymbol("%")) {
+        expression = new Expression.Arithmetic('%', expression, unary());
+      }
+      else {
+        return expression;
+      }
+    }
+  }
+
+  private Expression unary()
+  {
+    if (acceptSymbol("-")) {
+      return new Expression.Negate(unary());
+    }
+    acceptSymbol("+");
+    return primary();
+  }
+
+  private Expression primary()
+  {
+    Token token = next();
+    switch (token.type) {
+      case NUMBER:
+        return new Expression.Literal(number(token));
+      case STRING:
+        return new Expression.Literal(token.text);
+      case PARAMETER:
+        return new Expression.Binding(parameterCount++);
+      case SYMBOL:
+        if (token.text.equals("(")) {
+          Expression expression = expression();
+          expectSymbol(")");
+          return expression;
+        }
+        throw error("unexpected '" + token.text + "'", token.position);
+      case IDENTIFIER:
+        if (token.text.equals("NULL")) {
+          return new Expression.Literal(null);
+        }
+        if (isSymbol("(")) {
+          return aggregate(token);
+        }
+        current--;
+        return column();
+      case QUOTED_IDENTIFIER:
+        current--;
+        return column();
+      default:
+        throw error("unexpected end of statement", token.position);
+    }
+  }
+
+  private Expression column()
+  {
+    List<String> nameParts = new ArrayList<String>(3);
+    nameParts.add(identifier());
+    while (acceptSymbol(".")) {
+      nameParts.add(identifier());
+    }
+    return new Expression.Column(nameParts.toArray(new String[nameParts.size()]));
+  }
+
+  private Object number(Token token)
+  {
+    String text = token.text;
+    try {
+      if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+        return Double.valueOf(text);
+      }
+      long value = Long.parseLong(text);
+      if (value <= Integer.MAX_VALUE) {
+        return (int)value;
+      }
+      return value;
+    }
+    catch (NumberFormatException ex) {
+      throw error("invalid number " + text, token.position);
+    }
+  }
+
+  private Expression aggregate(Token function)
+  {
+    String name = function.text;
+    if (!name.equals("SUM") && !name.equals("COUNT") && !name.equals("AVG") && !name.equals("MIN")
+      && !name.equals("MAX")) {
+      throw error("unsupported function " + name, function.position);
+    }
+    expectSymbol("(");
+    Expression argument;
+    if (acceptSymbol("*")) {
+      if (!name.equals("COUNT")) {
+        throw error(name + "(*) is not supported", function.position);
+      }
+      argument = null;
+    }
+    else {
+      argument = expression();
+      if (argument.hasAggregate()) {
+        throw error("nested aggregate", function.position);
+      }
+    }
+    expectSymbol(")");
+    return new Expression.Aggregate(name, argument);
+  }
+}
@@ -58,20 +58,30 @@ public abstract class AbstractBaseNNonUniqueOperatorMap<K, V> extends AbstractBa
    * Inserts tuples into the queue
    * @param tuple to insert in the queue
    */
-  @SuppressWarnings({ "unchecked", "rawtypes" })
   @Override
   public void processTuple(Map<K, V> tuple)
   {
     for (Map.Entry<K, V> e: tuple.entrySet()) {
-      TopNSort pqueue = kmap.get(e.getKey());
-      if (pqueue == null) {
-        pqueue = new TopNSort<V>(5, n, isAscending());
-        kmap.put(cloneKey(e.getKey()), pqueue);
-        pqueue.offer(cloneValue(e.getValue()));
-      }
-      else {
-        pqueue.offer(e.getValue());
-      }
+      offer(e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * Inserts a value of a key into the bounded queue of the key; values which do not make it to top N are rejected
+   * without being cloned.
+   * @param key
+   * @param value
+   */
+  protected void offer(K key, V value)
+  {
+    TopNSort<V> pqueue = kmap.get(key);
+    if (pqueue == null) {
+      pqueue = new TopNSort<V>(5, n, isAscending());
+      kmap.put(cloneKey(key), pqueue);
+      pqueue.offer(cloneValue(value));
+    }
+    else if (pqueue.qualifies(value)) {
+      pqueue.offer(cloneValue(value));
     }
   }
 
@@ -51,23 +51,29 @@ public abstract class AbstractBaseNUniqueOperatorMap<K, V> extends AbstractBaseN
   public void processTuple(Map<K, V> tuple)
   {
     for (Map.Entry<K, V> e: tuple.entrySet()) {
+      offer(e.getKey(), e.getValue(), 1);
+    }
+  }
 
-      TopNUniqueSort<V> pqueue = kmap.get(e.getKey());
-      if (pqueue == null) {
-        pqueue = new TopNUniqueSort<V>(5, n, isAscending());
-        kmap.put(cloneKey(e.getKey()), pqueue);
-        pqueue.offer(cloneValue(e.getValue()));
-      }
-      else {
-        pqueue.offer(cloneValue(e.getValue()));
-      }
+  /**
+   * Inserts a value of a key with its no. of occurrences into the bounded queue of the key
+   * @param key
+   * @param value
+   * @param count
+   */
+  protected void offer(K key, V value, int count)
+  {
+    TopNUniqueSort<V> pqueue = kmap.get(key);
+    if (pqueue == null) {
+      pqueue = new TopNUniqueSort<V>(5, n, isAscending());
+      kmap.put(cloneKey(key), pqueue);
     }
+    pqueue.offer(cloneValue(value), count);
   }
 
   /**
    * Emits the result
    */
-  @SuppressWarnings("unchecked")
   @Override
   public void endWindow()
   {
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.Arrays;
+
+/**
+ * Base class of the maps which accumulate a primitive value per key. <p>
+ * Keys are kept densely in the order they were added and every key is identified by its index; sub-classes keep the
+ * values in primitive arrays parallel to the keys. Keys are found through an open addressing table with linear probing
+ * which holds key indexes, so no object is allocated per key. {@link #clear()} keeps all the arrays, hence a map which
+ * is cleared at the end of every window is not re-allocated. <br>
+ * The lookup table is transient and is rebuilt after the map is restored from a checkpoint, since hash codes of keys
+ * may differ across JVMs. <br>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public abstract class AbstractKeyedAccumulator<K>
+{
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private Object[] keys;
+  private int size;
+  /**
+   * Open addressing table of key index + 1; 0 marks an empty slot.
+   */
+  private transient int[] table;
+  private transient int[] hashes;
+
+  protected AbstractKeyedAccumulator()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity expected no. of keys.
+   */
+  protected AbstractKeyedAccumulator(int capacity)
+  {
+    keys = new Object[Math.max(capacity, 1)];
+  }
+
+  private static int hash(Object key)
+  {
+    int h = key == null ? 0 : key.hashCode();
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private void rebuildTable(int keyCapacity)
+  {
+    int tableSize = Integer.highestOneBit(Math.max(keyCapacity, 4) * 2 - 1) << 1;
+    if (table == null || table.length != tableSize) {
+      table = new int[tableSize];
+    }
+    else {
+      Arrays.fill(table, 0);
+    }
+    if (hashes == null) {
+      hashes = new int[keys.length];
+    }
+    else if (hashes.length < keys.length) {
+      hashes = Arrays.copyOf(hashes, keys.length);
+    }
+    int mask = table.length - 1;
+    for (int i = 0; i < size; i++) {
+      int h = hash(keys[i]);
+      hashes[i] = h;
+      int slot = h & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+    }
+  }
+
+  /**
+   * @param key key.
+   * @return index of the key or -1 if the key is not present.
+   */
+  public int indexOf(Object key)
+  {
+    if (table == null) {
+      rebuildTable(keys.length);
+    }
+    int h = hash(key);
+    int mask = table.length - 1;
+    for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int index = table[slot] - 1;
+      if (hashes[index] == h) {
+        Object k = keys[index];
+        if (k == key || (key != null && key.equals(k))) {
+          return index;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds a key which is not present. The value of a new key is zero.
+   *
+   * @param key key which is not present.
+   * @return index of the key.
+   */
+  public int insert(K key)
+  {
+    if (table == null) {
+      rebuildTable(keys.length);
+    }
+    if (size == keys.length) {
+      int capacity = keys.length * 2;
+      keys = Arrays.copyOf(keys, capacity);
+      growValues(capacity);
+      rebuildTable(capacity);
+    }
+    int index = size++;
+    int h = hash(key);
+    keys[index] = key;
+    hashes[index] = h;
+    int mask = table.length - 1;
+    int slot = h & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = index + 1;
+    return index;
+  }
+
+  /**
+   * @param key key.
+   * @return index of the key, which is added if it is not present.
+   */
+  public int index(K key)
+  {
+    int index = indexOf(key);
+    return index < 0 ? insert(key) : index;
+  }
+
+  public boolean containsKey(Object key)
+  {
+    return indexOf(key) >= 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public K getKey(int index)
+  {
+    return (K)keys[index];
+  }
+
+  /**
+   * @return no. of keys.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Removes all the keys and resets their values to zero without releasing any array.
+   */
+  public void clear()
+  {
+    if (size == 0) {
+      return;
+    }
+    Arrays.fill(keys, 0, size, null);
+    clearValues(size);
+    size = 0;
+    if (table != null) {
+      Arrays.fill(table, 0);
+    }
+  }
+
+  /**
+   * Grows the value arrays.
+   *
+   * @param capacity new no. of keys the arrays have to hold.
+   */
+  protected abstract void growValues(int capacity);
+
+  /**
+   * Resets the values of the keys to zero.
+   *
+   * @param size no. of keys.
+   */
+  protected abstract void clearValues(int size);
+}
@@ -15,9 +15,6 @@
  */
 package com.datatorrent.lib.util;
 
-import java.util.HashMap;
-import org.apache.commons.lang.mutable.MutableInt;
-
 /**
  * Count unique occurrences of keys within an application window
  *
@@ -33,16 +30,15 @@ public class BaseUniqueKeyCounter<K> extends BaseKeyOperator<K>
    */
   public void processTuple(K tuple)
   {
-    MutableInt i = map.get(tuple);
-    if (i == null) {
-      i = new MutableInt(0);
-      map.put(cloneKey(tuple), i);
+    int index = map.indexOf(tuple);
+    if (index < 0) {
+      index = map.insert(cloneKey(tuple));
     }
-    i.increment();
+    map.addAt(index, 1);
   }
 
   /**
    * Bucket counting mechanism.
    */
-  protected HashMap<K, MutableInt> map = new HashMap<K, MutableInt>();
+  protected KeyedLongAccumulator<K> map = new KeyedLongAccumulator<K>();
 }
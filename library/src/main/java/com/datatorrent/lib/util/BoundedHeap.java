@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Binary heap of at most bound elements which keeps the best elements offered to it. <p>
+ * The root of the heap is the worst element kept, so an element which would not make it is rejected with one
+ * comparison, and an element which makes it replaces the root with one sift down. The heap is kept in an array which is
+ * re-used after {@link #clear()}. <br>
+ * Elements are ordered by the comparator: an element is better than another if it compares greater. <br>
+ *
+ * @param <E> element type
+ * @since 0.9.4
+ */
+public class BoundedHeap<E>
+{
+  private Object[] heap;
+  private int size;
+  private int bound;
+  private Comparator<? super E> comparator;
+
+  /**
+   * Added default constructor for deserializer
+   */
+  public BoundedHeap()
+  {
+  }
+
+  /**
+   * @param bound      maximum no. of elements.
+   * @param comparator order of the elements; greater is better.
+   */
+  public BoundedHeap(int bound, Comparator<? super E> comparator)
+  {
+    this.bound = bound;
+    this.comparator = comparator;
+    heap = new Object[Math.min(bound, 16)];
+  }
+
+  /**
+   * @param e element.
+   * @param admitEqual whether an element equal to the worst kept element replaces it when the heap is full.
+   * @return true if the element would be kept.
+   */
+  @SuppressWarnings("unchecked")
+  public boolean qualifies(E e, boolean admitEqual)
+  {
+    if (size < bound) {
+      return true;
+    }
+    int c = comparator.compare((E)heap[0], e);
+    return admitEqual ? c <= 0 : c < 0;
+  }
+
+  /**
+   * Offers an element.
+   *
+   * @param e          element.
+   * @param admitEqual whether an element equal to the worst kept element replaces it when the heap is full.
+   * @return the element which was dropped: e itself if it was rejected, the previous root if it replaced it, else
+   * null.
+   */
+  @SuppressWarnings("unchecked")
+  public E offer(E e, boolean admitEqual)
+  {
+    if (size < bound) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, Math.min(bound, size * 2));
+      }
+      siftUp(size++, e);
+      return null;
+    }
+    if (!qualifies(e, admitEqual)) {
+      return e;
+    }
+    E dropped = (E)heap[0];
+    siftDown(0, e);
+    return dropped;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void siftUp(int i, E e)
+  {
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (comparator.compare((E)heap[parent], e) <= 0) {
+        break;
+      }
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = e;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void siftDown(int i, E e)
+  {
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      if (child + 1 < size && comparator.compare((E)heap[child + 1], (E)heap[child]) < 0) {
+        child++;
+      }
+      if (comparator.compare(e, (E)heap[child]) <= 0) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = e;
+  }
+
+  /**
+   * @param n no. of elements.
+   * @return the best n elements, best first.
+   */
+  @SuppressWarnings("unchecked")
+  public ArrayList<E> getTop(int n)
+  {
+    E[] elements = (E[])Arrays.copyOf(heap, size);
+    Arrays.sort(elements, Collections.reverseOrder(comparator));
+    int depth = Math.min(n, size);
+    ArrayList<E> list = new ArrayList<E>(depth);
+    for (int i = 0; i < depth; i++) {
+      list.add(elements[i]);
+    }
+    return list;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  public int getBound()
+  {
+    return bound;
+  }
+
+  public void setBound(int bound)
+  {
+    this.bound = bound;
+  }
+
+  /**
+   * Removes all the elements, keeping the array.
+   */
+  public void clear()
+  {
+    Arrays.fill(heap, 0, size, null);
+    size = 0;
+  }
+}
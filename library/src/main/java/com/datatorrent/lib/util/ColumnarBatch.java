@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A batch of numeric values, optionally keyed, kept in columns. <p>
+ * Values are kept in a <code>double[]</code> and keys are dictionary encoded: every distinct key of the batch is
+ * kept once in the dictionary and every row refers to its key by the index in the dictionary. A batch is either
+ * keyed, when all its rows have keys, or not keyed. <br>
+ * Operators which process a batch per call amortize the per tuple dispatch and boxing over all the rows of the batch,
+ * and keyed operators look up the state of a key once per distinct key of the batch instead of once per row. <br>
+ * A batch which was emitted must not be modified. <br>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public class ColumnarBatch<K>
+{
+  private static final int DEFAULT_CAPACITY = 64;
+
+  private final ArrayList<K> dictionary = new ArrayList<K>();
+  private transient HashMap<K, Integer> dictionaryIndexes;
+  private int[] keyIndexes;
+  private double[] values;
+  private int size;
+
+  public ColumnarBatch()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity initial no. of rows.
+   */
+  public ColumnarBatch(int capacity)
+  {
+    values = new double[Math.max(1, capacity)];
+  }
+
+  private void ensureCapacity()
+  {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+      if (keyIndexes != null) {
+        keyIndexes = Arrays.copyOf(keyIndexes, size * 2);
+      }
+    }
+  }
+
+  /**
+   * Adds a row of a batch which is not keyed.
+   *
+   * @param value value.
+   */
+  public void add(double value)
+  {
+    Preconditions.checkState(keyIndexes == null, "keyed batch");
+    ensureCapacity();
+    values[size++] = value;
+  }
+
+  /**
+   * Adds the key to the dictionary if it is not present.
+   *
+   * @param key key.
+   * @return index of the key in the dictionary.
+   */
+  public int encode(K key)
+  {
+    Preconditions.checkState(keyIndexes != null || size == 0, "batch is not keyed");
+    if (dictionaryIndexes == null) {
+      dictionaryIndexes = new HashMap<K, Integer>();
+      for (int i = 0; i < dictionary.size(); i++) {
+        dictionaryIndexes.put(dictionary.get(i), i);
+      }
+    }
+    Integer index = dictionaryIndexes.get(key);
+    if (index == null) {
+      index = dictionary.size();
+      dictionary.add(key);
+      dictionaryIndexes.put(key, index);
+    }
+    if (keyIndexes == null) {
+      keyIndexes = new int[values.length];
+    }
+    return index;
+  }
+
+  /**
+   * Adds a row whose key was encoded with {@link #encode(Object)}.
+   *
+   * @param keyIndex index of the key in the dictionary.
+   * @param value    value.
+   */
+  public void add(int keyIndex, double value)
+  {
+    Preconditions.checkArgument(keyIndex >= 0 && keyIndex < dictionary.size(), "key index %s", keyIndex);
+    ensureCapacity();
+    keyIndexes[size] = keyIndex;
+    values[size++] = value;
+  }
+
+  /**
+   * Adds a keyed row.
+   *
+   * @param key   key.
+   * @param value value.
+   */
+  public void add(K key, double value)
+  {
+    add(encode(key), value);
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isKeyed()
+  {
+    return keyIndexes != null;
+  }
+
+  public double getValue(int row)
+  {
+    return values[row];
+  }
+
+  public int getKeyIndex(int row)
+  {
+    return keyIndexes[row];
+  }
+
+  public K getKey(int row)
+  {
+    return dictionary.get(keyIndexes[row]);
+  }
+
+  /**
+   * @return no. of distinct keys of the batch.
+   */
+  public int getDictionarySize()
+  {
+    return dictionary.size();
+  }
+
+  public K getDictionaryKey(int keyIndex)
+  {
+    return dictionary.get(keyIndex);
+  }
+
+  /**
+   * The values column, without a copy. Only the first {@link #size()} entries are rows of the batch.
+   *
+   * @return backing array of the values.
+   */
+  public double[] getValues()
+  {
+    return values;
+  }
+
+  /**
+   * The key indexes column, without a copy. Only the first {@link #size()} entries are rows of the batch.
+   *
+   * @return backing array of the key indexes or null if the batch is not keyed.
+   */
+  public int[] getKeyIndexes()
+  {
+    return keyIndexes;
+  }
+
+  /**
+   * Removes all the rows and keys so the batch can be re-used.
+   */
+  public void clear()
+  {
+    dictionary.clear();
+    dictionaryIndexes = null;
+    keyIndexes = null;
+    size = 0;
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder builder = new StringBuilder("ColumnarBatch{");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      if (keyIndexes != null) {
+        builder.append(getKey(i)).append('=');
+      }
+      builder.append(values[i]);
+    }
+    return builder.append('}').toString();
+  }
+}
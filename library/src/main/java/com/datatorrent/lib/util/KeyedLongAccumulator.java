@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates a long per key in a primitive array, typically a count. <p>
+ * Values are accessed by the index of the key: <br>
+ * <code>counts.increment(key)</code> or <code>counts.addAt(counts.index(key), 1)</code> <br>
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public class KeyedLongAccumulator<K> extends AbstractKeyedAccumulator<K>
+{
+  private long[] values;
+
+  public KeyedLongAccumulator()
+  {
+    this(16);
+  }
+
+  /**
+   * @param capacity expected no. of keys.
+   */
+  public KeyedLongAccumulator(int capacity)
+  {
+    super(capacity);
+    values = new long[Math.max(capacity, 1)];
+  }
+
+  /**
+   * Adds the value to the value of the key, which is added if it is not present.
+   *
+   * @param key   key.
+   * @param value value to add.
+   * @return index of the key.
+   */
+  public int add(K key, long value)
+  {
+    int index = index(key);
+    values[index] += value;
+    return index;
+  }
+
+  /**
+   * Adds one to the value of the key, which is added if it is not present.
+   *
+   * @param key key.
+   * @return index of the key.
+   */
+  public int increment(K key)
+  {
+    return add(key, 1);
+  }
+
+  public void addAt(int index, long value)
+  {
+    values[index] += value;
+  }
+
+  public long get(int index)
+  {
+    return values[index];
+  }
+
+  public void set(int index, long value)
+  {
+    values[index] = value;
+  }
+
+  @Override
+  protected void growValues(int capacity)
+  {
+    values = Arrays.copyOf(values, capacity);
+  }
+
+  @Override
+  protected void clearValues(int size)
+  {
+    Arrays.fill(values, 0, size, 0);
+  }
+}
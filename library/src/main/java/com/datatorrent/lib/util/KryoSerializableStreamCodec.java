@@ -1,8 +1,5 @@
 package com.datatorrent.lib.util;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
@@ -22,6 +19,11 @@ import com.datatorrent.common.util.Slice;
 public class KryoSerializableStreamCodec<T> implements StreamCodec<T>
 {
   private final Kryo kryo;
+  /**
+   * Buffers are re-used for every tuple; the output grows as needed.
+   */
+  private final Output output = new Output(4096, -1);
+  private final Input input = new Input();
 
   public KryoSerializableStreamCodec()
   {
@@ -55,19 +57,17 @@ public class KryoSerializableStreamCodec<T> implements StreamCodec<T>
   @Override
   public T fromByteArray(Slice fragment)
   {
-    ByteArrayInputStream is = new ByteArrayInputStream(fragment.buffer, fragment.offset, fragment.length);
-    Input input = new Input(is);
+    input.setBuffer(fragment.buffer, fragment.offset, fragment.length);
     return (T) kryo.readClassAndObject(input);
   }
 
   @Override
   public Slice toByteArray(T info)
   {
-    ByteArrayOutputStream os = new ByteArrayOutputStream();
-    Output output = new Output(os);
+    output.clear();
     kryo.writeClassAndObject(output, info);
-    output.flush();
-    return new Slice(os.toByteArray(), 0, os.toByteArray().length);
+    byte[] bytes = output.toBytes();
+    return new Slice(bytes, 0, bytes.length);
   }
 
   @Override
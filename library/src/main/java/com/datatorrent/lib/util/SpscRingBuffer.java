@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded lock free queue for exactly one producer thread and one consumer thread. <p>
+ * The elements are kept in an array ring whose size is a power of 2. The producer and the consumer each publish their
+ * position with an ordered write and cache the position of the other side, so a thread reads the other position only
+ * when the ring looks full or empty. {@link #drainTo(Object[], int, int)} moves a batch of elements and publishes the
+ * consumer position once per batch. <br>
+ * Using the queue from more than one producer or more than one consumer thread corrupts it. <br>
+ *
+ * @param <E> element type
+ * @since 0.9.4
+ */
+public class SpscRingBuffer<E>
+{
+  private static final long PARK_NANOS = 100000L;
+
+  private final Object[] buffer;
+  private final int mask;
+  /**
+   * Index of the next element to take, written by the consumer.
+   */
+  private final AtomicLong head = new AtomicLong();
+  /**
+   * Index of the next element to put, written by the producer.
+   */
+  private final AtomicLong tail = new AtomicLong();
+  private long headCache;
+  private long tailCache;
+
+  /**
+   * @param capacity minimum no. of elements; rounded up to a power of 2.
+   */
+  public SpscRingBuffer(int capacity)
+  {
+    Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity %s", capacity);
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    buffer = new Object[size];
+    mask = size - 1;
+  }
+
+  public int capacity()
+  {
+    return buffer.length;
+  }
+
+  /**
+   * Adds the element if the ring is not full. Called by the producer.
+   *
+   * @param e element.
+   * @return false if the ring is full.
+   */
+  public boolean offer(E e)
+  {
+    Preconditions.checkNotNull(e);
+    long t = tail.get();
+    if (t - headCache >= buffer.length) {
+      headCache = head.get();
+      if (t - headCache >= buffer.length) {
+        return false;
+      }
+    }
+    buffer[(int)t & mask] = e;
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Adds the element, waiting while the ring is full. Called by the producer.
+   *
+   * @param e element.
+   * @throws InterruptedException if the producer is interrupted while waiting.
+   */
+  public void put(E e) throws InterruptedException
+  {
+    while (!offer(e)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  /**
+   * Takes the next element. Called by the consumer.
+   *
+   * @return the next element or null if the ring is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public E poll()
+  {
+    long h = head.get();
+    if (h >= tailCache) {
+      tailCache = tail.get();
+      if (h >= tailCache) {
+        return null;
+      }
+    }
+    int index = (int)h & mask;
+    E e = (E)buffer[index];
+    buffer[index] = null;
+    head.lazySet(h + 1);
+    return e;
+  }
+
+  /**
+   * Moves the available elements, up to max, to the array. Called by the consumer.
+   *
+   * @param elements array to fill.
+   * @param offset   index of the array for the first element.
+   * @param max      maximum no. of elements to move.
+   * @return no. of elements moved.
+   */
+  @SuppressWarnings("unchecked")
+  public int drainTo(E[] elements, int offset, int max)
+  {
+    long h = head.get();
+    if (h + max > tailCache) {
+      tailCache = tail.get();
+    }
+    int count = (int)Math.min(max, tailCache - h);
+    for (int i = 0; i < count; i++) {
+      int index = (int)(h + i) & mask;
+      elements[offset + i] = (E)buffer[index];
+      buffer[index] = null;
+    }
+    if (count > 0) {
+      head.lazySet(h + count);
+    }
+    return count;
+  }
+
+  /**
+   * @return no. of elements in the ring; exact only when called while the other side is idle.
+   */
+  public int size()
+  {
+    long h = head.get();
+    return (int)(tail.get() - h);
+  }
+
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  /**
+   * Removes all the elements. Called by the consumer.
+   */
+  public void clear()
+  {
+    while (poll() != null) {
+    }
+  }
+}
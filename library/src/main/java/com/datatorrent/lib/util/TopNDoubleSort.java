@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.Arrays;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Gives top N doubles in ascending or descending order without boxing. <p>
+ * Same as {@link TopNSort} for primitive values: the values are kept in a bounded binary heap in a <code>double[]</code>
+ * whose root is the worst value kept, so a value which does not make it is rejected with one comparison. The array is
+ * re-used after {@link #clear()}. <br>
+ *
+ * @since 0.9.4
+ */
+public class TopNDoubleSort
+{
+  @Min(1)
+  private int qbound;
+  private boolean ascending;
+  private double[] heap;
+  private int size;
+
+  /**
+   * Added default constructor for deserializer
+   */
+  public TopNDoubleSort()
+  {
+  }
+
+  /**
+   * @param bound maximum no. of values kept.
+   * @param flag  true for the largest values, false for the smallest values.
+   */
+  public TopNDoubleSort(int bound, boolean flag)
+  {
+    qbound = bound;
+    ascending = flag;
+    heap = new double[Math.min(bound, 16)];
+  }
+
+  /**
+   * Values are stored negated when the smallest are kept, so the heap is always a min heap.
+   */
+  private double key(double value)
+  {
+    return ascending ? value : -value;
+  }
+
+  /**
+   * Adds a value.
+   *
+   * @param value value.
+   * @return true if the value is kept.
+   */
+  public boolean offer(double value)
+  {
+    double k = key(value);
+    if (size < qbound) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, Math.min(qbound, size * 2));
+      }
+      int i = size++;
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (heap[parent] <= k) {
+          break;
+        }
+        heap[i] = heap[parent];
+        i = parent;
+      }
+      heap[i] = k;
+      return true;
+    }
+    if (k < heap[0]) {
+      return false;
+    }
+    int i = 0;
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      if (child + 1 < size && heap[child + 1] < heap[child]) {
+        child++;
+      }
+      if (k <= heap[child]) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = k;
+    return true;
+  }
+
+  /**
+   * Returns the top n values, best first, and clears the values.
+   *
+   * @param n no. of values.
+   * @return top n values.
+   */
+  public double[] getTopN(int n)
+  {
+    double[] sorted = Arrays.copyOf(heap, size);
+    Arrays.sort(sorted);
+    int depth = Math.min(n, size);
+    double[] top = new double[depth];
+    for (int i = 0; i < depth; i++) {
+      top[i] = key(sorted[size - 1 - i]);
+    }
+    clear();
+    return top;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  public int getQbound()
+  {
+    return qbound;
+  }
+
+  public void clear()
+  {
+    size = 0;
+  }
+}
@@ -16,10 +16,7 @@
 package com.datatorrent.lib.util;
 
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import javax.validation.constraints.Min;
 
@@ -29,6 +26,8 @@ import javax.validation.constraints.Min;
  * This class is more efficient that just using PriorityQueue and then picking up the top N. The class works by not even inserting objects
  * that would not make it to top N. There is no API to look at top of the list at any given time as per design. The aim is for users to only take the topN
  * once all the inserts are done<br>
+ * Objects are kept in a {@link BoundedHeap} of qbound objects whose root is the worst object kept, so an object which does not make it is
+ * rejected with one comparison and one which does replaces the root.<br>
  *
  * @since 0.3.2
  */
@@ -37,7 +36,7 @@ public class TopNSort<E>
   @Min(1)
   int qbound = Integer.MAX_VALUE;
   boolean ascending = true;
-  PriorityQueue<E> q = null;
+  BoundedHeap<E> q = null;
 
   /**
    * getter function for qbound
@@ -56,6 +55,9 @@ public class TopNSort<E>
   public void setQbound(int i)
   {
     qbound = i;
+    if (q != null) {
+      q.setBound(i);
+    }
   }
 
   /**
@@ -67,15 +69,14 @@ public class TopNSort<E>
 
   /**
    * Constructs and sets values accordingly
-   * @param initialCapacity
+   * @param initialCapacity ignored, the heap grows up to bound
    * @param bound
    * @param flag
    */
   public TopNSort(int initialCapacity, int bound, boolean flag)
   {
     ascending = flag;
-    // Ascending use of pqueue needs a descending comparator
-    q = new PriorityQueue<E>(initialCapacity, new ReversibleComparator<E>(flag));
+    q = new BoundedHeap<E>(bound, new ReversibleComparator<E>(flag));
     qbound = bound;
   }
 
@@ -116,27 +117,24 @@ public class TopNSort<E>
   }
 
   /**
-   * Returns topN objects
+   * Returns topN objects and clears the queue
    * @param n
    * @return ArrayList of top N object
    */
-  @SuppressWarnings({ "rawtypes", "unchecked" })
   public List<E> getTopN(int n)
   {
-    List<E> list = new ArrayList<E>();
-    E v;
-    int j = 0;
-    while (((v = q.poll()) != null) && (j < n)) {
-      list.add(v);
-      j++;
-    }
-    if (list.isEmpty()) {
-      return list;
-    }
-  
-    Collections.reverse(list);
+    List<E> list = q.getTop(n);
+    q.clear();
     return list;
-    //return ret;
+  }
+
+  /**
+   * @param e object
+   * @return true if the object would make it to the top N
+   */
+  public boolean qualifies(E e)
+  {
+    return q.qualifies(e, true);
   }
 
   /**
@@ -144,27 +142,8 @@ public class TopNSort<E>
    * @param e object to be added
    * @return true is offer() succeeds
    */
-  @SuppressWarnings("unchecked")
   public boolean offer(E e)
   {
-    if (q.size() < qbound) {
-      return q.offer(e);
-    }
-
-    boolean ret = false;
-    boolean insert;
-    Comparable<? super E> head = (Comparable<? super E>)q.peek();
-
-    if (ascending) { // means head is the lowest value due to inversion
-      insert = head.compareTo(e) <= 0; // e >= head
-    }
-    else { // means head is the highest value due to inversion
-      insert = head.compareTo(e) >= 0; // head is <= e
-    }
-    if (insert && q.offer(e)) {
-      ret = true;
-      q.poll();
-    }
-    return ret;
+    return q.offer(e, true) != e;
   }
 }
@@ -18,7 +18,6 @@ package com.datatorrent.lib.util;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.PriorityQueue;
 import javax.validation.constraints.Min;
 import org.apache.commons.lang.mutable.MutableInt;
 
@@ -28,6 +27,8 @@ import org.apache.commons.lang.mutable.MutableInt;
  * This class is more efficient that just using PriorityQueue and then picking up the top N. The class works by not even inserting objects
  * that would not make it to top N. There is no API to look at top of the list at any given time as per design. The aim is for users to only take the topN
  * once all the inserts are done<br>
+ * Objects are kept in a {@link BoundedHeap} of qbound objects whose root is the worst object kept, so an object which does not make it is
+ * rejected with one comparison and one which does replaces the root.<br>
  *
  * @since 0.3.2
  */
@@ -37,7 +38,7 @@ public class TopNUniqueSort<E>
   int qbound = Integer.MAX_VALUE;
   boolean ascending = true;
   HashMap<E, MutableInt> hmap = null;
-  PriorityQueue<E> q = null;
+  BoundedHeap<E> q = null;
 
   /**
    * getter function for qbound
@@ -56,6 +57,9 @@ public class TopNUniqueSort<E>
   public void setQbound(int i)
   {
     qbound = i;
+    if (q != null) {
+      q.setBound(i);
+    }
   }
 
 
@@ -68,15 +72,14 @@ public class TopNUniqueSort<E>
 
   /**
    * Constructs and sets values accordingly
-   * @param initialCapacity
+   * @param initialCapacity ignored, the heap grows up to bound
    * @param bound
    * @param flag
    */
   public TopNUniqueSort(int initialCapacity, int bound, boolean flag)
   {
     ascending = flag;
-    // Ascending use of pqueue needs a descending comparator
-    q = new PriorityQueue<E>(initialCapacity, new ReversibleComparator<E>(flag));
+    q = new BoundedHeap<E>(bound, new ReversibleComparator<E>(flag));
     qbound = bound;
     hmap = new HashMap<E, MutableInt>();
   }
@@ -106,6 +109,7 @@ public class TopNUniqueSort<E>
   public void clear()
   {
     q.clear();
+    hmap.clear();
   }
 
   /**
@@ -118,79 +122,55 @@ public class TopNUniqueSort<E>
   }
 
   /**
-   * Returns topN objects
+   * Returns topN objects with their counts and clears the queue
    * @param n
    * @return Top N in an ArrayList
    */
-  @SuppressWarnings({ "rawtypes", "unchecked" })
-  public ArrayList getTopN(int n)
+  public ArrayList<HashMap<E, Integer>> getTopN(int n)
   {
-    ArrayList list = new ArrayList();
-    E v;
-    int j = 0;
-    while (((v = q.poll()) != null) && j < n) {
-      list.add(v);
-      j++;
-    }
+    ArrayList<E> list = q.getTop(n);
     ArrayList<HashMap<E,Integer>> ret = new ArrayList<HashMap<E,Integer>>(list.size());
-    int size = list.size();
-    int depth = size;
-    if (depth > n) {
-      depth = n;
-    }
-    for (int i = 0; i < depth; i++) {
-      E o = (E) list.get(size - i - 1);
+    for (E o : list) {
       HashMap<E, Integer> val = new HashMap<E, Integer>(1);
-      MutableInt ival = hmap.get(o);
-      val.put(o, ival.toInteger());
+      val.put(o, hmap.get(o).toInteger());
       ret.add(val);
     }
+    clear();
     return ret;
   }
 
-  //
-  // If ascending, put the order in reverse
-  //
   /**
    * Adds object
    * @param e object to be added
    * @return true if offer() succeeds
    */
-  @SuppressWarnings("unchecked")
   public boolean offer(E e)
+  {
+    return offer(e, 1);
+  }
+
+  /**
+   * Adds object with a count, e.g. the count of the object in a partition
+   * @param e object to be added
+   * @param count no. of occurrences of the object
+   * @return true if offer() succeeds
+   */
+  public boolean offer(E e, int count)
   {
     MutableInt ival = hmap.get(e);
     if (ival != null) { // already exists, so no insertion
-      ival.increment();
+      ival.add(count);
       return true;
     }
-    if (q.size() < qbound) {
-      if (ival == null) {
-        hmap.put(e, new MutableInt(1));
-      }
-      return q.offer(e);
-    }
-
-    boolean ret = false;
-    boolean insert;
-    Comparable<? super E> head = (Comparable<? super E>) q.peek();
-
-    if (ascending) { // means head is the lowest value due to inversion
-      insert = head.compareTo(e) < 0; // e > head
-    }
-    else { // means head is the highest value due to inversion
-      insert = head.compareTo(e) > 0; // head is < e
+    // object e makes it, someone else may get dropped; the dropped object will never make it to back in anymore
+    E drop = q.offer(e, false);
+    if (drop == e) {
+      return false;
     }
-
-    // object e makes it, someone else gets dropped
-    if (insert && q.offer(e)) {
-      hmap.put(e, new MutableInt(1));
-      ret = true;
-
-      // the dropped object will never make it to back in anymore
-      E drop = q.poll();
+    hmap.put(e, new MutableInt(count));
+    if (drop != null) {
       hmap.remove(drop);
     }
-    return ret;
+    return true;
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.mutable.MutableDouble;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator.Unifier;
+
+/**
+ * Combiner for an output port that emits keyed {@link ColumnarBatch}es. The values of every key in the batches of all
+ * the partitions are combined by sum, min or max and one batch with a row per key is emitted at the end of the
+ * window.
+ *
+ * @param <K> key type
+ * @since 0.9.4
+ */
+public class UnifierColumnarBatch<K> extends BaseOperator implements Unifier<ColumnarBatch<K>>
+{
+  public enum Combiner
+  {
+    SUM, MIN, MAX
+  }
+
+  private Combiner combiner = Combiner.SUM;
+  private HashMap<K, MutableDouble> mergedTuple = new HashMap<K, MutableDouble>();
+  private transient MutableDouble[] batchValues = new MutableDouble[16];
+  public final transient DefaultOutputPort<ColumnarBatch<K>> mergedport = new DefaultOutputPort<ColumnarBatch<K>>();
+
+  public UnifierColumnarBatch()
+  {
+  }
+
+  public UnifierColumnarBatch(Combiner combiner)
+  {
+    this.combiner = combiner;
+  }
+
+  public Combiner getCombiner()
+  {
+    return combiner;
+  }
+
+  public void setCombiner(Combiner combiner)
+  {
+    this.combiner = combiner;
+  }
+
+  /**
+   * Combines the rows of the batch with the values so far.
+   *
+   * @param tuple keyed batch from a partition.
+   */
+  @Override
+  public void process(ColumnarBatch<K> tuple)
+  {
+    int dictionarySize = tuple.getDictionarySize();
+    if (batchValues.length < dictionarySize) {
+      batchValues = new MutableDouble[Math.max(dictionarySize, batchValues.length * 2)];
+    }
+    for (int i = 0; i < dictionarySize; i++) {
+      batchValues[i] = mergedTuple.get(tuple.getDictionaryKey(i));
+    }
+    int[] keyIndexes = tuple.getKeyIndexes();
+    double[] values = tuple.getValues();
+    for (int i = 0; i < tuple.size(); i++) {
+      int keyIndex = keyIndexes[i];
+      MutableDouble value = batchValues[keyIndex];
+      if (value == null) {
+        value = new MutableDouble(values[i]);
+        batchValues[keyIndex] = value;
+        mergedTuple.put(tuple.getDictionaryKey(keyIndex), value);
+      }
+      else if (combiner == Combiner.SUM) {
+        value.add(values[i]);
+      }
+      else if (combiner == Combiner.MIN ? values[i] < value.doubleValue() : values[i] > value.doubleValue()) {
+        value.setValue(values[i]);
+      }
+    }
+    for (int i = 0; i < dictionarySize; i++) {
+      batchValues[i] = null;
+    }
+  }
+
+  /**
+   * Emits the combined batch if it is not empty.
+   */
+  @Override
+  public void endWindow()
+  {
+    if (!mergedTuple.isEmpty()) {
+      ColumnarBatch<K> batch = new ColumnarBatch<K>(mergedTuple.size());
+      for (Map.Entry<K, MutableDouble> e : mergedTuple.entrySet()) {
+        batch.add(e.getKey(), e.getValue().doubleValue());
+      }
+      mergedport.emit(batch);
+      mergedTuple = new HashMap<K, MutableDouble>();
+    }
+  }
+}
@@ -32,6 +32,8 @@ import java.util.Map;
 public class UnifierHashMapInteger<K> implements Unifier<HashMap<K, Integer>>
 {
   public HashMap<K, Integer> mergedTuple = new HashMap<K, Integer>();
+  //counts of the window, added to mergedTuple at the end of the window
+  private KeyedLongAccumulator<K> counts = new KeyedLongAccumulator<K>();
   public final transient DefaultOutputPort<HashMap<K, Integer>> mergedport = new DefaultOutputPort<HashMap<K, Integer>>();
 
   /**
@@ -42,14 +44,7 @@ public class UnifierHashMapInteger<K> implements Unifier<HashMap<K, Integer>>
   public void process(HashMap<K, Integer> tuple)
   {
     for (Map.Entry<K, Integer> e: tuple.entrySet()) {
-      Integer val = mergedTuple.get(e.getKey());
-      if (val == null) {
-        val = e.getValue();
-      }
-      else {
-        val += e.getValue();
-      }
-      mergedTuple.put(e.getKey(), val);
+      counts.add(e.getKey(), e.getValue());
     }
   }
 
@@ -69,6 +64,12 @@ public class UnifierHashMapInteger<K> implements Unifier<HashMap<K, Integer>>
   @Override
   public void endWindow()
   {
+    for (int i = 0; i < counts.size(); i++) {
+      K key = counts.getKey(i);
+      Integer val = mergedTuple.get(key);
+      mergedTuple.put(key, val == null ? (int)counts.get(i) : val + (int)counts.get(i));
+    }
+    counts.clear();
     if (!mergedTuple.isEmpty())  {
       mergedport.emit(mergedTuple);
       mergedTuple = new HashMap<K, Integer>();
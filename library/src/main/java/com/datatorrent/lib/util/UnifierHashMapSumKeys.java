@@ -32,20 +32,15 @@ import java.util.Map;
 public class UnifierHashMapSumKeys<K, V extends Number> extends BaseNumberKeyValueOperator<K,V> implements Unifier<HashMap<K, V>>
 {
   public HashMap<K, Double> mergedTuple = new HashMap<K, Double>();
+  //sums of the window, added to mergedTuple at the end of the window
+  private KeyedDoubleAccumulator<K> sums = new KeyedDoubleAccumulator<K>();
   public final transient DefaultOutputPort<HashMap<K, V>> mergedport = new DefaultOutputPort<HashMap<K, V>>();
 
   @Override
   public void process(HashMap<K, V> tuple)
   {
     for (Map.Entry<K, V> e: tuple.entrySet()) {
-      Double val = mergedTuple.get(e.getKey());
-      if (val == null) {
-        mergedTuple.put(e.getKey(), e.getValue().doubleValue());
-      }
-      else {
-        val += e.getValue().doubleValue();
-        mergedTuple.put(e.getKey(), val);
-      }
+      sums.add(e.getKey(), e.getValue().doubleValue());
     }
   }
 
@@ -55,8 +50,14 @@ public class UnifierHashMapSumKeys<K, V extends Number> extends BaseNumberKeyVal
   @Override
   public void endWindow()
   {
+    for (int i = 0; i < sums.size(); i++) {
+      K key = sums.getKey(i);
+      Double val = mergedTuple.get(key);
+      mergedTuple.put(key, val == null ? sums.get(i) : val + sums.get(i));
+    }
+    sums.clear();
     if (!mergedTuple.isEmpty()) {
-      HashMap<K, V> stuples = new HashMap<K, V>();
+      HashMap<K, V> stuples = new HashMap<K, V>(mergedTuple.size() * 2);
       for (Map.Entry<K, Double> e: mergedTuple.entrySet()) {
         stuples.put(e.getKey(), getValue(e.getValue()));
       }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.algo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Functional tests for {@link DistinctCountEstimator}, {@link UniqueValueCountEstimator}, {@link HeavyHitters} and
+ * their sketches.
+ */
+public class SketchOperatorsTest
+{
+  @Test
+  public void testHyperLogLog()
+  {
+    HyperLogLog sketch = new HyperLogLog(HyperLogLog.precisionFor(0.02));
+    HyperLogLog[] partitions = new HyperLogLog[] { new HyperLogLog(sketch.getPrecision()), new HyperLogLog(sketch.getPrecision()) };
+    Assert.assertEquals("empty", 0, sketch.cardinality());
+    int n = 500000;
+    for (int i = 0; i < n; i++) {
+      sketch.add("user" + i);
+      sketch.add("user" + i);
+      partitions[i % 2].add("user" + i);
+    }
+    Assert.assertEquals("cardinality", n, sketch.cardinality(), n * 0.06);
+    partitions[0].merge(partitions[1]);
+    Assert.assertEquals("merged cardinality", sketch.cardinality(), partitions[0].cardinality());
+
+    HyperLogLog small = new HyperLogLog();
+    for (int i = 0; i < 100; i++) {
+      small.add(i);
+    }
+    Assert.assertEquals("small cardinality", 100, small.cardinality(), 3);
+  }
+
+  @Test
+  public void testHeavyHitters()
+  {
+    Random random = new Random(3);
+    HeavyHitters.Summary<String> summary = new HeavyHitters.Summary<String>(0.01, 0.01);
+    HeavyHitters.Summary<String> partition1 = new HeavyHitters.Summary<String>(0.01, 0.01);
+    HeavyHitters.Summary<String> partition2 = new HeavyHitters.Summary<String>(0.01, 0.01);
+    Map<String, Long> exact = new HashMap<String, Long>();
+    int n = 200000;
+    for (int i = 0; i < n; i++) {
+      // zipf like: url0 is the most frequent
+      String url = "url" + (int)Math.floor(Math.pow(1000, random.nextDouble()) - 1);
+      Long c = exact.get(url);
+      exact.put(url, c == null ? 1 : c + 1);
+      summary.add(url, 1);
+      (i % 2 == 0 ? partition1 : partition2).add(url, 1);
+    }
+    partition1.merge(partition2);
+    for (HeavyHitters.Summary<String> s : new HeavyHitters.Summary[] { summary, partition1 }) {
+      List<Map.Entry<String, Long>> top = s.top(3);
+      Assert.assertEquals("k", 3, top.size());
+      Assert.assertEquals("most frequent", "url0", top.get(0).getKey());
+      for (Map.Entry<String, Long> e : top) {
+        long count = exact.get(e.getKey());
+        Assert.assertTrue("over estimate", e.getValue() >= count);
+        Assert.assertTrue("error bound", e.getValue() - count <= 0.01 * n);
+      }
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testNodeProcessing()
+  {
+    DistinctCountEstimator<Integer> distinct = new DistinctCountEstimator<Integer>();
+    CollectorTestSink<Object> countSink = new CollectorTestSink<Object>();
+    distinct.count.setSink(countSink);
+    HeavyHitters<Integer> heavyHitters = new HeavyHitters<Integer>();
+    heavyHitters.setK(2);
+    CollectorTestSink<Object> topSink = new CollectorTestSink<Object>();
+    heavyHitters.top.setSink(topSink);
+    UniqueValueCountEstimator<String> unique = new UniqueValueCountEstimator<String>();
+    CollectorTestSink<Object> uniqueSink = new CollectorTestSink<Object>();
+    unique.count.setSink(uniqueSink);
+
+    distinct.beginWindow(0);
+    heavyHitters.beginWindow(0);
+    unique.beginWindow(0);
+    for (int i = 0; i < 1000; i++) {
+      distinct.data.process(i % 50);
+      heavyHitters.data.process(i % 10 < 5 ? 1 : (i % 10 < 8 ? 2 : i));
+      unique.data.process(new KeyValPair<String, Object>(i % 2 == 0 ? "even" : "odd", i % 20));
+    }
+    distinct.endWindow();
+    heavyHitters.endWindow();
+    unique.endWindow();
+
+    Assert.assertEquals("distinct count", 50L, countSink.collectedTuples.get(0));
+    HashMap<Integer, Long> top = (HashMap<Integer, Long>)topSink.collectedTuples.get(0);
+    Assert.assertEquals("heavy hitters", 2, top.size());
+    Assert.assertEquals("count of 1", 500L, top.get(1).longValue());
+    Assert.assertEquals("count of 2", 300L, top.get(2).longValue());
+    Assert.assertEquals("no. of keys", 2, uniqueSink.collectedTuples.size());
+    for (Object o : uniqueSink.collectedTuples) {
+      Assert.assertEquals("unique values", 10L, ((KeyValPair<String, Long>)o).getValue().longValue());
+    }
+  }
+}
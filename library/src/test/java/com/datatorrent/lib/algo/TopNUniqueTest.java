@@ -117,4 +117,46 @@ public class TopNUniqueTest
     }
     log.debug("Done testing round\n");
   }
+
+  /**
+   * Test unifier merges top N of partitions and adds counts
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testUnifier()
+  {
+    TopNUnique<String, Integer> oper = new TopNUnique<String, Integer>();
+    oper.setN(2);
+    TopNUnique<String, Integer> unifier = (TopNUnique<String, Integer>)oper.top.getUnifier();
+    CollectorTestSink sortSink = new CollectorTestSink();
+    unifier.top.setSink(sortSink);
+
+    unifier.beginWindow(0);
+    HashMap<String, ArrayList<HashMap<Integer, Integer>>> partition1 = new HashMap<String, ArrayList<HashMap<Integer, Integer>>>();
+    ArrayList<HashMap<Integer, Integer>> values = new ArrayList<HashMap<Integer, Integer>>();
+    values.add(count(10, 2));
+    values.add(count(7, 1));
+    partition1.put("a", values);
+    unifier.process(partition1);
+    HashMap<String, ArrayList<HashMap<Integer, Integer>>> partition2 = new HashMap<String, ArrayList<HashMap<Integer, Integer>>>();
+    values = new ArrayList<HashMap<Integer, Integer>>();
+    values.add(count(10, 3));
+    values.add(count(8, 1));
+    partition2.put("a", values);
+    unifier.process(partition2);
+    unifier.endWindow();
+
+    Assert.assertEquals("number emitted tuples", 1, sortSink.collectedTuples.size());
+    ArrayList<HashMap<Integer, Integer>> top = ((HashMap<String, ArrayList<HashMap<Integer, Integer>>>)sortSink.collectedTuples.get(0)).get("a");
+    Assert.assertEquals("top N", 2, top.size());
+    Assert.assertEquals("top value", count(10, 5), top.get(0));
+    Assert.assertEquals("second value", count(8, 1), top.get(1));
+  }
+
+  private static HashMap<Integer, Integer> count(int value, int count)
+  {
+    HashMap<Integer, Integer> ret = new HashMap<Integer, Integer>(1);
+    ret.put(value, count);
+    return ret;
+  }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Tests for {@link BucketBloomFilter}
+ */
+public class BucketBloomFilterTest
+{
+  @Test
+  public void testMembership()
+  {
+    BucketBloomFilter filter = new BucketBloomFilter(5, 10000, 0.01);
+    for (long i = 0; i < 10000; i++) {
+      filter.put(i);
+    }
+    for (long i = 0; i < 10000; i++) {
+      Assert.assertTrue("key " + i, filter.mightContain(i));
+    }
+    int falsePositives = 0;
+    for (long i = 10000; i < 20000; i++) {
+      if (filter.mightContain(i)) {
+        falsePositives++;
+      }
+    }
+    Assert.assertTrue("false positives " + falsePositives, falsePositives < 300);
+  }
+
+  @Test
+  public void testMergeAndSerialization()
+  {
+    BucketBloomFilter filter1 = new BucketBloomFilter(5, 1000, 0.01);
+    BucketBloomFilter filter2 = new BucketBloomFilter(5, 1000, 0.01);
+    filter1.put(new DummyEvent(1, 100));
+    filter2.put(new DummyEvent(2, 100));
+    filter1.merge(filter2);
+
+    Output output = new Output(1024, -1);
+    filter1.writeTo(output);
+    BucketBloomFilter copy = BucketBloomFilter.readFrom(new Input(output.toBytes()));
+
+    Assert.assertEquals("bucket key", 5, copy.getBucketKey());
+    Assert.assertTrue(copy.mightContain(new DummyEvent(1, 100)));
+    Assert.assertTrue(copy.mightContain(new DummyEvent(2, 100)));
+  }
+}
@@ -15,9 +15,15 @@
  */
 package com.datatorrent.lib.bucket;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.Exchanger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -26,8 +32,12 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import com.datatorrent.api.Stats.OperatorStats.CustomStats;
+
 import com.datatorrent.lib.helper.OperatorContextTestHelper;
 
 /**
@@ -36,7 +46,6 @@ import com.datatorrent.lib.helper.OperatorContextTestHelper;
 public class BucketManagerTest
 {
   private static final String APPLICATION_PATH_PREFIX = "target/BucketManagerTest";
-  private final static Exchanger<Long> eventBucketExchanger = new Exchanger<Long>();
 
   private static BucketManager<DummyEvent> manager;
   private static String applicationPath;
@@ -46,16 +55,14 @@ public class BucketManagerTest
 
   private static class TestStorageManagerListener implements BucketManager.Listener
   {
+    final List<Long> loadedBuckets = Lists.newArrayList();
+    Thread callbackThread;
 
     @Override
     public void bucketLoaded(long bucketKey)
     {
-      try {
-        eventBucketExchanger.exchange(bucketKey);
-      }
-      catch (InterruptedException e) {
-        throw new RuntimeException(e);
-      }
+      loadedBuckets.add(bucketKey);
+      callbackThread = Thread.currentThread();
     }
 
     @Override
@@ -76,9 +83,9 @@ public class BucketManagerTest
   public void testBucketEviction() throws IOException, InterruptedException
   {
     manager.loadBucketData(new BucketManager.LoadCommand(bucket1));
-    eventBucketExchanger.exchange(null);
+    manager.blockUntilAllBucketsLoaded();
     manager.loadBucketData(new BucketManager.LoadCommand(bucket2));
-    eventBucketExchanger.exchange(null);
+    manager.blockUntilAllBucketsLoaded();
     Assert.assertTrue(manager.getBucket(bucket1) == null);
     Assert.assertNotNull(manager.getBucket(bucket2));
   }
@@ -90,11 +97,207 @@ public class BucketManagerTest
     testRound(0);
   }
 
+  @Test
+  public void testBloomFiltersStoredOnCheckpoint() throws Exception
+  {
+    String path = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX);
+    HdfsBucketStore<DummyEvent> store = new HdfsBucketStore<DummyEvent>(path, 0, 50, Sets.newHashSet(0), 0);
+    BucketManager<DummyEvent> filterManager = new BucketManager<DummyEvent>(true, 10, 10, 60000);
+    filterManager.setUseBloomFilters(true);
+    filterManager.setBloomFilterExpectedNoOfKeys(1000);
+    filterManager.startService(store, new TestStorageManagerListener());
+    try {
+      long now = System.currentTimeMillis();
+      filterManager.newEvent(1, new DummyEvent(1, now));
+      filterManager.endWindow(0);
+      Assert.assertFalse("filter stored before checkpoint", new File(path, HdfsBucketStore.BLOOM_FILTERS_SUBDIR).exists());
+
+      //bucket 11 expires bucket 1 which is at the same index
+      filterManager.newEvent(11, new DummyEvent(2, now));
+      filterManager.endWindow(1);
+      filterManager.checkpointed(1);
+      Assert.assertTrue("filter", new File(path, HdfsBucketStore.BLOOM_FILTERS_SUBDIR + "/1/1/0").exists());
+      Assert.assertFalse("expired data", new File(path, HdfsBucketStore.BUCKETS_SUBDIR + "/1/0").exists());
+      Assert.assertTrue("data", new File(path, HdfsBucketStore.BUCKETS_SUBDIR + "/1/1/0").exists());
+    }
+    finally {
+      filterManager.shutdownService();
+      FileUtils.deleteDirectory(new File(path));
+    }
+  }
+
+  @Test
+  public void testParallelLoads() throws Exception
+  {
+    //both fetches have to be in progress at the same time to complete
+    final CountDownLatch fetchesInProgress = new CountDownLatch(2);
+    TestStore store = new TestStore()
+    {
+      @Override
+      public Map<Object, DummyEvent> fetchBucket(int bucketIdx) throws Exception
+      {
+        fetchesInProgress.countDown();
+        if (!fetchesInProgress.await(10, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("fetches are not parallel");
+        }
+        return super.fetchBucket(bucketIdx);
+      }
+    };
+    TestStorageManagerListener listener = new TestStorageManagerListener();
+    BucketManager<DummyEvent> loader = new BucketManager<DummyEvent>(true, 10, 10, 60000);
+    loader.setNoOfLoaderThreads(2);
+    loader.startService(store, listener);
+    try {
+      loader.loadBucketData(new BucketManager.LoadCommand(1));
+      loader.loadBucketData(new BucketManager.LoadCommand(2));
+      loader.blockUntilAllBucketsLoaded();
+      Assert.assertEquals("loaded buckets", Sets.newHashSet(1L, 2L), Sets.newHashSet(listener.loadedBuckets));
+      Assert.assertSame("listener thread", Thread.currentThread(), listener.callbackThread);
+      Assert.assertNotNull(loader.getBucket(1));
+      Assert.assertNotNull(loader.getBucket(2));
+    }
+    finally {
+      loader.shutdownService();
+    }
+  }
+
+  @Test
+  public void testDuplicateLoadRequests() throws Exception
+  {
+    final CountDownLatch release = new CountDownLatch(1);
+    TestStore store = new TestStore()
+    {
+      @Override
+      public Map<Object, DummyEvent> fetchBucket(int bucketIdx) throws Exception
+      {
+        release.await(10, TimeUnit.SECONDS);
+        return super.fetchBucket(bucketIdx);
+      }
+    };
+    TestStorageManagerListener listener = new TestStorageManagerListener();
+    BucketManager<DummyEvent> loader = new BucketManager<DummyEvent>(true, 10, 10, 60000);
+    loader.setNoOfLoaderThreads(2);
+    loader.startService(store, listener);
+    try {
+      for (int i = 0; i < 3; i++) {
+        loader.loadBucketData(new BucketManager.LoadCommand(1));
+      }
+      release.countDown();
+      loader.blockUntilAllBucketsLoaded();
+      Assert.assertEquals("fetches", 1, store.fetches.get());
+      Assert.assertEquals("loaded buckets", Lists.newArrayList(1L), listener.loadedBuckets);
+    }
+    finally {
+      loader.shutdownService();
+    }
+  }
+
+  @Test
+  public void testLoadFailure() throws Exception
+  {
+    TestStore store = new TestStore()
+    {
+      @Override
+      public Map<Object, DummyEvent> fetchBucket(int bucketIdx) throws Exception
+      {
+        throw new IOException("fetch failed");
+      }
+    };
+    TestStorageManagerListener listener = new TestStorageManagerListener();
+    BucketManager<DummyEvent> loader = new BucketManager<DummyEvent>(true, 10, 10, 60000);
+    loader.startService(store, listener);
+    try {
+      loader.loadBucketData(new BucketManager.LoadCommand(1));
+      loader.blockUntilAllBucketsLoaded();
+      Assert.fail("load failure is not propagated");
+    }
+    catch (RuntimeException e) {
+      Assert.assertEquals("cause", "fetch failed", e.getCause().getMessage());
+      Assert.assertTrue("no loaded buckets", listener.loadedBuckets.isEmpty());
+    }
+    finally {
+      loader.shutdownService();
+    }
+  }
+
+  @Test
+  public void testLoadOfExpiredBucket() throws Exception
+  {
+    TestStore store = new TestStore();
+    TestStorageManagerListener listener = new TestStorageManagerListener();
+    BucketManager<DummyEvent> loader = new BucketManager<DummyEvent>(true, 10, 10, 60000);
+    loader.startService(store, listener);
+    try {
+      //bucket 1 is at the same index as bucket 11 and older
+      loader.loadBucketData(new BucketManager.LoadCommand(11));
+      loader.blockUntilAllBucketsLoaded();
+      loader.loadBucketData(new BucketManager.LoadCommand(1));
+      loader.blockUntilAllBucketsLoaded();
+      Assert.assertEquals("loaded buckets", Lists.newArrayList(11L, 1L), listener.loadedBuckets);
+      Assert.assertNull("expired bucket", loader.getBucket(1));
+      Assert.assertNotNull("newer bucket", loader.getBucket(11));
+      Assert.assertTrue("expired", loader.isExpired(1));
+      Assert.assertEquals("deletes", 0, store.deletes.get());
+
+      loader.loadBucketData(new BucketManager.LoadCommand(21));
+      loader.blockUntilAllBucketsLoaded();
+      Assert.assertNull("evicted bucket", loader.getBucket(11));
+      Assert.assertNotNull("newer bucket", loader.getBucket(21));
+      Assert.assertEquals("deletes", 1, store.deletes.get());
+    }
+    finally {
+      loader.shutdownService();
+    }
+  }
+
+  /**
+   * Store which keeps nothing and counts the fetches and deletes.
+   */
+  private static class TestStore implements BucketStore<DummyEvent>
+  {
+    final AtomicInteger fetches = new AtomicInteger();
+    final AtomicInteger deletes = new AtomicInteger();
+
+    @Override
+    public void setup(int noOfBuckets, long committedWindowOfLastRun, boolean writeEventKeysOnly)
+    {
+    }
+
+    @Override
+    public void teardown()
+    {
+    }
+
+    @Override
+    public void storeBucketData(int bucketIdx, long window, Map<Object, DummyEvent> bucketData)
+    {
+    }
+
+    @Override
+    public void deleteBucket(int bucketIdx)
+    {
+      deletes.incrementAndGet();
+    }
+
+    @Override
+    public Map<Object, DummyEvent> fetchBucket(int bucketIdx) throws Exception
+    {
+      fetches.incrementAndGet();
+      return Maps.newHashMap();
+    }
+
+    @Override
+    public CustomStats getStats()
+    {
+      return null;
+    }
+  }
+
   private void testRound(int round) throws Exception
   {
     long now = System.currentTimeMillis();
     manager.loadBucketData(new BucketManager.LoadCommand(bucket1));
-    eventBucketExchanger.exchange(null);
+    manager.blockUntilAllBucketsLoaded();
     for (int i = round * 10; i < (round * 10) + 10; i++) {
       DummyEvent dummyEvent = new DummyEvent(i, now);
       manager.newEvent(bucket1, dummyEvent);
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+/**
+ * Tests for {@link HdfsBucketStore}
+ */
+public class HdfsBucketStoreTest
+{
+  private static final String APPLICATION_PATH_PREFIX = "target/HdfsBucketStoreTest";
+  private static final int PARTITION_MASK = 3;
+
+  private String applicationPath;
+  private long now;
+
+  @Before
+  public void setup()
+  {
+    applicationPath = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX);
+    now = System.currentTimeMillis();
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    FileUtils.deleteDirectory(new File(applicationPath));
+  }
+
+  private Map<Object, DummyEvent> createEvents(int start, int end)
+  {
+    Map<Object, DummyEvent> events = Maps.newHashMap();
+    for (int i = start; i < end; i++) {
+      DummyEvent event = new DummyEvent(i, now);
+      events.put(event.getEventKey(), event);
+    }
+    return events;
+  }
+
+  @Test
+  public void testCompaction() throws Exception
+  {
+    HdfsBucketStore<DummyEvent> store = new HdfsBucketStore<DummyEvent>(applicationPath, 0, 100, Sets.newHashSet(0), 0);
+    store.setCompactionThreshold(3);
+    store.setup(10, -1, false);
+    for (int window = 0; window < 5; window++) {
+      store.storeBucketData(1, window, createEvents(window * 10, window * 10 + 10));
+    }
+    store.committed(3);
+    long timeout = System.currentTimeMillis() + 30000;
+    while (store.getStats().getNoOfCompactions() == 0 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals("compactions", 1, store.getStats().getNoOfCompactions());
+    Assert.assertEquals("files compacted", 4, store.getStats().getNoOfFilesCompacted());
+
+    Map<Object, DummyEvent> bucketData = store.fetchBucket(1);
+    Assert.assertEquals("no of events", 50, bucketData.size());
+    Assert.assertEquals("files read", 2, store.getStats().getLastFetchNoOfFiles());
+    store.teardown();
+
+    //recovery with committed window 3 keeps the compacted data and drops window 4
+    store = new HdfsBucketStore<DummyEvent>(applicationPath, 0, 100, Sets.newHashSet(0), 0);
+    store.setup(10, 3, false);
+    bucketData = store.fetchBucket(1);
+    Assert.assertEquals("no of events", 40, bucketData.size());
+    Assert.assertFalse(bucketData.containsKey(new DummyEvent(45, now).getEventKey()));
+
+    store.deleteBucket(1);
+    Assert.assertTrue(store.fetchBucket(1).isEmpty());
+    store.teardown();
+  }
+
+  private Map<Object, DummyEvent> createEvents(int start, int end, Set<Integer> partitions)
+  {
+    Map<Object, DummyEvent> events = Maps.newHashMap();
+    for (Map.Entry<Object, DummyEvent> entry : createEvents(start, end).entrySet()) {
+      if (partitions.contains(entry.getKey().hashCode() & PARTITION_MASK)) {
+        events.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return events;
+  }
+
+  @Test
+  public void testCompactionWithTwoOperators() throws Exception
+  {
+    //first run
+    HdfsBucketStore<DummyEvent> store0 = new HdfsBucketStore<DummyEvent>(applicationPath, 0, 100, Sets.newHashSet(0, 1),
+      PARTITION_MASK);
+    HdfsBucketStore<DummyEvent> store1 = new HdfsBucketStore<DummyEvent>(applicationPath, 1, 100, Sets.newHashSet(2, 3),
+      PARTITION_MASK);
+    store0.setup(10, -1, false);
+    store1.setup(10, -1, false);
+    for (int window = 0; window < 5; window++) {
+      store0.storeBucketData(1, window, createEvents(window * 10, window * 10 + 10, Sets.newHashSet(0, 1)));
+      store1.storeBucketData(1, window, createEvents(window * 10, window * 10 + 10, Sets.newHashSet(2, 3)));
+    }
+    store0.teardown();
+    store1.teardown();
+
+    //second run from window 4 with different partitions
+    store0 = new HdfsBucketStore<DummyEvent>(applicationPath, 0, 100, Sets.newHashSet(0, 2), PARTITION_MASK);
+    store1 = new HdfsBucketStore<DummyEvent>(applicationPath, 1, 100, Sets.newHashSet(1, 3), PARTITION_MASK);
+    store1.setCompactionThreshold(3);
+    store0.setup(10, 4, false);
+    store1.setup(10, 4, false);
+    for (int window = 5; window < 10; window++) {
+      store1.storeBucketData(1, window, createEvents(window * 10, window * 10 + 10, Sets.newHashSet(1, 3)));
+    }
+    Map<Object, DummyEvent> expected0 = createEvents(0, 50, Sets.newHashSet(0, 2));
+    store1.committed(8);
+    long timeout = System.currentTimeMillis() + 30000;
+    do {
+      Assert.assertEquals("events of operator 0 during compaction", expected0.keySet(), store0.fetchBucket(1).keySet());
+    }
+    while (store1.getStats().getNoOfCompactions() == 0 && System.currentTimeMillis() < timeout);
+    Assert.assertEquals("compactions", 1, store1.getStats().getNoOfCompactions());
+    Assert.assertEquals("files compacted", 9, store1.getStats().getNoOfFilesCompacted());
+
+    File bucketDir = new File(applicationPath + "/" + HdfsBucketStore.BUCKETS_SUBDIR + "/1");
+    Assert.assertTrue("file of last run", new File(bucketDir, "4/1").exists());
+    Assert.assertFalse("compacted file of this run", new File(bucketDir, "5").exists());
+    Assert.assertTrue("compacted file", new File(applicationPath + "/" + HdfsBucketStore.COMPACTED_SUBDIR + "/1/1-8").exists());
+    Assert.assertEquals("events of operator 0", expected0.keySet(), store0.fetchBucket(1).keySet());
+    Assert.assertEquals("events of operator 1", createEvents(0, 100, Sets.newHashSet(1, 3)).keySet(),
+      store1.fetchBucket(1).keySet());
+    store0.teardown();
+    store1.teardown();
+
+    //third run from window 9, the files of the first run are covered by the compacted file
+    store0 = new HdfsBucketStore<DummyEvent>(applicationPath, 0, 100, Sets.newHashSet(0, 2), PARTITION_MASK);
+    store1 = new HdfsBucketStore<DummyEvent>(applicationPath, 1, 100, Sets.newHashSet(1, 3), PARTITION_MASK);
+    store1.setCompactionThreshold(3);
+    store0.setup(10, 9, false);
+    store1.setup(10, 9, false);
+    store1.storeBucketData(1, 10, createEvents(100, 110, Sets.newHashSet(1, 3)));
+    store1.committed(10);
+    timeout = System.currentTimeMillis() + 30000;
+    while (new File(bucketDir, "4/1").exists() && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    Assert.assertFalse("covered file of first run", new File(bucketDir, "4/1").exists());
+    Assert.assertTrue("file of other operator", new File(bucketDir, "4/0").exists());
+    Assert.assertEquals("events of operator 0", expected0.keySet(), store0.fetchBucket(1).keySet());
+    Assert.assertEquals("events of operator 1", createEvents(0, 110, Sets.newHashSet(1, 3)).keySet(),
+      store1.fetchBucket(1).keySet());
+    store0.teardown();
+    store1.teardown();
+  }
+
+  @Test
+  public void testBloomFilters() throws Exception
+  {
+    HdfsBucketStore<DummyEvent> store = new HdfsBucketStore<DummyEvent>(applicationPath, 0, 100, Sets.newHashSet(0), 0);
+    store.setCompactionThreshold(0);
+    store.setup(10, -1, false);
+    BucketBloomFilter filter = new BucketBloomFilter(1, 1000, 0.01);
+    for (int window = 0; window < 4; window++) {
+      filter.put(new DummyEvent(window, now).getEventKey());
+      store.storeBloomFilter(1, window, filter);
+    }
+    store.committed(2);
+    File filtersDir = new File(applicationPath + "/" + HdfsBucketStore.BLOOM_FILTERS_SUBDIR + "/1");
+    long timeout = System.currentTimeMillis() + 30000;
+    while (new File(filtersDir, "1").exists() && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals("filters", Sets.newHashSet("2", "3"), Sets.newHashSet(filtersDir.list()));
+
+    //data stored after the last filter, the operator failed before the filter of window 4 was stored
+    store.storeBucketData(1, 4, createEvents(100, 110));
+    store.teardown();
+
+    store = new HdfsBucketStore<DummyEvent>(applicationPath, 0, 100, Sets.newHashSet(0), 0);
+    store.setup(10, 4, false);
+    BucketBloomFilter fetched = store.fetchBloomFilter(1);
+    Assert.assertNotNull(fetched);
+    Assert.assertEquals("bucket key", 1, fetched.getBucketKey());
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue("stored key " + i, fetched.mightContain(new DummyEvent(i, now).getEventKey()));
+    }
+    for (int i = 100; i < 110; i++) {
+      Assert.assertTrue("key stored after filter " + i, fetched.mightContain(new DummyEvent(i, now).getEventKey()));
+    }
+    store.teardown();
+  }
+}
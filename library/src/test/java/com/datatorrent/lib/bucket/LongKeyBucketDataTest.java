@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LongKeyBucketData} and {@link ByteArrayKeyBucketData}
+ */
+public class LongKeyBucketDataTest
+{
+  @Test
+  public void testLongKeys()
+  {
+    LongKeyBucketData<DummyEvent> bucketData = new LongKeyBucketData<DummyEvent>();
+    for (long i = 0; i < 1000; i++) {
+      bucketData.put(i * 31, null);
+    }
+    bucketData.put(31L, null);
+    Assert.assertEquals("size", 1000, bucketData.size());
+    Assert.assertTrue(bucketData.containsKey(62L));
+    Assert.assertFalse(bucketData.containsKey(63L));
+
+    for (Iterator<Map.Entry<Object, DummyEvent>> iterator = bucketData.entrySet().iterator(); iterator.hasNext(); ) {
+      long key = (Long) iterator.next().getKey();
+      if (key % 2 == 0) {
+        iterator.remove();
+      }
+    }
+    Assert.assertEquals("size", 500, bucketData.size());
+    for (long i = 0; i < 1000; i++) {
+      Assert.assertEquals("key " + i * 31, i % 2 == 1, bucketData.containsKey(i * 31));
+    }
+  }
+
+  @Test
+  public void testIntKeys()
+  {
+    LongKeyBucketData<DummyEvent> bucketData = new LongKeyBucketData<DummyEvent>();
+    bucketData.put(-1, null);
+    bucketData.put(7, null);
+    Assert.assertTrue(bucketData.containsKey(-1));
+    Assert.assertEquals("key type", Integer.class, bucketData.keySet().iterator().next().getClass());
+  }
+
+  @Test
+  public void testNonIntegralKeys()
+  {
+    LongKeyBucketData<DummyEvent> bucketData = new LongKeyBucketData<DummyEvent>();
+    bucketData.put(1L, null);
+    Assert.assertTrue(bucketData.containsKey((short) 1));
+    Assert.assertTrue(bucketData.containsKey((byte) 1));
+    Assert.assertFalse(bucketData.containsKey(1.5));
+    Assert.assertFalse(bucketData.containsKey(1.0f));
+    Assert.assertFalse(bucketData.containsKey("1"));
+    bucketData.remove(1.2);
+    Assert.assertEquals("size", 1, bucketData.size());
+  }
+
+  @Test
+  public void testByteArrayKeys()
+  {
+    ByteArrayKeyBucketData<DummyEvent> bucketData = new ByteArrayKeyBucketData<DummyEvent>();
+    for (int i = 0; i < 100; i++) {
+      bucketData.put(new byte[]{(byte) i, 1}, null);
+    }
+    bucketData.put(new byte[]{5, 1}, null);
+    Assert.assertEquals("size", 100, bucketData.size());
+    Assert.assertTrue(bucketData.containsKey(new byte[]{5, 1}));
+    bucketData.remove(new byte[]{5, 1});
+    Assert.assertFalse(bucketData.containsKey(new byte[]{5, 1}));
+    Assert.assertEquals("size", 99, bucketData.size());
+  }
+}
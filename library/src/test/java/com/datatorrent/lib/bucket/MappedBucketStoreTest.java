@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+/**
+ * Tests for {@link MappedBucketStore}
+ */
+public class MappedBucketStoreTest
+{
+  private static final String APPLICATION_PATH_PREFIX = "target/MappedBucketStoreTest";
+
+  private String bucketsDirectory;
+  private long now;
+
+  @Before
+  public void setup()
+  {
+    bucketsDirectory = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX);
+    now = System.currentTimeMillis();
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    FileUtils.deleteDirectory(new File(bucketsDirectory));
+  }
+
+  private Map<Object, DummyEvent> createEvents(int start, int end)
+  {
+    Map<Object, DummyEvent> events = Maps.newHashMap();
+    for (int i = start; i < end; i++) {
+      DummyEvent event = new DummyEvent(i, now);
+      events.put(event.getEventKey(), event);
+    }
+    return events;
+  }
+
+  @Test
+  public void testStoreAndFetch() throws Exception
+  {
+    MappedBucketStore<DummyEvent> store = new MappedBucketStore<DummyEvent>(bucketsDirectory, 0, Sets.newHashSet(0), 0);
+    store.setup(10, -1, false);
+    store.storeBucketData(1, 0, createEvents(0, 10));
+    store.storeBucketData(1, 1, createEvents(10, 20));
+
+    Map<Object, DummyEvent> bucketData = store.fetchBucket(1);
+    Assert.assertEquals("no of events", 20, bucketData.size());
+    for (int i = 0; i < 20; i++) {
+      DummyEvent event = new DummyEvent(i, now);
+      Assert.assertTrue("contains " + i, bucketData.containsKey(event.getEventKey()));
+      Assert.assertEquals("event " + i, event, bucketData.get(event.getEventKey()));
+    }
+    Assert.assertFalse(bucketData.containsKey(new DummyEvent(20, now)));
+
+    DummyEvent recent = new DummyEvent(20, now);
+    bucketData.put(recent, recent);
+    Assert.assertEquals("no of events", 21, bucketData.size());
+    Assert.assertTrue(store.fetchBucket(2).isEmpty());
+    store.teardown();
+  }
+
+  @Test
+  public void testPartitionKeys() throws Exception
+  {
+    MappedBucketStore<DummyEvent> store = new MappedBucketStore<DummyEvent>(bucketsDirectory, 0, Sets.newHashSet(1), 1);
+    store.setup(10, -1, false);
+    store.storeBucketData(1, 0, createEvents(0, 20));
+
+    Map<Object, DummyEvent> bucketData = store.fetchBucket(1);
+    Map<Object, DummyEvent> materialized = Maps.newHashMap(bucketData);
+    Assert.assertTrue("no of events", materialized.size() > 0 && materialized.size() < 20);
+    for (int i = 0; i < 20; i++) {
+      DummyEvent event = new DummyEvent(i, now);
+      boolean inPartition = (event.hashCode() & 1) == 1;
+      Assert.assertEquals("materialized " + i, inPartition, materialized.containsKey(event));
+      Assert.assertEquals("contains " + i, inPartition, bucketData.containsKey(event));
+      Assert.assertEquals("event " + i, inPartition ? event : null, bucketData.get(event));
+    }
+    store.teardown();
+  }
+
+  @Test
+  public void testRecovery() throws Exception
+  {
+    MappedBucketStore<DummyEvent> store = new MappedBucketStore<DummyEvent>(bucketsDirectory, 0, Sets.newHashSet(0), 0);
+    store.setup(10, -1, true);
+    store.storeBucketData(1, 0, createEvents(0, 10));
+    store.storeBucketData(1, 1, createEvents(10, 20));
+    store.teardown();
+
+    store = new MappedBucketStore<DummyEvent>(bucketsDirectory, 0, Sets.newHashSet(0), 0);
+    store.setup(10, 0, true);
+    Map<Object, DummyEvent> bucketData = store.fetchBucket(1);
+    Assert.assertEquals("no of events", 10, bucketData.size());
+    Assert.assertTrue(bucketData.containsKey(new DummyEvent(5, now)));
+    Assert.assertFalse(bucketData.containsKey(new DummyEvent(15, now)));
+
+    store.deleteBucket(1);
+    Assert.assertTrue(store.fetchBucket(1).isEmpty());
+    store.teardown();
+  }
+}
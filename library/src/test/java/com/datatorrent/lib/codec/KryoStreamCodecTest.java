@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.common.util.Slice;
+import com.datatorrent.lib.util.ColumnarBatch;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Tests for {@link KryoStreamCodec}, {@link MapStreamCodec}, {@link PojoStreamCodec}, {@link KeyValPairStreamCodec}
+ * and {@link ColumnarBatchStreamCodec}
+ */
+public class KryoStreamCodecTest
+{
+  public static class Trade
+  {
+    private final String symbol;
+    private final int quantity;
+    private final double price;
+    private Long tradeId;
+    private transient int ignored;
+
+    private Trade()
+    {
+      symbol = null;
+      quantity = 0;
+      price = 0;
+    }
+
+    public Trade(String symbol, int quantity, double price, Long tradeId)
+    {
+      this.symbol = symbol;
+      this.quantity = quantity;
+      this.price = price;
+      this.tradeId = tradeId;
+      this.ignored = 1;
+    }
+  }
+
+  public static class TradeCodec extends PojoStreamCodec<Trade>
+  {
+    public TradeCodec()
+    {
+      super(Trade.class);
+    }
+  }
+
+  public static class TradeMapCodec extends MapStreamCodec
+  {
+    public TradeMapCodec()
+    {
+      addField("symbol", String.class);
+      addField("price", Double.class);
+      addField("quantity", Integer.class);
+      setPartitionKey("symbol");
+    }
+  }
+
+  @Test
+  public void testRegisteredClasses()
+  {
+    KryoStreamCodec<Object> codec = new KryoStreamCodec<Object>();
+    KryoStreamCodec<Object> registeredCodec = new KryoStreamCodec<Object>();
+    registeredCodec.register(Trade.class);
+
+    Trade trade = new Trade("AAPL", 10, 500.5, 1L);
+    Slice slice = codec.toByteArray(trade);
+    Slice registeredSlice = registeredCodec.toByteArray(trade);
+    Assert.assertTrue("registered class is smaller", registeredSlice.length < slice.length);
+
+    Trade copy = (Trade)registeredCodec.fromByteArray(registeredSlice);
+    Assert.assertEquals("symbol", "AAPL", copy.symbol);
+    Assert.assertEquals("price", 500.5, copy.price, 0);
+
+    Slice slice2 = registeredCodec.toByteArray(new Trade("GOOG", 1, 1, 2L));
+    Assert.assertEquals("previous slice is intact", "AAPL", ((Trade)registeredCodec.fromByteArray(registeredSlice)).symbol);
+    Assert.assertEquals("symbol", "GOOG", ((Trade)registeredCodec.fromByteArray(slice2)).symbol);
+  }
+
+  @Test
+  public void testRegisteredIds()
+  {
+    KryoStreamCodec<Object> codec = new KryoStreamCodec<Object>();
+    try {
+      codec.register(Trade.class, 1);
+      Assert.fail("id reserved by kryo");
+    }
+    catch (IllegalArgumentException ex) {
+      // expected
+    }
+    codec.register(Trade.class, 20);
+    try {
+      codec.register(KeyValPair.class, 20);
+      Assert.fail("duplicate id");
+    }
+    catch (IllegalArgumentException ex) {
+      // expected
+    }
+
+    Slice slice = codec.toByteArray("AAPL");
+    Assert.assertEquals("string", "AAPL", codec.fromByteArray(slice));
+    Assert.assertEquals("symbol", "GOOG", ((Trade)codec.fromByteArray(codec.toByteArray(new Trade("GOOG", 1, 1, 2L)))).symbol);
+  }
+
+  @Test
+  public void testPojo()
+  {
+    TradeCodec codec = new TradeCodec();
+    Slice slice = codec.toByteArray(new Trade("AAPL", 10, 500.5, null));
+    Trade copy = codec.fromByteArray(slice);
+    Assert.assertEquals("symbol", "AAPL", copy.symbol);
+    Assert.assertEquals("quantity", 10, copy.quantity);
+    Assert.assertEquals("price", 500.5, copy.price, 0);
+    Assert.assertNull("trade id", copy.tradeId);
+    Assert.assertEquals("transient", 0, copy.ignored);
+
+    Slice kryoSlice = new KryoStreamCodec<Trade>().toByteArray(new Trade("AAPL", 10, 500.5, null));
+    Assert.assertTrue("no class and field names", slice.length < kryoSlice.length);
+  }
+
+  @Test
+  public void testMap()
+  {
+    TradeMapCodec codec = new TradeMapCodec();
+    Map<String, Object> tuple = new HashMap<String, Object>();
+    tuple.put("symbol", "AAPL");
+    tuple.put("price", 500.5);
+    tuple.put("quantity", null);
+    tuple.put("exchange", "NASDAQ");
+
+    Map<String, Object> copy = codec.fromByteArray(codec.toByteArray(tuple));
+    Assert.assertEquals("tuple", tuple, copy);
+
+    tuple.remove("quantity");
+    tuple.remove("exchange");
+    copy = codec.fromByteArray(codec.toByteArray(tuple));
+    Assert.assertEquals("absent keys", tuple, copy);
+    Assert.assertEquals("partition", "AAPL".hashCode(), codec.getPartition(tuple));
+  }
+
+  @Test
+  public void testKeyValPair()
+  {
+    KeyValPairStreamCodec<String, Integer> codec = new KeyValPairStreamCodec<String, Integer>(String.class, Integer.class);
+    KeyValPair<String, Integer> tuple = new KeyValPair<String, Integer>("a", 5);
+    KeyValPair<String, Integer> copy = codec.fromByteArray(codec.toByteArray(tuple));
+    Assert.assertEquals("tuple", tuple, copy);
+    Assert.assertEquals("partition", "a".hashCode(), codec.getPartition(tuple));
+  }
+
+  @Test
+  public void testColumnarBatch()
+  {
+    ColumnarBatchStreamCodec<String> codec = new ColumnarBatchStreamCodec<String>(String.class);
+    ColumnarBatch<String> batch = new ColumnarBatch<String>(2);
+    batch.add("a", 1.5);
+    batch.add("b", 2.0);
+    batch.add("a", -3.0);
+    ColumnarBatch<String> copy = codec.fromByteArray(codec.toByteArray(batch));
+    Assert.assertEquals("size", 3, copy.size());
+    Assert.assertEquals("dictionary", 2, copy.getDictionarySize());
+    Assert.assertEquals("batch", batch.toString(), copy.toString());
+
+    ColumnarBatch<String> values = new ColumnarBatch<String>();
+    values.add(4.0);
+    copy = codec.fromByteArray(codec.toByteArray(values));
+    Assert.assertFalse("not keyed", copy.isKeyed());
+    Assert.assertEquals("value", 4.0, copy.getValue(0), 0);
+  }
+}
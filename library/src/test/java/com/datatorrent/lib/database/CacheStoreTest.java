@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2013 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.database;
+
+import java.util.Map;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for {@link CacheStore}
+ */
+public class CacheStoreTest
+{
+  @Test
+  public void testMaxCacheSize()
+  {
+    CacheProperties properties = new CacheProperties();
+    properties.setMaxCacheSize(10);
+    CacheStore store = new CacheStore(properties);
+    for (int i = 0; i < 100; i++) {
+      store.setValueFor(i, "value" + i);
+    }
+    Assert.assertTrue("size", store.getKeys().size() <= 10);
+    Assert.assertTrue("evictions", store.getStats().getEvictionCount() >= 90);
+
+    store.getValueFor(99);
+    store.getValueFor(-1);
+    Assert.assertEquals("hits + misses", 2, store.getStats().getHitCount() + store.getStats().getMissCount());
+    store.shutdownStore();
+  }
+
+  @Test
+  public void testAdmission()
+  {
+    CacheProperties properties = new CacheProperties();
+    properties.setMaxCacheSize(10);
+    properties.setAdmissionFrequency(2);
+    CacheStore store = new CacheStore(properties);
+    for (int i = 0; i < 20; i++) {
+      store.setValueFor(i, "value" + i);
+    }
+
+    Assert.assertEquals("size", 10, store.getStats().getSize());
+    Assert.assertEquals("rejections", 10, store.getStats().getRejectionCount());
+    long rejections = store.getStats().getRejectionCount();
+
+    store.getValueFor(1000);
+    store.setValueFor(1000, "rare");
+    Assert.assertNull("rejected", store.getValueFor(1000));
+    Assert.assertEquals("rejections", rejections + 1, store.getStats().getRejectionCount());
+
+    store.getValueFor(1001);
+    store.getValueFor(1001);
+    store.setValueFor(1001, "frequent");
+    Assert.assertEquals("admitted", "frequent", store.getValueFor(1001));
+    Assert.assertEquals("evictions", 1, store.getStats().getEvictionCount());
+    store.shutdownStore();
+  }
+
+  @Test
+  public void testAdmissionComparedWithVictim()
+  {
+    CacheProperties properties = new CacheProperties();
+    properties.setMaxCacheSize(10);
+    properties.setAdmissionFrequency(2);
+    CacheStore store = new CacheStore(properties);
+    for (int i = 0; i < 10; i++) {
+      store.setValueFor(i, "value" + i);
+    }
+    for (int lookup = 0; lookup < 3; lookup++) {
+      for (int i = 0; i < 10; i++) {
+        store.getValueFor(i);
+      }
+    }
+
+    store.getValueFor(1000);
+    store.getValueFor(1000);
+    store.setValueFor(1000, "less frequent than the victim");
+    Assert.assertNull("rejected", store.getValueFor(1000));
+
+    store.getValueFor(1000);
+    store.setValueFor(1000, "more frequent than the victim");
+    Assert.assertNotNull("admitted", store.getValueFor(1000));
+    Assert.assertNull("least recently used key is evicted", store.getValueFor(0));
+
+    Map<Object, Object> data = Maps.newHashMap();
+    for (int i = 2000; i < 2005; i++) {
+      data.put(i, "value" + i);
+    }
+    store.bulkSet(data);
+    Assert.assertTrue("bulk set keys rejected", store.bulkGet(data.keySet()).isEmpty());
+    Assert.assertEquals("size", 10, store.getStats().getSize());
+    store.shutdownStore();
+  }
+
+  @Test
+  public void testAdmissionAfterExpiry() throws InterruptedException
+  {
+    CacheProperties properties = new CacheProperties();
+    properties.setMaxCacheSize(10);
+    properties.setAdmissionFrequency(2);
+    properties.setEntryExpiryStrategy(CacheStore.ExpiryType.EXPIRE_AFTER_WRITE);
+    properties.setEntryExpiryDurationInMillis(100);
+    properties.setCacheCleanupInMillis(50);
+    CacheStore store = new CacheStore(properties);
+    for (int i = 0; i < 11; i++) {
+      store.setValueFor(i, "value" + i);
+    }
+    Assert.assertEquals("rejections", 1, store.getStats().getRejectionCount());
+
+    long timeout = System.currentTimeMillis() + 30000;
+    while (store.getStats().getSize() > 0 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    store.setValueFor(100, "value100");
+    Assert.assertEquals("admitted into a cache which is not full", "value100", store.getValueFor(100));
+    store.shutdownStore();
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.database;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Tests for the batched lookups of {@link AbstractDBLookupCacheBackedOperator}
+ */
+public class DBLookupCacheBackedOperatorTest
+{
+  private TestLookupOperator operator;
+  private CollectorTestSink<Object> sink;
+
+  public static class TestLookupOperator extends AbstractDBLookupCacheBackedOperator<Integer>
+  {
+    final List<Set<Object>> batches = Collections.synchronizedList(new ArrayList<Set<Object>>());
+    //fetches of these keys wait until their latches are released
+    final ConcurrentMap<Object, CountDownLatch> gates = Maps.newConcurrentMap();
+    volatile RuntimeException failure;
+
+    @Override
+    protected Object getKeyFromTuple(Integer tuple)
+    {
+      return tuple;
+    }
+
+    @Override
+    protected Object fetchValueFromDatabase(Object key)
+    {
+      throw new UnsupportedOperationException("single lookups are not expected");
+    }
+
+    @Override
+    protected Map<Object, Object> fetchValuesFromDatabase(Set<Object> keys)
+    {
+      batches.add(Sets.newHashSet(keys));
+      if (failure != null) {
+        throw failure;
+      }
+      for (Object key : keys) {
+        CountDownLatch gate = gates.get(key);
+        if (gate != null) {
+          try {
+            gate.await();
+          }
+          catch (InterruptedException ie) {
+            throw new RuntimeException(ie);
+          }
+        }
+      }
+      Map<Object, Object> values = Maps.newHashMap();
+      for (Object key : keys) {
+        values.put(key, "value" + key);
+      }
+      return values;
+    }
+
+    @Override
+    protected Map<Object, Object> fetchStartupDataFromDatabase()
+    {
+      return null;
+    }
+
+    @Override
+    public DBConnector getDbConnector()
+    {
+      return new DBConnector()
+      {
+        @Override
+        public void setupDbConnection()
+        {
+        }
+
+        @Override
+        public void teardownDbConnection()
+        {
+        }
+      };
+    }
+  }
+
+  private void setup(int lookupBatchSize, int maxConcurrentLookups, boolean emitInOrder)
+  {
+    operator = new TestLookupOperator();
+    operator.setBatchedLookups(true);
+    operator.setLookupBatchSize(lookupBatchSize);
+    operator.setMaxConcurrentLookups(maxConcurrentLookups);
+    operator.setEmitInOrder(emitInOrder);
+    sink = new CollectorTestSink<Object>();
+    operator.output.setSink(sink);
+    operator.setup(new OperatorContextTestHelper.TestIdOperatorContext(0));
+  }
+
+  @After
+  public void teardown()
+  {
+    operator.teardown();
+  }
+
+  private List<Object> emittedKeys()
+  {
+    List<Object> keys = Lists.newArrayList();
+    synchronized (sink.collectedTuples) {
+      for (Object tuple : sink.collectedTuples) {
+        @SuppressWarnings("unchecked")
+        KeyValPair<Object, Object> pair = (KeyValPair<Object, Object>) tuple;
+        Assert.assertEquals("value of " + pair.getKey(), "value" + pair.getKey(), pair.getValue());
+        keys.add(pair.getKey());
+      }
+    }
+    return keys;
+  }
+
+  @Test
+  public void testBatching()
+  {
+    setup(3, 2, true);
+    operator.beginWindow(0);
+    for (int i = 1; i <= 7; i++) {
+      operator.input.process(i);
+    }
+    operator.input.process(1);
+    operator.endWindow();
+
+    Set<Set<Object>> batches = Sets.newHashSet(operator.batches);
+    Assert.assertEquals("batches", Sets.<Set<Object>>newHashSet(Sets.<Object>newHashSet(1, 2, 3),
+      Sets.<Object>newHashSet(4, 5, 6), Sets.<Object>newHashSet(7)), batches);
+    Assert.assertEquals("emitted", Lists.<Object>newArrayList(1, 2, 3, 4, 5, 6, 7, 1), emittedKeys());
+
+    //fetched values are served from the cache
+    operator.beginWindow(1);
+    operator.input.process(5);
+    operator.endWindow();
+    Assert.assertEquals("no of batches", 3, operator.batches.size());
+    Assert.assertEquals("emitted", 9, emittedKeys().size());
+  }
+
+  private void waitForEmitted(int count) throws InterruptedException
+  {
+    long timeout = System.currentTimeMillis() + 30000;
+    while (emittedKeys().size() < count && System.currentTimeMillis() < timeout) {
+      operator.handleIdleTime();
+    }
+  }
+
+  @Test
+  public void testUnorderedEmission() throws InterruptedException
+  {
+    setup(1, 2, false);
+    CountDownLatch gate = new CountDownLatch(1);
+    operator.gates.put(1, gate);
+    operator.beginWindow(0);
+    operator.input.process(1);
+    operator.input.process(2);
+    waitForEmitted(1);
+    Assert.assertEquals("emitted before the first lookup completes", Lists.<Object>newArrayList(2), emittedKeys());
+
+    gate.countDown();
+    operator.endWindow();
+    Assert.assertEquals("emitted", Lists.<Object>newArrayList(2, 1), emittedKeys());
+  }
+
+  @Test
+  public void testOrderedEmission() throws InterruptedException
+  {
+    setup(1, 2, true);
+    CountDownLatch gate = new CountDownLatch(1);
+    operator.gates.put(1, gate);
+    operator.beginWindow(0);
+    operator.input.process(1);
+    operator.input.process(2);
+    long timeout = System.currentTimeMillis() + 30000;
+    while (operator.batches.size() < 2 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    for (int i = 0; i < 10; i++) {
+      operator.handleIdleTime();
+    }
+    Assert.assertTrue("nothing emitted before the first lookup completes", emittedKeys().isEmpty());
+
+    gate.countDown();
+    waitForEmitted(2);
+    Assert.assertEquals("emitted", Lists.<Object>newArrayList(1, 2), emittedKeys());
+    operator.endWindow();
+  }
+
+  @Test
+  public void testBackPressure() throws InterruptedException
+  {
+    setup(1, 1, true);
+    CountDownLatch gate = new CountDownLatch(1);
+    operator.gates.put(1, gate);
+    operator.beginWindow(0);
+    operator.input.process(1);
+
+    Thread submitter = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        operator.input.process(2);
+      }
+    };
+    submitter.start();
+    submitter.join(500);
+    Assert.assertTrue("blocked while a lookup is in flight", submitter.isAlive());
+    Assert.assertEquals("no of batches", 1, operator.batches.size());
+
+    gate.countDown();
+    submitter.join(30000);
+    Assert.assertFalse("submitted after the lookup completed", submitter.isAlive());
+    operator.endWindow();
+    Assert.assertEquals("no of batches", 2, operator.batches.size());
+    Assert.assertEquals("emitted", Lists.<Object>newArrayList(1, 2), emittedKeys());
+  }
+
+  @Test
+  public void testLookupFailure()
+  {
+    setup(10, 2, true);
+    operator.failure = new RuntimeException("lookup failed");
+    operator.beginWindow(0);
+    operator.input.process(1);
+    try {
+      operator.endWindow();
+      Assert.fail("lookup failure is not propagated");
+    }
+    catch (RuntimeException ex) {
+      Assert.assertSame("failure", operator.failure, ex);
+    }
+  }
+
+}
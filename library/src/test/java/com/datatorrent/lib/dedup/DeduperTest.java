@@ -18,9 +18,6 @@ package com.datatorrent.lib.dedup;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.List;
-import java.util.concurrent.Exchanger;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -50,23 +47,8 @@ public class DeduperTest
   private final static String APPLICATION_PATH_PREFIX = "target/DeduperTest";
   private final static String APP_ID = "DeduperTest";
 
-  private final static Exchanger<Long> eventBucketExchanger = new Exchanger<Long>();
-
   private static class DummyDeduper extends DeduperWithTimeBuckets<DummyEvent, DummyEvent>
   {
-
-    @Override
-    public void bucketLoaded(long bucketKey)
-    {
-      try {
-        super.bucketLoaded(bucketKey);
-        eventBucketExchanger.exchange(bucketKey);
-      }
-      catch (InterruptedException e) {
-        throw new RuntimeException(e);
-      }
-    }
-
     @Override
     protected BucketStore<DummyEvent> getBucketStore(Context.OperatorContext context)
     {
@@ -138,15 +120,6 @@ public class DeduperTest
     for (DummyEvent event : events) {
       deduper.input.process(event);
     }
-    try {
-      eventBucketExchanger.exchange(null, 1, TimeUnit.SECONDS);
-    }
-    catch (InterruptedException e) {
-      throw new RuntimeException(e);
-    }
-    catch (TimeoutException e) {
-      logger.debug("Timeout Happened");
-    }
   }
 
   @BeforeClass
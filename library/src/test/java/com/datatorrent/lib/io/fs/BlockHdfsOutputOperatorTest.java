@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+/**
+ * Tests for {@link AbstractBlockHdfsOutputOperator}
+ */
+public class BlockHdfsOutputOperatorTest
+{
+  public static class StringOutputOperator extends AbstractBlockHdfsOutputOperator<String>
+  {
+    @Override
+    public byte[] getBytesForTuple(String t)
+    {
+      return (t + "\n").getBytes();
+    }
+  }
+
+  private static final File testDir = new File("target/BlockHdfsOutputOperatorTest");
+
+  private static StringOutputOperator createOperator(String codec)
+  {
+    StringOutputOperator oper = new StringOutputOperator();
+    oper.setFilePathPattern(new File(testDir, "out.%(operatorId).part-%(partIndex)").getAbsolutePath());
+    oper.setCompressionCodec(codec);
+    oper.setBlockSize(16);
+    oper.setMaxPendingBlocks(2);
+    return oper;
+  }
+
+  private static void writeWindow(StringOutputOperator oper, long windowId, int tuples)
+  {
+    oper.beginWindow(windowId);
+    for (int i = 0; i < tuples; i++) {
+      oper.input.process("w" + windowId + "-" + i);
+    }
+    oper.endWindow();
+  }
+
+  private static String expected(long fromWindow, long toWindow, int tuples)
+  {
+    StringBuilder builder = new StringBuilder();
+    for (long w = fromWindow; w <= toWindow; w++) {
+      for (int i = 0; i < tuples; i++) {
+        builder.append("w").append(w).append('-').append(i).append('\n');
+      }
+    }
+    return builder.toString();
+  }
+
+  private static String read(File file, String codec) throws IOException
+  {
+    InputStream in = new FileInputStream(file);
+    try {
+      if (codec != null) {
+        in = new CompressionCodecFactory(new Configuration()).getCodecByName(codec).createInputStream(in);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      IOUtils.copy(in, out);
+      return out.toString();
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  @Before
+  public void setup() throws IOException
+  {
+    FileUtils.deleteDirectory(testDir);
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    FileUtils.deleteDirectory(testDir);
+  }
+
+  @Test
+  public void testRollByWindowCount() throws Exception
+  {
+    StringOutputOperator oper = createOperator(null);
+    oper.setRollWindowCount(2);
+    oper.setup(new OperatorContextTestHelper.TestIdOperatorContext(7));
+    for (long w = 0; w < 5; w++) {
+      writeWindow(oper, w, 10);
+    }
+    Assert.assertEquals("part 0", expected(0, 1, 10), read(new File(testDir, "out.7.part-0"), null));
+    Assert.assertEquals("part 1", expected(2, 3, 10), read(new File(testDir, "out.7.part-1"), null));
+    oper.teardown();
+    Assert.assertEquals("part 2", expected(4, 4, 10), read(new File(testDir, "out.7.part-2.tmp"), null));
+    Assert.assertEquals("bytes", expected(0, 4, 10).length(), oper.getTotalBytesWritten());
+  }
+
+  @Test
+  public void testRollBySize() throws Exception
+  {
+    StringOutputOperator oper = createOperator(null);
+    int windowBytes = expected(0, 0, 10).length();
+    oper.setMaxFileSize(windowBytes * 3);
+    oper.setup(new OperatorContextTestHelper.TestIdOperatorContext(1));
+    for (long w = 0; w < 4; w++) {
+      writeWindow(oper, w, 10);
+    }
+    oper.teardown();
+    Assert.assertEquals("part 0 fits in the file size", expected(0, 2, 10), read(new File(testDir, "out.1.part-0"), null));
+    Assert.assertEquals("part 1", expected(3, 3, 10), read(new File(testDir, "out.1.part-1.tmp"), null));
+  }
+
+  @Test
+  public void testRecovery() throws Exception
+  {
+    StringOutputOperator failed = createOperator("gzip");
+    failed.setRollWindowCount(3);
+    failed.setup(new OperatorContextTestHelper.TestIdOperatorContext(1));
+    writeWindow(failed, 0, 10);
+    writeWindow(failed, 1, 10);
+    Kryo kryo = new Kryo();
+    Output output = new Output(4096, -1);
+    kryo.writeObject(output, failed);
+    byte[] checkpoint = output.toBytes();
+    for (long w = 2; w < 5; w++) {
+      writeWindow(failed, w, 10);
+    }
+    // operator fails after the file was rolled
+    Assert.assertTrue("rolled", new File(testDir, "out.1.part-0.gz").exists());
+
+    StringOutputOperator oper = kryo.readObject(new Input(checkpoint), StringOutputOperator.class);
+    oper.setup(new OperatorContextTestHelper.TestIdOperatorContext(1));
+    Assert.assertEquals("recovered", expected(0, 1, 10), read(new File(testDir, "out.1.part-0.gz.tmp"), "gzip"));
+    Assert.assertFalse("later parts removed", new File(testDir, "out.1.part-1.gz.tmp").exists());
+    for (long w = 2; w < 5; w++) {
+      writeWindow(oper, w, 10);
+    }
+    oper.teardown();
+    Assert.assertEquals("part 0", expected(0, 2, 10), read(new File(testDir, "out.1.part-0.gz"), "gzip"));
+    Assert.assertEquals("part 1", expected(3, 4, 10), read(new File(testDir, "out.1.part-1.gz.tmp"), "gzip"));
+    // stops the writer of the failed operator before the directory is deleted
+    failed.teardown();
+  }
+
+  @Test
+  public void testRecoveryOfOpenFile() throws Exception
+  {
+    StringOutputOperator failed = createOperator(null);
+    failed.setup(new OperatorContextTestHelper.TestIdOperatorContext(3));
+    writeWindow(failed, 0, 10);
+    writeWindow(failed, 1, 10);
+    Kryo kryo = new Kryo();
+    Output output = new Output(4096, -1);
+    kryo.writeObject(output, failed);
+    byte[] checkpoint = output.toBytes();
+    writeWindow(failed, 2, 10);
+    // the writer dies in the middle of window 3 without closing the file
+    failed.beginWindow(3);
+    for (int i = 0; i < 10; i++) {
+      failed.input.process("w3-" + i);
+    }
+    File file = new File(testDir, "out.3.part-0.tmp");
+    Assert.assertEquals("synced windows", expected(0, 2, 10), read(file, null).substring(0, expected(0, 2, 10).length()));
+
+    StringOutputOperator oper = kryo.readObject(new Input(checkpoint), StringOutputOperator.class);
+    oper.setup(new OperatorContextTestHelper.TestIdOperatorContext(3));
+    Assert.assertEquals("recovered", expected(0, 1, 10), read(file, null));
+    for (long w = 2; w < 5; w++) {
+      writeWindow(oper, w, 10);
+    }
+    oper.teardown();
+    Assert.assertEquals("replayed windows written once", expected(0, 4, 10), read(file, null));
+    // stops the writer of the failed operator before the directory is deleted
+    failed.teardown();
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Partitionable.Partition;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Tests for {@link FileSplitInputOperator}
+ */
+public class FileSplitInputOperatorTest
+{
+  private final String testDir = "target/fileSplitInputOperatorTest";
+  private final String filePath = testDir + "/input.txt";
+  private final List<String> lines = new ArrayList<String>();
+
+  @Before
+  public void setup() throws Exception
+  {
+    FileUtils.deleteDirectory(new File(testDir));
+    new File(testDir).mkdirs();
+    FileWriter writer = new FileWriter(filePath);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      builder.setLength(0);
+      builder.append(i).append(':');
+      for (int j = 0; j < i % 37; j++) {
+        builder.append('x');
+      }
+      lines.add(builder.toString());
+      writer.write(builder.toString());
+      writer.write(i % 5 == 0 ? "\r\n" : "\n");
+    }
+    writer.write("last");
+    lines.add("last");
+    writer.close();
+  }
+
+  private static List<Object> readAll(FileSplitInputOperator oper)
+  {
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    oper.output.setSink(sink);
+    oper.setup(null);
+    oper.activate(null);
+    for (int window = 0; window < 1000; window++) {
+      oper.beginWindow(window);
+      oper.emitTuples();
+      oper.endWindow();
+    }
+    oper.deactivate();
+    oper.teardown();
+    return sink.collectedTuples;
+  }
+
+  @Test
+  public void testSplits()
+  {
+    FileSplitInputOperator oper = new FileSplitInputOperator();
+    oper.setFilePath(filePath);
+    oper.setBufferSize(16);
+    Assert.assertEquals("single partition", lines, readAll(oper));
+
+    Collection<Partition<FileSplitInputOperator>> partitions = new ArrayList<Partition<FileSplitInputOperator>>();
+    FileSplitInputOperator template = new FileSplitInputOperator();
+    template.setFilePath(filePath);
+    template.setBufferSize(16);
+    partitions.add(new DefaultPartition<FileSplitInputOperator>(template));
+    partitions = template.definePartitions(partitions, 4);
+    Assert.assertEquals("partitions", 5, partitions.size());
+
+    List<Object> allLines = new ArrayList<Object>();
+    for (Partition<FileSplitInputOperator> partition : partitions) {
+      List<Object> splitLines = readAll(partition.getPartitionedInstance());
+      Assert.assertFalse("split has lines", splitLines.isEmpty());
+      allLines.addAll(splitLines);
+    }
+    Assert.assertEquals("every line once", lines, allLines);
+    Assert.assertSame("started partitions are kept", partitions, template.definePartitions(partitions, 1));
+  }
+
+  @Test
+  public void testReplay()
+  {
+    FileSplitInputOperator oper = new FileSplitInputOperator();
+    oper.setFilePath(filePath);
+    oper.setEmitBatchSize(7);
+    oper.setWindowLogPath(testDir + "/log");
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    oper.output.setSink(sink);
+    oper.setup(null);
+    oper.activate(null);
+    oper.beginWindow(0);
+    oper.emitTuples();
+    oper.endWindow();
+
+    Kryo kryo = new Kryo();
+    Output output = new Output(4096, -1);
+    kryo.writeObject(output, oper);
+    byte[] checkpoint = output.toBytes();
+    sink.clear();
+
+    List<List<Object>> windows = new ArrayList<List<Object>>();
+    for (int window = 1; window < 4; window++) {
+      oper.beginWindow(window);
+      // window 2 emits nothing
+      if (window != 2) {
+        oper.emitTuples();
+        oper.emitTuples();
+      }
+      oper.endWindow();
+      windows.add(new ArrayList<Object>(sink.collectedTuples));
+      sink.clear();
+    }
+    oper.deactivate();
+    oper.teardown();
+
+    FileSplitInputOperator recovered = kryo.readObject(new Input(checkpoint), FileSplitInputOperator.class);
+    recovered.output.setSink(sink);
+    recovered.setup(null);
+    recovered.activate(null);
+    for (int window = 1; window < 4; window++) {
+      recovered.beginWindow(window);
+      recovered.emitTuples();
+      recovered.endWindow();
+      Assert.assertEquals("window " + window, windows.get(window - 1), sink.collectedTuples);
+      sink.clear();
+    }
+    recovered.beginWindow(4);
+    recovered.emitTuples();
+    recovered.endWindow();
+    Assert.assertEquals("after replay", lines.get(35), sink.collectedTuples.get(0));
+    recovered.deactivate();
+    recovered.teardown();
+  }
+
+  @Test
+  public void testCommitted() throws Exception
+  {
+    FileSplitInputOperator oper = new FileSplitInputOperator();
+    oper.setFilePath(filePath);
+    oper.setEmitBatchSize(7);
+    oper.setWindowLogPath(testDir + "/log");
+    oper.output.setSink(new CollectorTestSink<Object>());
+    oper.setup(null);
+    oper.activate(null);
+    List<Long> offsets = new ArrayList<Long>();
+    for (int window = 0; window < 5; window++) {
+      if (window == 4) {
+        oper.committed(1);
+      }
+      oper.beginWindow(window);
+      oper.emitTuples();
+      oper.endWindow();
+      offsets.add(oper.getOffset());
+    }
+    oper.deactivate();
+    oper.teardown();
+
+    File log = new File(testDir + "/log/offsets-0");
+    Assert.assertFalse("temporary log", new File(testDir + "/log/offsets-0.tmp").exists());
+    DataInputStream in = new DataInputStream(new FileInputStream(log));
+    try {
+      for (int window = 2; window < 5; window++) {
+        Assert.assertEquals("window", window, in.readLong());
+        Assert.assertEquals("offset", offsets.get(window).longValue(), in.readLong());
+      }
+      Assert.assertEquals("end of log", -1, in.read());
+    }
+    finally {
+      in.close();
+    }
+  }
+}
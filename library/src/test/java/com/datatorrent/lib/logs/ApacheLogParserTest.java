@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.logs;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ApacheLogParser}
+ */
+public class ApacheLogParserTest
+{
+  private static final String AGENT = "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.31 (KHTML, like Gecko) Chrome/26.0.1410.43 Safari/537.31";
+  private static final String COMBINED = "127.0.0.1 - frank [04/Apr/2013:17:17:21 -0700] \"GET /favicon.ico HTTP/1.1\" 404 498 \"-\" \"" + AGENT + "\"";
+
+  @Test
+  public void testCombined()
+  {
+    ApacheLogParser parser = new ApacheLogParser();
+    ApacheLogRecord record = new ApacheLogRecord();
+    Assert.assertTrue("parsed", parser.parse(COMBINED, record));
+    Assert.assertTrue("combined", record.isCombined());
+    Assert.assertEquals("ip", "127.0.0.1", record.getIpAddress());
+    Assert.assertEquals("identity", "-", record.getIdentity());
+    Assert.assertEquals("user", "frank", record.getUser());
+    Assert.assertEquals("time", "04/Apr/2013:17:17:21 -0700", record.getTime());
+    Assert.assertEquals("method", "GET", record.getMethod());
+    Assert.assertEquals("url", "/favicon.ico", record.getUrl());
+    Assert.assertEquals("protocol", "HTTP/1.1", record.getProtocol());
+    Assert.assertEquals("status code", 404, record.getStatusCode());
+    Assert.assertEquals("bytes", 498, record.getBytes());
+    Assert.assertEquals("referer", "-", record.getReferer());
+    Assert.assertEquals("agent", AGENT, record.getAgent());
+    Assert.assertNull("server name", record.getServerName());
+  }
+
+  @Test
+  public void testCommonAndVirtualHost()
+  {
+    ApacheLogParser parser = new ApacheLogParser();
+    ApacheLogRecord record = new ApacheLogRecord();
+    Assert.assertTrue("parsed", parser.parse("10.0.0.1 - - [04/Apr/2013:17:17:21 -0700] \"POST /a b HTTP/1.0\" 200 -", record));
+    Assert.assertFalse("common", record.isCombined());
+    Assert.assertEquals("url", "/a b", record.getUrl());
+    Assert.assertEquals("bytes", 0, record.getBytes());
+    Assert.assertNull("agent", record.getAgent());
+
+    ApacheLogParser virtualParser = new ApacheLogParser(true);
+    Assert.assertTrue("parsed", virtualParser.parse("www.example.com " + COMBINED, record));
+    Assert.assertEquals("server name", "www.example.com", record.getServerName());
+    Assert.assertEquals("ip", "127.0.0.1", record.getIpAddress());
+    Assert.assertEquals("agent", AGENT, record.getAgent());
+  }
+
+  @Test
+  public void testRegexFallback()
+  {
+    ApacheLogParser parser = new ApacheLogParser();
+    ApacheLogRecord record = new ApacheLogRecord();
+    String line = "127.0.0.1 - - [04/Apr/2013:17:17:21 -0700] \"GET /a\"b HTTP/1.1\" 200 10 \"-\" \"agent\"";
+    Assert.assertTrue("parsed", parser.parse(line, record));
+    Assert.assertEquals("url", "/a\"b", record.getUrl());
+    Assert.assertEquals("method", "GET", record.getMethod());
+    Assert.assertEquals("protocol", "HTTP/1.1", record.getProtocol());
+    Assert.assertEquals("status code", 200, record.getStatusCode());
+    Assert.assertEquals("bytes", 10, record.getBytes());
+    Assert.assertEquals("agent", "agent", record.getGroup(9));
+
+    Assert.assertFalse("not a log line", parser.parse("not a log line", record));
+    Assert.assertFalse("no fields", record.hasField(ApacheLogRecord.IP_ADDRESS));
+  }
+
+  @Test
+  public void testLinesRejectedByRegex()
+  {
+    ApacheLogParser parser = new ApacheLogParser();
+    ApacheLogRecord record = new ApacheLogRecord();
+    String request = " \"GET /a HTTP/1.1\" 200 ";
+    String[] lines = {
+      "127.0.0.1 - - [04/Apr/2013:17:17:21 -0700]" + request + "- \"-\" \"agent\"",
+      "127.0.0.1 - - [yesterday]" + request + "10 \"-\" \"agent\"",
+      "127.0.0.1 - - [04/Apr/2013:17:17:21 0700]" + request + "10 \"-\" \"agent\"",
+      "127.0.0.1 -\t- - [04/Apr/2013:17:17:21 -0700]" + request + "10 \"-\" \"agent\"",
+      "127.0.0.1 - - [04/Apr/2013:17:17:21 -0700] \"GET /a HTTP/\" 200 10 \"-\" \"agent\"",
+      "127.0.0.1 - - [04/Apr/2013:17:17:21 -0700]" + request + "10 \"\" \"agent\""
+    };
+    for (String line : lines) {
+      Assert.assertFalse(line, parser.parse(line, record) && record.isCombined());
+    }
+
+    //bytes may be "-" in the common format only
+    Assert.assertTrue("common", parser.parse("127.0.0.1 - - [04/Apr/2013:17:17:21 -0700]" + request + "-", record));
+    Assert.assertFalse("common", record.isCombined());
+
+    ApacheLogParser virtualParser = new ApacheLogParser(true);
+    Assert.assertFalse("quote in server name", virtualParser.parse("www.\"example\".com " + COMBINED, record));
+  }
+
+  private static void assertSameAsRegex(ApacheLogParser parser, Pattern pattern, String line)
+  {
+    ApacheLogRecord record = new ApacheLogRecord();
+    Matcher matcher = pattern.matcher(line);
+    boolean parsed = parser.parse(line, record) && record.isCombined();
+    Assert.assertEquals("parsed " + line, matcher.matches(), parsed);
+    if (parsed) {
+      int offset = parser.isVirtualHost() ? 1 : 0;
+      if (parser.isVirtualHost()) {
+        Assert.assertEquals("server name " + line, matcher.group(1), record.getServerName());
+      }
+      for (int group = ApacheLogRecord.IP_ADDRESS; group <= ApacheLogRecord.AGENT; group++) {
+        Assert.assertEquals("group " + group + " " + line, matcher.group(group + offset), record.getGroup(group));
+      }
+    }
+  }
+
+  @Test
+  public void testSameAsRegex()
+  {
+    Pattern pattern = Pattern.compile(ApacheLogParseOperator.getAccessLogRegex(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    ApacheLogParser parser = new ApacheLogParser();
+    String[] requests = {"\"GET /favicon.ico HTTP/1.1\"", "\"get /a b HTTP/1.0\"", "\"GET /a\"b HTTP/1.1\"",
+      "\"GET HTTP/1.1\"", "\"GET /a http/1.1\"", "\"G3T /a HTTP/1.1\""};
+    String[] times = {"[04/Apr/2013:17:17:21 -0700]", "[04/Apr/2013:17:17:21 +0000]", "[04/Apr/2013:17:17:21\t-0700]",
+      "[04/Apr/2013 17:17:21 -0700]", "[]"};
+    String[] ends = {" 404 498 \"-\" \"agent\"", " 404 498 \"-\" \"agent\" rest", " 404 - \"-\" \"agent\"",
+      " 40 498 \"-\" \"agent\"", " 404 498 \"-\"", " 404 498", " 404 498x \"-\" \"agent\""};
+    for (String request : requests) {
+      for (String time : times) {
+        for (String end : ends) {
+          assertSameAsRegex(parser, pattern, "127.0.0.1 - frank " + time + " " + request + end);
+        }
+      }
+    }
+    assertSameAsRegex(parser, pattern, "127.0.0.1  - frank [04/Apr/2013:17:17:21 -0700] \"GET / HTTP/1.1\" 200 1 \"-\" \"a\"");
+    assertSameAsRegex(parser, pattern, "localhost - frank [04/Apr/2013:17:17:21 -0700] \"GET / HTTP/1.1\" 200 1 \"-\" \"a\"");
+
+    Pattern virtualPattern = Pattern.compile(ApacheVirtualLogParseOperator.getAccessLogRegex(),
+                                             Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    ApacheLogParser virtualParser = new ApacheLogParser(true);
+    assertSameAsRegex(virtualParser, virtualPattern, "www.example.com " + COMBINED);
+    assertSameAsRegex(virtualParser, virtualPattern, "www.example.com 127.0.0.1 - - [04/Apr/2013:17:17:21 -0700] \"GET / HTTP/1.1\" 200 - \"-\" \"a\"");
+  }
+}
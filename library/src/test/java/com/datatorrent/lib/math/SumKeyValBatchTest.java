@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.math;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.ColumnarBatch;
+import com.datatorrent.lib.util.UnifierColumnarBatch;
+
+/**
+ * Functional tests for {@link SumKeyValBatch} and the other keyed batch operators.
+ */
+public class SumKeyValBatchTest
+{
+  private static ColumnarBatch<String> batch(Object... keyValues)
+  {
+    ColumnarBatch<String> batch = new ColumnarBatch<String>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      batch.add((String)keyValues[i], ((Number)keyValues[i + 1]).doubleValue());
+    }
+    return batch;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Double> results(CollectorTestSink<Object> sink)
+  {
+    Map<String, Double> results = new HashMap<String, Double>();
+    for (Object o : sink.collectedTuples) {
+      ColumnarBatch<String> batch = (ColumnarBatch<String>)o;
+      for (int i = 0; i < batch.size(); i++) {
+        Assert.assertNull("one row per key", results.put(batch.getKey(i), batch.getValue(i)));
+      }
+    }
+    return results;
+  }
+
+  private static void process(AbstractKeyValBatchOperator<String> oper)
+  {
+    oper.beginWindow(0);
+    oper.data.process(batch("a", 2, "b", 20, "c", 1000, "a", 1));
+    oper.data.process(batch("a", 10, "b", 5, "d", 55));
+    oper.data.process(batch());
+    oper.endWindow();
+  }
+
+  @Test
+  public void testNodeProcessing()
+  {
+    SumKeyValBatch<String> oper = new SumKeyValBatch<String>();
+    CollectorTestSink<Object> sumSink = new CollectorTestSink<Object>();
+    oper.sum.setSink(sumSink);
+    process(oper);
+
+    Assert.assertEquals("number emitted batches", 1, sumSink.collectedTuples.size());
+    Map<String, Double> sums = results(sumSink);
+    Assert.assertEquals("number of keys", 4, sums.size());
+    Assert.assertEquals("sum of a", 13.0, sums.get("a"), 0);
+    Assert.assertEquals("sum of b", 25.0, sums.get("b"), 0);
+    Assert.assertEquals("sum of c", 1000.0, sums.get("c"), 0);
+    Assert.assertEquals("sum of d", 55.0, sums.get("d"), 0);
+
+    sumSink.clear();
+    oper.beginWindow(1);
+    oper.data.process(batch("a", 1));
+    oper.endWindow();
+    Assert.assertEquals("sum is cleared at end of window", 1.0, results(sumSink).get("a"), 0);
+    Assert.assertEquals("only keys of the window", 1, results(sumSink).size());
+  }
+
+  @Test
+  public void testCumulativeAndFilter()
+  {
+    SumKeyValBatch<String> oper = new SumKeyValBatch<String>();
+    oper.setCumulative(true);
+    oper.setFilterBy(new String[] { "c" });
+    oper.setInverse(true);
+    CollectorTestSink<Object> sumSink = new CollectorTestSink<Object>();
+    oper.sum.setSink(sumSink);
+    process(oper);
+    sumSink.clear();
+
+    oper.beginWindow(1);
+    oper.data.process(batch("a", 1, "c", 1));
+    oper.endWindow();
+    Map<String, Double> sums = results(sumSink);
+    Assert.assertEquals("all keys are emitted", 3, sums.size());
+    Assert.assertEquals("cumulative sum of a", 14.0, sums.get("a"), 0);
+    Assert.assertEquals("cumulative sum of b", 25.0, sums.get("b"), 0);
+    Assert.assertNull("filtered key", sums.get("c"));
+  }
+
+  @Test
+  public void testCountMinMaxAverage()
+  {
+    CountKeyValBatch<String> count = new CountKeyValBatch<String>();
+    MinKeyValBatch<String> min = new MinKeyValBatch<String>();
+    MaxKeyValBatch<String> max = new MaxKeyValBatch<String>();
+    AverageKeyValBatch<String> average = new AverageKeyValBatch<String>();
+    CollectorTestSink<Object> countSink = new CollectorTestSink<Object>();
+    CollectorTestSink<Object> minSink = new CollectorTestSink<Object>();
+    CollectorTestSink<Object> maxSink = new CollectorTestSink<Object>();
+    CollectorTestSink<Object> averageSink = new CollectorTestSink<Object>();
+    count.count.setSink(countSink);
+    min.min.setSink(minSink);
+    max.max.setSink(maxSink);
+    average.average.setSink(averageSink);
+    process(count);
+    process(min);
+    process(max);
+    process(average);
+
+    Assert.assertEquals("count of a", 3.0, results(countSink).get("a"), 0);
+    Assert.assertEquals("count of d", 1.0, results(countSink).get("d"), 0);
+    Assert.assertEquals("min of a", 1.0, results(minSink).get("a"), 0);
+    Assert.assertEquals("min of b", 5.0, results(minSink).get("b"), 0);
+    Assert.assertEquals("max of a", 10.0, results(maxSink).get("a"), 0);
+    Assert.assertEquals("max of b", 20.0, results(maxSink).get("b"), 0);
+    Assert.assertEquals("average of b", 12.5, results(averageSink).get("b"), 0);
+    Assert.assertEquals("average of c", 1000.0, results(averageSink).get("c"), 0);
+  }
+
+  @Test
+  public void testUnifier()
+  {
+    UnifierColumnarBatch<String> unifier = new UnifierColumnarBatch<String>(UnifierColumnarBatch.Combiner.MIN);
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    unifier.mergedport.setSink(sink);
+    unifier.beginWindow(0);
+    unifier.process(batch("a", 3, "b", 4));
+    unifier.process(batch("a", 2, "c", 7));
+    unifier.endWindow();
+    Map<String, Double> mins = results(sink);
+    Assert.assertEquals("number of keys", 3, mins.size());
+    Assert.assertEquals("min of a", 2.0, mins.get("a"), 0);
+    Assert.assertEquals("min of b", 4.0, mins.get("b"), 0);
+
+    sink.clear();
+    unifier.setCombiner(UnifierColumnarBatch.Combiner.SUM);
+    unifier.beginWindow(1);
+    unifier.process(batch("a", 3, "b", 4));
+    unifier.process(batch("a", 2));
+    unifier.endWindow();
+    Assert.assertEquals("sum of a", 5.0, results(sink).get("a"), 0);
+  }
+
+  @Test
+  public void testSumBatch()
+  {
+    SumBatch oper = new SumBatch();
+    CollectorTestSink<Object> sumSink = new CollectorTestSink<Object>();
+    oper.sum.setSink(sumSink);
+    ColumnarBatch<Object> values = new ColumnarBatch<Object>();
+    values.add(2);
+    values.add(3.5);
+    oper.beginWindow(0);
+    oper.data.process(values);
+    oper.data.process(batch("a", 4));
+    oper.endWindow();
+    Assert.assertEquals("sum", 9.5, (Double)sumSink.collectedTuples.get(0), 0);
+  }
+}
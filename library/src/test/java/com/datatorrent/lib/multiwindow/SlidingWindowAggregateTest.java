@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.HighLow;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Tests for {@link SlidingSum}, {@link SlidingMinMax}, {@link SlidingWindowSumKeyVal} and
+ * {@link SlidingWindowRangeKeyVal}
+ */
+public class SlidingWindowAggregateTest
+{
+  @Test
+  public void testAggregates()
+  {
+    int windowSize = 7;
+    int windows = 200;
+    Random random = new Random(3);
+    double[][] values = new double[windows][];
+    SlidingSum sum = new SlidingSum(windowSize);
+    SlidingMinMax minMax = new SlidingMinMax(windowSize);
+    for (int w = 0; w < windows; w++) {
+      values[w] = new double[random.nextInt(4)];
+      for (int i = 0; i < values[w].length; i++) {
+        values[w][i] = random.nextInt(1000) - 500;
+        sum.add(values[w][i]);
+        minMax.add(values[w][i]);
+      }
+      double expectedSum = 0;
+      long expectedCount = 0;
+      double expectedMin = Double.POSITIVE_INFINITY;
+      double expectedMax = Double.NEGATIVE_INFINITY;
+      for (int v = Math.max(0, w - windowSize + 1); v <= w; v++) {
+        for (double value : values[v]) {
+          expectedSum += value;
+          expectedCount++;
+          expectedMin = Math.min(expectedMin, value);
+          expectedMax = Math.max(expectedMax, value);
+        }
+      }
+      Assert.assertEquals("sum " + w, expectedSum, sum.getSum(), 0.000001);
+      Assert.assertEquals("count " + w, expectedCount, sum.getCount());
+      Assert.assertEquals("empty " + w, expectedCount == 0, minMax.isEmpty());
+      Assert.assertEquals("min " + w, expectedMin, minMax.getMin(), 0);
+      Assert.assertEquals("max " + w, expectedMax, minMax.getMax(), 0);
+      sum.slide();
+      minMax.slide();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testOperators()
+  {
+    SlidingWindowSumKeyVal<String, Integer> sumOper = new SlidingWindowSumKeyVal<String, Integer>();
+    sumOper.setType(Integer.class);
+    sumOper.setWindowSize(3);
+    CollectorTestSink<Object> sumSink = new CollectorTestSink<Object>();
+    CollectorTestSink<Object> averageSink = new CollectorTestSink<Object>();
+    sumOper.sum.setSink(sumSink);
+    sumOper.average.setSink(averageSink);
+
+    SlidingWindowRangeKeyVal<String, Integer> rangeOper = new SlidingWindowRangeKeyVal<String, Integer>();
+    rangeOper.setType(Integer.class);
+    rangeOper.setWindowSize(3);
+    CollectorTestSink<Object> rangeSink = new CollectorTestSink<Object>();
+    rangeOper.range.setSink(rangeSink);
+
+    int[] data = { 5, 1, 9, 2 };
+    for (int w = 0; w < data.length; w++) {
+      sumOper.beginWindow(w);
+      rangeOper.beginWindow(w);
+      sumOper.data.process(new KeyValPair<String, Integer>("a", data[w]));
+      rangeOper.data.process(new KeyValPair<String, Integer>("a", data[w]));
+      sumOper.endWindow();
+      rangeOper.endWindow();
+    }
+    Assert.assertEquals("sums", 4, sumSink.collectedTuples.size());
+    Assert.assertEquals("sum of window 3", 12, ((KeyValPair<String, Integer>)sumSink.collectedTuples.get(3)).getValue().intValue());
+    Assert.assertEquals("average of window 2", 5.0, ((KeyValPair<String, Double>)averageSink.collectedTuples.get(2)).getValue(), 0);
+    HighLow<Integer> range = ((KeyValPair<String, HighLow<Integer>>)rangeSink.collectedTuples.get(3)).getValue();
+    Assert.assertEquals("high", 9, range.getHigh().intValue());
+    Assert.assertEquals("low", 1, range.getLow().intValue());
+
+    for (int w = 4; w < 7; w++) {
+      sumOper.beginWindow(w);
+      sumOper.endWindow();
+    }
+    Assert.assertEquals("expired key", 6, sumSink.collectedTuples.size());
+    Assert.assertTrue("key dropped", sumOper.aggregates.isEmpty());
+  }
+}
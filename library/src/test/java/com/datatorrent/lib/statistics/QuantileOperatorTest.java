@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Functional tests for {@link QuantileOperator}, {@link QuantileKeyValOperator} and {@link TDigest}
+ */
+public class QuantileOperatorTest
+{
+  @Test
+  public void testExactForFewValues()
+  {
+    TDigest digest = new TDigest();
+    for (double v : new double[] { 9, 1, 7, 3 }) {
+      digest.add(v);
+    }
+    Assert.assertEquals("median", 5.0, digest.quantile(0.5), 0);
+    Assert.assertEquals("min", 1.0, digest.quantile(0), 0);
+    Assert.assertEquals("max", 9.0, digest.quantile(1), 0);
+    digest.add(8);
+    Assert.assertEquals("median", 7.0, digest.quantile(0.5), 0);
+  }
+
+  @Test
+  public void testAccuracyAndMerge()
+  {
+    Random random = new Random(7);
+    int n = 200000;
+    double[] values = new double[n];
+    TDigest digest = new TDigest();
+    TDigest[] partitions = new TDigest[] { new TDigest(), new TDigest(), new TDigest() };
+    for (int i = 0; i < n; i++) {
+      values[i] = Math.exp(random.nextGaussian());
+      digest.add(values[i]);
+      partitions[i % partitions.length].add(values[i]);
+    }
+    TDigest merged = new TDigest();
+    for (TDigest partition : partitions) {
+      merged.merge(partition);
+    }
+    Arrays.sort(values);
+    Assert.assertTrue("bounded centroids", digest.getCentroidCount() <= 2 * digest.getCompression());
+    Assert.assertEquals("count", n, merged.getCount(), 0);
+    for (double q : new double[] { 0.01, 0.25, 0.5, 0.95, 0.99, 0.999 }) {
+      double exact = values[(int)(q * n)];
+      Assert.assertEquals("quantile " + q, q, rank(values, digest.quantile(q)), 0.005);
+      Assert.assertEquals("merged quantile " + q, q, rank(values, merged.quantile(q)), 0.005);
+      if (q <= 0.99) {
+        Assert.assertEquals("quantile value " + q, exact, digest.quantile(q), exact * 0.05);
+      }
+    }
+  }
+
+  private static double rank(double[] sorted, double value)
+  {
+    int index = Arrays.binarySearch(sorted, value);
+    return (index < 0 ? -index - 1 : index) / (double)sorted.length;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testNodeProcessing()
+  {
+    QuantileOperator oper = new QuantileOperator();
+    oper.setQuantiles(new double[] { 0.5, 0.9 });
+    CollectorTestSink<Object> quantileSink = new CollectorTestSink<Object>();
+    CollectorTestSink<Object> medianSink = new CollectorTestSink<Object>();
+    oper.quantile.setSink(quantileSink);
+    oper.median.setSink(medianSink);
+
+    oper.setup(null);
+    oper.beginWindow(0);
+    for (int i = 1; i <= 101; i++) {
+      oper.data.process(i);
+    }
+    oper.endWindow();
+    Assert.assertEquals("median", 51.0, (Double)medianSink.collectedTuples.get(0), 0);
+    HashMap<Double, Double> quantiles = (HashMap<Double, Double>)quantileSink.collectedTuples.get(0);
+    Assert.assertEquals("p90", 91.4, quantiles.get(0.9), 1e-9);
+
+    oper.beginWindow(1);
+    oper.endWindow();
+    Assert.assertEquals("no values", 1, medianSink.collectedTuples.size());
+  }
+
+  @Test
+  public void testUnifier()
+  {
+    QuantileOperator oper1 = new QuantileOperator();
+    QuantileOperator oper2 = new QuantileOperator();
+    final UnifierTDigest unifier = new UnifierTDigest();
+    oper1.digest.setSink(new CollectorTestSink<Object>()
+    {
+      @Override
+      public void put(Object payload)
+      {
+        unifier.process((TDigest)payload);
+      }
+    });
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    unifier.mergedport.setSink(sink);
+    oper1.beginWindow(0);
+    oper2.beginWindow(0);
+    unifier.beginWindow(0);
+    for (int i = 0; i < 10; i++) {
+      oper1.data.process(i);
+    }
+    oper1.endWindow();
+    oper2.endWindow();
+    unifier.endWindow();
+    Assert.assertEquals("median", 4.5, ((TDigest)sink.collectedTuples.get(0)).quantile(0.5), 0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testKeyVal()
+  {
+    QuantileKeyValOperator<String, Integer> oper = new QuantileKeyValOperator<String, Integer>();
+    CollectorTestSink<Object> medianSink = new CollectorTestSink<Object>();
+    CollectorTestSink<Object> digestSink = new CollectorTestSink<Object>();
+    oper.median.setSink(medianSink);
+    oper.digest.setSink(digestSink);
+    oper.beginWindow(0);
+    for (int i = 0; i < 100; i++) {
+      oper.data.process(new KeyValPair<String, Integer>("a", i));
+      oper.data.process(new KeyValPair<String, Integer>("b", i * 2));
+    }
+    oper.endWindow();
+    Assert.assertEquals("no. of keys", 2, medianSink.collectedTuples.size());
+    for (Object o : medianSink.collectedTuples) {
+      KeyValPair<String, Double> median = (KeyValPair<String, Double>)o;
+      Assert.assertEquals("median of " + median.getKey(), median.getKey().equals("a") ? 49.5 : 99.0, median.getValue(), 0);
+    }
+
+    QuantileKeyValOperator<String, Integer> merger = new QuantileKeyValOperator<String, Integer>();
+    CollectorTestSink<Object> mergedSink = new CollectorTestSink<Object>();
+    merger.median.setSink(mergedSink);
+    merger.beginWindow(0);
+    for (Object o : digestSink.collectedTuples) {
+      merger.digests.process((KeyValPair<String, TDigest>)o);
+      merger.digests.process((KeyValPair<String, TDigest>)o);
+    }
+    merger.endWindow();
+    Assert.assertEquals("no. of keys", 2, mergedSink.collectedTuples.size());
+    for (Object o : mergedSink.collectedTuples) {
+      KeyValPair<String, Double> median = (KeyValPair<String, Double>)o;
+      Assert.assertEquals("merged median of " + median.getKey(), median.getKey().equals("a") ? 49.5 : 99.0, median.getValue(), 0);
+    }
+  }
+}
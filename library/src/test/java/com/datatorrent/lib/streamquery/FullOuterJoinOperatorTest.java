@@ -15,8 +15,11 @@
  */
 package com.datatorrent.lib.streamquery;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.datatorrent.lib.streamquery.condition.Condition;
@@ -82,4 +85,53 @@ public class FullOuterJoinOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testWindowRetention()
+  {
+    OuterJoinOperator oper = new OuterJoinOperator();
+    oper.setFullJoin(true);
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setJoinCondition(new JoinColumnEqualCondition("a", "a"));
+    oper.selectTable1Column(new ColumnIndex("b", null));
+    oper.selectTable2Column(new ColumnIndex("c", null));
+    oper.setWindowRetention(2);
+
+    oper.setup(null);
+    oper.beginWindow(1);
+    HashMap<String, Object> tuple = new HashMap<String, Object>();
+    tuple.put("a", 0);
+    tuple.put("b", 1);
+    oper.inport1.process(tuple);
+    tuple = new HashMap<String, Object>();
+    tuple.put("a", 5);
+    tuple.put("b", 9);
+    oper.inport1.process(tuple);
+    oper.endWindow();
+    Assert.assertTrue("retained rows are not emitted as unmatched", sink.collectedTuples.isEmpty());
+
+    oper.beginWindow(2);
+    tuple = new HashMap<String, Object>();
+    tuple.put("a", 0);
+    tuple.put("c", 2);
+    oper.inport2.process(tuple);
+    tuple = new HashMap<String, Object>();
+    tuple.put("a", 7);
+    tuple.put("c", 8);
+    oper.inport2.process(tuple);
+    oper.endWindow();
+    Assert.assertEquals("joined and expired unmatched row", 2, sink.collectedTuples.size());
+    Map joined = (Map) sink.collectedTuples.get(0);
+    Assert.assertEquals("joined b", 1, joined.get("b"));
+    Assert.assertEquals("joined c", 2, joined.get("c"));
+    Assert.assertEquals("unmatched row of window 1", Collections.singletonMap("b", 9), sink.collectedTuples.get(1));
+
+    oper.beginWindow(3);
+    oper.endWindow();
+    Assert.assertEquals("unmatched row of window 2", 3, sink.collectedTuples.size());
+    Assert.assertEquals("unmatched row of window 2", Collections.singletonMap("c", 8), sink.collectedTuples.get(2));
+    oper.teardown();
+  }
 }
@@ -15,11 +15,20 @@
  */
 package com.datatorrent.lib.streamquery;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Partitionable.Partition;
 import com.datatorrent.lib.streamquery.condition.EqualValueCondition;
+import com.datatorrent.lib.streamquery.condition.HavingCondition;
+import com.datatorrent.lib.streamquery.function.AverageFunction;
 import com.datatorrent.lib.streamquery.function.SumFunction;
 import com.datatorrent.lib.streamquery.index.ColumnIndex;
 import com.datatorrent.lib.testbench.CollectorTestSink;
@@ -83,4 +92,136 @@ public class GroupByOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  private static GroupByHavingOperator createIncrementalOperator(boolean emitPartialAggregates) throws Exception
+  {
+    GroupByHavingOperator oper = new GroupByHavingOperator();
+    oper.addColumnGroupByIndex(new ColumnIndex("b", null));
+    oper.addAggregateIndex(new SumFunction("c", null));
+    oper.addAggregateIndex(new AverageFunction("c", "avg"));
+    oper.setIncremental(true);
+    oper.setEmitPartialAggregates(emitPartialAggregates);
+    return oper;
+  }
+
+  private static List<GroupByHavingOperator> partition(GroupByHavingOperator oper, int incrementalCapacity)
+  {
+    List<Partition<GroupByHavingOperator>> partitions = new ArrayList<Partition<GroupByHavingOperator>>();
+    partitions.add(new DefaultPartition<GroupByHavingOperator>(oper));
+    List<GroupByHavingOperator> operators = new ArrayList<GroupByHavingOperator>();
+    for (Partition<GroupByHavingOperator> partition : oper.definePartitions(partitions, incrementalCapacity)) {
+      operators.add(partition.getPartitionedInstance());
+    }
+    return operators;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void assertFinishedRows(Collection<Object> tuples)
+  {
+    Assert.assertEquals("groups", 2, tuples.size());
+    for (Object tuple : tuples) {
+      Map<String, Object> row = (Map<String, Object>) tuple;
+      Assert.assertFalse("finished row", row.containsKey(GroupByHavingOperator.PARTIAL_AGGREGATES));
+      if (row.get("b").equals(0)) {
+        Assert.assertEquals("sum", 2.0, row.get("c"));
+        Assert.assertEquals("avg", 1.0, row.get("avg"));
+      }
+      else {
+        Assert.assertEquals("sum", 4.0, row.get("c"));
+        Assert.assertEquals("avg", 2.0, row.get("avg"));
+      }
+    }
+  }
+
+  private static HashMap<String, Object> row(int i)
+  {
+    HashMap<String, Object> tuple = new HashMap<String, Object>();
+    tuple.put("b", i % 2);
+    tuple.put("c", i);
+    return tuple;
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testIncrementalPartialAggregates() throws Exception
+  {
+    List<GroupByHavingOperator> operators = partition(createIncrementalOperator(true), 1);
+    Assert.assertEquals("partitions", 2, operators.size());
+    CollectorTestSink partialSink = new CollectorTestSink();
+    for (GroupByHavingOperator oper : operators) {
+      oper.outport.setSink(partialSink);
+      oper.setup(null);
+      oper.beginWindow(1);
+    }
+    GroupByHavingUnifier unifier = (GroupByHavingUnifier) operators.get(0).outport.getUnifier();
+    CollectorTestSink sink = new CollectorTestSink();
+    unifier.mergedport.setSink(sink);
+
+    for (int i = 0; i < 4; i++) {
+      operators.get(i < 2 ? 0 : 1).inport.process(row(i));
+    }
+    for (GroupByHavingOperator oper : operators) {
+      oper.endWindow();
+    }
+    Assert.assertEquals("partial aggregates", 4, partialSink.collectedTuples.size());
+    for (Object partial : partialSink.collectedTuples) {
+      Assert.assertTrue("partial aggregate", ((Map<String, Object>) partial).containsKey(GroupByHavingOperator.PARTIAL_AGGREGATES));
+    }
+
+    unifier.beginWindow(1);
+    for (Object partial : partialSink.collectedTuples) {
+      unifier.process((Map<String, Object>) partial);
+    }
+    unifier.endWindow();
+    assertFinishedRows(sink.collectedTuples);
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testSinglePartitionEmitsFinishedRows() throws Exception
+  {
+    List<GroupByHavingOperator> operators = partition(createIncrementalOperator(true), 0);
+    Assert.assertEquals("partitions", 1, operators.size());
+    GroupByHavingOperator oper = operators.get(0);
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setup(null);
+    oper.beginWindow(1);
+    for (int i = 0; i < 4; i++) {
+      oper.inport.process(row(i));
+    }
+    oper.endWindow();
+    assertFinishedRows(sink.collectedTuples);
+  }
+
+  @Test
+  public void testNotPartitionedWithoutPartialAggregates() throws Exception
+  {
+    Assert.assertEquals("partitions", 1, partition(createIncrementalOperator(false), 3).size());
+    GroupByHavingOperator oper = new GroupByHavingOperator();
+    oper.addColumnGroupByIndex(new ColumnIndex("b", null));
+    oper.addAggregateIndex(new SumFunction("c", null));
+    Assert.assertEquals("partitions", 1, partition(oper, 3).size());
+  }
+
+  @Test
+  public void testHavingConditionWithoutIncrementalMode() throws Exception
+  {
+    GroupByHavingOperator oper = createIncrementalOperator(false);
+    oper.addHavingCondition(new HavingCondition(new SumFunction("c", null))
+    {
+      @Override
+      public boolean isValidAggregate(ArrayList<Map<String, Object>> rows)
+      {
+        return true;
+      }
+    });
+    try {
+      oper.setup(null);
+      Assert.fail("condition without incremental mode is accepted");
+    }
+    catch (IllegalArgumentException ex) {
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("does not support incremental mode"));
+    }
+  }
 }
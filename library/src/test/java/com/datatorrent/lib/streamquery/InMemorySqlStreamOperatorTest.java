@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.streamquery.AbstractSqlStreamOperator.InputSchema;
+import com.datatorrent.lib.streamquery.sql.SqlParser;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Functional test for {@link com.datatorrent.lib.streamquery.InMemorySqlStreamOperator}.
+ */
+public class InMemorySqlStreamOperatorTest
+{
+  private static HashMap<String, Object> quote(String symbol, String last, String earnings)
+  {
+    HashMap<String, Object> tuple = new HashMap<String, Object>();
+    tuple.put("s0", symbol);
+    tuple.put("l1", last);
+    if (earnings != null) {
+      tuple.put("e0", earnings);
+    }
+    return tuple;
+  }
+
+  private static InMemorySqlStreamOperator newOperator(String statement)
+  {
+    InMemorySqlStreamOperator oper = new InMemorySqlStreamOperator();
+    InputSchema inputSchema1 = new InputSchema("t1");
+    inputSchema1.setColumnInfo("s0", "varchar(100)", true);
+    inputSchema1.setColumnInfo("l1", "float", false);
+    InputSchema inputSchema2 = new InputSchema("t2");
+    inputSchema2.setColumnInfo("s0", "varchar(100)", true);
+    inputSchema2.setColumnInfo("e0", "float", false);
+    oper.setInputSchema(0, inputSchema1);
+    oper.setInputSchema(1, inputSchema2);
+    oper.setStatement(statement);
+    return oper;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testSelectWhere()
+  {
+    InMemorySqlStreamOperator oper = newOperator("SELECT SESSION.t1.s0 AS symbol, SESSION.t1.l1 AS last_trade FROM SESSION.t1 "
+                                                 + "WHERE SESSION.t1.s0 = 'AAPL' AND SESSION.t1.l1 < 450");
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.result.setSink(sink);
+
+    oper.setup(null);
+    oper.beginWindow(1);
+    oper.in1.process(quote("AAPL", "440.5", null));
+    oper.in1.process(quote("AAPL", "451", null));
+    oper.in1.process(quote("GOOG", "300", null));
+    oper.endWindow();
+
+    Assert.assertEquals("selected rows", 1, sink.collectedTuples.size());
+    Map row = (Map)sink.collectedTuples.get(0);
+    Assert.assertEquals("symbol", "AAPL", row.get("SYMBOL"));
+    Assert.assertEquals("last trade", 440.5, row.get("LAST_TRADE"));
+
+    sink.clear();
+    oper.beginWindow(2);
+    oper.endWindow();
+    Assert.assertEquals("rows are cleared every window", 0, sink.collectedTuples.size());
+    oper.teardown();
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testJoin()
+  {
+    InMemorySqlStreamOperator oper = newOperator("SELECT SESSION.t1.s0 AS symbol, SESSION.t1.l1 / SESSION.t2.e0 AS pe_ratio "
+                                                 + "FROM SESSION.t1,SESSION.t2 WHERE SESSION.t1.s0 = SESSION.t2.s0 "
+                                                 + "ORDER BY pe_ratio DESC");
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.result.setSink(sink);
+
+    oper.setup(null);
+    oper.beginWindow(1);
+    oper.in1.process(quote("AAPL", "400", null));
+    oper.in1.process(quote("GOOG", "900", null));
+    oper.in1.process(quote("IBM", "180", null));
+    oper.in2.process(quote("AAPL", null, "40"));
+    oper.in2.process(quote("GOOG", null, "30"));
+    oper.endWindow();
+
+    Assert.assertEquals("joined rows", 2, sink.collectedTuples.size());
+    Map row = (Map)sink.collectedTuples.get(0);
+    Assert.assertEquals("symbol", "GOOG", row.get("SYMBOL"));
+    Assert.assertEquals("pe ratio", 30.0, row.get("PE_RATIO"));
+    row = (Map)sink.collectedTuples.get(1);
+    Assert.assertEquals("symbol", "AAPL", row.get("SYMBOL"));
+    Assert.assertEquals("pe ratio", 10.0, row.get("PE_RATIO"));
+    oper.teardown();
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testGroupByAndBindings()
+  {
+    InMemorySqlStreamOperator oper = newOperator("SELECT s0, COUNT(*) AS trades, MAX(l1) AS high, AVG(l1) AS average "
+                                                 + "FROM t1 WHERE l1 > ? GROUP BY s0 HAVING COUNT(*) > 1 ORDER BY s0");
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.result.setSink(sink);
+
+    oper.setup(null);
+    oper.beginWindow(1);
+    ArrayList<Object> bindings = new ArrayList<Object>();
+    bindings.add(100);
+    oper.bindingsPort.process(bindings);
+    oper.in1.process(quote("IBM", "180", null));
+    oper.in1.process(quote("GOOG", "900", null));
+    oper.in1.process(quote("AAPL", "400", null));
+    oper.in1.process(quote("GOOG", "910", null));
+    oper.in1.process(quote("AAPL", "420", null));
+    oper.in1.process(quote("AAPL", "90", null));
+    oper.endWindow();
+
+    Assert.assertEquals("groups", 2, sink.collectedTuples.size());
+    Map row = (Map)sink.collectedTuples.get(0);
+    Assert.assertEquals("symbol", "AAPL", row.get("S0"));
+    Assert.assertEquals("trades", 2, row.get("TRADES"));
+    Assert.assertEquals("high", 420.0, row.get("HIGH"));
+    Assert.assertEquals("average", 410.0, row.get("AVERAGE"));
+    row = (Map)sink.collectedTuples.get(1);
+    Assert.assertEquals("symbol", "GOOG", row.get("S0"));
+    Assert.assertEquals("trades", 2, row.get("TRADES"));
+    oper.teardown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownColumn()
+  {
+    newOperator("SELECT t1.x0 FROM t1").setup(null);
+  }
+
+  @Test
+  public void testUnsupportedClauses()
+  {
+    try {
+      SqlParser.parse("SELECT t1.a0, t2.b0 FROM t1 JOIN t2 ON t1.a0 = t2.b0");
+      Assert.fail("JOIN ... ON is parsed");
+    }
+    catch (IllegalArgumentException ex) {
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("JOIN is not supported"));
+    }
+    try {
+      SqlParser.parse("SELECT a0 FROM t1 ORDER BY a0 LIMIT 10");
+      Assert.fail("LIMIT is parsed");
+    }
+    catch (IllegalArgumentException ex) {
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("LIMIT is not supported"));
+    }
+  }
+}
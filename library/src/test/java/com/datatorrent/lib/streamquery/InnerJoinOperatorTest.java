@@ -16,7 +16,9 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.HashMap;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.datatorrent.lib.streamquery.InnerJoinOperator;
@@ -81,4 +83,45 @@ public class InnerJoinOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testWindowRetention()
+  {
+    InnerJoinOperator oper = new InnerJoinOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setJoinCondition(new JoinColumnEqualCondition("a", "a"));
+    oper.selectTable1Column(new ColumnIndex("b", null));
+    oper.selectTable2Column(new ColumnIndex("c", null));
+    oper.setWindowRetention(2);
+
+    oper.setup(null);
+    oper.beginWindow(1);
+    HashMap<String, Object> tuple = new HashMap<String, Object>();
+    tuple.put("a", 0);
+    tuple.put("b", 1);
+    oper.inport1.process(tuple);
+    oper.endWindow();
+
+    oper.beginWindow(2);
+    tuple = new HashMap<String, Object>();
+    tuple.put("a", 0);
+    tuple.put("c", 2);
+    oper.inport2.process(tuple);
+    oper.endWindow();
+    Assert.assertEquals("joined with retained row", 1, sink.collectedTuples.size());
+    Assert.assertEquals("joined b", 1, ((Map) sink.collectedTuples.get(0)).get("b"));
+
+    oper.beginWindow(3);
+    oper.endWindow();
+    oper.beginWindow(4);
+    tuple = new HashMap<String, Object>();
+    tuple.put("a", 0);
+    tuple.put("b", 3);
+    oper.inport1.process(tuple);
+    oper.endWindow();
+    Assert.assertEquals("expired rows are not joined", 1, sink.collectedTuples.size());
+    oper.teardown();
+  }
 }
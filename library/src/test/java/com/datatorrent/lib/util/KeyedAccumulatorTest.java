@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Tests for {@link KeyedDoubleAccumulator} and {@link KeyedLongAccumulator}
+ */
+public class KeyedAccumulatorTest
+{
+  @Test
+  public void testAccumulate()
+  {
+    KeyedDoubleAccumulator<String> sums = new KeyedDoubleAccumulator<String>(2);
+    for (int i = 0; i < 1000; i++) {
+      sums.add("k" + (i % 100), i);
+    }
+    sums.add(null, 1.5);
+    Assert.assertEquals("size", 101, sums.size());
+    Assert.assertEquals("first key", "k0", sums.getKey(0));
+    Assert.assertEquals("sum", 4500.0, sums.get(sums.indexOf("k0")), 0);
+    Assert.assertEquals("sum", 5490.0, sums.get(sums.indexOf("k99")), 0);
+    Assert.assertEquals("null key", 1.5, sums.get(sums.indexOf(null)), 0);
+    Assert.assertEquals("absent key", -1, sums.indexOf("k100"));
+
+    sums.clear();
+    Assert.assertTrue("empty", sums.isEmpty());
+    Assert.assertFalse("cleared key", sums.containsKey("k0"));
+    Assert.assertEquals("value is reset", 2.0, sums.get(sums.add("k1", 2)), 0);
+    Assert.assertEquals("index of first key", 0, sums.indexOf("k1"));
+  }
+
+  @Test
+  public void testCheckpoint()
+  {
+    KeyedLongAccumulator<String> counts = new KeyedLongAccumulator<String>();
+    counts.increment("a");
+    counts.increment("b");
+    counts.increment("a");
+
+    Kryo kryo = new Kryo();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Output output = new Output(bos);
+    kryo.writeClassAndObject(output, counts);
+    output.close();
+    @SuppressWarnings("unchecked")
+    KeyedLongAccumulator<String> copy = (KeyedLongAccumulator<String>)kryo.readClassAndObject(new Input(bos.toByteArray()));
+
+    Assert.assertEquals("size", 2, copy.size());
+    Assert.assertEquals("count of a", 2, copy.get(copy.indexOf("a")));
+    copy.increment("b");
+    copy.increment("c");
+    Assert.assertEquals("count of b", 2, copy.get(copy.indexOf("b")));
+    Assert.assertEquals("size", 3, copy.size());
+  }
+}
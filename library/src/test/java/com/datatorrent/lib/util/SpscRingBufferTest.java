@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SpscRingBuffer}
+ */
+public class SpscRingBufferTest
+{
+  @Test
+  public void testOfferPoll()
+  {
+    SpscRingBuffer<Integer> ring = new SpscRingBuffer<Integer>(3);
+    Assert.assertEquals("capacity", 4, ring.capacity());
+    Assert.assertNull("empty", ring.poll());
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue("offer " + i, ring.offer(i));
+    }
+    Assert.assertFalse("full", ring.offer(4));
+    Assert.assertEquals("head", 0, ring.poll().intValue());
+    Assert.assertTrue("offer after poll", ring.offer(4));
+
+    Integer[] batch = new Integer[8];
+    Assert.assertEquals("drained", 3, ring.drainTo(batch, 1, 3));
+    Assert.assertArrayEquals("batch", new Integer[] {null, 1, 2, 3, null, null, null, null}, batch);
+    Assert.assertEquals("size", 1, ring.size());
+    Assert.assertEquals("rest", 1, ring.drainTo(batch, 0, 8));
+    Assert.assertEquals("last", 4, batch[0].intValue());
+    Assert.assertTrue("empty", ring.isEmpty());
+  }
+
+  @Test
+  public void testProducerConsumer() throws Exception
+  {
+    final int count = 1000000;
+    final SpscRingBuffer<Integer> ring = new SpscRingBuffer<Integer>(1024);
+    Thread producer = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          for (int i = 0; i < count; i++) {
+            ring.put(i);
+          }
+        }
+        catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+    };
+    producer.start();
+    Integer[] batch = new Integer[100];
+    int expected = 0;
+    while (expected < count) {
+      int n = ring.drainTo(batch, 0, batch.length);
+      for (int i = 0; i < n; i++) {
+        Assert.assertEquals("order", expected++, batch[i].intValue());
+      }
+    }
+    producer.join();
+    Assert.assertNull("empty", ring.poll());
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TopNSort}, {@link TopNDoubleSort} and {@link BoundedHeap}
+ */
+public class TopNSortTest
+{
+  @Test
+  public void testTopNSort()
+  {
+    Random random = new Random(1);
+    double[] values = new double[10000];
+    TopNSort<Double> top = new TopNSort<Double>(5, 10, true);
+    TopNSort<Double> bottom = new TopNSort<Double>(5, 10, false);
+    TopNDoubleSort doubleTop = new TopNDoubleSort(10, true);
+    TopNDoubleSort doubleBottom = new TopNDoubleSort(10, false);
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextInt(100000);
+      top.offer(values[i]);
+      bottom.offer(values[i]);
+      doubleTop.offer(values[i]);
+      doubleBottom.offer(values[i]);
+    }
+    Arrays.sort(values);
+    List<Double> topN = top.getTopN(10);
+    List<Double> bottomN = bottom.getTopN(10);
+    double[] doubleTopN = doubleTop.getTopN(10);
+    double[] doubleBottomN = doubleBottom.getTopN(10);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("top " + i, values[values.length - 1 - i], topN.get(i), 0);
+      Assert.assertEquals("bottom " + i, values[i], bottomN.get(i), 0);
+      Assert.assertEquals("double top " + i, values[values.length - 1 - i], doubleTopN[i], 0);
+      Assert.assertEquals("double bottom " + i, values[i], doubleBottomN[i], 0);
+    }
+    Assert.assertTrue("cleared", top.isEmpty() && doubleTop.isEmpty());
+    doubleTop.offer(3);
+    Assert.assertEquals("fewer values than N", 1, doubleTop.getTopN(10).length);
+  }
+
+  @Test
+  public void testQualifies()
+  {
+    TopNSort<Integer> top = new TopNSort<Integer>(5, 2, true);
+    top.offer(5);
+    top.offer(7);
+    Assert.assertFalse("rejected", top.qualifies(4));
+    Assert.assertFalse("not kept", top.offer(4));
+    Assert.assertTrue("equal value", top.qualifies(5));
+    Assert.assertTrue("kept", top.offer(9));
+    Assert.assertEquals("top", Arrays.asList(9, 7), top.getTopN(2));
+  }
+}